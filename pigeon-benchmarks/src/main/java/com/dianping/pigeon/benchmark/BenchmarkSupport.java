@@ -0,0 +1,145 @@
+package com.dianping.pigeon.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericRequest;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.publish.ServicePublisher;
+
+/**
+ * payloads, requests and the local echo service shared by the benchmarks.
+ */
+public final class BenchmarkSupport {
+
+	public static final String ECHO_URL = "http://service.dianping.com/pigeon/benchmark/echoService";
+
+	public static final String PAYLOAD_SMALL = "small";
+
+	public static final String PAYLOAD_MEDIUM = "medium";
+
+	public static final String PAYLOAD_LARGE = "large";
+
+	private static final String KEY_REGISTRY_CUSTOMIZED = "pigeon.registry.customized";
+
+	private static final int REQUEST_TIMEOUT = 5000;
+
+	private static boolean initialized = false;
+
+	private BenchmarkSupport() {
+	}
+
+	/**
+	 * selects the local registry and publishes the echo service locally, so
+	 * requests of the echo service can be decoded. idempotent.
+	 */
+	public static synchronized void init() throws Exception {
+		if (!initialized) {
+			ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+			configManager.setLocalStringValue(KEY_REGISTRY_CUSTOMIZED, LocalRegistry.NAME);
+			ProviderConfig<EchoService> providerConfig = new ProviderConfig<EchoService>(EchoService.class,
+					new EchoServiceImpl());
+			providerConfig.setUrl(ECHO_URL);
+			ServicePublisher.addService(providerConfig);
+			initialized = true;
+		}
+	}
+
+	/**
+	 * small is a handful of scalars, medium an order of 20 items and 10
+	 * attributes, large 1000 items, 100 attributes and a 10k note
+	 */
+	public static Order newOrder(String payload) {
+		int items;
+		int attributes;
+		int note;
+		if (PAYLOAD_SMALL.equals(payload)) {
+			items = 0;
+			attributes = 0;
+			note = 0;
+		} else if (PAYLOAD_MEDIUM.equals(payload)) {
+			items = 20;
+			attributes = 10;
+			note = 200;
+		} else if (PAYLOAD_LARGE.equals(payload)) {
+			items = 1000;
+			attributes = 100;
+			note = 10000;
+		} else {
+			throw new IllegalArgumentException("unknown payload:" + payload);
+		}
+
+		Order order = new Order();
+		order.id = 20170901123456L;
+		order.user = "pigeon-benchmark";
+		order.state = 3;
+		order.amount = 1024.5;
+		order.note = StringUtils.repeat("n", note);
+		List<OrderItem> orderItems = new ArrayList<OrderItem>(items);
+		for (int i = 0; i < items; i++) {
+			OrderItem item = new OrderItem();
+			item.skuId = 100000L + i;
+			item.title = "item-" + i;
+			item.quantity = i % 5 + 1;
+			item.price = 9.9 + i;
+			orderItems.add(item);
+		}
+		order.items = orderItems;
+		Map<String, String> orderAttributes = new HashMap<String, String>();
+		for (int i = 0; i < attributes; i++) {
+			orderAttributes.put("key-" + i, "value-" + i);
+		}
+		order.attributes = orderAttributes;
+		return order;
+	}
+
+	/**
+	 * a request of echo(order), thrift takes its own request type
+	 */
+	public static InvocationRequest newRequest(byte serialize, String payload, long sequence) {
+		return newRequest(serialize, newOrder(payload), sequence);
+	}
+
+	public static InvocationRequest newRequest(byte serialize, Order order, long sequence) {
+		Object[] parameters = new Object[] { order };
+		InvocationRequest request;
+		if (serialize == SerializerFactory.SERIALIZE_THRIFT) {
+			GenericRequest genericRequest = new GenericRequest(ECHO_URL, "echo", parameters, serialize,
+					Constants.MESSAGE_TYPE_SERVICE, REQUEST_TIMEOUT);
+			genericRequest.setServiceInterface(EchoService.class);
+			genericRequest.setParameterTypes(new Class<?>[] { Order.class });
+			genericRequest.setSequence(sequence);
+			genericRequest.setCallType(Constants.CALLTYPE_REPLY);
+			request = genericRequest;
+		} else {
+			request = new DefaultRequest(ECHO_URL, "echo", parameters, serialize, Constants.MESSAGE_TYPE_SERVICE,
+					REQUEST_TIMEOUT, Constants.CALLTYPE_REPLY, sequence);
+		}
+		request.setCreateMillisTime(System.currentTimeMillis());
+		return request;
+	}
+
+	public static InvocationResponse newResponse(byte serialize, String payload, long sequence) {
+		Order order = newOrder(payload);
+		if (serialize == SerializerFactory.SERIALIZE_THRIFT) {
+			GenericResponse response = new GenericResponse(serialize, sequence, Constants.MESSAGE_TYPE_SERVICE, order);
+			response.setServiceName(ECHO_URL);
+			response.setMethodName("echo");
+			return response;
+		}
+		return new DefaultResponse(serialize, sequence, Constants.MESSAGE_TYPE_SERVICE, order);
+	}
+}
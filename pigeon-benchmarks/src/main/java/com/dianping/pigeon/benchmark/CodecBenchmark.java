@@ -0,0 +1,176 @@
+package com.dianping.pigeon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SymbolTable;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.SymbolRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.netty.codec.CodecEvent;
+import com.dianping.pigeon.remoting.netty.codec.CompressHandler;
+import com.dianping.pigeon.remoting.netty.codec.Crc32Handler;
+import com.dianping.pigeon.remoting.netty.codec.FrameDecoder;
+import com.dianping.pigeon.remoting.netty.codec.FramePrepender;
+import com.dianping.pigeon.remoting.netty.invoker.codec.InvokerEncoder;
+import com.dianping.pigeon.remoting.netty.provider.codec.ProviderDecoder;
+
+/**
+ * a request through the netty handlers of the client pipeline into a frame,
+ * and a frame through the handlers of the server pipeline back into a
+ * request. default frames are hessian requests, symbol frames hessian
+ * requests with a confirmed symbol table and unified frames thrift requests,
+ * compression and checksums only apply to unified frames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	private static final String PROTOCOL_DEFAULT = "default";
+
+	private static final String PROTOCOL_SYMBOL = "symbol";
+
+	private static final String PROTOCOL_UNIFIED = "unified";
+
+	private static final String KEY_COMPRESS_ENABLE = "pigeon.codec.compress.enable";
+
+	private static final String KEY_COMPRESS_THRESHOLD = "pigeon.codec.compress.threshold";
+
+	private static final String KEY_COMPRESS_TYPE = "pigeon.codec.compress.type";
+
+	private static final String KEY_COMPRESS_ADAPTIVE_ENABLE = "pigeon.codec.compress.adaptive.enable";
+
+	private static final String KEY_CHECKSUM_ENABLE = "pigeon.codec.checksum.enable";
+
+	@Param({ PROTOCOL_DEFAULT, PROTOCOL_SYMBOL, PROTOCOL_UNIFIED })
+	public String protocol;
+
+	@Param({ BenchmarkSupport.PAYLOAD_SMALL, BenchmarkSupport.PAYLOAD_MEDIUM, BenchmarkSupport.PAYLOAD_LARGE })
+	public String payload;
+
+	@Param({ "none", "snappy", "gzip", "lz4" })
+	public String compress;
+
+	@Param({ "false", "true" })
+	public String checksum;
+
+	private EncoderEmbedder<ChannelBuffer> encoder;
+
+	private DecoderEmbedder<CodecEvent> decoder;
+
+	private SymbolTable symbolTable;
+
+	private Order order;
+
+	private InvocationRequest request;
+
+	private ChannelBuffer frame;
+
+	private long sequence;
+
+	@Setup
+	public void setUp() throws Exception {
+		BenchmarkSupport.init();
+		ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+		configManager.setLocalStringValue(KEY_COMPRESS_ENABLE, String.valueOf(!"none".equals(compress)));
+		configManager.setLocalStringValue(KEY_COMPRESS_THRESHOLD, "0");
+		configManager.setLocalStringValue(KEY_COMPRESS_TYPE, String.valueOf(getCompressCode(compress)));
+		// a fixed choice, not the one adaptive compression learns
+		configManager.setLocalStringValue(KEY_COMPRESS_ADAPTIVE_ENABLE, "false");
+		configManager.setLocalStringValue(KEY_CHECKSUM_ENABLE, checksum);
+
+		symbolTable = new SymbolTable();
+		encoder = new EncoderEmbedder<ChannelBuffer>(new FramePrepender(), new Crc32Handler(), new CompressHandler(),
+				new InvokerEncoder(symbolTable));
+		decoder = new DecoderEmbedder<CodecEvent>(new FrameDecoder(), new Crc32Handler(), new CompressHandler(),
+				new ProviderDecoder());
+		sequence = System.nanoTime();
+		order = BenchmarkSupport.newOrder(payload);
+		request = newRequest();
+
+		if (PROTOCOL_SYMBOL.equals(protocol)) {
+			// the first frame defines the symbols for both sides, later
+			// frames only carry their ids
+			decode(encode(newRequest()));
+			symbolTable.confirm(sequence);
+		}
+		frame = encode();
+		if (decode().getInvocation() == null) {
+			throw new IllegalStateException("frame of " + protocol + " not decoded");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		encoder.finish();
+		decoder.finish();
+	}
+
+	@Benchmark
+	public ChannelBuffer encode() {
+		// a symbol request is rewritten by the encoder
+		return encode(PROTOCOL_SYMBOL.equals(protocol) ? newRequest() : request);
+	}
+
+	@Benchmark
+	public CodecEvent decode() {
+		return decode(frame.duplicate());
+	}
+
+	private ChannelBuffer encode(InvocationRequest request) {
+		encoder.offer(request);
+		return encoder.poll();
+	}
+
+	private CodecEvent decode(ChannelBuffer frame) {
+		decoder.offer(frame);
+		return decoder.poll();
+	}
+
+	private InvocationRequest newRequest() {
+		if (PROTOCOL_UNIFIED.equals(protocol)) {
+			return BenchmarkSupport.newRequest(SerializerFactory.SERIALIZE_THRIFT, order, sequence);
+		}
+		if (PROTOCOL_SYMBOL.equals(protocol)) {
+			SymbolRequest symbolRequest = new SymbolRequest(BenchmarkSupport.ECHO_URL, "echo",
+					new Object[] { order }, SerializerFactory.SERIALIZE_HESSIAN,
+					Constants.MESSAGE_TYPE_SERVICE, 5000, Constants.CALLTYPE_REPLY, sequence);
+			symbolRequest.setVersion("1.0.0");
+			return symbolRequest;
+		}
+		return BenchmarkSupport.newRequest(SerializerFactory.SERIALIZE_HESSIAN, order, sequence);
+	}
+
+	private static int getCompressCode(String compress) {
+		if ("snappy".equals(compress)) {
+			return 1;
+		} else if ("gzip".equals(compress)) {
+			return 2;
+		} else if ("lz4".equals(compress)) {
+			return 3;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,12 @@
+package com.dianping.pigeon.benchmark;
+
+import com.facebook.swift.service.ThriftMethod;
+import com.facebook.swift.service.ThriftService;
+
+@ThriftService
+public interface EchoService {
+
+	@ThriftMethod
+	Order echo(Order order);
+
+}
@@ -0,0 +1,10 @@
+package com.dianping.pigeon.benchmark;
+
+public class EchoServiceImpl implements EchoService {
+
+	@Override
+	public Order echo(Order order) {
+		return order;
+	}
+
+}
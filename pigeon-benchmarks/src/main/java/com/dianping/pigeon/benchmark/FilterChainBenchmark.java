@@ -0,0 +1,115 @@
+package com.dianping.pigeon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.pigeon.registry.RegistryManager;
+import com.dianping.pigeon.remoting.ServiceFactory;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.process.ProviderProcessHandlerFactory;
+
+/**
+ * the invoker filter chain from the service proxy down to a stub client, and
+ * the provider filter chain from a decoded request to the written response,
+ * both on the calling thread and without any network or codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterChainBenchmark {
+
+	private static final String STUB_ADDRESS = "127.0.0.1:4625";
+
+	@Param({ BenchmarkSupport.PAYLOAD_SMALL, BenchmarkSupport.PAYLOAD_MEDIUM, BenchmarkSupport.PAYLOAD_LARGE })
+	public String payload;
+
+	private EchoService echoService;
+
+	private ServiceInvocationHandler providerHandler;
+
+	private final ProviderChannel providerChannel = new DiscardProviderChannel();
+
+	private Order order;
+
+	@Setup
+	public void setUp() throws Throwable {
+		BenchmarkSupport.init();
+		String url = StubClientFactory.PREFIX + BenchmarkSupport.ECHO_URL;
+		RegistryManager.getInstance().getRegistry().registerService(url, null, STUB_ADDRESS, 1);
+		InvokerConfig<EchoService> invokerConfig = new InvokerConfig<EchoService>(url, EchoService.class);
+		invokerConfig.setTimeout(5000);
+		echoService = ServiceFactory.getService(invokerConfig);
+
+		ProviderProcessHandlerFactory.init();
+		providerHandler = ProviderProcessHandlerFactory.selectInvocationHandler(Constants.MESSAGE_TYPE_SERVICE);
+		order = BenchmarkSupport.newOrder(payload);
+		if (echoService.echo(order) == null || process() == null) {
+			throw new IllegalStateException("echo of the filter chains failed");
+		}
+	}
+
+	@Benchmark
+	public Order invoke() {
+		return echoService.echo(order);
+	}
+
+	@Benchmark
+	public InvocationResponse process() throws Throwable {
+		// each call takes a fresh request, the provider chain updates it
+		InvocationRequest request = BenchmarkSupport.newRequest(SerializerFactory.SERIALIZE_HESSIAN, order, 1);
+		return providerHandler.handle(new DefaultProviderContext(request, providerChannel));
+	}
+
+	static class DiscardProviderChannel implements ProviderChannel {
+
+		@Override
+		public void write(InvocationResponse response) {
+		}
+
+		@Override
+		public String getRemoteAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public String getProtocol() {
+			return Constants.PROTOCOL_DEFAULT;
+		}
+
+		@Override
+		public int getPort() {
+			return 0;
+		}
+
+		@Override
+		public AuthSession getAuthSession() {
+			return null;
+		}
+
+		@Override
+		public void setAuthSession(AuthSession session) {
+		}
+	}
+}
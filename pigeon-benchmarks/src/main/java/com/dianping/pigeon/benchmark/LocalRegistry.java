@@ -0,0 +1,214 @@
+package com.dianping.pigeon.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.registry.Registry;
+import com.dianping.pigeon.registry.util.HeartBeatSupport;
+
+/**
+ * in-memory registry of one benchmark process, providers and invokers meet
+ * here instead of in zookeeper. selected by
+ * pigeon.registry.customized=benchmark.
+ */
+public class LocalRegistry implements Registry {
+
+	public static final String NAME = "benchmark";
+
+	// service --> addresses
+	private final Map<String, Set<String>> services = new ConcurrentHashMap<String, Set<String>>();
+
+	private final Map<String, Integer> weights = new ConcurrentHashMap<String, Integer>();
+
+	private final Map<String, String> apps = new ConcurrentHashMap<String, String>();
+
+	private final Map<String, String> versions = new ConcurrentHashMap<String, String>();
+
+	@Override
+	public void init() {
+	}
+
+	@Override
+	public boolean isEnable() {
+		return true;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public String getServiceAddress(String serviceName) {
+		Set<String> addresses = services.get(serviceName);
+		return addresses == null ? "" : StringUtils.join(addresses, ',');
+	}
+
+	@Override
+	public String getServiceAddress(String serviceName, String group) {
+		return getServiceAddress(serviceName);
+	}
+
+	@Override
+	public String getServiceAddress(String serviceName, String group, boolean fallbackDefaultGroup) {
+		return getServiceAddress(serviceName);
+	}
+
+	@Override
+	public String getServiceAddress(String remoteAppkey, String serviceName, String group,
+			boolean fallbackDefaultGroup) {
+		return getServiceAddress(serviceName);
+	}
+
+	@Override
+	public String getServiceAddress(String remoteAppkey, String serviceName, String group,
+			boolean fallbackDefaultGroup, boolean needListener) {
+		return getServiceAddress(serviceName);
+	}
+
+	@Override
+	public String getServiceAddress(String serviceName, String group, boolean fallbackDefaultGroup,
+			boolean needListener) {
+		return getServiceAddress(serviceName);
+	}
+
+	@Override
+	public synchronized void registerService(String serviceName, String group, String serviceAddress, int weight) {
+		Set<String> addresses = services.get(serviceName);
+		if (addresses == null) {
+			addresses = new CopyOnWriteArraySet<String>();
+			services.put(serviceName, addresses);
+		}
+		addresses.add(serviceAddress);
+		// a negative weight keeps the current one
+		if (weight >= 0) {
+			weights.put(serviceAddress, weight);
+		}
+	}
+
+	@Override
+	public void unregisterService(String serviceName, String serviceAddress) {
+		Set<String> addresses = services.get(serviceName);
+		if (addresses != null) {
+			addresses.remove(serviceAddress);
+		}
+	}
+
+	@Override
+	public void unregisterService(String serviceName, String group, String serviceAddress) {
+		unregisterService(serviceName, serviceAddress);
+	}
+
+	@Override
+	public int getServerWeight(String serverAddress) {
+		Integer weight = weights.get(serverAddress);
+		return weight == null ? 1 : weight;
+	}
+
+	@Override
+	public void setServerWeight(String serverAddress, int weight) {
+		weights.put(serverAddress, weight);
+	}
+
+	@Override
+	public String getServerApp(String serverAddress) {
+		String app = apps.get(serverAddress);
+		return app == null ? "" : app;
+	}
+
+	@Override
+	public void setServerApp(String serverAddress, String app) {
+		if (app != null) {
+			apps.put(serverAddress, app);
+		}
+	}
+
+	@Override
+	public void unregisterServerApp(String serverAddress) {
+		apps.remove(serverAddress);
+	}
+
+	@Override
+	public String getServerVersion(String serverAddress) {
+		return versions.get(serverAddress);
+	}
+
+	@Override
+	public void setServerVersion(String serverAddress, String version) {
+		if (version != null) {
+			versions.put(serverAddress, version);
+		}
+	}
+
+	@Override
+	public void unregisterServerVersion(String serverAddress) {
+		versions.remove(serverAddress);
+	}
+
+	@Override
+	public byte getServerHeartBeatSupport(String serviceAddress) {
+		return HeartBeatSupport.CLIENTTOSERVER.getValue();
+	}
+
+	@Override
+	public boolean isSupportNewProtocol(String serviceAddress) {
+		return false;
+	}
+
+	@Override
+	public boolean isSupportNewProtocol(String serviceAddress, String serviceName) {
+		return false;
+	}
+
+	@Override
+	public void setSupportNewProtocol(String serviceAddress, String serviceName, boolean support) {
+	}
+
+	@Override
+	public void unregisterSupportNewProtocol(String serviceAddress, String serviceName, boolean support) {
+	}
+
+	@Override
+	public String getStatistics() {
+		return NAME + ":" + services.keySet();
+	}
+
+	@Override
+	public List<String> getChildren(String key) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void updateHeartBeat(String serviceAddress, Long heartBeatTimeMillis) {
+	}
+
+	@Override
+	public void deleteHeartBeat(String serviceAddress) {
+	}
+
+	@Override
+	public void setServerService(String serviceName, String group, String hosts) {
+		services.remove(serviceName);
+		for (String host : StringUtils.split(hosts, ',')) {
+			registerService(serviceName, group, host, 1);
+		}
+	}
+
+	@Override
+	public void delServerService(String serviceName, String group) {
+		services.remove(serviceName);
+	}
+
+	@Override
+	public void setHostsWeight(String serviceName, String group, String hosts, int weight) {
+		for (String host : StringUtils.split(hosts, ',')) {
+			weights.put(host, weight);
+		}
+	}
+}
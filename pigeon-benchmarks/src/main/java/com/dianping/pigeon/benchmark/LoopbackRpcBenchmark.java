@@ -0,0 +1,104 @@
+package com.dianping.pigeon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.pigeon.remoting.ServiceFactory;
+import com.dianping.pigeon.remoting.invoker.concurrent.FutureFactory;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+
+/**
+ * echo calls through a netty client and a netty server of the same process
+ * over the loopback interface, the whole rpc path short of a real network.
+ * sync and future calls wait for their responses, oneway calls only for the
+ * write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class LoopbackRpcBenchmark {
+
+	private static final int PORT = 4690;
+
+	@Param({ "hessian", "thrift" })
+	public String serializer;
+
+	@Param({ BenchmarkSupport.PAYLOAD_SMALL, BenchmarkSupport.PAYLOAD_MEDIUM, BenchmarkSupport.PAYLOAD_LARGE })
+	public String payload;
+
+	private EchoService syncService;
+
+	private EchoService futureService;
+
+	private EchoService onewayService;
+
+	private Order order;
+
+	@Setup
+	public void setUp() throws Exception {
+		BenchmarkSupport.init();
+		ProviderConfig<EchoService> providerConfig = new ProviderConfig<EchoService>(EchoService.class,
+				new EchoServiceImpl());
+		providerConfig.setUrl(BenchmarkSupport.ECHO_URL);
+		providerConfig.getServerConfig().setPort(PORT);
+		ServiceFactory.addService(providerConfig);
+		// published with the initial weight, no warm-up to wait for here
+		ServiceFactory.online();
+
+		syncService = ServiceFactory.getService(newInvokerConfig(InvokerConfig.CALL_SYNC));
+		futureService = ServiceFactory.getService(newInvokerConfig(InvokerConfig.CALL_FUTURE));
+		onewayService = ServiceFactory.getService(newInvokerConfig(InvokerConfig.CALL_ONEWAY));
+		order = BenchmarkSupport.newOrder(payload);
+		if (sync() == null) {
+			throw new IllegalStateException("echo over the loopback failed");
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		ServiceFactory.removeService(BenchmarkSupport.ECHO_URL);
+	}
+
+	@Benchmark
+	public Order sync() {
+		return syncService.echo(order);
+	}
+
+	@Benchmark
+	public Object future() throws Exception {
+		futureService.echo(order);
+		return FutureFactory.getFuture().get();
+	}
+
+	@Benchmark
+	public void oneway() {
+		onewayService.echo(order);
+	}
+
+	private InvokerConfig<EchoService> newInvokerConfig(String callType) {
+		InvokerConfig<EchoService> invokerConfig = new InvokerConfig<EchoService>(BenchmarkSupport.ECHO_URL,
+				EchoService.class);
+		invokerConfig.setTimeout(5000);
+		invokerConfig.setCallType(callType);
+		invokerConfig.setSerialize(serializer);
+		return invokerConfig;
+	}
+}
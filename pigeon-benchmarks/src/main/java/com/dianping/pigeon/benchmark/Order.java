@@ -0,0 +1,40 @@
+package com.dianping.pigeon.benchmark;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+import com.facebook.swift.codec.ThriftField;
+import com.facebook.swift.codec.ThriftStruct;
+
+/**
+ * payload of the benchmarks, plain public fields so every serializer can
+ * handle it.
+ */
+@ThriftStruct
+public class Order implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@ThriftField(1)
+	public long id;
+
+	@ThriftField(2)
+	public String user;
+
+	@ThriftField(3)
+	public int state;
+
+	@ThriftField(4)
+	public double amount;
+
+	@ThriftField(5)
+	public String note;
+
+	@ThriftField(6)
+	public List<OrderItem> items;
+
+	@ThriftField(7)
+	public Map<String, String> attributes;
+
+}
@@ -0,0 +1,25 @@
+package com.dianping.pigeon.benchmark;
+
+import java.io.Serializable;
+
+import com.facebook.swift.codec.ThriftField;
+import com.facebook.swift.codec.ThriftStruct;
+
+@ThriftStruct
+public class OrderItem implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@ThriftField(1)
+	public long skuId;
+
+	@ThriftField(2)
+	public String title;
+
+	@ThriftField(3)
+	public int quantity;
+
+	@ThriftField(4)
+	public double price;
+
+}
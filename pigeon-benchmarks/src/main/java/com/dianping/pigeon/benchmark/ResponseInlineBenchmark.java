@@ -0,0 +1,138 @@
+package com.dianping.pigeon.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.concurrent.CallbackFuture;
+import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+import com.dianping.pigeon.remoting.invoker.process.threadpool.ResponseThreadPoolProcessor;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * sync call latency over loopback with responses completed inline on the io
+ * thread versus handed to the response pool. an echo thread stands in for the
+ * provider, a reader thread stands in for the netty worker of the client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class ResponseInlineBenchmark {
+
+	private static final String KEY_RESPONSE_INLINE_ENABLE = "pigeon.invoker.response.inline.enable";
+
+	@Param({ "false", "true" })
+	public String inline;
+
+	private ServerSocket serverSocket;
+
+	private Socket socket;
+
+	private DataOutputStream out;
+
+	private ResponseThreadPoolProcessor processor;
+
+	private long sequence = 0;
+
+	@Setup
+	public void setUp() throws Exception {
+		ConfigManagerLoader.getConfigManager().setLocalStringValue(KEY_RESPONSE_INLINE_ENABLE, inline);
+		serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		Thread echo = new Thread("echo-provider") {
+
+			@Override
+			public void run() {
+				try {
+					Socket socket = serverSocket.accept();
+					socket.setTcpNoDelay(true);
+					DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+					while (true) {
+						out.writeLong(in.readLong());
+						out.flush();
+					}
+				} catch (Exception e) {
+					// client closed
+				}
+			}
+		};
+		echo.setDaemon(true);
+		echo.start();
+
+		socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+		socket.setTcpNoDelay(true);
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		processor = new ResponseThreadPoolProcessor();
+		Thread io = new Thread("client-io") {
+
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						long sequence = in.readLong();
+						processor.processResponse(new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, sequence,
+								Constants.MESSAGE_TYPE_SERVICE, "ok"), null);
+					}
+				} catch (Exception e) {
+					// closed
+				}
+			}
+		};
+		io.setDaemon(true);
+		io.start();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		socket.close();
+		serverSocket.close();
+		processor.stop();
+	}
+
+	@Benchmark
+	public Object call() throws Exception {
+		DefaultRequest request = new DefaultRequest();
+		request.setSequence(++sequence);
+		request.setCreateMillisTime(TimeUtils.currentTimeMillis());
+		request.setTimeout(5000);
+		CallbackFuture future = new CallbackFuture();
+		future.setRequest(request);
+		RemoteInvocationBean invocationBean = new RemoteInvocationBean();
+		invocationBean.request = request;
+		invocationBean.callback = future;
+		ServiceInvocationRepository.getInstance().put(sequence, invocationBean);
+		out.writeLong(sequence);
+		out.flush();
+		return future.getResponse(5000);
+	}
+}
@@ -0,0 +1,105 @@
+package com.dianping.pigeon.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+
+/**
+ * request and response round trips of every serializer of the
+ * SerializerFactory over the payload shapes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+	@Param({ "hessian", "hessian1", "java", "proto", "fst", "json", "thrift" })
+	public String serializer;
+
+	@Param({ "small", "medium", "large" })
+	public String payload;
+
+	private final ByteArrayOutputStream os = new ByteArrayOutputStream(64 * 1024);
+
+	private Serializer codec;
+
+	private InvocationRequest request;
+
+	private InvocationResponse response;
+
+	private byte[] requestBytes;
+
+	private byte[] responseBytes;
+
+	private long sequence;
+
+	@Setup
+	public void setUp() throws Exception {
+		BenchmarkSupport.init();
+		byte serialize = SerializerFactory.getSerialize(serializer);
+		codec = SerializerFactory.getSerializer(serialize);
+		sequence = System.nanoTime();
+		request = BenchmarkSupport.newRequest(serialize, payload, sequence);
+		response = BenchmarkSupport.newResponse(serialize, payload, sequence);
+
+		// thrift looks the request of a response up by its sequence
+		RemoteInvocationBean invocationBean = new RemoteInvocationBean();
+		invocationBean.request = request;
+		ServiceInvocationRepository.getInstance().put(sequence, invocationBean);
+
+		requestBytes = serializeRequest();
+		responseBytes = serializeResponse();
+	}
+
+	@TearDown
+	public void tearDown() {
+		ServiceInvocationRepository.getInstance().remove(sequence);
+	}
+
+	@Benchmark
+	public byte[] serializeRequest() {
+		os.reset();
+		codec.serializeRequest(os, request);
+		return os.toByteArray();
+	}
+
+	@Benchmark
+	public Object deserializeRequest() {
+		return codec.deserializeRequest(new ByteArrayInputStream(requestBytes));
+	}
+
+	@Benchmark
+	public byte[] serializeResponse() {
+		os.reset();
+		codec.serializeResponse(os, response);
+		return os.toByteArray();
+	}
+
+	@Benchmark
+	public Object deserializeResponse() {
+		return codec.deserializeResponse(new ByteArrayInputStream(responseBytes));
+	}
+}
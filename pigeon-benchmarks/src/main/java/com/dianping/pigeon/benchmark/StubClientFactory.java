@@ -0,0 +1,102 @@
+package com.dianping.pigeon.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.AbstractClient;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.ClientFactory;
+import com.dianping.pigeon.remoting.invoker.client.ClientConfigFactory;
+import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+import com.dianping.pigeon.remoting.invoker.process.ResponseProcessor;
+import com.dianping.pigeon.remoting.invoker.process.ResponseProcessorFactory;
+import com.dianping.pigeon.util.NetUtils;
+
+/**
+ * clients of the services named with the @STUB@ prefix. a stub client never
+ * touches the network, it answers each call on the calling thread with its
+ * first argument, so a benchmark measures the invoker filter chain alone.
+ */
+public class StubClientFactory implements ClientFactory {
+
+	public static final String PREFIX = "@STUB@";
+
+	private static final ResponseProcessor responseProcessor = ResponseProcessorFactory.selectProcessor();
+
+	@Override
+	public boolean support(ConnectInfo connectInfo) {
+		Map<String, Integer> serviceNames = connectInfo.getServiceNames();
+		return !serviceNames.isEmpty() && serviceNames.keySet().iterator().next().startsWith(PREFIX);
+	}
+
+	@Override
+	public Client createClient(ConnectInfo connectInfo) {
+		return new StubClient(connectInfo);
+	}
+
+	static class StubClient extends AbstractClient {
+
+		private final ConnectInfo connectInfo;
+
+		StubClient(ConnectInfo connectInfo) {
+			super(ClientConfigFactory.createClientConfig(ConfigManagerLoader.getConfigManager()), responseProcessor);
+			this.connectInfo = connectInfo;
+		}
+
+		@Override
+		public void doOpen() {
+		}
+
+		@Override
+		public void doClose() {
+		}
+
+		@Override
+		public InvocationResponse doWrite(InvocationRequest request) {
+			if (request.getCallType() == Constants.CALLTYPE_REPLY) {
+				Object[] parameters = request.getParameters();
+				processResponse(new DefaultResponse(request.getSerialize(), request.getSequence(),
+						request.getMessageType(), parameters == null || parameters.length == 0 ? null
+								: parameters[0]));
+			}
+			return null;
+		}
+
+		@Override
+		public ConnectInfo getConnectInfo() {
+			return connectInfo;
+		}
+
+		@Override
+		public List<Channel> getChannels() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public String getHost() {
+			return connectInfo.getHost();
+		}
+
+		@Override
+		public int getPort() {
+			return connectInfo.getPort();
+		}
+
+		@Override
+		public String getAddress() {
+			return NetUtils.toAddress(connectInfo.getHost(), connectInfo.getPort());
+		}
+
+		@Override
+		public String getProtocol() {
+			return "stub";
+		}
+	}
+}
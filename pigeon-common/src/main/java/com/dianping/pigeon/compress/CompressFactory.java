@@ -10,6 +10,8 @@ public class CompressFactory {
 
     private static Compress snappyCompress = new SnappyCompress();
 
+    private static Compress lz4Compress = new Lz4Compress();
+
     private CompressFactory() {
 
     }
@@ -21,4 +23,8 @@ public class CompressFactory {
     public static Compress getSnappyCompress() {
         return snappyCompress;
     }
+
+    public static Compress getLz4Compress() {
+        return lz4Compress;
+    }
 }
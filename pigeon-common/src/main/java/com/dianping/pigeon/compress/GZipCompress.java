@@ -3,8 +3,12 @@ package com.dianping.pigeon.compress;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 /**
  * @author qi.yin
@@ -15,44 +19,130 @@ public class GZipCompress implements Compress {
     /**
      * default buffer size
      */
-    private static final int BUFFER_SIZE = 256;
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final int HEADER_LENGTH = 10;
+
+    private static final int TRAILER_LENGTH = 8;
+
+    // the size field is not trusted beyond this ratio to the compressed length
+    private static final int MAX_PREALLOCATE_RATIO = 32;
+
+    // same header as GZIPOutputStream writes
+    private static final byte[] HEADER = new byte[]{(byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    // deflater/inflater hold native memory, each io thread reuses its own
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
 
     public byte[] compress(byte[] array) throws IOException {
         if (array == null) {
             return null;
         }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        GZIPOutputStream gzip;
-        try {
-            gzip = new GZIPOutputStream(out);
-            gzip.write(array);
-            gzip.close();
-        } catch (IOException e) {
-            throw e;
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(array);
+        deflater.finish();
+
+        // zlib's compressBound, enough for one pass in most cases
+        int length = array.length;
+        byte[] out = new byte[HEADER_LENGTH + length + (length >>> 12) + (length >>> 14) + (length >>> 25) + 13
+                + TRAILER_LENGTH];
+        System.arraycopy(HEADER, 0, out, 0, HEADER_LENGTH);
+        int n = HEADER_LENGTH;
+        while (!deflater.finished()) {
+            if (n == out.length - TRAILER_LENGTH) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            n += deflater.deflate(out, n, out.length - TRAILER_LENGTH - n);
         }
-        return out.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(array);
+        writeIntLE(out, n, (int) crc.getValue());
+        writeIntLE(out, n + 4, length);
+        return n + TRAILER_LENGTH == out.length ? out : Arrays.copyOf(out, n + TRAILER_LENGTH);
     }
 
     public byte[] unCompress(byte[] array) throws IOException {
         if (array == null) {
             return null;
         }
+        if (array.length < HEADER_LENGTH + TRAILER_LENGTH || array[0] != HEADER[0] || array[1] != HEADER[1]
+                || array[2] != Deflater.DEFLATED) {
+            throw new IOException("Not in GZIP format");
+        }
+        int size = readIntLE(array, array.length - 4);
+        // optional header fields, multiple members, more than 2G or a size too large to
+        // allocate up front: leave them to the stream, which grows with the actual output
+        if (array[3] != 0 || size < 0 || size > (long) array.length * MAX_PREALLOCATE_RATIO) {
+            return unCompressStream(array);
+        }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ByteArrayInputStream in = new ByteArrayInputStream(array);
-
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(array, HEADER_LENGTH, array.length - HEADER_LENGTH - TRAILER_LENGTH);
+        byte[] out = new byte[size];
+        int n = 0;
         try {
-            GZIPInputStream zip = new GZIPInputStream(in);
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int n;
-            while ((n = zip.read(buffer)) >= 0) {
-                out.write(buffer, 0, n);
+            while (!inflater.finished()) {
+                if (n == size) {
+                    // the size field only holds the last member
+                    return unCompressStream(array);
+                }
+                int count = inflater.inflate(out, n, size - n);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Unexpected end of GZIP input");
+                }
+                n += count;
             }
-        } catch (IOException e) {
-            throw e;
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid GZIP data: " + e.getMessage());
+        }
+        if (n != size || inflater.getRemaining() > 0) {
+            return unCompressStream(array);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(out);
+        if ((int) crc.getValue() != readIntLE(array, array.length - TRAILER_LENGTH)) {
+            throw new IOException("Corrupt GZIP trailer");
+        }
+        return out;
+    }
+
+    private byte[] unCompressStream(byte[] array) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(array.length * 2);
+        GZIPInputStream zip = new GZIPInputStream(new ByteArrayInputStream(array), BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = zip.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
         }
         return out.toByteArray();
     }
 
+    private static int readIntLE(byte[] buf, int i) {
+        return (buf[i] & 0xFF) | ((buf[i + 1] & 0xFF) << 8) | ((buf[i + 2] & 0xFF) << 16) | ((buf[i + 3] & 0xFF) << 24);
+    }
+
+    private static void writeIntLE(byte[] buf, int i, int value) {
+        buf[i] = (byte) value;
+        buf[i + 1] = (byte) (value >>> 8);
+        buf[i + 2] = (byte) (value >>> 16);
+        buf[i + 3] = (byte) (value >>> 24);
+    }
+
 }
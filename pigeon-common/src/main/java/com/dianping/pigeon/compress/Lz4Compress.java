@@ -0,0 +1,217 @@
+package com.dianping.pigeon.compress;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * lz4 block format, prefixed by the uncompressed length as a 4 byte big
+ * endian int since a raw block does not carry it. the compressor is the
+ * simple greedy one with a 4k entry hash table kept per thread.
+ */
+public class Lz4Compress implements Compress {
+
+    private static final int MIN_MATCH = 4;
+
+    private static final int HASH_LOG = 12;
+
+    // the last match has to start 12 bytes before the end, the last 5 bytes are always literals
+    private static final int MF_LIMIT = 12;
+
+    private static final int LAST_LITERALS = 5;
+
+    private static final int MAX_DISTANCE = 65535;
+
+    private static final int RUN_MASK = 15;
+
+    private static final int MAX_UNCOMPRESSED_LENGTH = 1 << 30;
+
+    // one input byte expands to at most 255 output bytes
+    private static final int MAX_EXPANSION = 255;
+
+    private static final ThreadLocal<int[]> hashTables = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1 << HASH_LOG];
+        }
+    };
+
+    @Override
+    public byte[] compress(byte[] src) throws IOException {
+        if (src == null) {
+            return null;
+        }
+        int srcLength = src.length;
+        byte[] dest = new byte[4 + srcLength + srcLength / 255 + 16];
+        writeIntBE(dest, 0, srcLength);
+        int op = 4;
+        int anchor = 0;
+
+        if (srcLength > MF_LIMIT) {
+            int[] table = hashTables.get();
+            Arrays.fill(table, -1);
+            int limit = srcLength - MF_LIMIT;
+            int matchLimit = srcLength - LAST_LITERALS;
+            int ip = 0;
+            while (ip < limit) {
+                int sequence = readInt(src, ip);
+                int h = hash(sequence);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    ip++;
+                    continue;
+                }
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                    matchLength++;
+                }
+                op = writeSequence(src, anchor, ip - anchor, dest, op, ip - ref, matchLength);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        op = writeLastLiterals(src, anchor, srcLength - anchor, dest, op);
+        return Arrays.copyOf(dest, op);
+    }
+
+    @Override
+    public byte[] unCompress(byte[] src) throws IOException {
+        if (src == null) {
+            return null;
+        }
+        if (src.length < 5) {
+            throw new IOException("Invalid lz4 block, length:" + src.length);
+        }
+        int destLength = readIntBE(src, 0);
+        if (destLength < 0 || destLength > MAX_UNCOMPRESSED_LENGTH
+                || destLength > (long) (src.length - 4) * MAX_EXPANSION) {
+            throw new IOException("Invalid lz4 uncompressed length:" + destLength);
+        }
+        byte[] dest = new byte[destLength];
+        int ip = 4;
+        int op = 0;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+                int literalLength = token >>> 4;
+                if (literalLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dest, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (ip >= src.length) {
+                    break;
+                }
+
+                int offset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+                ip += 2;
+                if (offset == 0 || offset > op) {
+                    throw new IOException("Invalid lz4 match offset:" + offset);
+                }
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                if (matchLength > destLength - op) {
+                    throw new IOException("Invalid lz4 match length:" + matchLength);
+                }
+                int match = op - offset;
+                if (offset >= matchLength) {
+                    System.arraycopy(dest, match, dest, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // overlapping copy repeats the last offset bytes
+                    for (int i = 0; i < matchLength; i++) {
+                        dest[op++] = dest[match++];
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Malformed lz4 block at:" + ip);
+        }
+        if (op != destLength) {
+            throw new IOException("Invalid lz4 block, expected " + destLength + " bytes but got " + op);
+        }
+        return dest;
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literalLength, byte[] dest, int op,
+                                     int offset, int matchLength) {
+        int tokenPos = op++;
+        int token;
+        if (literalLength >= RUN_MASK) {
+            token = RUN_MASK << 4;
+            op = writeLength(dest, op, literalLength - RUN_MASK);
+        } else {
+            token = literalLength << 4;
+        }
+        System.arraycopy(src, literalStart, dest, op, literalLength);
+        op += literalLength;
+
+        dest[op++] = (byte) offset;
+        dest[op++] = (byte) (offset >>> 8);
+
+        int length = matchLength - MIN_MATCH;
+        if (length >= RUN_MASK) {
+            token |= RUN_MASK;
+            op = writeLength(dest, op, length - RUN_MASK);
+        } else {
+            token |= length;
+        }
+        dest[tokenPos] = (byte) token;
+        return op;
+    }
+
+    private static int writeLastLiterals(byte[] src, int literalStart, int literalLength, byte[] dest, int op) {
+        if (literalLength >= RUN_MASK) {
+            dest[op++] = (byte) (RUN_MASK << 4);
+            op = writeLength(dest, op, literalLength - RUN_MASK);
+        } else {
+            dest[op++] = (byte) (literalLength << 4);
+        }
+        System.arraycopy(src, literalStart, dest, op, literalLength);
+        return op + literalLength;
+    }
+
+    private static int writeLength(byte[] dest, int op, int length) {
+        while (length >= 255) {
+            dest[op++] = (byte) 255;
+            length -= 255;
+        }
+        dest[op++] = (byte) length;
+        return op;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(byte[] buf, int i) {
+        return (buf[i] & 0xFF) | ((buf[i + 1] & 0xFF) << 8) | ((buf[i + 2] & 0xFF) << 16) | ((buf[i + 3] & 0xFF) << 24);
+    }
+
+    private static int readIntBE(byte[] buf, int i) {
+        return ((buf[i] & 0xFF) << 24) | ((buf[i + 1] & 0xFF) << 16) | ((buf[i + 2] & 0xFF) << 8) | (buf[i + 3] & 0xFF);
+    }
+
+    private static void writeIntBE(byte[] buf, int i, int value) {
+        buf[i] = (byte) (value >>> 24);
+        buf[i + 1] = (byte) (value >>> 16);
+        buf[i + 2] = (byte) (value >>> 8);
+        buf[i + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,61 @@
+package com.dianping.pigeon.threadpool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * blocking sections that tell a fork join pool about the block, so the pool
+ * can start a spare worker instead of losing parallelism. outside a fork join
+ * pool they simply block.
+ */
+public final class ManagedBlocking {
+
+	private ManagedBlocking() {
+	}
+
+	/**
+	 * the lock of the condition must be held by the caller
+	 */
+	public static void await(final Condition condition, final long timeoutMillis) throws InterruptedException {
+		if (!ForkJoinTask.inForkJoinPool()) {
+			condition.await(timeoutMillis, TimeUnit.MILLISECONDS);
+			return;
+		}
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+			@Override
+			public boolean block() throws InterruptedException {
+				condition.await(timeoutMillis, TimeUnit.MILLISECONDS);
+				return true;
+			}
+
+			@Override
+			public boolean isReleasable() {
+				return false;
+			}
+		});
+	}
+
+	public static boolean await(final CountDownLatch latch, final long timeoutMillis) throws InterruptedException {
+		if (!ForkJoinTask.inForkJoinPool() || latch.getCount() == 0) {
+			return latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+			@Override
+			public boolean block() throws InterruptedException {
+				latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+				return true;
+			}
+
+			@Override
+			public boolean isReleasable() {
+				return latch.getCount() == 0;
+			}
+		});
+		return latch.getCount() == 0;
+	}
+}
@@ -14,6 +14,14 @@ public class VersionUtils {
 
     public static final String COMPACT_VERSION = "2.7.5";
 
+    public static final String SYMBOL_VERSION = "2.9.1";
+
+    public static final String SESSION_TOKEN_VERSION = "2.9.1";
+
+    public static final String BATCH_VERSION = "2.9.1";
+
+    public static final String STREAM_VERSION = "2.9.1";
+
     public static boolean isThriftSupported(String version) {
         if (version.startsWith(MT_THRIFT_VERSION_BASE)) {
             return compareVersion(version, MT_THRIFT_VERSION) >= 0;
@@ -30,6 +38,22 @@ public class VersionUtils {
         return compareVersion(version, COMPACT_VERSION) >= 0;
     }
 
+    public static boolean isSymbolSupported(String version) {
+        return compareVersion(version, SYMBOL_VERSION) >= 0;
+    }
+
+    public static boolean isSessionTokenSupported(String version) {
+        return compareVersion(version, SESSION_TOKEN_VERSION) >= 0;
+    }
+
+    public static boolean isBatchSupported(String version) {
+        return compareVersion(version, BATCH_VERSION) >= 0;
+    }
+
+    public static boolean isStreamSupported(String version) {
+        return compareVersion(version, STREAM_VERSION) >= 0;
+    }
+
     public static int compareVersion(String version1, String version2) {
         String[] s1 = version1.split("\\.|-");
         String[] s2 = version2.split("\\.|-");
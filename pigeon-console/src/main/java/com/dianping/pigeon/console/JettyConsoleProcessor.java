@@ -54,6 +54,14 @@ public class JettyConsoleProcessor implements JettyHttpServerProcessor {
 		context.addServlet(new ServletHolder(serviceStatusJsonServlet), "/services.status");
 		context.addServlet(new ServletHolder(serviceStatusJsonServlet), "/status");
 
+		MetricsJsonServlet metricsJsonServlet = new MetricsJsonServlet(serverConfig, port);
+		context.addServlet(new ServletHolder(metricsJsonServlet), "/metrics.json");
+		context.addServlet(new ServletHolder(new PrometheusMetricsServlet(serverConfig, port)), "/metrics");
+
+		WarmupJsonServlet warmupJsonServlet = new WarmupJsonServlet(serverConfig, port);
+		context.addServlet(new ServletHolder(warmupJsonServlet), "/warmup.json");
+		context.addServlet(new ServletHolder(warmupJsonServlet), "/warmup");
+
 		ProviderOnlineStatusServlet providerOnlineStatusServlet = new ProviderOnlineStatusServlet();
 		context.addServlet(new ServletHolder(providerOnlineStatusServlet), "/onlineStatus");
 
@@ -24,6 +24,12 @@ public class Statistics {
 
 	public Map<String, String> others = new HashMap<String, String>();
 
+	private Map<String, String> connectionStatistics = new HashMap<String, String>();
+
+	private int connectionCount;
+
+	private int channelPoolCount;
+
 	public Map<String, WeightFactor> getWeightFactors() {
 		return weightFactors;
 	}
@@ -80,4 +86,28 @@ public class Statistics {
 		this.invokerConfigs = invokerConfigs;
 	}
 
+	public Map<String, String> getConnectionStatistics() {
+		return connectionStatistics;
+	}
+
+	public void setConnectionStatistics(Map<String, String> connectionStatistics) {
+		this.connectionStatistics = connectionStatistics;
+	}
+
+	public int getConnectionCount() {
+		return connectionCount;
+	}
+
+	public void setConnectionCount(int connectionCount) {
+		this.connectionCount = connectionCount;
+	}
+
+	public int getChannelPoolCount() {
+		return channelPoolCount;
+	}
+
+	public void setChannelPoolCount(int channelPoolCount) {
+		this.channelPoolCount = channelPoolCount;
+	}
+
 }
@@ -0,0 +1,35 @@
+package com.dianping.pigeon.console.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.dianping.pigeon.monitor.metrics.MetricsRegistry;
+import com.dianping.pigeon.monitor.metrics.PrometheusFormatter;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+
+/**
+ * the per method meters in prometheus text format, for scraping
+ */
+public class PrometheusMetricsServlet extends ServiceServlet {
+
+	private static final long serialVersionUID = -2407583216651957371L;
+
+	public PrometheusMetricsServlet(ServerConfig serverConfig, int port) {
+		super(serverConfig, port);
+	}
+
+	@Override
+	public String getContentType() {
+		return "text/plain; version=0.0.4; charset=UTF-8";
+	}
+
+	@Override
+	protected void generateView(HttpServletRequest request, HttpServletResponse response) throws IOException,
+			ServletException {
+		response.getWriter().write(PrometheusFormatter.format(MetricsRegistry.getInstance().snapshot()));
+	}
+
+}
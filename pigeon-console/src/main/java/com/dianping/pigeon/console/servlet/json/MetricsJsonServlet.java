@@ -0,0 +1,39 @@
+package com.dianping.pigeon.console.servlet.json;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.dianping.pigeon.console.servlet.ServiceServlet;
+import com.dianping.pigeon.monitor.metrics.MetricsRegistry;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+
+/**
+ * totals of the per method meters since startup
+ */
+public class MetricsJsonServlet extends ServiceServlet {
+
+	private static final long serialVersionUID = 4785473420372651209L;
+
+	public MetricsJsonServlet(ServerConfig serverConfig, int port) {
+		super(serverConfig, port);
+	}
+
+	@Override
+	protected boolean initServicePage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		this.model = MetricsRegistry.getInstance().snapshot();
+		return true;
+	}
+
+	@Override
+	public String getView() {
+		return "MetricsJson.ftl";
+	}
+
+	@Override
+	public String getContentType() {
+		return "application/json; charset=UTF-8";
+	}
+
+}
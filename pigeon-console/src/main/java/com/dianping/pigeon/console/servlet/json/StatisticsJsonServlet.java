@@ -15,6 +15,10 @@ import com.dianping.pigeon.console.listener.StatusListener;
 import com.dianping.pigeon.console.servlet.ServiceServlet;
 import com.dianping.pigeon.console.status.StatusInfo;
 import com.dianping.pigeon.remoting.ServiceFactory;
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.pool.ChannelPoolChecker;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.ClientManager;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.process.statistics.InvokerCapacityBucket;
 import com.dianping.pigeon.remoting.invoker.process.statistics.InvokerStatisticsHolder;
@@ -76,6 +80,32 @@ public class StatisticsJsonServlet extends ServiceServlet {
 		}
 		stat.setWeightFactors(LoadBalanceManager.getWeightFactors());
 
+		int connectionCount = 0;
+		Map<String, Client> clients = ClientManager.getInstance().getClusterListener().getAllClients();
+		for (Client client : clients.values()) {
+			List<? extends Channel> channels = client.getChannels();
+			if (channels == null) {
+				continue;
+			}
+			int avaliable = 0;
+			StringBuilder pending = new StringBuilder();
+			for (int index = 0; index < channels.size(); index++) {
+				Channel channel = channels.get(index);
+				if (channel.isAvaliable()) {
+					avaliable++;
+				}
+				if (index > 0) {
+					pending.append(",");
+				}
+				pending.append(channel.getPendingCount());
+			}
+			connectionCount += avaliable;
+			stat.getConnectionStatistics().put(client.getAddress(),
+					"connections:" + avaliable + "/" + channels.size() + ",pending:[" + pending + "]");
+		}
+		stat.setConnectionCount(connectionCount);
+		stat.setChannelPoolCount(ChannelPoolChecker.getPoolCount());
+
 		for (InvokerConfig<?> invokerConfig : ServiceFactory.getAllServiceInvokers().keySet()) {
 			stat.getInvokerConfigs().add(invokerConfig);
 		}
@@ -0,0 +1,48 @@
+package com.dianping.pigeon.console.servlet.json;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.dianping.pigeon.console.servlet.ServiceServlet;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+import com.dianping.pigeon.remoting.provider.warmup.WarmupManager;
+
+/**
+ * progress of the provider warm-up
+ */
+public class WarmupJsonServlet extends ServiceServlet {
+
+	private static final long serialVersionUID = -2641879546213576413L;
+
+	public WarmupJsonServlet(ServerConfig serverConfig, int port) {
+		super(serverConfig, port);
+	}
+
+	@Override
+	protected boolean initServicePage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		WarmupManager warmupManager = WarmupManager.INSTANCE;
+		Map<String, Object> model = new HashMap<String, Object>();
+		model.put("enabled", warmupManager.isEnabled());
+		model.put("state", warmupManager.getState());
+		model.put("startTime", warmupManager.getStartTime());
+		model.put("endTime", warmupManager.getEndTime());
+		model.put("methods", warmupManager.getMethods());
+		this.model = model;
+		return true;
+	}
+
+	@Override
+	public String getView() {
+		return "WarmupJson.ftl";
+	}
+
+	@Override
+	public String getContentType() {
+		return "application/json; charset=UTF-8";
+	}
+
+}
@@ -0,0 +1,15 @@
+{"startTime": ${startTime?c},"endTime": ${endTime?c},"meters": [
+<#list meters as x>
+	{
+		"type": "${x.type?json_string}",
+		"service": "${x.service?json_string}",
+		"name": "${x.name?json_string}",
+		"calls": ${x.calls?c},
+		"failures": ${x.failures?c},
+		"latency": {"mean": ${x.latency.mean?c},"p50": ${x.latency.getPercentile(50)?c},"p95": ${x.latency.getPercentile(95)?c},"p99": ${x.latency.getPercentile(99)?c},"sum": ${x.latency.sum?c}},
+		"requestSize": {"count": ${x.requestSize.count?c},"mean": ${x.requestSize.mean?c},"sum": ${x.requestSize.sum?c}},
+		"responseSize": {"count": ${x.responseSize.count?c},"mean": ${x.responseSize.mean?c},"sum": ${x.responseSize.sum?c}}
+	}<#if x_has_next>,</#if>
+</#list>
+]
+}
@@ -33,6 +33,13 @@
 		"weightFactors": "${weightFactors[key]}"
 	}<#if key_has_next>,</#if>
 </#list>
+],"connectionCount": ${connectionCount?c},"channelPoolCount": ${channelPoolCount?c},"connectionStatistics": [
+<#list connectionStatistics?keys as key>
+	{
+		"server": "${key}",
+		"connections": "${connectionStatistics[key]}"
+	}<#if key_has_next>,</#if>
+</#list>
 ],"invokerConfigStatistics": [
 <#list invokerConfigs as x>
 	{
@@ -0,0 +1,15 @@
+{"enabled": ${enabled?c},"state": "${state}","startTime": ${startTime?c},"endTime": ${endTime?c},"methods": [
+<#list methods as x>
+	{
+		"service": "${x.service}",
+		"name": "${x.name}",
+		"samples": ${x.sampleCount?c},
+		"calls": ${x.calls?c},
+		"failures": ${x.failures?c},
+		"rounds": ${x.rounds?c},
+		"latency": ${x.latency?c},
+		"stable": ${x.stable?c}
+	}<#if x_has_next>,</#if>
+</#list>
+]
+}
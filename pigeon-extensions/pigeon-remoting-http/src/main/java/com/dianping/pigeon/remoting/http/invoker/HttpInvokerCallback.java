@@ -0,0 +1,16 @@
+package com.dianping.pigeon.remoting.http.invoker;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+
+/**
+ * completion of one http call, invoked on the netty io thread.
+ */
+public interface HttpInvokerCallback {
+
+    /**
+     * response is null for calls that expect no reply
+     */
+    void onResponse(InvocationResponse response);
+
+    void onFailure(Throwable cause);
+}
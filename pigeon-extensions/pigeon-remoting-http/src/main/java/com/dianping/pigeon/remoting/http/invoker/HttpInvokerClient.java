@@ -4,13 +4,12 @@
  */
 package com.dianping.pigeon.remoting.http.invoker;
 
-import java.net.ConnectException;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpConnectionManager;
-import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
-import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.util.Timer;
 
 import com.dianping.pigeon.remoting.common.channel.Channel;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
@@ -23,18 +22,21 @@ import com.dianping.pigeon.remoting.invoker.AbstractClient;
 import com.dianping.pigeon.remoting.invoker.client.ClientConfig;
 import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
 import com.dianping.pigeon.remoting.invoker.process.ResponseProcessor;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 import com.dianping.pigeon.util.TimeUtils;
 
 public class HttpInvokerClient extends AbstractClient {
 
     private ConnectInfo connectInfo;
-    private HttpInvokerExecutor httpInvokerExecutor;
-    private String serviceUrlPrefix = null;
-    private String defaultServiceUrl = null;
-    private boolean isConnected = false;
+    private ChannelFactory channelFactory;
+    private Timer timer;
+    private volatile HttpInvokerConnector connector;
+    private volatile boolean isConnected = false;
     public static final String CONTENT_TYPE_SERIALIZED_OBJECT = "application/x-java-serialized-object";
 
     public HttpInvokerClient(ClientConfig clientConfig,
+                             ChannelFactory channelFactory,
+                             Timer timer,
                              ConnectInfo connectInfo,
                              ResponseProcessor responseProcessor) {
         super(clientConfig, responseProcessor);
@@ -43,21 +45,14 @@ public class HttpInvokerClient extends AbstractClient {
         if (logger.isInfoEnabled()) {
             logger.info("http client:" + connectInfo);
         }
-        serviceUrlPrefix = "http://" + connectInfo.getHost() + ":" + connectInfo.getPort() + "/";
-        defaultServiceUrl = serviceUrlPrefix + "service";
-        httpInvokerExecutor = new HttpInvokerExecutor();
-        HttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
-        HttpConnectionManagerParams params = new HttpConnectionManagerParams();
-        params.setMaxTotalConnections(300);
-        params.setDefaultMaxConnectionsPerHost(50);
-        params.setConnectionTimeout(1000);
-        params.setTcpNoDelay(true);
-        params.setSoTimeout(3000);
-        params.setStaleCheckingEnabled(true);
-        connectionManager.setParams(params);
-        HttpClient httpClient = new HttpClient();
-        httpClient.setHttpConnectionManager(connectionManager);
-        httpInvokerExecutor.setHttpClient(httpClient);
+        this.channelFactory = channelFactory;
+        this.timer = timer;
+        this.connector = newConnector();
+    }
+
+    private HttpInvokerConnector newConnector() {
+        return new HttpInvokerConnector(channelFactory, timer, connectInfo.getHost(), connectInfo.getPort(),
+                "/service", clientConfig.getConnectTimeout());
     }
 
     @Override
@@ -67,42 +62,66 @@ public class HttpInvokerClient extends AbstractClient {
 
     @Override
     public void doOpen() {
+        if (connector.isClosed()) {
+            connector = newConnector();
+        }
         InvocationRequest request = InvocationUtils.newRequest(Constants.HEART_TASK_SERVICE,
                 Constants.HEART_TASK_METHOD, null, SerializerFactory.SERIALIZE_HESSIAN,
                 Constants.MESSAGE_TYPE_HEART, 5000, null);
         request.setSequence(0);
         request.setCreateMillisTime(TimeUtils.currentTimeMillis());
         request.setCallType(Constants.CALLTYPE_REPLY);
-        InvocationResponse response = null;
-        try {
-            response = this.write(request);
-            if (response != null && response.getSequence() == 0) {
-                isConnected = true;
+        final CountDownLatch latch = new CountDownLatch(1);
+        connector.execute(request, new HttpInvokerCallback() {
+
+            @Override
+            public void onResponse(InvocationResponse response) {
+                isConnected = response != null && response.getSequence() == 0;
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                isConnected = false;
+                latch.countDown();
             }
-        } catch (Throwable e) {
-            close();
-            isConnected = false;
+        });
+        try {
+            latch.await(request.getTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     @Override
-    public InvocationResponse doWrite(InvocationRequest invocationRequest) throws NetworkException {
-        return write(defaultServiceUrl, invocationRequest);
+    public InvocationResponse doWrite(final InvocationRequest invocationRequest) throws NetworkException {
+        // the response arrives through processResponse like on the tcp clients,
+        // so sync, future and callback calls all complete from the repository
+        connector.execute(invocationRequest, new HttpInvokerCallback() {
+
+            @Override
+            public void onResponse(InvocationResponse response) {
+                isConnected = true;
+                if (response != null) {
+                    processResponse(response);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                if (cause instanceof NetworkException) {
+                    isConnected = false;
+                }
+                if (invocationRequest.getCallType() == Constants.CALLTYPE_REPLY) {
+                    processResponse(ProviderUtils.createFailResponse(invocationRequest, cause));
+                }
+            }
+        });
+        return null;
     }
 
-    public InvocationResponse write(String url, InvocationRequest request) throws NetworkException {
-        final int timeout = request.getTimeout();
-        httpInvokerExecutor.setReadTimeout(timeout);
-        try {
-            InvocationResponse invocationResponse = httpInvokerExecutor.executeRequest(url, request);
-            this.isConnected = true;
-            return invocationResponse;
-        } catch (ConnectException e) {
-            this.isConnected = false;
-            throw new NetworkException("remote call failed:" + request, e);
-        } catch (Throwable e) {
-            throw new NetworkException("remote call failed:" + request, e);
-        }
+    public boolean isConnected() {
+        return isConnected;
     }
 
     @Override
@@ -122,6 +141,7 @@ public class HttpInvokerClient extends AbstractClient {
 
     @Override
     public void doClose() {
+        connector.close();
     }
 
     @Override
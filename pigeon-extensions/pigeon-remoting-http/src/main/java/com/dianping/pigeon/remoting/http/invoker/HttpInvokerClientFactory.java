@@ -5,6 +5,13 @@
 package com.dianping.pigeon.remoting.http.invoker;
 
 import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioWorkerPool;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
 
 import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.remoting.http.HttpUtils;
@@ -15,6 +22,7 @@ import com.dianping.pigeon.remoting.invoker.client.ClientConfigFactory;
 import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
 import com.dianping.pigeon.remoting.invoker.process.ResponseProcessor;
 import com.dianping.pigeon.remoting.invoker.process.ResponseProcessorFactory;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
 
 public class HttpInvokerClientFactory implements ClientFactory {
 
@@ -23,9 +31,31 @@ public class HttpInvokerClientFactory implements ClientFactory {
 
     private final static ClientConfig clientConfig = ClientConfigFactory.createClientConfig(ConfigManagerLoader.getConfigManager());
 
+    private static volatile ChannelFactory channelFactory = null;
+
+    private static volatile Timer timer = null;
+
     @Override
     public Client createClient(ConnectInfo connectInfo) {
-        return new HttpInvokerClient(clientConfig, connectInfo, responseProcessor);
+        return new HttpInvokerClient(clientConfig, getChannelFactory(), timer, connectInfo, responseProcessor);
+    }
+
+    public ChannelFactory getChannelFactory() {
+        if (channelFactory == null) {
+            synchronized (HttpInvokerClientFactory.class) {
+                if (channelFactory == null) {
+                    timer = new HashedWheelTimer(new DefaultThreadFactory("Pigeon-Http-Client-Timer"));
+                    channelFactory = new NioClientSocketChannelFactory(
+                            Executors.newCachedThreadPool(new DefaultThreadFactory("Pigeon-Http-Client-Boss")),
+                            clientConfig.getBossThreadPoolCount(),
+                            new NioWorkerPool(
+                                    Executors.newCachedThreadPool(new DefaultThreadFactory("Pigeon-Http-Client-Worker")),
+                                    clientConfig.getWorkerThreadPoolCount()),
+                            timer);
+                }
+            }
+        }
+        return channelFactory;
     }
 
     @Override
@@ -0,0 +1,401 @@
+package com.dianping.pigeon.remoting.http.invoker;
+
+import java.net.InetSocketAddress;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandler.Sharable;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
+import org.jboss.netty.handler.codec.http.HttpClientCodec;
+import org.jboss.netty.handler.codec.http.HttpContentDecompressor;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * non blocking http/1.1 connections to one provider. calls are written on
+ * pooled keep-alive connections, one call per connection at a time, and
+ * complete through their callback on the io thread. calls beyond the
+ * connection limit wait for the next released connection.
+ */
+public class HttpInvokerConnector {
+
+    private static final Logger logger = LoggerLoader.getLogger(HttpInvokerConnector.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final String KEY_MAX_CONNECTIONS = "pigeon.invoker.http.connections.max";
+
+    private static final String KEY_MAX_RESPONSE_SIZE = "pigeon.invoker.http.response.maxsize";
+
+    static {
+        configManager.getIntValue(KEY_MAX_CONNECTIONS, 50);
+        configManager.getIntValue(KEY_MAX_RESPONSE_SIZE, 16 * 1024 * 1024);
+    }
+
+    private final InetSocketAddress address;
+
+    private final String hostHeader;
+
+    private final String path;
+
+    private final Timer timer;
+
+    private final ClientBootstrap bootstrap;
+
+    private final Queue<Channel> idleChannels = new ConcurrentLinkedQueue<Channel>();
+
+    private final Queue<HttpCall> waiters = new ConcurrentLinkedQueue<HttpCall>();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final ResponseHandler responseHandler = new ResponseHandler();
+
+    private final ChannelFutureListener closeListener = new ChannelFutureListener() {
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            connections.decrementAndGet();
+            idleChannels.remove(future.getChannel());
+            if (!closed) {
+                HttpCall call = pollWaiter();
+                if (call != null) {
+                    dispatch(call);
+                }
+            }
+        }
+    };
+
+    private volatile boolean closed;
+
+    public HttpInvokerConnector(ChannelFactory channelFactory, Timer timer, String host, int port, String path,
+                                int connectTimeout) {
+        this.address = new InetSocketAddress(host, port);
+        this.hostHeader = host + ":" + port;
+        this.path = path;
+        this.timer = timer;
+        this.bootstrap = new ClientBootstrap(channelFactory);
+        this.bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+
+            @Override
+            public ChannelPipeline getPipeline() throws Exception {
+                ChannelPipeline pipeline = Channels.pipeline();
+                pipeline.addLast("codec", new HttpClientCodec());
+                pipeline.addLast("inflater", new HttpContentDecompressor());
+                pipeline.addLast("aggregator",
+                        new HttpChunkAggregator(configManager.getIntValue(KEY_MAX_RESPONSE_SIZE, 16 * 1024 * 1024)));
+                pipeline.addLast("handler", responseHandler);
+                return pipeline;
+            }
+        });
+        this.bootstrap.setOption("tcpNoDelay", true);
+        this.bootstrap.setOption("keepAlive", true);
+        this.bootstrap.setOption("reuseAddress", true);
+        this.bootstrap.setOption("connectTimeoutMillis", connectTimeout);
+    }
+
+    public void execute(InvocationRequest request, HttpInvokerCallback callback) {
+        if (closed) {
+            callback.onFailure(new NetworkException("http connector is closed:" + hostHeader));
+            return;
+        }
+        dispatch(new HttpCall(request, callback));
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public int getIdleConnections() {
+        return idleChannels.size();
+    }
+
+    public int getWaiters() {
+        return waiters.size();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void close() {
+        closed = true;
+        Channel channel;
+        while ((channel = idleChannels.poll()) != null) {
+            channel.close();
+        }
+        HttpCall call;
+        while ((call = waiters.poll()) != null) {
+            call.fail(new NetworkException("http connector is closed:" + hostHeader));
+        }
+    }
+
+    private void dispatch(HttpCall call) {
+        Channel channel;
+        while ((channel = idleChannels.poll()) != null) {
+            if (channel.isConnected()) {
+                send(channel, call);
+                return;
+            }
+        }
+        if (connections.incrementAndGet() <= configManager.getIntValue(KEY_MAX_CONNECTIONS, 50)) {
+            connect(call);
+            return;
+        }
+        connections.decrementAndGet();
+        waiters.offer(call);
+        // a connection may have been released before the call was queued
+        drain();
+    }
+
+    private void drain() {
+        while (!waiters.isEmpty()) {
+            Channel channel = idleChannels.poll();
+            if (channel == null) {
+                return;
+            }
+            if (!channel.isConnected()) {
+                continue;
+            }
+            HttpCall call = pollWaiter();
+            if (call == null) {
+                idleChannels.offer(channel);
+                return;
+            }
+            send(channel, call);
+        }
+    }
+
+    private HttpCall pollWaiter() {
+        HttpCall call;
+        while ((call = waiters.poll()) != null && call.isExpired()) {
+            call.fail(InvocationUtils.newTimeoutException("request timeout while waiting for a http connection:"
+                    + call.request));
+        }
+        return call;
+    }
+
+    private void release(Channel channel) {
+        if (closed) {
+            channel.close();
+            return;
+        }
+        HttpCall call = pollWaiter();
+        if (call != null) {
+            send(channel, call);
+        } else {
+            idleChannels.offer(channel);
+            drain();
+        }
+    }
+
+    private void connect(final HttpCall call) {
+        ChannelFuture future = bootstrap.connect(address);
+        future.getChannel().getCloseFuture().addListener(closeListener);
+        future.addListener(new ChannelFutureListener() {
+
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (future.isSuccess()) {
+                    send(future.getChannel(), call);
+                } else {
+                    call.fail(new NetworkException("connect to " + hostHeader + " failed", future.getCause()));
+                }
+            }
+        });
+    }
+
+    private void send(final Channel channel, final HttpCall call) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = newHttpRequest(call.request);
+        } catch (Throwable t) {
+            call.fail(t);
+            release(channel);
+            return;
+        }
+        channel.setAttachment(call);
+        if (call.request.getTimeout() > 0) {
+            // frees the connection of a call the provider never answers
+            call.timeout = timer.newTimeout(new TimerTask() {
+
+                @Override
+                public void run(Timeout timeout) throws Exception {
+                    if (channel.getAttachment() == call) {
+                        call.fail(InvocationUtils.newTimeoutException("request timeout, current time:"
+                                + TimeUtils.currentTimeMillis() + ", request:" + call.request));
+                        channel.close();
+                    }
+                }
+            }, call.request.getTimeout(), TimeUnit.MILLISECONDS);
+        }
+        channel.write(httpRequest).addListener(new ChannelFutureListener() {
+
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    call.fail(new NetworkException("write to " + hostHeader + " failed", future.getCause()));
+                    future.getChannel().close();
+                }
+            }
+        });
+    }
+
+    private HttpRequest newHttpRequest(InvocationRequest request) {
+        byte serialize = request.getSerialize();
+        // the request is serialized straight into the outbound buffer
+        ChannelBuffer content = ChannelBuffers.dynamicBuffer(1024);
+        SerializerFactory.getSerializer(serialize).serializeRequest(new ChannelBufferOutputStream(content), request);
+        HttpRequest httpRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, path);
+        HttpHeaders headers = httpRequest.headers();
+        headers.set(HttpHeaders.Names.HOST, hostHeader);
+        headers.set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+        headers.set(HttpHeaders.Names.ACCEPT_ENCODING, HttpHeaders.Values.GZIP);
+        headers.set(HttpHeaders.Names.CONTENT_TYPE, HttpInvokerClient.CONTENT_TYPE_SERIALIZED_OBJECT);
+        headers.set(HttpHeaders.Names.CONTENT_LENGTH, content.readableBytes());
+        headers.set("serialize", serialize);
+        httpRequest.setContent(content);
+        return httpRequest;
+    }
+
+    @Sharable
+    private class ResponseHandler extends SimpleChannelUpstreamHandler {
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            Channel channel = e.getChannel();
+            HttpResponse httpResponse = (HttpResponse) e.getMessage();
+            HttpCall call = (HttpCall) channel.getAttachment();
+            channel.setAttachment(null);
+            InvocationResponse response = null;
+            Throwable failure = null;
+            if (call != null) {
+                call.cancelTimeout();
+                int status = httpResponse.getStatus().getCode();
+                if (status >= 300) {
+                    failure = new NetworkException("did not receive successful http response, status code:" + status
+                            + ", request:" + call.request);
+                } else if (call.request.getCallType() == Constants.CALLTYPE_REPLY) {
+                    try {
+                        Serializer serializer = SerializerFactory.getSerializer(call.request.getSerialize());
+                        response = (InvocationResponse) serializer.deserializeResponse(new ChannelBufferInputStream(
+                                httpResponse.getContent()));
+                    } catch (Throwable t) {
+                        failure = t;
+                    }
+                }
+            }
+            // the connection goes back before the callback runs
+            if (HttpHeaders.isKeepAlive(httpResponse)) {
+                release(channel);
+            } else {
+                channel.close();
+            }
+            if (call != null) {
+                if (failure != null) {
+                    call.fail(failure);
+                } else {
+                    call.complete(response);
+                }
+            }
+        }
+
+        @Override
+        public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+            HttpCall call = (HttpCall) e.getChannel().getAttachment();
+            if (call != null) {
+                e.getChannel().setAttachment(null);
+                call.cancelTimeout();
+                call.fail(new NetworkException("http connection to " + hostHeader + " closed:" + call.request));
+            }
+            super.channelClosed(ctx, e);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+            logger.info("[exceptionCaught] http channel exception, will be close. ", e.getCause());
+            e.getChannel().close();
+        }
+    }
+
+    private static final class HttpCall {
+
+        private final InvocationRequest request;
+
+        private final HttpInvokerCallback callback;
+
+        private final long createMillis = TimeUtils.currentTimeMillis();
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private volatile Timeout timeout;
+
+        HttpCall(InvocationRequest request, HttpInvokerCallback callback) {
+            this.request = request;
+            this.callback = callback;
+        }
+
+        boolean isExpired() {
+            return request.getTimeout() > 0 && TimeUtils.currentTimeMillis() - createMillis > request.getTimeout();
+        }
+
+        void cancelTimeout() {
+            Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        void complete(InvocationResponse response) {
+            if (done.compareAndSet(false, true)) {
+                callback.onResponse(response);
+            }
+        }
+
+        void fail(Throwable cause) {
+            if (done.compareAndSet(false, true)) {
+                cancelTimeout();
+                callback.onFailure(cause);
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.remoting.common.codec.Serializer;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
 import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
 
 public class HttpChannel implements ProviderChannel {
@@ -80,4 +81,13 @@ public class HttpChannel implements ProviderChannel {
 		return request.getLocalPort();
 	}
 
+	@Override
+	public AuthSession getAuthSession() {
+		return null;
+	}
+
+	@Override
+	public void setAuthSession(AuthSession session) {
+	}
+
 }
@@ -0,0 +1,290 @@
+package com.dianping.pigeon.remoting.http.invoker;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+/**
+ * runs the connector against a local http server that answers by method name:
+ * echo answers right away, hold waits for the test, close answers with
+ * Connection: close, error answers 500 and never does not answer.
+ */
+public class HttpInvokerConnectorTest {
+
+    private static final String KEY_MAX_CONNECTIONS = "pigeon.invoker.http.connections.max";
+
+    private static final Serializer serializer = SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_HESSIAN);
+
+    private final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private final BlockingQueue<Held> held = new LinkedBlockingQueue<Held>();
+
+    private ChannelFactory serverFactory;
+
+    private Channel serverChannel;
+
+    private ChannelFactory clientFactory;
+
+    private Timer timer;
+
+    private HttpInvokerConnector connector;
+
+    private long sequence = 0;
+
+    @Before
+    public void setUp() {
+        serverFactory = new NioServerSocketChannelFactory(Executors.newCachedThreadPool(),
+                Executors.newCachedThreadPool());
+        ServerBootstrap serverBootstrap = new ServerBootstrap(serverFactory);
+        serverBootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+
+            @Override
+            public ChannelPipeline getPipeline() {
+                ChannelPipeline pipeline = Channels.pipeline();
+                pipeline.addLast("decoder", new HttpRequestDecoder());
+                pipeline.addLast("aggregator", new HttpChunkAggregator(1024 * 1024));
+                pipeline.addLast("encoder", new HttpResponseEncoder());
+                pipeline.addLast("handler", new ServerHandler());
+                return pipeline;
+            }
+        });
+        serverChannel = serverBootstrap.bind(new InetSocketAddress("127.0.0.1", 0));
+        int port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+
+        clientFactory = new NioClientSocketChannelFactory(Executors.newCachedThreadPool(),
+                Executors.newCachedThreadPool());
+        timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        connector = new HttpInvokerConnector(clientFactory, timer, "127.0.0.1", port, "/service", 1000);
+    }
+
+    @After
+    public void tearDown() {
+        configManager.setLocalStringValue(KEY_MAX_CONNECTIONS, "50");
+        connector.close();
+        serverChannel.close().awaitUninterruptibly();
+        serverFactory.releaseExternalResources();
+        clientFactory.releaseExternalResources();
+        timer.stop();
+    }
+
+    private RecordingCallback call(String methodName, int timeout) {
+        RecordingCallback callback = new RecordingCallback();
+        connector.execute(new DefaultRequest("http://service.dianping.com/test/HttpInvokerConnectorTest",
+                methodName, new Object[] { methodName }, SerializerFactory.SERIALIZE_HESSIAN,
+                Constants.MESSAGE_TYPE_SERVICE, timeout, Constants.CALLTYPE_REPLY, ++sequence), callback);
+        return callback;
+    }
+
+    private Held awaitHeld() throws InterruptedException {
+        Held call = held.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull("no call held by the server", call);
+        return call;
+    }
+
+    private void awaitConnections(int connections) throws InterruptedException {
+        for (int i = 0; i < 500 && connector.getConnections() != connections; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(connections, connector.getConnections());
+    }
+
+    @Test
+    public void testWaiterDispatchedOnRelease() throws Exception {
+        configManager.setLocalStringValue(KEY_MAX_CONNECTIONS, "1");
+        RecordingCallback first = call("hold", 5000);
+        Held held = awaitHeld();
+        RecordingCallback second = call("echo", 5000);
+        Assert.assertEquals(1, connector.getWaiters());
+        Assert.assertEquals(1, connector.getConnections());
+
+        held.respond();
+        Assert.assertEquals("hold", first.awaitResponse().getReturn());
+        // the waiter goes out on the released connection
+        Assert.assertEquals("echo", second.awaitResponse().getReturn());
+        Assert.assertEquals(0, connector.getWaiters());
+        Assert.assertEquals(1, connector.getConnections());
+    }
+
+    @Test
+    public void testTimeoutClosesConnection() throws Exception {
+        RecordingCallback callback = call("never", 200);
+        Assert.assertTrue(callback.awaitFailure() instanceof RequestTimeoutException);
+        awaitConnections(0);
+
+        Assert.assertEquals("echo", call("echo", 5000).awaitResponse().getReturn());
+        Assert.assertEquals(1, connector.getConnections());
+    }
+
+    @Test
+    public void testConnectionClose() throws Exception {
+        Assert.assertEquals("close", call("close", 5000).awaitResponse().getReturn());
+        awaitConnections(0);
+        Assert.assertEquals(0, connector.getIdleConnections());
+
+        Assert.assertEquals("echo", call("echo", 5000).awaitResponse().getReturn());
+        Assert.assertEquals(1, connector.getIdleConnections());
+    }
+
+    @Test
+    public void testErrorStatus() throws Exception {
+        Throwable failure = call("error", 5000).awaitFailure();
+        Assert.assertTrue(failure instanceof NetworkException);
+        Assert.assertTrue(failure.getMessage(), failure.getMessage().contains("status code:500"));
+        // a keep-alive error response keeps its connection
+        Assert.assertEquals(1, connector.getConnections());
+        Assert.assertEquals(1, connector.getIdleConnections());
+    }
+
+    @Test
+    public void testCloseFailsWaiters() throws Exception {
+        configManager.setLocalStringValue(KEY_MAX_CONNECTIONS, "1");
+        RecordingCallback first = call("hold", 5000);
+        Held held = awaitHeld();
+        RecordingCallback waiter = call("echo", 5000);
+        Assert.assertEquals(1, connector.getWaiters());
+
+        connector.close();
+        Throwable failure = waiter.awaitFailure();
+        Assert.assertTrue(failure instanceof NetworkException);
+        Assert.assertTrue(failure.getMessage(), failure.getMessage().contains("closed"));
+        Assert.assertTrue(call("echo", 5000).awaitFailure() instanceof NetworkException);
+
+        // the call in flight completes, its connection is closed afterwards
+        held.respond();
+        Assert.assertEquals("hold", first.awaitResponse().getReturn());
+        awaitConnections(0);
+    }
+
+    private static class RecordingCallback implements HttpInvokerCallback {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile InvocationResponse response;
+
+        private volatile Throwable failure;
+
+        @Override
+        public void onResponse(InvocationResponse response) {
+            this.response = response;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable cause) {
+            this.failure = cause;
+            done.countDown();
+        }
+
+        InvocationResponse awaitResponse() throws InterruptedException {
+            Assert.assertTrue("call not completed", done.await(5, TimeUnit.SECONDS));
+            Assert.assertNull(failure);
+            return response;
+        }
+
+        Throwable awaitFailure() throws InterruptedException {
+            Assert.assertTrue("call not completed", done.await(5, TimeUnit.SECONDS));
+            Assert.assertNotNull(failure);
+            return failure;
+        }
+    }
+
+    private static class Held {
+
+        private final Channel channel;
+
+        private final InvocationRequest request;
+
+        Held(Channel channel, InvocationRequest request) {
+            this.channel = channel;
+            this.request = request;
+        }
+
+        void respond() {
+            write(channel, request, HttpResponseStatus.OK, true);
+        }
+    }
+
+    private static void write(Channel channel, InvocationRequest request, HttpResponseStatus status,
+                              boolean keepAlive) {
+        ChannelBuffer content = ChannelBuffers.dynamicBuffer(256);
+        serializer.serializeResponse(new ChannelBufferOutputStream(content),
+                ProviderUtils.createSuccessResponse(request, request.getMethodName()));
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+        response.setContent(content);
+        HttpHeaders.setContentLength(response, content.readableBytes());
+        response.headers().set(HttpHeaders.Names.CONNECTION,
+                keepAlive ? HttpHeaders.Values.KEEP_ALIVE : HttpHeaders.Values.CLOSE);
+        if (keepAlive) {
+            channel.write(response);
+        } else {
+            channel.write(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private class ServerHandler extends SimpleChannelUpstreamHandler {
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+            HttpRequest httpRequest = (HttpRequest) e.getMessage();
+            InvocationRequest request = (InvocationRequest) serializer.deserializeRequest(
+                    new ChannelBufferInputStream(httpRequest.getContent()));
+            String methodName = request.getMethodName();
+            if ("hold".equals(methodName)) {
+                held.offer(new Held(e.getChannel(), request));
+            } else if ("close".equals(methodName)) {
+                write(e.getChannel(), request, HttpResponseStatus.OK, false);
+            } else if ("error".equals(methodName)) {
+                write(e.getChannel(), request, HttpResponseStatus.INTERNAL_SERVER_ERROR, true);
+            } else if (!"never".equals(methodName)) {
+                write(e.getChannel(), request, HttpResponseStatus.OK, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.dianping.pigeon.remoting.netty.capture;
+
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.netty.codec.CodecEvent;
+
+/**
+ * tees the decoded requests of the server pipeline to the capture manager,
+ * the requests go on to the server handler unchanged.
+ */
+public class CaptureHandler extends SimpleChannelUpstreamHandler {
+
+    private static final Logger logger = LoggerLoader.getLogger(CaptureHandler.class);
+
+    private static final CaptureManager captureManager = CaptureManager.INSTANCE;
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (e.getMessage() instanceof CodecEvent) {
+            CodecEvent codecEvent = (CodecEvent) e.getMessage();
+            if (codecEvent.isValid() && codecEvent.getInvocation() instanceof InvocationRequest) {
+                try {
+                    captureManager.capture((InvocationRequest) codecEvent.getInvocation(), System.nanoTime());
+                } catch (Throwable t) {
+                    logger.warn("capture request failed", t);
+                }
+            }
+        }
+        ctx.sendUpstream(e);
+    }
+}
@@ -0,0 +1,282 @@
+package com.dianping.pigeon.remoting.netty.capture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.generic.UnifiedRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.threadpool.NamedThreadFactory;
+
+/**
+ * records the decoded requests of the selected services into a capture file
+ * for the replay tool. a captured request is copied into a plain request and
+ * serialized again with its own serializer, so a record does not depend on
+ * the symbols or the compression of its connection; thrift requests are
+ * written with hessian.
+ * <p>
+ * the io thread only checks the service and the sample ratio. reading the
+ * parameters, which decodes a lazy symbol request, serializing and writing
+ * run on one capture thread in arrival order. a request is dropped when the
+ * capture queue is full.
+ * <p>
+ * a file is opened when capturing is enabled and closed when it is disabled
+ * or full, a full file is not replaced until capturing is enabled again.
+ */
+public enum CaptureManager {
+
+    INSTANCE;
+
+    private CaptureManager() {
+
+    }
+
+    private static final Logger logger = LoggerLoader.getLogger(CaptureManager.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+    private static final String KEY_CAPTURE_ENABLE = "pigeon.provider.capture.enable";
+    // comma separated service urls, all services if empty
+    private static final String KEY_CAPTURE_SERVICES = "pigeon.provider.capture.services";
+    private static final String KEY_CAPTURE_SAMPLE_RATIO = "pigeon.provider.capture.sample.ratio";
+    // a new file in the temp dir for each capture if empty
+    private static final String KEY_CAPTURE_FILE = "pigeon.provider.capture.file";
+    private static final String KEY_CAPTURE_FILE_MAXSIZE = "pigeon.provider.capture.file.maxsize";
+    private static final String KEY_CAPTURE_QUEUE_SIZE = "pigeon.provider.capture.queue.size";
+
+    static {
+        configManager.getBooleanValue(KEY_CAPTURE_ENABLE, false);
+        configManager.getStringValue(KEY_CAPTURE_SERVICES, "");
+        configManager.getFloatValue(KEY_CAPTURE_SAMPLE_RATIO, 1f);
+        configManager.getStringValue(KEY_CAPTURE_FILE, "");
+        configManager.getIntValue(KEY_CAPTURE_FILE_MAXSIZE, 256 * 1024 * 1024);
+    }
+
+    private static final ThreadPoolExecutor captureExecutor = new ThreadPoolExecutor(1, 1, 0L,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(configManager.getIntValue(
+                    KEY_CAPTURE_QUEUE_SIZE, 10000)), new NamedThreadFactory("Pigeon-Provider-Capture", true));
+
+    private volatile CaptureWriter writer;
+
+    // set when the file could not be opened or is full
+    private volatile boolean exhausted;
+
+    private volatile String servicesConfig;
+
+    private volatile Set<String> services = Collections.emptySet();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    public boolean isEnabled() {
+        return configManager.getBooleanValue(KEY_CAPTURE_ENABLE, false);
+    }
+
+    public void capture(final InvocationRequest request, final long nanoTime) {
+        if (!isEnabled()) {
+            if (writer != null || exhausted) {
+                stop();
+            }
+            return;
+        }
+        if (exhausted || request.getMessageType() != Constants.MESSAGE_TYPE_SERVICE
+                || !isSelected(request.getServiceName())) {
+            return;
+        }
+        float ratio = configManager.getFloatValue(KEY_CAPTURE_SAMPLE_RATIO, 1f);
+        if (ratio < 1f && ThreadLocalRandom.current().nextFloat() >= ratio) {
+            return;
+        }
+        // the filters may change the maps while the request waits for the capture thread
+        final Map<String, Serializable> globalValues = copy(request.getGlobalValues());
+        final Map<String, Serializable> requestValues = copy(request.getRequestValues());
+        try {
+            captureExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    write(request, globalValues, requestValues, nanoTime);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private Map<String, Serializable> copy(Map<String, Serializable> values) {
+        return values == null ? null : new HashMap<String, Serializable>(values);
+    }
+
+    private void write(InvocationRequest request, Map<String, Serializable> globalValues,
+                       Map<String, Serializable> requestValues, long nanoTime) {
+        // queued before capturing was disabled, a new file is not opened for it
+        if (!isEnabled()) {
+            return;
+        }
+        CaptureWriter current = getWriter();
+        if (current == null) {
+            return;
+        }
+
+        byte serialize = request instanceof UnifiedRequest ? SerializerFactory.SERIALIZE_HESSIAN : request
+                .getSerialize();
+        byte[] body;
+        try {
+            body = serialize(request, globalValues, requestValues, serialize);
+        } catch (Throwable t) {
+            dropped.incrementAndGet();
+            if (logger.isDebugEnabled()) {
+                logger.debug("failed to capture request:" + request, t);
+            }
+            return;
+        }
+        if (!current.append(nanoTime, serialize, request.getServiceName(), request.getMethodName(), body)) {
+            synchronized (this) {
+                if (writer == current) {
+                    logger.warn("capture file is full, capturing stopped:" + current.getFile());
+                    exhausted = true;
+                    close(current);
+                    writer = null;
+                }
+            }
+        }
+    }
+
+    private byte[] serialize(InvocationRequest request, Map<String, Serializable> globalValues,
+                             Map<String, Serializable> requestValues, byte serialize) {
+        DefaultRequest copy = new DefaultRequest(request.getServiceName(), request.getMethodName(),
+                request.getParameters(), serialize, Constants.MESSAGE_TYPE_SERVICE, request.getTimeout(),
+                request.getCallType(), 0);
+        copy.setVersion(request.getVersion());
+        copy.setApp(request.getApp());
+        copy.setGlobalValues(globalValues);
+        copy.setRequestValues(requestValues);
+        ByteArrayOutputStream os = new ByteArrayOutputStream(256);
+        SerializerFactory.getSerializer(serialize).serializeRequest(os, copy);
+        return os.toByteArray();
+    }
+
+    private boolean isSelected(String serviceName) {
+        String config = configManager.getStringValue(KEY_CAPTURE_SERVICES, "");
+        if (!StringUtils.equals(config, servicesConfig)) {
+            Set<String> selected = new HashSet<String>();
+            for (String service : StringUtils.split(StringUtils.defaultString(config), ',')) {
+                if (StringUtils.isNotBlank(service)) {
+                    selected.add(service.trim());
+                }
+            }
+            services = selected;
+            servicesConfig = config;
+        }
+        Set<String> selected = services;
+        return selected.isEmpty() || selected.contains(serviceName);
+    }
+
+    private CaptureWriter getWriter() {
+        CaptureWriter current = writer;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (writer == null && !exhausted) {
+                File file = getFile();
+                try {
+                    writer = new CaptureWriter(file, configManager.getIntValue(KEY_CAPTURE_FILE_MAXSIZE,
+                            256 * 1024 * 1024));
+                    dropped.set(0);
+                    logger.info("capturing requests into " + file);
+                } catch (Throwable t) {
+                    logger.error("failed to open capture file:" + file, t);
+                    exhausted = true;
+                }
+            }
+            return writer;
+        }
+    }
+
+    private File getFile() {
+        String file = configManager.getStringValue(KEY_CAPTURE_FILE, "");
+        if (StringUtils.isNotBlank(file)) {
+            return new File(file.trim());
+        }
+        return new File(System.getProperty("java.io.tmpdir"), "pigeon-capture-"
+                + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()) + ".dat");
+    }
+
+    /**
+     * waits until the requests captured before are written, false if they
+     * are not within the timeout
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        FutureTask<Void> marker = new FutureTask<Void>(new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        }, null);
+        // waits for room in the queue instead of being rejected like a capture
+        captureExecutor.prestartCoreThread();
+        captureExecutor.getQueue().put(marker);
+        try {
+            marker.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * closes the current file, the next capture after enabling opens a new
+     * one
+     */
+    public synchronized void stop() {
+        if (writer != null) {
+            close(writer);
+            logger.info("capture stopped, " + writer.getRecords() + " requests in " + writer.getFile());
+            writer = null;
+        }
+        exhausted = false;
+    }
+
+    private void close(CaptureWriter current) {
+        try {
+            current.close();
+        } catch (IOException e) {
+            logger.warn("failed to close capture file:" + current.getFile(), e);
+        }
+    }
+
+    public CaptureWriter getCurrentWriter() {
+        return writer;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
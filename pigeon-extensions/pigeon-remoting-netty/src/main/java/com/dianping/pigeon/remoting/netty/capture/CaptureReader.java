@@ -0,0 +1,81 @@
+package com.dianping.pigeon.remoting.netty.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * reads the records of a file written by {@link CaptureWriter} in order.
+ */
+public class CaptureReader implements Closeable {
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final MappedByteBuffer buffer;
+
+    private final long startMillis;
+
+    public CaptureReader(File file) throws IOException {
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            long length = randomAccessFile.length();
+            if (length < CaptureWriter.HEADER_LENGTH || length > Integer.MAX_VALUE) {
+                throw new IOException("invalid capture file length:" + length);
+            }
+            this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt() != CaptureWriter.MAGIC) {
+                throw new IOException("not a capture file:" + file);
+            }
+            int version = buffer.getInt();
+            if (version != CaptureWriter.VERSION) {
+                throw new IOException("unsupported capture file version:" + version);
+            }
+            this.startMillis = buffer.getLong();
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * null at the end of the capture
+     */
+    public CaptureRecord next() throws IOException {
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length == 0) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("truncated capture record at " + (buffer.position() - 4));
+        }
+        int end = buffer.position() + length;
+        long offsetNanos = buffer.getLong();
+        byte serialize = buffer.get();
+        String serviceName = readString();
+        String methodName = readString();
+        byte[] body = new byte[end - buffer.position()];
+        buffer.get(body);
+        return new CaptureRecord(offsetNanos, serialize, serviceName, methodName, body);
+    }
+
+    private String readString() {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, CaptureWriter.UTF8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+}
@@ -0,0 +1,66 @@
+package com.dianping.pigeon.remoting.netty.capture;
+
+import java.io.ByteArrayInputStream;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
+
+/**
+ * one request of a capture file.
+ */
+public class CaptureRecord {
+
+    private final long offsetNanos;
+
+    private final byte serialize;
+
+    private final String serviceName;
+
+    private final String methodName;
+
+    private final byte[] body;
+
+    public CaptureRecord(long offsetNanos, byte serialize, String serviceName, String methodName, byte[] body) {
+        this.offsetNanos = offsetNanos;
+        this.serialize = serialize;
+        this.serviceName = serviceName;
+        this.methodName = methodName;
+        this.body = body;
+    }
+
+    /**
+     * nanos between the start of the capture and the request
+     */
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    public byte getSerialize() {
+        return serialize;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * a fresh request on each call, the caller sets its own sequence
+     */
+    public InvocationRequest toRequest() {
+        Object request = SerializerFactory.getSerializer(serialize).deserializeRequest(
+                new ByteArrayInputStream(body));
+        if (!(request instanceof InvocationRequest)) {
+            throw new SerializationException("invalid captured request of " + serviceName + "#" + methodName);
+        }
+        return (InvocationRequest) request;
+    }
+}
@@ -0,0 +1,121 @@
+package com.dianping.pigeon.remoting.netty.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * append-only capture file. the file is mapped once with its maximum size, so
+ * appending a record is a copy into the mapping and never a system call.
+ * <p>
+ * layout: magic, version and capture start time in millis, followed by
+ * records of length, time offset in nanos since the start, serialize type,
+ * service, method and the serialized request. a zero length marks the end,
+ * the file is cut to its content on close.
+ */
+public class CaptureWriter implements Closeable {
+
+    public static final int MAGIC = 0x50474350;
+
+    public static final int VERSION = 1;
+
+    static final int HEADER_LENGTH = 16;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final MappedByteBuffer buffer;
+
+    private final long startNanos;
+
+    private long records;
+
+    private boolean closed;
+
+    public CaptureWriter(File file, int maxSize) throws IOException {
+        if (maxSize <= HEADER_LENGTH) {
+            throw new IllegalArgumentException("capture file size too small:" + maxSize);
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(0);
+            this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, maxSize);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+        this.startNanos = System.nanoTime();
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(System.currentTimeMillis());
+    }
+
+    /**
+     * returns false when the writer is closed or the record does not fit
+     */
+    public synchronized boolean append(long nanoTime, byte serialize, String serviceName, String methodName,
+                                       byte[] body) {
+        if (closed) {
+            return false;
+        }
+        byte[] service = serviceName.getBytes(UTF8);
+        byte[] method = methodName.getBytes(UTF8);
+        int length = 8 + 1 + 2 + service.length + 2 + method.length + body.length;
+        // room for the end mark stays free
+        if (buffer.remaining() < 4 + length + 4) {
+            return false;
+        }
+        buffer.putInt(length);
+        buffer.putLong(Math.max(0, nanoTime - startNanos));
+        buffer.put(serialize);
+        buffer.putShort((short) service.length);
+        buffer.put(service);
+        buffer.putShort((short) method.length);
+        buffer.put(method);
+        buffer.put(body);
+        records++;
+        return true;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    public synchronized int getSize() {
+        return buffer.position();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            buffer.force();
+            randomAccessFile.setLength(buffer.position());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.jboss.netty.channel.ChannelFuture;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -35,6 +36,10 @@ public class DefaultNettyChannel implements NettyChannel {
 
     private String remoteAddressString;
 
+    private volatile long lastResponseMillis;
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
     public DefaultNettyChannel(ClientBootstrap bootstrap, String remoteHost, int remotePort, int timeout) {
         this.bootstrap = bootstrap;
         this.remoteAddress = new InetSocketAddress(remoteHost, remotePort);
@@ -59,6 +64,7 @@ public class DefaultNettyChannel implements NettyChannel {
                     if (future.isSuccess()) {
                         disConnect();
                         this.channel = future.getChannel();
+                        this.channel.setAttachment(this);
                         localAddress = (InetSocketAddress) this.channel.getLocalAddress();
                     } else {
                         throw new NetworkException("connected to remote " + remoteAddress + " failed.");
@@ -140,6 +146,35 @@ public class DefaultNettyChannel implements NettyChannel {
         return this.remoteAddressString;
     }
 
+    @Override
+    public long getLastResponseMillis() {
+        return lastResponseMillis;
+    }
+
+    public void setLastResponseMillis(long lastResponseMillis) {
+        this.lastResponseMillis = lastResponseMillis;
+    }
+
+    @Override
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    @Override
+    public void incPendingCount() {
+        pendingCount.incrementAndGet();
+    }
+
+    @Override
+    public void decPendingCount() {
+        for (;;) {
+            int current = pendingCount.get();
+            if (current <= 0 || pendingCount.compareAndSet(current, current - 1)) {
+                return;
+            }
+        }
+    }
+
     public int getTimeout() {
         return timeout;
     }
@@ -44,6 +44,8 @@ public abstract class AbstractEncoder extends OneToOneEncoder {
                 if (msg instanceof UnifiedInvocation) {
                     frame = _doEncode(channel, (UnifiedInvocation) _msg);
                     codecEvent = new CodecEvent(frame, true);
+                    // the compress handler decides per service method
+                    codecEvent.setInvocation(_msg);
                 } else {
                     frame = doEncode(channel, _msg);
                     codecEvent = new CodecEvent(frame, false);
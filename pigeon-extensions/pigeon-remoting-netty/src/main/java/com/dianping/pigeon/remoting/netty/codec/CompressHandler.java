@@ -1,8 +1,11 @@
 package com.dianping.pigeon.remoting.netty.codec;
 
 import com.dianping.pigeon.compress.*;
+import com.dianping.pigeon.remoting.common.codec.AdaptiveCompressManager;
 import com.dianping.pigeon.remoting.common.codec.CodecConfig;
 import com.dianping.pigeon.remoting.common.domain.generic.CompressType;
+import com.dianping.pigeon.remoting.common.domain.generic.UnifiedRequest;
+import com.dianping.pigeon.remoting.common.domain.generic.UnifiedResponse;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.*;
 
@@ -21,6 +24,10 @@ public class CompressHandler extends SimpleChannelHandler {
 
     private static Compress snappyCompress = CompressFactory.getSnappyCompress();
 
+    private static Compress lz4Compress = CompressFactory.getLz4Compress();
+
+    private static final AdaptiveCompressManager adaptiveCompressManager = AdaptiveCompressManager.INSTANCE;
+
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
         if (e.getMessage() == null || !(e.getMessage() instanceof CodecEvent)) {
@@ -98,7 +105,11 @@ public class CompressHandler extends SimpleChannelHandler {
                 codecEvent.setIsCompress(true);
                 break;
             case 0x60:
-                throw new IllegalArgumentException("Invalid compress type.");
+                in = new byte[compressLength];
+                frame.getBytes(frame.readerIndex() + CodecConstants._FRONT_LENGTH, in);
+                out = lz4Compress.unCompress(in);
+                codecEvent.setIsCompress(true);
+                break;
         }
 
         int _totalLength = CodecConstants._HEAD_FIELD_LENGTH + out.length;
@@ -123,24 +134,37 @@ public class CompressHandler extends SimpleChannelHandler {
         ChannelBuffer result = frame;
         int frameLength = frame.readableBytes();
 
-        if (CodecConfig.isCompress(frameLength)) {
+        String serviceName = null;
+        String methodName = null;
+        if (codecEvent.getInvocation() instanceof UnifiedRequest) {
+            UnifiedRequest request = (UnifiedRequest) codecEvent.getInvocation();
+            serviceName = request.getServiceName();
+            methodName = request.getMethodName();
+        } else if (codecEvent.getInvocation() instanceof UnifiedResponse) {
+            UnifiedResponse response = (UnifiedResponse) codecEvent.getInvocation();
+            serviceName = response.getServiceName();
+            methodName = response.getMethodName();
+        }
+
+        if (adaptiveCompressManager.isCompress(serviceName, methodName, frameLength)) {
             CompressType compressType = CodecConfig.getCompressType();
 
             switch (compressType) {
                 case None:
-                    command = command | 0x00;
                     break;
                 case Snappy:
-                    command = command | 0x20;
-                    result = doCompress0(channel, frame, frameLength, snappyCompress);
+                    result = doCompress0(channel, frame, frameLength, snappyCompress, serviceName, methodName);
+                    command = result == frame ? command : command | 0x20;
                     break;
                 case Gzip:
-                    command = command | 0x40;
-                    result = doCompress0(channel, frame, frameLength, gZipCompress);
+                    result = doCompress0(channel, frame, frameLength, gZipCompress, serviceName, methodName);
+                    command = result == frame ? command : command | 0x40;
+                    break;
+                case Lz4:
+                    result = doCompress0(channel, frame, frameLength, lz4Compress, serviceName, methodName);
+                    command = result == frame ? command : command | 0x60;
                     break;
             }
-        } else {
-            command = command | 0x00;
         }
         int oldWriteIndex = result.writerIndex();
         result.writerIndex(CodecConstants._FRONT_COMMAND_LENGTH);
@@ -149,8 +173,12 @@ public class CompressHandler extends SimpleChannelHandler {
         return result;
     }
 
+    /**
+     * returns the frame itself when compressing does not make it smaller
+     */
     private ChannelBuffer doCompress0(Channel channel, ChannelBuffer frame,
-                                      int frameLength, Compress compress)
+                                      int frameLength, Compress compress,
+                                      String serviceName, String methodName)
             throws IOException {
         ChannelBuffer result;
         int bodyLength = frameLength - CodecConstants._FRONT_LENGTH;
@@ -158,7 +186,13 @@ public class CompressHandler extends SimpleChannelHandler {
 
         frame.getBytes(CodecConstants._FRONT_LENGTH, in, 0, bodyLength);
 
+        long start = System.nanoTime();
         byte[] out = compress.compress(in);
+        adaptiveCompressManager.addSample(serviceName, methodName, bodyLength, out.length, System.nanoTime() - start);
+        if (out.length >= bodyLength) {
+            return frame;
+        }
+
         byte[] lengthBuf = new byte[CodecConstants._HEAD_FIELD_LENGTH];
         frame.getBytes(CodecConstants._FRONT_LENGTH_, lengthBuf, 0, lengthBuf.length);
 
@@ -35,6 +35,10 @@ public class FrameDecoder extends org.jboss.netty.handler.codec.frame.FrameDecod
             //new protocal
             message = _doDecode(buffer);
 
+        } else if (isHttpHead(headMsgs[0], headMsgs[1])) {
+            //http request on the same port
+            message = doDecodeHttp(ctx, buffer);
+
         } else {
             throw new IllegalArgumentException("Decode invalid message head:" +
                     headMsgs[0] + " " + headMsgs[1] + ", " + "message:" + buffer);
@@ -44,6 +48,33 @@ public class FrameDecoder extends org.jboss.netty.handler.codec.frame.FrameDecod
 
     }
 
+    /**
+     * first bytes of GET, POST, PUT, HEAD, DELETE and OPTIONS, none of them
+     * collides with the magic of the binary protocols
+     */
+    protected static boolean isHttpHead(byte first, byte second) {
+        switch (first) {
+            case 'G':
+                return second == 'E';
+            case 'P':
+                return second == 'O' || second == 'U';
+            case 'H':
+                return second == 'E';
+            case 'D':
+                return second == 'E';
+            case 'O':
+                return second == 'P';
+            default:
+                return false;
+        }
+    }
+
+    protected Object doDecodeHttp(ChannelHandlerContext ctx, ChannelBuffer buffer)
+            throws Exception {
+        throw new IllegalArgumentException("Decode invalid message head, http is not supported on this channel, " +
+                "message:" + buffer);
+    }
+
     protected Object doDecode(ChannelBuffer buffer)
             throws Exception {
 
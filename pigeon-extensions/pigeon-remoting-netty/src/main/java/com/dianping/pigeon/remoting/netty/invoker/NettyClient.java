@@ -19,11 +19,13 @@ import com.dianping.pigeon.remoting.common.exception.NetworkException;
 import com.dianping.pigeon.remoting.common.pool.ChannelPool;
 import com.dianping.pigeon.remoting.common.pool.ChannelPoolException;
 import com.dianping.pigeon.remoting.common.pool.DefaultChannelPool;
+import com.dianping.pigeon.remoting.common.pool.LeastPendingChannelPool;
 import com.dianping.pigeon.remoting.common.pool.PoolProperties;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.AbstractClient;
 import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
 import com.dianping.pigeon.remoting.invoker.process.ResponseProcessor;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
 import com.dianping.pigeon.remoting.netty.channel.NettyChannel;
 import com.dianping.pigeon.remoting.netty.channel.NettyChannelFactory;
 import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
@@ -69,6 +71,7 @@ public class NettyClient extends AbstractClient {
                 clientConfig.getMaxActive(),
                 clientConfig.getMaxWait(),
                 clientConfig.getTimeBetweenCheckerMillis());
+        poolProperties.setMaxPendingPerChannel(clientConfig.getMaxPendingPerChannel());
     }
 
     @Override
@@ -95,7 +98,11 @@ public class NettyClient extends AbstractClient {
     }
 
     private void initChannelPool() throws ChannelPoolException {
-        channelPool = new DefaultChannelPool<NettyChannel>(poolProperties, createChannelFactory());
+        if (Constants.CHANNEL_POOL_LEASTPENDING.equals(clientConfig.getChannelPoolType())) {
+            channelPool = new LeastPendingChannelPool<NettyChannel>(poolProperties, createChannelFactory());
+        } else {
+            channelPool = new DefaultChannelPool<NettyChannel>(poolProperties, createChannelFactory());
+        }
     }
 
     public ClientBootstrap getBootstrap() {
@@ -115,6 +122,11 @@ public class NettyClient extends AbstractClient {
 
             channel = channelPool.selectChannel();
 
+            if (isPending(request)) {
+                // released by the invocation repository, a failed write included
+                ServiceInvocationRepository.getInstance().addPending(request.getSequence(), channel);
+            }
+
             ChannelFuture future = channel.write0(request);
 
             afterWrite(request, channel);
@@ -130,6 +142,11 @@ public class NettyClient extends AbstractClient {
         return null;
     }
 
+    private boolean isPending(InvocationRequest request) {
+        return request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE
+                && request.getCallType() == Constants.CALLTYPE_REPLY;
+    }
+
     private void afterWrite(InvocationRequest request, NettyChannel channel) {
         if (request instanceof UnifiedRequest) {
 
@@ -3,7 +3,10 @@ package com.dianping.pigeon.remoting.netty.invoker;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.netty.channel.DefaultNettyChannel;
 import com.dianping.pigeon.remoting.netty.codec.CodecEvent;
+import com.dianping.pigeon.util.TimeUtils;
 import org.jboss.netty.channel.*;
 
 import java.util.List;
@@ -32,7 +35,22 @@ public class NettyClientHandler extends SimpleChannelUpstreamHandler {
         CodecEvent codecEvent = (CodecEvent) e.getMessage();
 
         if (codecEvent.isValid() && codecEvent.getInvocation() != null) {
-            client.processResponse((InvocationResponse) codecEvent.getInvocation());
+            InvocationResponse response = (InvocationResponse) codecEvent.getInvocation();
+            markResponse(ctx, response);
+            client.processResponse(response);
+        }
+    }
+
+    private void markResponse(ChannelHandlerContext ctx, InvocationResponse response) {
+        Object attachment = ctx.getChannel().getAttachment();
+
+        if (attachment instanceof DefaultNettyChannel) {
+            DefaultNettyChannel channel = (DefaultNettyChannel) attachment;
+            int messageType = response.getMessageType();
+
+            if (messageType != Constants.MESSAGE_TYPE_EXCEPTION) {
+                channel.setLastResponseMillis(TimeUtils.currentTimeMillis());
+            }
         }
     }
 
@@ -6,6 +6,7 @@ package com.dianping.pigeon.remoting.netty.invoker;
 
 import static org.jboss.netty.channel.Channels.pipeline;
 
+import com.dianping.pigeon.remoting.common.codec.SymbolTable;
 import com.dianping.pigeon.remoting.netty.codec.CompressHandler;
 import com.dianping.pigeon.remoting.netty.codec.Crc32Handler;
 import com.dianping.pigeon.remoting.netty.codec.FrameDecoder;
@@ -25,12 +26,13 @@ public class NettyClientPipelineFactory implements ChannelPipelineFactory {
 
 	public ChannelPipeline getPipeline() throws Exception {
 		ChannelPipeline pipeline = pipeline();
+		SymbolTable symbolTable = new SymbolTable();
 		pipeline.addLast("framePrepender", new FramePrepender());
 		pipeline.addLast("frameDecoder", new FrameDecoder());
 		pipeline.addLast("crc32Handler", new Crc32Handler());
 		pipeline.addLast("compressHandler", new CompressHandler());
-		pipeline.addLast("invokerDecoder", new InvokerDecoder());
-		pipeline.addLast("invokerEncoder", new InvokerEncoder());
+		pipeline.addLast("invokerDecoder", new InvokerDecoder(symbolTable));
+		pipeline.addLast("invokerEncoder", new InvokerEncoder(symbolTable));
 		pipeline.addLast("clientHandler", new NettyClientHandler(this.client));
 		return pipeline;
 	}
@@ -1,6 +1,7 @@
 package com.dianping.pigeon.remoting.netty.invoker.codec;
 
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SymbolTable;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.netty.codec.AbstractDecoder;
 import com.dianping.pigeon.remoting.netty.codec.CodecEvent;
@@ -19,11 +20,19 @@ import java.util.List;
  */
 public class InvokerDecoder extends AbstractDecoder {
 
+    private final SymbolTable symbolTable;
+
+    public InvokerDecoder(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
     @Override
     public Object doInitMsg(Object message, Channel channel, long receiveTime) {
         if (message instanceof InvocationResponse) {
             InvocationResponse response = (InvocationResponse) message;
             response.setCreateMillisTime(receiveTime);
+            // the provider has decoded the request, so its symbols are known there
+            symbolTable.confirm(response.getSequence());
             return response;
         }
         return message;
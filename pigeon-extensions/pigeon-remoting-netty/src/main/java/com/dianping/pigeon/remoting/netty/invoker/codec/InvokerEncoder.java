@@ -1,7 +1,9 @@
 package com.dianping.pigeon.remoting.netty.invoker.codec;
 
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SymbolTable;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.SymbolRequest;
 import com.dianping.pigeon.remoting.netty.codec.AbstractEncoder;
 import com.dianping.pigeon.remoting.netty.codec.CodecEvent;
 import org.jboss.netty.channel.Channel;
@@ -19,6 +21,12 @@ import java.util.List;
  */
 public class InvokerEncoder extends AbstractEncoder {
 
+    private final SymbolTable symbolTable;
+
+    public InvokerEncoder(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
     public Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
         Object encoded = super.encode(ctx, channel, msg);
         return encoded;
@@ -36,6 +44,11 @@ public class InvokerEncoder extends AbstractEncoder {
     @Override
     public void serialize(byte serializerType, OutputStream os, Object obj, Channel channel)
             throws IOException {
+        if (obj instanceof SymbolRequest) {
+            SymbolRequest request = (SymbolRequest) obj;
+            request.writeSymbols(symbolTable);
+            request.writeParameters();
+        }
         SerializerFactory.getSerializer(serializerType).serializeRequest(os, obj);
     }
 }
@@ -0,0 +1,70 @@
+package com.dianping.pigeon.remoting.netty.provider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+
+/**
+ * writes the responses of the http requests of one connection in the order
+ * of the requests. pipelined requests run in parallel in the request pool,
+ * http/1.1 has no other way to match a response to its request.
+ */
+public class HttpResponseSequencer {
+
+    private final Channel channel;
+
+    // guarded by this
+    private long nextRequest = 0;
+
+    private long nextResponse = 0;
+
+    private final Map<Long, HttpResponse> pending = new HashMap<Long, HttpResponse>();
+
+    private boolean closed = false;
+
+    public HttpResponseSequencer(Channel channel) {
+        this.channel = channel;
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    /**
+     * the index of the next request received on the connection
+     */
+    public synchronized long nextIndex() {
+        return nextRequest++;
+    }
+
+    /**
+     * writes the response of request index once all earlier requests are
+     * answered, a response that does not keep the connection alive closes it
+     */
+    public synchronized void write(long index, HttpResponse response) {
+        if (closed || index < nextResponse) {
+            return;
+        }
+        pending.put(index, response);
+        HttpResponse next;
+        while ((next = pending.remove(nextResponse)) != null) {
+            nextResponse++;
+            ChannelFuture future = channel.write(next);
+            if (!HttpHeaders.isKeepAlive(next)) {
+                future.addListener(ChannelFutureListener.CLOSE);
+                closed = true;
+                pending.clear();
+                return;
+            }
+        }
+    }
+
+    public synchronized int getPending() {
+        return pending.size();
+    }
+}
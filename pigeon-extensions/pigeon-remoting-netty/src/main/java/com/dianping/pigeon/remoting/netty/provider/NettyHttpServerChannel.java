@@ -0,0 +1,91 @@
+package com.dianping.pigeon.remoting.netty.provider;
+
+import java.net.InetSocketAddress;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+
+/**
+ * the answer of one http request received on the netty port, written in
+ * request order by the sequencer of the connection.
+ */
+public class NettyHttpServerChannel implements ProviderChannel {
+
+    public static final String CONTENT_TYPE_SERIALIZED_OBJECT = "application/x-java-serialized-object";
+
+    private final HttpResponseSequencer sequencer;
+
+    private final Channel channel;
+
+    private final long index;
+
+    private final boolean keepAlive;
+
+    public NettyHttpServerChannel(HttpResponseSequencer sequencer, boolean keepAlive) {
+        this.sequencer = sequencer;
+        this.channel = sequencer.getChannel();
+        this.index = sequencer.nextIndex();
+        this.keepAlive = keepAlive;
+    }
+
+    @Override
+    public void write(InvocationResponse response) {
+        ChannelBuffer content = ChannelBuffers.dynamicBuffer(256);
+        SerializerFactory.getSerializer(response.getSerialize()).serializeResponse(
+                new ChannelBufferOutputStream(content), response);
+        HttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        httpResponse.headers().set(HttpHeaders.Names.CONTENT_TYPE, CONTENT_TYPE_SERIALIZED_OBJECT);
+        httpResponse.setContent(content);
+        write(httpResponse);
+    }
+
+    public void write(HttpResponseStatus status) {
+        write(new DefaultHttpResponse(HttpVersion.HTTP_1_1, status));
+    }
+
+    private void write(HttpResponse httpResponse) {
+        HttpHeaders.setContentLength(httpResponse, httpResponse.getContent().readableBytes());
+        httpResponse.headers().set(HttpHeaders.Names.CONNECTION,
+                keepAlive ? HttpHeaders.Values.KEEP_ALIVE : HttpHeaders.Values.CLOSE);
+        sequencer.write(index, httpResponse);
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        InetSocketAddress address = (InetSocketAddress) this.channel.getRemoteAddress();
+        return address.getAddress().getHostAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return Constants.PROTOCOL_HTTP;
+    }
+
+    @Override
+    public int getPort() {
+        InetSocketAddress address = (InetSocketAddress) this.channel.getLocalAddress();
+        return address.getPort();
+    }
+
+    @Override
+    public AuthSession getAuthSession() {
+        return null;
+    }
+
+    @Override
+    public void setAuthSession(AuthSession session) {
+    }
+}
@@ -0,0 +1,132 @@
+package com.dianping.pigeon.remoting.netty.provider;
+
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * serves the http requests of the http invoker on the netty port, the same way
+ * the jetty http server does, and hands them to the request processor of the
+ * server like binary requests.
+ */
+public class NettyHttpServerHandler extends SimpleChannelUpstreamHandler {
+
+    private static final Logger log = LoggerLoader.getLogger(NettyHttpServerHandler.class);
+
+    private static final String URL_PREFIX = "@HTTP@";
+
+    private final NettyServer server;
+
+    // one handler per connection
+    private final HttpResponseSequencer sequencer;
+
+    public NettyHttpServerHandler(NettyServer server, Channel channel) {
+        this.server = server;
+        this.sequencer = new HttpResponseSequencer(channel);
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+        HttpRequest httpRequest = (HttpRequest) e.getMessage();
+        long createTime = TimeUtils.currentTimeMillis();
+        NettyHttpServerChannel channel = new NettyHttpServerChannel(sequencer,
+                HttpHeaders.isKeepAlive(httpRequest));
+        QueryStringDecoder query = new QueryStringDecoder(httpRequest.getUri());
+
+        if (getParameter(query, "customize") != null) {
+            // http adapters are only available on the jetty http server
+            channel.write(HttpResponseStatus.NOT_IMPLEMENTED);
+            return;
+        }
+        String serialize = getParameter(query, "serialize");
+        if (serialize == null) {
+            serialize = httpRequest.headers().get("serialize");
+        }
+        if (StringUtils.isBlank(serialize)) {
+            channel.write(HttpResponseStatus.OK);
+            return;
+        }
+        byte serializeType;
+        try {
+            serializeType = Byte.parseByte(serialize.trim());
+        } catch (NumberFormatException nfe) {
+            log.warn("invalid serialize of http request:" + httpRequest.getUri());
+            channel.write(HttpResponseStatus.BAD_REQUEST);
+            return;
+        }
+        if (!HttpMethod.POST.equals(httpRequest.getMethod())) {
+            channel.write(SerializerFactory.SERIALIZE_JSON == serializeType ? HttpResponseStatus.OK
+                    : HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            return;
+        }
+
+        Object obj;
+        try {
+            obj = SerializerFactory.getSerializer(serializeType).deserializeRequest(
+                    new ChannelBufferInputStream(httpRequest.getContent()));
+        } catch (Throwable t) {
+            log.warn("decode http request failed:" + httpRequest.getUri(), t);
+            channel.write(HttpResponseStatus.BAD_REQUEST);
+            return;
+        }
+        if (!(obj instanceof InvocationRequest)) {
+            log.warn("invalid http request type:" + (obj == null ? null : obj.getClass()));
+            channel.write(HttpResponseStatus.BAD_REQUEST);
+            return;
+        }
+        InvocationRequest request = (InvocationRequest) obj;
+        String serviceName = request.getServiceName();
+        if (serviceName != null && serviceName.startsWith(URL_PREFIX)) {
+            request.setServiceName(serviceName.substring(URL_PREFIX.length()));
+        }
+        request.setCreateMillisTime(createTime);
+
+        ProviderContext invocationContext = new DefaultProviderContext(request, channel);
+        try {
+            this.server.processRequest(request, invocationContext);
+        } catch (Throwable t) {
+            // 心跳消息只返回正常的, 异常不返回
+            if (request.getCallType() == Constants.CALLTYPE_REPLY
+                    && request.getMessageType() != Constants.MESSAGE_TYPE_HEART) {
+                channel.write(ProviderUtils.createFailResponse(request, t));
+            }
+            log.error("process http request failed:" + request, t);
+        }
+        if (request.getCallType() != Constants.CALLTYPE_REPLY) {
+            // oneway calls are answered right away
+            channel.write(HttpResponseStatus.OK);
+        }
+    }
+
+    private String getParameter(QueryStringDecoder query, String name) {
+        List<String> values = query.getParameters().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+        log.info(e.getCause().getMessage(), e.getCause());
+        ctx.getChannel().close();
+    }
+}
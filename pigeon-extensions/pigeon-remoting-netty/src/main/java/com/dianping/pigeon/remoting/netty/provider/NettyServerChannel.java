@@ -11,6 +11,7 @@ import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
 import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
 
 public class NettyServerChannel implements ProviderChannel {
@@ -52,4 +53,16 @@ public class NettyServerChannel implements ProviderChannel {
 		InetSocketAddress address = (InetSocketAddress) this.channel.getLocalAddress();
 		return address.getPort();
 	}
+
+	// the attachment of server side channels is only used for the session
+	@Override
+	public AuthSession getAuthSession() {
+		Object attachment = this.channel.getAttachment();
+		return attachment instanceof AuthSession ? (AuthSession) attachment : null;
+	}
+
+	@Override
+	public void setAuthSession(AuthSession session) {
+		this.channel.setAttachment(session);
+	}
 }
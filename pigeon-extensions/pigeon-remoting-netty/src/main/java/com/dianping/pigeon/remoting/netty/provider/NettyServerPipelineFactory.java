@@ -6,9 +6,9 @@ package com.dianping.pigeon.remoting.netty.provider;
 
 import static org.jboss.netty.channel.Channels.pipeline;
 
+import com.dianping.pigeon.remoting.netty.capture.CaptureHandler;
 import com.dianping.pigeon.remoting.netty.codec.CompressHandler;
 import com.dianping.pigeon.remoting.netty.codec.Crc32Handler;
-import com.dianping.pigeon.remoting.netty.codec.FrameDecoder;
 import com.dianping.pigeon.remoting.netty.codec.FramePrepender;
 import com.dianping.pigeon.remoting.netty.provider.codec.*;
 import org.jboss.netty.channel.ChannelPipeline;
@@ -26,10 +26,11 @@ public class NettyServerPipelineFactory implements ChannelPipelineFactory {
     public ChannelPipeline getPipeline() {
         ChannelPipeline pipeline = pipeline();
         pipeline.addLast("framePrepender", new FramePrepender());
-        pipeline.addLast("frameDecoder", new FrameDecoder());
+        pipeline.addLast("frameDecoder", new ProviderFrameDecoder(server));
         pipeline.addLast("crc32Handler", new Crc32Handler());
         pipeline.addLast("compressHandler", new CompressHandler());
         pipeline.addLast("providerDecoder", new ProviderDecoder());
+        pipeline.addLast("captureHandler", new CaptureHandler());
         pipeline.addLast("providerEncoder", new ProviderEncoder());
         pipeline.addLast("serverHandler", new NettyServerHandler(server));
         return pipeline;
@@ -1,8 +1,10 @@
 package com.dianping.pigeon.remoting.netty.provider.codec;
 
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SymbolResolver;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.SymbolRequest;
 import com.dianping.pigeon.remoting.netty.codec.AbstractDecoder;
 import com.dianping.pigeon.remoting.netty.provider.NettyServerChannel;
 import org.jboss.netty.channel.Channel;
@@ -16,11 +18,17 @@ import java.io.InputStream;
  */
 public class ProviderDecoder extends AbstractDecoder {
 
+    // one decoder per connection, only used by its io thread
+    private final SymbolResolver symbolResolver = new SymbolResolver();
+
     @Override
     public Object doInitMsg(Object message, Channel channel, long receiveTime) {
         if (message == null) {
             return null;
         }
+        if (message instanceof SymbolRequest) {
+            ((SymbolRequest) message).readSymbols(symbolResolver);
+        }
         InvocationRequest request = (InvocationRequest) message;
         request.setCreateMillisTime(receiveTime);
         return request;
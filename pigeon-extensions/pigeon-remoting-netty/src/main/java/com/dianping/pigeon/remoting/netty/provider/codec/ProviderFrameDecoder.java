@@ -0,0 +1,59 @@
+package com.dianping.pigeon.remoting.netty.provider.codec;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.netty.codec.FrameDecoder;
+import com.dianping.pigeon.remoting.netty.provider.NettyHttpServerHandler;
+import com.dianping.pigeon.remoting.netty.provider.NettyServer;
+
+/**
+ * frame decoder of the server port, a connection starting with an http
+ * request is switched to the http codec for its whole lifetime.
+ */
+public class ProviderFrameDecoder extends FrameDecoder {
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final String KEY_HTTP_ENABLE = "pigeon.provider.netty.http.enable";
+
+    private static final String KEY_HTTP_MAX_CONTENT = "pigeon.provider.netty.http.maxcontent";
+
+    static {
+        configManager.getBooleanValue(KEY_HTTP_ENABLE, true);
+        configManager.getIntValue(KEY_HTTP_MAX_CONTENT, 16 * 1024 * 1024);
+    }
+
+    private final NettyServer server;
+
+    public ProviderFrameDecoder(NettyServer server) {
+        this.server = server;
+    }
+
+    @Override
+    protected Object doDecodeHttp(ChannelHandlerContext ctx, ChannelBuffer buffer) throws Exception {
+        if (!configManager.getBooleanValue(KEY_HTTP_ENABLE, true)) {
+            return super.doDecodeHttp(ctx, buffer);
+        }
+        ChannelPipeline pipeline = ctx.getPipeline();
+        for (String name : pipeline.getNames()) {
+            if (!name.equals(ctx.getName())) {
+                pipeline.remove(name);
+            }
+        }
+        pipeline.addLast("httpDecoder", new HttpRequestDecoder());
+        pipeline.addLast("httpAggregator",
+                new HttpChunkAggregator(configManager.getIntValue(KEY_HTTP_MAX_CONTENT, 16 * 1024 * 1024)));
+        pipeline.addLast("httpEncoder", new HttpResponseEncoder());
+        pipeline.addLast("httpHandler", new NettyHttpServerHandler(server, ctx.getChannel()));
+        pipeline.remove(this);
+        // what was read so far goes on to the http decoder
+        return buffer.readBytes(buffer.readableBytes());
+    }
+}
@@ -0,0 +1,141 @@
+package com.dianping.pigeon.remoting.netty.capture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+public class CaptureFileTest {
+
+    private static final String SERVICE = "http://service.dianping.com/test/CaptureFileTest/echoService";
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("pigeon-capture-test", ".dat");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private byte[] serialize(String methodName, Object... parameters) {
+        DefaultRequest request = new DefaultRequest(SERVICE, methodName, parameters,
+                SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY,
+                0);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_HESSIAN).serializeRequest(os, request);
+        return os.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        CaptureWriter writer = new CaptureWriter(file, 64 * 1024);
+        long start = System.nanoTime();
+        Assert.assertTrue(writer.append(start + 1000, SerializerFactory.SERIALIZE_HESSIAN, SERVICE, "echo",
+                serialize("echo", "hello")));
+        Assert.assertTrue(writer.append(start + 2000, SerializerFactory.SERIALIZE_HESSIAN, SERVICE, "sum",
+                serialize("sum", 1, 2)));
+        Assert.assertEquals(2, writer.getRecords());
+        int size = writer.getSize();
+        writer.close();
+        Assert.assertFalse(writer.append(start, SerializerFactory.SERIALIZE_HESSIAN, SERVICE, "echo", new byte[0]));
+        // cut to its content on close
+        Assert.assertEquals(size, file.length());
+
+        CaptureReader reader = new CaptureReader(file);
+        try {
+            Assert.assertTrue(reader.getStartMillis() > 0);
+            CaptureRecord first = reader.next();
+            Assert.assertEquals(SERVICE, first.getServiceName());
+            Assert.assertEquals("echo", first.getMethodName());
+            InvocationRequest request = first.toRequest();
+            Assert.assertEquals(SERVICE, request.getServiceName());
+            Assert.assertEquals("echo", request.getMethodName());
+            Assert.assertArrayEquals(new Object[] { "hello" }, request.getParameters());
+
+            CaptureRecord second = reader.next();
+            Assert.assertEquals("sum", second.getMethodName());
+            Assert.assertArrayEquals(new Object[] { 1, 2 }, second.toRequest().getParameters());
+            Assert.assertTrue(second.getOffsetNanos() > first.getOffsetNanos());
+            Assert.assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testFullFile() throws IOException {
+        byte[] body = serialize("echo", "hello");
+        CaptureWriter writer = new CaptureWriter(file, CaptureWriter.HEADER_LENGTH + 3 * (body.length + 64));
+        int records = 0;
+        while (writer.append(System.nanoTime(), SerializerFactory.SERIALIZE_HESSIAN, SERVICE, "echo", body)) {
+            records++;
+        }
+        Assert.assertTrue(records > 0);
+        Assert.assertEquals(records, writer.getRecords());
+        writer.close();
+
+        CaptureReader reader = new CaptureReader(file);
+        try {
+            for (int i = 0; i < records; i++) {
+                Assert.assertNotNull(reader.next());
+            }
+            Assert.assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testTruncatedRecord() throws IOException {
+        CaptureWriter writer = new CaptureWriter(file, 64 * 1024);
+        writer.append(System.nanoTime(), SerializerFactory.SERIALIZE_HESSIAN, SERVICE, "echo",
+                serialize("echo", "first"));
+        writer.append(System.nanoTime(), SerializerFactory.SERIALIZE_HESSIAN, SERVICE, "echo",
+                serialize("echo", "second"));
+        writer.close();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(file.length() - 3);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        CaptureReader reader = new CaptureReader(file);
+        try {
+            Assert.assertArrayEquals(new Object[] { "first" }, reader.next().toRequest().getParameters());
+            try {
+                reader.next();
+                Assert.fail("truncated record read");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("truncated capture record"));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotCaptureFile() throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.write(new byte[CaptureWriter.HEADER_LENGTH]);
+        } finally {
+            randomAccessFile.close();
+        }
+        new CaptureReader(file).close();
+    }
+}
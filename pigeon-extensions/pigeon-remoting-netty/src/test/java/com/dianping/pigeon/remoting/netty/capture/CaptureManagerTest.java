@@ -0,0 +1,165 @@
+package com.dianping.pigeon.remoting.netty.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+public class CaptureManagerTest {
+
+    private static final String KEY_CAPTURE_ENABLE = "pigeon.provider.capture.enable";
+
+    private static final String KEY_CAPTURE_SERVICES = "pigeon.provider.capture.services";
+
+    private static final String KEY_CAPTURE_SAMPLE_RATIO = "pigeon.provider.capture.sample.ratio";
+
+    private static final String KEY_CAPTURE_FILE = "pigeon.provider.capture.file";
+
+    private static final String ORDER_SERVICE = "http://service.dianping.com/test/CaptureManagerTest/orderService";
+
+    private static final String USER_SERVICE = "http://service.dianping.com/test/CaptureManagerTest/userService";
+
+    private final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("pigeon-capture-manager-test", ".dat");
+        configManager.setLocalStringValue(KEY_CAPTURE_FILE, file.getPath());
+        configManager.setLocalStringValue(KEY_CAPTURE_ENABLE, "true");
+    }
+
+    @After
+    public void tearDown() {
+        configManager.setLocalStringValue(KEY_CAPTURE_ENABLE, "false");
+        configManager.setLocalStringValue(KEY_CAPTURE_SERVICES, "");
+        configManager.setLocalStringValue(KEY_CAPTURE_SAMPLE_RATIO, "1");
+        configManager.setLocalStringValue(KEY_CAPTURE_FILE, "");
+        CaptureManager.INSTANCE.stop();
+        file.delete();
+    }
+
+    private DefaultRequest newRequest(String serviceName, int messageType) {
+        return new DefaultRequest(serviceName, "get", new Object[] { 1L }, SerializerFactory.SERIALIZE_HESSIAN,
+                messageType, 1000, Constants.CALLTYPE_REPLY, 1);
+    }
+
+    private List<String> readServices() throws IOException {
+        List<String> services = new ArrayList<String>();
+        if (file.length() == 0) {
+            return services;
+        }
+        CaptureReader reader = new CaptureReader(file);
+        try {
+            CaptureRecord record;
+            while ((record = reader.next()) != null) {
+                services.add(record.getServiceName());
+            }
+        } finally {
+            reader.close();
+        }
+        return services;
+    }
+
+    private void flush() throws InterruptedException {
+        Assert.assertTrue(CaptureManager.INSTANCE.flush(5000));
+    }
+
+    @Test
+    public void testSelectedServices() throws Exception {
+        configManager.setLocalStringValue(KEY_CAPTURE_SERVICES, " " + ORDER_SERVICE + " ,");
+        CaptureManager.INSTANCE.capture(newRequest(ORDER_SERVICE, Constants.MESSAGE_TYPE_SERVICE), System.nanoTime());
+        CaptureManager.INSTANCE.capture(newRequest(USER_SERVICE, Constants.MESSAGE_TYPE_SERVICE), System.nanoTime());
+        CaptureManager.INSTANCE.capture(newRequest(ORDER_SERVICE, Constants.MESSAGE_TYPE_HEART), System.nanoTime());
+        CaptureManager.INSTANCE.capture(newRequest(ORDER_SERVICE, Constants.MESSAGE_TYPE_SERVICE), System.nanoTime());
+        flush();
+        Assert.assertEquals(2, CaptureManager.INSTANCE.getCurrentWriter().getRecords());
+        CaptureManager.INSTANCE.stop();
+
+        List<String> services = readServices();
+        Assert.assertEquals(2, services.size());
+        Assert.assertEquals(ORDER_SERVICE, services.get(0));
+        Assert.assertEquals(ORDER_SERVICE, services.get(1));
+    }
+
+    @Test
+    public void testAllServicesWhenNoneSelected() throws Exception {
+        CaptureManager.INSTANCE.capture(newRequest(ORDER_SERVICE, Constants.MESSAGE_TYPE_SERVICE), System.nanoTime());
+        CaptureManager.INSTANCE.capture(newRequest(USER_SERVICE, Constants.MESSAGE_TYPE_SERVICE), System.nanoTime());
+        flush();
+        CaptureManager.INSTANCE.stop();
+
+        List<String> services = readServices();
+        Assert.assertEquals(2, services.size());
+        Assert.assertEquals(USER_SERVICE, services.get(1));
+    }
+
+    @Test
+    public void testSampleRatio() throws Exception {
+        configManager.setLocalStringValue(KEY_CAPTURE_SAMPLE_RATIO, "0");
+        for (int i = 0; i < 100; i++) {
+            CaptureManager.INSTANCE.capture(newRequest(ORDER_SERVICE, Constants.MESSAGE_TYPE_SERVICE),
+                    System.nanoTime());
+        }
+        // nothing sampled, no file opened
+        flush();
+        Assert.assertNull(CaptureManager.INSTANCE.getCurrentWriter());
+
+        configManager.setLocalStringValue(KEY_CAPTURE_SAMPLE_RATIO, "0.5");
+        for (int i = 0; i < 1000; i++) {
+            CaptureManager.INSTANCE.capture(newRequest(ORDER_SERVICE, Constants.MESSAGE_TYPE_SERVICE),
+                    System.nanoTime());
+        }
+        flush();
+        long records = CaptureManager.INSTANCE.getCurrentWriter().getRecords();
+        Assert.assertTrue("records:" + records, records > 350 && records < 650);
+    }
+
+    @Test
+    public void testDisableClosesFile() throws Exception {
+        CaptureManager.INSTANCE.capture(newRequest(ORDER_SERVICE, Constants.MESSAGE_TYPE_SERVICE), System.nanoTime());
+        flush();
+        CaptureWriter writer = CaptureManager.INSTANCE.getCurrentWriter();
+        Assert.assertNotNull(writer);
+
+        configManager.setLocalStringValue(KEY_CAPTURE_ENABLE, "false");
+        CaptureManager.INSTANCE.capture(newRequest(ORDER_SERVICE, Constants.MESSAGE_TYPE_SERVICE), System.nanoTime());
+        Assert.assertTrue(writer.isClosed());
+        Assert.assertNull(CaptureManager.INSTANCE.getCurrentWriter());
+        flush();
+        Assert.assertEquals(1, readServices().size());
+    }
+
+    @Test
+    public void testParametersReadOffCallerThread() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final List<Thread> readers = new ArrayList<Thread>();
+        DefaultRequest request = new DefaultRequest(ORDER_SERVICE, "get", new Object[] { 1L },
+                SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY,
+                1) {
+
+            @Override
+            public Object[] getParameters() {
+                readers.add(Thread.currentThread());
+                return super.getParameters();
+            }
+        };
+        CaptureManager.INSTANCE.capture(request, System.nanoTime());
+        flush();
+        Assert.assertEquals(1, CaptureManager.INSTANCE.getCurrentWriter().getRecords());
+        Assert.assertFalse(readers.isEmpty());
+        Assert.assertFalse(readers.contains(caller));
+    }
+}
@@ -0,0 +1,68 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.nio.charset.Charset;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.netty.provider.codec.ProviderFrameDecoder;
+
+public class FrameDecoderTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    @Test
+    public void testHttpHead() {
+        for (String method : new String[] { "GET", "POST", "PUT", "HEAD", "DELETE", "OPTIONS" }) {
+            byte[] head = method.getBytes(ASCII);
+            Assert.assertTrue(method, FrameDecoder.isHttpHead(head[0], head[1]));
+        }
+        Assert.assertFalse(FrameDecoder.isHttpHead((byte) 0x39, (byte) 0x3A));
+        Assert.assertFalse(FrameDecoder.isHttpHead((byte) 0xAB, (byte) 0xBA));
+        Assert.assertFalse(FrameDecoder.isHttpHead((byte) 'P', (byte) 'A'));
+    }
+
+    @Test
+    public void testBinaryFrame() throws Exception {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        buffer.writeBytes(new byte[] { (byte) 0xAB, (byte) 0xBA, 0, 0 });
+        buffer.writeInt(6);
+        buffer.writeBytes(new byte[6]);
+        buffer.writeByte(0x39);
+
+        Object message = new FrameDecoder().decode(null, null, buffer);
+        Assert.assertTrue(message instanceof CodecEvent);
+        Assert.assertTrue(((CodecEvent) message).isUnified());
+        Assert.assertEquals(14, ((CodecEvent) message).getBuffer().readableBytes());
+        // the next frame is not complete yet
+        Assert.assertEquals(1, buffer.readableBytes());
+        Assert.assertNull(new FrameDecoder().decode(null, null, buffer));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHttpNotSupported() throws Exception {
+        new FrameDecoder().decode(null, null, ChannelBuffers.copiedBuffer("GET / HTTP/1.1\r\n", ASCII));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHead() throws Exception {
+        new FrameDecoder().decode(null, null, ChannelBuffers.copiedBuffer("XYZ", ASCII));
+    }
+
+    @Test
+    public void testServerPortSwitchesToHttp() {
+        DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(new ProviderFrameDecoder(null));
+        // a health check without serialize is answered right away
+        embedder.offer(ChannelBuffers.copiedBuffer("GET /status HTTP/1.1\r\nHost: localhost\r\n\r\n", ASCII));
+
+        Object written = embedder.poll();
+        Assert.assertTrue(written instanceof ChannelBuffer);
+        String response = ((ChannelBuffer) written).toString(ASCII);
+        Assert.assertTrue(response, response.startsWith("HTTP/1.1 200 OK"));
+        Assert.assertNotNull(embedder.getPipeline().get("httpDecoder"));
+        Assert.assertNull(embedder.getPipeline().get(ProviderFrameDecoder.class));
+    }
+}
@@ -0,0 +1,123 @@
+package com.dianping.pigeon.remoting.netty.provider;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.exception.RequestAbortedException;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+public class HttpResponseSequencerTest {
+
+    private HttpResponse newResponse(HttpResponseStatus status) {
+        return new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+    }
+
+    @Test
+    public void testResponsesInRequestOrder() {
+        DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(new SimpleChannelUpstreamHandler());
+        HttpResponseSequencer sequencer = new HttpResponseSequencer(embedder.getPipeline().getChannel());
+        long first = sequencer.nextIndex();
+        long second = sequencer.nextIndex();
+        long third = sequencer.nextIndex();
+        HttpResponse r1 = newResponse(HttpResponseStatus.OK);
+        HttpResponse r2 = newResponse(HttpResponseStatus.ACCEPTED);
+        HttpResponse r3 = newResponse(HttpResponseStatus.NO_CONTENT);
+
+        // later requests finished first
+        sequencer.write(third, r3);
+        sequencer.write(second, r2);
+        Assert.assertNull(embedder.poll());
+        Assert.assertEquals(2, sequencer.getPending());
+
+        sequencer.write(first, r1);
+        Assert.assertSame(r1, embedder.poll());
+        Assert.assertSame(r2, embedder.poll());
+        Assert.assertSame(r3, embedder.poll());
+        Assert.assertEquals(0, sequencer.getPending());
+    }
+
+    @Test
+    public void testCloseDropsLaterResponses() {
+        DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(new SimpleChannelUpstreamHandler());
+        HttpResponseSequencer sequencer = new HttpResponseSequencer(embedder.getPipeline().getChannel());
+        long first = sequencer.nextIndex();
+        long second = sequencer.nextIndex();
+        HttpResponse close = newResponse(HttpResponseStatus.OK);
+        close.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+
+        sequencer.write(second, newResponse(HttpResponseStatus.OK));
+        sequencer.write(first, close);
+        Assert.assertSame(close, embedder.poll());
+        Assert.assertNull(embedder.poll());
+        Assert.assertEquals(0, sequencer.getPending());
+    }
+
+    private DefaultRequest newRequest(long seq) {
+        return new DefaultRequest("http://service.dianping.com/test/HttpResponseSequencerTest",
+                "get", new Object[0], SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000,
+                Constants.CALLTYPE_REPLY, seq);
+    }
+
+    private InvocationResponse readResponse(Object written) {
+        HttpResponse httpResponse = (HttpResponse) written;
+        return (InvocationResponse) SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_HESSIAN)
+                .deserializeResponse(new ChannelBufferInputStream(httpResponse.getContent()));
+    }
+
+    @Test
+    public void testCancelledRequestReleasesIndex() {
+        DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(new SimpleChannelUpstreamHandler());
+        HttpResponseSequencer sequencer = new HttpResponseSequencer(embedder.getPipeline().getChannel());
+        final ProviderContext first = new DefaultProviderContext(newRequest(1),
+                new NettyHttpServerChannel(sequencer, true));
+        DefaultRequest secondRequest = newRequest(2);
+        ProviderContext second = new DefaultProviderContext(secondRequest,
+                new NettyHttpServerChannel(sequencer, true));
+
+        second.getChannel().write(ProviderUtils.createSuccessResponse(secondRequest, "second"));
+        Assert.assertNull(embedder.poll());
+
+        // the first request is cancelled by the timeout checker before it ran
+        FutureTask<InvocationResponse> task = new FutureTask<InvocationResponse>(
+                new Callable<InvocationResponse>() {
+
+                    @Override
+                    public InvocationResponse call() {
+                        Assert.fail("cancelled request ran");
+                        return null;
+                    }
+                });
+        first.setFuture(task);
+        task.cancel(false);
+        ProviderUtils.writeAbortResponse(first, new RequestAbortedException("cancelled"));
+        // answered once
+        ProviderUtils.writeAbortResponse(first, new RequestAbortedException("cancelled"));
+        Assert.assertFalse(first.markStarted());
+
+        InvocationResponse response = readResponse(embedder.poll());
+        Assert.assertEquals(1, response.getSequence());
+        Assert.assertEquals(Constants.MESSAGE_TYPE_EXCEPTION, response.getMessageType());
+        response = readResponse(embedder.poll());
+        Assert.assertEquals(2, response.getSequence());
+        Assert.assertEquals("second", response.getReturn());
+        Assert.assertNull(embedder.poll());
+        Assert.assertEquals(0, sequencer.getPending());
+    }
+}
@@ -0,0 +1,37 @@
+package com.dianping.pigeon.remoting.netty.provider;
+
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NettyHttpServerHandlerTest {
+
+    private DecoderEmbedder<Object> newEmbedder() {
+        DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(new SimpleChannelUpstreamHandler());
+        embedder.getPipeline().addFirst("handler",
+                new NettyHttpServerHandler(null, embedder.getPipeline().getChannel()));
+        return embedder;
+    }
+
+    private HttpResponseStatus get(DecoderEmbedder<Object> embedder, String uri) {
+        embedder.offer(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri));
+        return ((HttpResponse) embedder.poll()).getStatus();
+    }
+
+    @Test
+    public void testInvalidSerialize() {
+        DecoderEmbedder<Object> embedder = newEmbedder();
+        Assert.assertEquals(HttpResponseStatus.BAD_REQUEST, get(embedder, "/service?serialize=json"));
+        // the connection is kept
+        Assert.assertTrue(embedder.getPipeline().getChannel().isOpen());
+        Assert.assertEquals(HttpResponseStatus.OK, get(embedder, "/service?serialize=7"));
+        Assert.assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, get(embedder, "/service?serialize=2"));
+        Assert.assertEquals(HttpResponseStatus.OK, get(embedder, "/service"));
+    }
+}
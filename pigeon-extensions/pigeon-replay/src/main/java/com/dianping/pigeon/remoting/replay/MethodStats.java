@@ -0,0 +1,87 @@
+package com.dianping.pigeon.remoting.replay;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dianping.pigeon.remoting.invoker.cluster.LatencyHistogram;
+
+/**
+ * replay results of one service#method.
+ */
+public class MethodStats {
+
+    private final String serviceName;
+
+    private final String methodName;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public MethodStats(String serviceName, String methodName) {
+        this.serviceName = serviceName;
+        this.methodName = methodName;
+    }
+
+    void request() {
+        requests.incrementAndGet();
+    }
+
+    void success(long nanos) {
+        latency.record(toMillis(nanos));
+    }
+
+    void failure(long nanos) {
+        failures.incrementAndGet();
+        latency.record(toMillis(nanos));
+    }
+
+    void failure() {
+        failures.incrementAndGet();
+    }
+
+    void timeout() {
+        timeouts.incrementAndGet();
+    }
+
+    private long toMillis(long nanos) {
+        return (nanos + 999999) / 1000000;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * answered requests, failed ones included
+     */
+    public long getResponses() {
+        return latency.getCount();
+    }
+
+    /**
+     * upper bound in millis of the latency bucket holding the percentile
+     */
+    public long getPercentile(int percentile) {
+        return latency.getPercentile(percentile);
+    }
+}
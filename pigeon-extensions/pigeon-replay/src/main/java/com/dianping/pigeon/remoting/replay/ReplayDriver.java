@@ -0,0 +1,297 @@
+package com.dianping.pigeon.remoting.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.client.ClientConfigFactory;
+import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+import com.dianping.pigeon.remoting.invoker.process.ResponseProcessor;
+import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
+import com.dianping.pigeon.remoting.netty.capture.CaptureReader;
+import com.dianping.pigeon.remoting.netty.capture.CaptureRecord;
+import com.dianping.pigeon.remoting.netty.invoker.NettyClient;
+
+/**
+ * replays a capture file of {@link com.dianping.pigeon.remoting.netty.capture.CaptureManager}
+ * against one provider over a netty client.
+ * <p>
+ * the requests are sent at their captured offsets divided by the rate, a rate
+ * of 2 replays twice as fast and 0 sends as fast as the concurrency allows.
+ * at most concurrency requests wait for their responses, a request not
+ * answered within its timeout counts as a timeout and frees its slot.
+ * <p>
+ * with a rate the latency of a request is measured from the time it was due,
+ * so the time it waited for a slot behind slow responses is part of it.
+ */
+public class ReplayDriver {
+
+    private static final String CONNECT_SERVICE = "replay";
+
+    private final File file;
+
+    private final String host;
+
+    private final int port;
+
+    private double rate = 1;
+
+    private int concurrency = 100;
+
+    // for requests captured without a timeout
+    private int timeout = 5000;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ConcurrentHashMap<Long, Pending> pendings = new ConcurrentHashMap<Long, Pending>();
+
+    private final Map<String, MethodStats> methods = new LinkedHashMap<String, MethodStats>();
+
+    private final ResponseProcessor responseProcessor = new ReplayResponseProcessor();
+
+    private Semaphore permits;
+
+    private String address;
+
+    public ReplayDriver(File file, String host, int port) {
+        this.file = file;
+        this.host = host;
+        this.port = port;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public ReplayReport replay() throws IOException, InterruptedException {
+        ChannelFactory channelFactory = new NioClientSocketChannelFactory();
+        NettyClient client = new NettyClient(
+                ClientConfigFactory.createClientConfig(ConfigManagerLoader.getConfigManager()), channelFactory,
+                new ConnectInfo(CONNECT_SERVICE, host, port, 1), responseProcessor);
+        try {
+            client.open();
+            return replay(client);
+        } finally {
+            client.close();
+            channelFactory.releaseExternalResources();
+        }
+    }
+
+    /**
+     * the client hands its responses to {@link #getResponseProcessor()}
+     */
+    public ReplayReport replay(Client client) throws IOException, InterruptedException {
+        permits = new Semaphore(Math.max(1, concurrency));
+        address = client.getAddress();
+        CaptureReader reader = new CaptureReader(file);
+        long start = System.nanoTime();
+        try {
+            CaptureRecord record;
+            while ((record = reader.next()) != null) {
+                long scheduled = 0;
+                if (rate > 0) {
+                    scheduled = start + (long) (record.getOffsetNanos() / rate);
+                    waitUntil(scheduled);
+                }
+                while (!permits.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+                    expire();
+                }
+                send(client, record, rate > 0 ? scheduled : System.nanoTime());
+            }
+            // the last responses
+            while (!pendings.isEmpty()) {
+                Thread.sleep(10);
+                expire();
+            }
+        } finally {
+            reader.close();
+        }
+        return new ReplayReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                new ArrayList<MethodStats>(methods.values()));
+    }
+
+    public ResponseProcessor getResponseProcessor() {
+        return responseProcessor;
+    }
+
+    private void send(Client client, CaptureRecord record, long scheduled) {
+        MethodStats stats = getStats(record.getServiceName(), record.getMethodName());
+        stats.request();
+        InvocationRequest request;
+        try {
+            request = record.toRequest();
+        } catch (RuntimeException e) {
+            stats.failure();
+            permits.release();
+            return;
+        }
+        long seq = sequence.incrementAndGet();
+        request.setSequence(seq);
+        request.setCreateMillisTime(System.currentTimeMillis());
+        if (request.getTimeout() <= 0) {
+            request.setTimeout(timeout);
+        }
+        boolean reply = request.getCallType() == Constants.CALLTYPE_REPLY;
+        if (reply) {
+            pendings.put(seq, new Pending(request, stats, scheduled, System.nanoTime()));
+        }
+        try {
+            client.write(request);
+        } catch (Throwable t) {
+            if (!reply || pendings.remove(seq) != null) {
+                stats.failure(System.nanoTime() - scheduled);
+                permits.release();
+            }
+            return;
+        }
+        if (!reply) {
+            ServiceStatisticsHolder.flowOut(request, address);
+            stats.success(System.nanoTime() - scheduled);
+            permits.release();
+        }
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        for (Map.Entry<Long, Pending> entry : pendings.entrySet()) {
+            Pending pending = entry.getValue();
+            if (now - pending.sent > TimeUnit.MILLISECONDS.toNanos(pending.request.getTimeout())
+                    && pendings.remove(entry.getKey(), pending)) {
+                ServiceStatisticsHolder.flowOut(pending.request, address);
+                pending.stats.timeout();
+                permits.release();
+            }
+        }
+    }
+
+    private void waitUntil(long nanoTime) throws InterruptedException {
+        long wait;
+        while ((wait = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private MethodStats getStats(String serviceName, String methodName) {
+        String key = serviceName + "#" + methodName;
+        MethodStats stats = methods.get(key);
+        if (stats == null) {
+            stats = new MethodStats(serviceName, methodName);
+            methods.put(key, stats);
+        }
+        return stats;
+    }
+
+    private static class Pending {
+
+        private final InvocationRequest request;
+
+        private final MethodStats stats;
+
+        // latency is measured from the due time, the timeout from the write
+        private final long scheduled;
+
+        private final long sent;
+
+        private Pending(InvocationRequest request, MethodStats stats, long scheduled, long sent) {
+            this.request = request;
+            this.stats = stats;
+            this.scheduled = scheduled;
+            this.sent = sent;
+        }
+    }
+
+    private class ReplayResponseProcessor implements ResponseProcessor {
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void processResponse(InvocationResponse response, Client client) {
+            if (response.getMessageType() == Constants.MESSAGE_TYPE_HEART) {
+                return;
+            }
+            Pending pending = pendings.remove(response.getSequence());
+            if (pending == null) {
+                // timed out already
+                return;
+            }
+            ServiceStatisticsHolder.flowOut(pending.request, client.getAddress());
+            long nanos = System.nanoTime() - pending.scheduled;
+            if (response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+                pending.stats.success(nanos);
+            } else {
+                pending.stats.failure(nanos);
+            }
+            permits.release();
+        }
+
+        @Override
+        public String getProcessorStatistics() {
+            return "pending:" + pendings.size();
+        }
+    }
+
+    /**
+     * usage: ReplayDriver file host:port [rate] [concurrency] [timeout]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args[1].indexOf(':') < 0) {
+            System.err.println("usage: ReplayDriver <capture file> <host:port> [rate] [concurrency] [timeout]");
+            System.exit(1);
+        }
+        String address = args[1];
+        int index = address.lastIndexOf(':');
+        ReplayDriver driver = new ReplayDriver(new File(args[0]), address.substring(0, index),
+                Integer.parseInt(address.substring(index + 1)));
+        if (args.length > 2) {
+            driver.setRate(Double.parseDouble(args[2]));
+        }
+        if (args.length > 3) {
+            driver.setConcurrency(Integer.parseInt(args[3]));
+        }
+        if (args.length > 4) {
+            driver.setTimeout(Integer.parseInt(args[4]));
+        }
+        System.out.print(driver.replay());
+        System.exit(0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.dianping.pigeon.remoting.replay;
+
+import java.util.List;
+
+/**
+ * throughput and latency percentiles per method of a finished replay.
+ */
+public class ReplayReport {
+
+    private final long elapsedMillis;
+
+    private final List<MethodStats> methods;
+
+    public ReplayReport(long elapsedMillis, List<MethodStats> methods) {
+        this.elapsedMillis = elapsedMillis;
+        this.methods = methods;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public List<MethodStats> getMethods() {
+        return methods;
+    }
+
+    public MethodStats getMethod(String serviceName, String methodName) {
+        for (MethodStats method : methods) {
+            if (method.getServiceName().equals(serviceName) && method.getMethodName().equals(methodName)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * responses per second
+     */
+    public double getThroughput(MethodStats method) {
+        return elapsedMillis <= 0 ? 0 : method.getResponses() * 1000d / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("replayed in %d ms%n", elapsedMillis));
+        report.append(String.format("%-60s %9s %9s %9s %10s %7s %7s %7s%n", "method", "requests", "failures",
+                "timeouts", "qps", "p50", "p90", "p99"));
+        for (MethodStats method : methods) {
+            report.append(String.format("%-60s %9d %9d %9d %10.1f %7s %7s %7s%n",
+                    method.getServiceName() + "#" + method.getMethodName(), method.getRequests(),
+                    method.getFailures(), method.getTimeouts(), getThroughput(method),
+                    format(method.getPercentile(50)), format(method.getPercentile(90)),
+                    format(method.getPercentile(99))));
+        }
+        return report.toString();
+    }
+
+    private String format(long millis) {
+        if (millis < 0) {
+            return "-";
+        }
+        return millis == Long.MAX_VALUE ? ">10s" : millis + "ms";
+    }
+}
@@ -0,0 +1,60 @@
+package com.dianping.pigeon.remoting.replay;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MethodStatsTest {
+
+    private final MethodStats stats = new MethodStats("http://service.dianping.com/test/MethodStatsTest", "get");
+
+    private long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testNanosRoundedUp() {
+        stats.success(1);
+        Assert.assertEquals(1, stats.getPercentile(100));
+        stats.success(millis(1) + 1);
+        Assert.assertEquals(1, stats.getPercentile(50));
+        Assert.assertEquals(2, stats.getPercentile(100));
+    }
+
+    @Test
+    public void testPercentiles() {
+        Assert.assertEquals(-1, stats.getPercentile(50));
+        for (int i = 0; i < 90; i++) {
+            stats.success(millis(3));
+        }
+        for (int i = 0; i < 10; i++) {
+            stats.success(millis(45));
+        }
+        Assert.assertEquals(100, stats.getResponses());
+        Assert.assertEquals(3, stats.getPercentile(50));
+        Assert.assertEquals(3, stats.getPercentile(90));
+        // upper bound of the bucket holding 45ms
+        Assert.assertEquals(50, stats.getPercentile(91));
+        Assert.assertEquals(50, stats.getPercentile(99));
+    }
+
+    @Test
+    public void testCounters() {
+        stats.request();
+        stats.request();
+        stats.request();
+        stats.request();
+        stats.failure(millis(7));
+        stats.failure();
+        stats.timeout();
+        stats.success(millis(2));
+
+        Assert.assertEquals(4, stats.getRequests());
+        Assert.assertEquals(2, stats.getFailures());
+        Assert.assertEquals(1, stats.getTimeouts());
+        // answered failures have a latency, the others do not
+        Assert.assertEquals(2, stats.getResponses());
+        Assert.assertEquals(8, stats.getPercentile(100));
+    }
+}
@@ -0,0 +1,206 @@
+package com.dianping.pigeon.remoting.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.AbstractClient;
+import com.dianping.pigeon.remoting.invoker.client.ClientConfigFactory;
+import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+import com.dianping.pigeon.remoting.netty.capture.CaptureWriter;
+
+/**
+ * replays capture files against a client that answers by method name: echo
+ * after the answer delay, fail with an exception and never not at all.
+ */
+public class ReplayDriverTest {
+
+    private static final String SERVICE = "http://service.dianping.com/test/ReplayDriverTest";
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+
+    private File file;
+
+    private CaptureWriter writer;
+
+    private long startNanos;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("pigeon-replay-driver-test", ".dat");
+        writer = new CaptureWriter(file, 1024 * 1024);
+        startNanos = System.nanoTime();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        scheduler.shutdownNow();
+        file.delete();
+    }
+
+    private void append(String methodName, long offsetMillis, int timeout) {
+        DefaultRequest request = new DefaultRequest(SERVICE, methodName, new Object[] { methodName },
+                SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, timeout,
+                Constants.CALLTYPE_REPLY, 0);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_HESSIAN).serializeRequest(os, request);
+        Assert.assertTrue(writer.append(startNanos + TimeUnit.MILLISECONDS.toNanos(offsetMillis),
+                SerializerFactory.SERIALIZE_HESSIAN, SERVICE, methodName, os.toByteArray()));
+    }
+
+    private ReplayDriver newDriver(double rate, int concurrency) throws IOException {
+        writer.close();
+        ReplayDriver driver = new ReplayDriver(file, "127.0.0.1", 4040);
+        driver.setRate(rate);
+        driver.setConcurrency(concurrency);
+        return driver;
+    }
+
+    @Test
+    public void testCounts() throws Exception {
+        append("echo", 0, 1000);
+        append("echo", 0, 1000);
+        append("fail", 0, 1000);
+        append("never", 0, 100);
+        append("echo", 0, 1000);
+        ReplayDriver driver = newDriver(0, 10);
+        ReplayReport report = driver.replay(new AnsweringClient(driver, 5));
+
+        MethodStats echo = report.getMethod(SERVICE, "echo");
+        Assert.assertEquals(3, echo.getRequests());
+        Assert.assertEquals(3, echo.getResponses());
+        Assert.assertEquals(0, echo.getFailures());
+
+        MethodStats fail = report.getMethod(SERVICE, "fail");
+        Assert.assertEquals(1, fail.getFailures());
+        Assert.assertEquals(1, fail.getResponses());
+
+        MethodStats never = report.getMethod(SERVICE, "never");
+        Assert.assertEquals(1, never.getTimeouts());
+        Assert.assertEquals(0, never.getResponses());
+        Assert.assertTrue(report.getElapsedMillis() >= 100);
+    }
+
+    @Test
+    public void testRate() throws Exception {
+        append("echo", 0, 1000);
+        append("echo", 100, 1000);
+        append("echo", 200, 1000);
+        ReplayDriver driver = newDriver(2, 10);
+        AnsweringClient client = new AnsweringClient(driver, 0);
+        driver.replay(client);
+
+        Assert.assertEquals(3, client.writes.size());
+        long spread = TimeUnit.NANOSECONDS.toMillis(client.writes.get(2) - client.writes.get(0));
+        // twice as fast as captured
+        Assert.assertTrue("spread:" + spread, spread >= 95 && spread < 190);
+    }
+
+    @Test
+    public void testLatencyFromScheduledTime() throws Exception {
+        append("echo", 0, 1000);
+        append("echo", 0, 1000);
+        append("echo", 0, 1000);
+        ReplayDriver driver = newDriver(1, 1);
+        AnsweringClient client = new AnsweringClient(driver, 50);
+        ReplayReport report = driver.replay(client);
+
+        // one at a time, the last one was due with the first
+        long spread = TimeUnit.NANOSECONDS.toMillis(client.writes.get(2) - client.writes.get(0));
+        Assert.assertTrue("spread:" + spread, spread >= 100);
+        MethodStats echo = report.getMethod(SERVICE, "echo");
+        Assert.assertEquals(3, echo.getResponses());
+        Assert.assertTrue(echo.getPercentile(100) >= 150);
+        Assert.assertTrue(echo.getPercentile(1) >= 50);
+    }
+
+    private class AnsweringClient extends AbstractClient {
+
+        private final long delay;
+
+        private final List<Long> writes = new Vector<Long>();
+
+        AnsweringClient(ReplayDriver driver, long delay) {
+            super(ClientConfigFactory.createClientConfig(ConfigManagerLoader.getConfigManager()),
+                    driver.getResponseProcessor());
+            this.delay = delay;
+        }
+
+        @Override
+        public void doOpen() {
+        }
+
+        @Override
+        public void doClose() {
+        }
+
+        @Override
+        public InvocationResponse doWrite(final InvocationRequest request) {
+            writes.add(System.nanoTime());
+            if ("never".equals(request.getMethodName())) {
+                return null;
+            }
+            scheduler.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    int messageType = "fail".equals(request.getMethodName()) ? Constants.MESSAGE_TYPE_EXCEPTION
+                            : Constants.MESSAGE_TYPE_SERVICE;
+                    processResponse(new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, request.getSequence(),
+                            messageType, request.getMethodName()));
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+            return null;
+        }
+
+        @Override
+        public ConnectInfo getConnectInfo() {
+            return null;
+        }
+
+        @Override
+        public List<Channel> getChannels() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String getHost() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public int getPort() {
+            return 4040;
+        }
+
+        @Override
+        public String getAddress() {
+            return "127.0.0.1:4040";
+        }
+
+        @Override
+        public String getProtocol() {
+            return "test";
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.dianping.pigeon.monitor;
+
+import com.dianping.pigeon.monitor.metrics.MetricsSnapshot;
+
+/**
+ * optional extension of Monitor. a monitor implementing it gets the
+ * aggregated per method meters once per interval, and the filters stop
+ * sending the per call qps and size events.
+ */
+public interface MetricsMonitor {
+
+	/**
+	 * @param snapshot
+	 *            the delta of every meter with calls in the last interval
+	 */
+	void logMetrics(MetricsSnapshot snapshot);
+
+}
@@ -0,0 +1,130 @@
+package com.dianping.pigeon.monitor.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * fixed bucket histogram, the last bucket takes everything above the last
+ * bound. recording is one binary search and two atomic adds.
+ */
+public class Histogram {
+
+	// milliseconds
+	public static final long[] LATENCY_BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+	// bytes, same ranges as the size events
+	public static final long[] SIZE_BOUNDS = { 1024, 2048, 4096, 8192, 16384, 32768, 65536, 131072, 262144, 524288,
+			1048576 };
+
+	private final long[] bounds;
+
+	private final AtomicLongArray counts;
+
+	private final AtomicLong sum = new AtomicLong();
+
+	public Histogram(long[] bounds) {
+		this.bounds = bounds;
+		this.counts = new AtomicLongArray(bounds.length + 1);
+	}
+
+	public void record(long value) {
+		counts.incrementAndGet(indexOf(value));
+		sum.addAndGet(value);
+	}
+
+	private int indexOf(long value) {
+		int low = 0;
+		int high = bounds.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (bounds[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	public long[] getBounds() {
+		return bounds;
+	}
+
+	public Snapshot snapshot() {
+		long[] values = new long[counts.length()];
+		long count = 0;
+		for (int i = 0; i < values.length; i++) {
+			values[i] = counts.get(i);
+			count += values[i];
+		}
+		return new Snapshot(bounds, values, count, sum.get());
+	}
+
+	public static class Snapshot {
+
+		private final long[] bounds;
+
+		private final long[] counts;
+
+		private final long count;
+
+		private final long sum;
+
+		Snapshot(long[] bounds, long[] counts, long count, long sum) {
+			this.bounds = bounds;
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+		}
+
+		public Snapshot minus(Snapshot last) {
+			if (last == null) {
+				return this;
+			}
+			long[] values = new long[counts.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = counts[i] - last.counts[i];
+			}
+			return new Snapshot(bounds, values, count - last.count, sum - last.sum);
+		}
+
+		/**
+		 * upper bound of the bucket holding the percentile, -1 when empty and
+		 * Long.MAX_VALUE when it falls into the overflow bucket
+		 */
+		public long getPercentile(int percentile) {
+			if (count <= 0) {
+				return -1;
+			}
+			long rank = (count * percentile + 99) / 100;
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return i < bounds.length ? bounds[i] : Long.MAX_VALUE;
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+
+		public long[] getBounds() {
+			return bounds;
+		}
+
+		public long[] getCounts() {
+			return counts;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getSum() {
+			return sum;
+		}
+
+		public long getMean() {
+			return count > 0 ? sum / count : 0;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.dianping.pigeon.monitor.metrics;
+
+public class MeterSnapshot {
+
+	private final MethodMeter meter;
+
+	private final long calls;
+
+	private final long failures;
+
+	private final long cacheHits;
+
+	private final long cacheMisses;
+
+	private final long coalesced;
+
+	private final Histogram.Snapshot latency;
+
+	private final Histogram.Snapshot requestSize;
+
+	private final Histogram.Snapshot responseSize;
+
+	MeterSnapshot(MethodMeter meter, long calls, long failures, long cacheHits, long cacheMisses,
+			long coalesced, Histogram.Snapshot latency, Histogram.Snapshot requestSize,
+			Histogram.Snapshot responseSize) {
+		this.meter = meter;
+		this.calls = calls;
+		this.failures = failures;
+		this.cacheHits = cacheHits;
+		this.cacheMisses = cacheMisses;
+		this.coalesced = coalesced;
+		this.latency = latency;
+		this.requestSize = requestSize;
+		this.responseSize = responseSize;
+	}
+
+	/**
+	 * the delta since the given earlier snapshot of the same meter
+	 */
+	public MeterSnapshot minus(MeterSnapshot last) {
+		if (last == null) {
+			return this;
+		}
+		return new MeterSnapshot(meter, calls - last.calls, failures - last.failures, cacheHits - last.cacheHits,
+				cacheMisses - last.cacheMisses, coalesced - last.coalesced, latency.minus(last.latency),
+				requestSize.minus(last.requestSize), responseSize.minus(last.responseSize));
+	}
+
+	public int getId() {
+		return meter.getId();
+	}
+
+	public String getType() {
+		return meter.getType();
+	}
+
+	public String getService() {
+		return meter.getService();
+	}
+
+	public String getMethod() {
+		return meter.getMethod();
+	}
+
+	public String getName() {
+		return meter.getName();
+	}
+
+	public long getCalls() {
+		return calls;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+	public Histogram.Snapshot getLatency() {
+		return latency;
+	}
+
+	public Histogram.Snapshot getRequestSize() {
+		return requestSize;
+	}
+
+	public Histogram.Snapshot getResponseSize() {
+		return responseSize;
+	}
+}
@@ -0,0 +1,110 @@
+package com.dianping.pigeon.monitor.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * counters and histograms of one service method on one side (call or
+ * service). meters are registered once and never removed, so callers may
+ * keep a reference.
+ */
+public class MethodMeter {
+
+	private final int id;
+
+	private final String type;
+
+	private final String service;
+
+	private final String method;
+
+	private final Class<?>[] parameterTypes;
+
+	private final String name;
+
+	private final AtomicLong calls = new AtomicLong();
+
+	private final AtomicLong failures = new AtomicLong();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	private final AtomicLong cacheMisses = new AtomicLong();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	private final Histogram latency = new Histogram(Histogram.LATENCY_BOUNDS);
+
+	private final Histogram requestSize = new Histogram(Histogram.SIZE_BOUNDS);
+
+	private final Histogram responseSize = new Histogram(Histogram.SIZE_BOUNDS);
+
+	MethodMeter(int id, String type, String service, String method, Class<?>[] parameterTypes, String name) {
+		this.id = id;
+		this.type = type;
+		this.service = service;
+		this.method = method;
+		this.parameterTypes = parameterTypes;
+		this.name = name;
+	}
+
+	public void record(long millis, boolean failed, int requestBytes, int responseBytes) {
+		calls.incrementAndGet();
+		if (failed) {
+			failures.incrementAndGet();
+		}
+		latency.record(millis);
+		if (requestBytes > 0) {
+			requestSize.record(requestBytes);
+		}
+		if (responseBytes > 0) {
+			responseSize.record(responseBytes);
+		}
+	}
+
+	/**
+	 * lookups of the invoker side response cache
+	 */
+	public void recordCache(boolean hit) {
+		if (hit) {
+			cacheHits.incrementAndGet();
+		} else {
+			cacheMisses.incrementAndGet();
+		}
+	}
+
+	/**
+	 * a call that shared the in flight request of an identical call, the
+	 * coalescing ratio is coalesced / calls
+	 */
+	public void recordCoalesced() {
+		coalesced.incrementAndGet();
+	}
+
+	public MeterSnapshot snapshot() {
+		return new MeterSnapshot(this, calls.get(), failures.get(), cacheHits.get(), cacheMisses.get(),
+				coalesced.get(), latency.snapshot(), requestSize.snapshot(), responseSize.snapshot());
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getService() {
+		return service;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	Class<?>[] getParameterTypes() {
+		return parameterTypes;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,103 @@
+package com.dianping.pigeon.monitor.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * registry of the per service method meters. a meter is looked up by service,
+ * method and parameter types without building any string, its name is only
+ * computed when it is registered. every meter gets a small int id, the meters
+ * are kept in a copy on write array indexed by that id for snapshots.
+ */
+public class MetricsRegistry {
+
+	public static final String TYPE_CALL = "call";
+
+	public static final String TYPE_SERVICE = "service";
+
+	private static final MetricsRegistry instance = new MetricsRegistry();
+
+	// service --> method --> meters of the overloads on both sides
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, MethodMeter[]>> meters = new ConcurrentHashMap<String, ConcurrentHashMap<String, MethodMeter[]>>();
+
+	private volatile MethodMeter[] meterArray = new MethodMeter[0];
+
+	private final long startTime = TimeUtils.currentTimeMillis();
+
+	public static MetricsRegistry getInstance() {
+		return instance;
+	}
+
+	/**
+	 * returns null when the meter is not registered yet
+	 */
+	public MethodMeter getMeter(String type, String service, String method, Class<?>[] parameterTypes) {
+		ConcurrentHashMap<String, MethodMeter[]> methods = meters.get(service);
+		if (methods == null) {
+			return null;
+		}
+		MethodMeter[] overloads = methods.get(method);
+		return overloads == null ? null : find(overloads, type, parameterTypes);
+	}
+
+	private static MethodMeter find(MethodMeter[] overloads, String type, Class<?>[] parameterTypes) {
+		for (MethodMeter meter : overloads) {
+			if (type.equals(meter.getType()) && Arrays.equals(parameterTypes, meter.getParameterTypes())) {
+				return meter;
+			}
+		}
+		return null;
+	}
+
+	public synchronized MethodMeter register(String type, String service, String method, Class<?>[] parameterTypes,
+			String name) {
+		ConcurrentHashMap<String, MethodMeter[]> methods = meters.get(service);
+		if (methods == null) {
+			methods = new ConcurrentHashMap<String, MethodMeter[]>();
+			meters.put(service, methods);
+		}
+		MethodMeter[] overloads = methods.get(method);
+		if (overloads != null) {
+			MethodMeter meter = find(overloads, type, parameterTypes);
+			if (meter != null) {
+				return meter;
+			}
+		} else {
+			overloads = new MethodMeter[0];
+		}
+		MethodMeter[] all = meterArray;
+		MethodMeter meter = new MethodMeter(all.length, type, service, method, parameterTypes, name);
+		overloads = Arrays.copyOf(overloads, overloads.length + 1);
+		overloads[overloads.length - 1] = meter;
+		methods.put(method, overloads);
+		all = Arrays.copyOf(all, all.length + 1);
+		all[meter.getId()] = meter;
+		meterArray = all;
+		return meter;
+	}
+
+	public MethodMeter getMeter(int id) {
+		MethodMeter[] all = meterArray;
+		return id >= 0 && id < all.length ? all[id] : null;
+	}
+
+	public int size() {
+		return meterArray.length;
+	}
+
+	/**
+	 * totals since startup, readers compute rates from two snapshots
+	 */
+	public MetricsSnapshot snapshot() {
+		MethodMeter[] all = meterArray;
+		List<MeterSnapshot> snapshots = new ArrayList<MeterSnapshot>(all.length);
+		for (MethodMeter meter : all) {
+			snapshots.add(meter.snapshot());
+		}
+		return new MetricsSnapshot(startTime, TimeUtils.currentTimeMillis(), snapshots);
+	}
+}
@@ -0,0 +1,84 @@
+package com.dianping.pigeon.monitor.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.monitor.MetricsMonitor;
+import com.dianping.pigeon.monitor.Monitor;
+import com.dianping.pigeon.monitor.MonitorLoader;
+import com.dianping.pigeon.threadpool.NamedThreadFactory;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * pushes the per interval delta of every meter with traffic to the monitor,
+ * only started when the monitor implements MetricsMonitor
+ */
+public class MetricsReporter implements Runnable {
+
+	private static final Logger logger = LoggerLoader.getLogger(MetricsReporter.class);
+
+	private static final MetricsReporter instance = new MetricsReporter();
+
+	private ScheduledExecutorService executor;
+
+	private MeterSnapshot[] lastSnapshots = new MeterSnapshot[0];
+
+	private long lastTime = TimeUtils.currentTimeMillis();
+
+	public static MetricsReporter getInstance() {
+		return instance;
+	}
+
+	public synchronized void start(long interval) {
+		if (executor != null || !(MonitorLoader.getMonitor() instanceof MetricsMonitor)) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Pigeon-Metrics-Reporter"));
+		executor.scheduleAtFixedRate(this, interval, interval, TimeUnit.MILLISECONDS);
+		logger.info("metrics reporter started, interval:" + interval);
+	}
+
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			Monitor monitor = MonitorLoader.getMonitor();
+			if (monitor instanceof MetricsMonitor) {
+				((MetricsMonitor) monitor).logMetrics(nextDelta());
+			}
+		} catch (Throwable t) {
+			logger.warn("error while reporting metrics:" + t.getMessage());
+		}
+	}
+
+	MetricsSnapshot nextDelta() {
+		MetricsSnapshot current = MetricsRegistry.getInstance().snapshot();
+		List<MeterSnapshot> meters = current.getMeters();
+		MeterSnapshot[] last = lastSnapshots;
+		MeterSnapshot[] next = new MeterSnapshot[meters.size()];
+		List<MeterSnapshot> deltas = new ArrayList<MeterSnapshot>();
+		for (MeterSnapshot snapshot : meters) {
+			int id = snapshot.getId();
+			next[id] = snapshot;
+			MeterSnapshot delta = snapshot.minus(id < last.length ? last[id] : null);
+			if (delta.getCalls() > 0) {
+				deltas.add(delta);
+			}
+		}
+		MetricsSnapshot snapshot = new MetricsSnapshot(lastTime, current.getEndTime(), deltas);
+		lastSnapshots = next;
+		lastTime = current.getEndTime();
+		return snapshot;
+	}
+}
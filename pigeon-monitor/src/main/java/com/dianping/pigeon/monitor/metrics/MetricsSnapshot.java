@@ -0,0 +1,30 @@
+package com.dianping.pigeon.monitor.metrics;
+
+import java.util.List;
+
+public class MetricsSnapshot {
+
+	private final long startTime;
+
+	private final long endTime;
+
+	private final List<MeterSnapshot> meters;
+
+	public MetricsSnapshot(long startTime, long endTime, List<MeterSnapshot> meters) {
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.meters = meters;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getEndTime() {
+		return endTime;
+	}
+
+	public List<MeterSnapshot> getMeters() {
+		return meters;
+	}
+}
@@ -0,0 +1,89 @@
+package com.dianping.pigeon.monitor.metrics;
+
+/**
+ * writes a snapshot in the prometheus text exposition format
+ */
+public class PrometheusFormatter {
+
+	public static String format(MetricsSnapshot snapshot) {
+		StringBuilder sb = new StringBuilder(256 + snapshot.getMeters().size() * 2048);
+		sb.append("# TYPE pigeon_calls_total counter\n");
+		for (MeterSnapshot meter : snapshot.getMeters()) {
+			appendSample(sb, "pigeon_calls_total", meter, null, meter.getCalls());
+		}
+		sb.append("# TYPE pigeon_failures_total counter\n");
+		for (MeterSnapshot meter : snapshot.getMeters()) {
+			appendSample(sb, "pigeon_failures_total", meter, null, meter.getFailures());
+		}
+		sb.append("# TYPE pigeon_cache_hits_total counter\n");
+		for (MeterSnapshot meter : snapshot.getMeters()) {
+			if (meter.getCacheHits() > 0 || meter.getCacheMisses() > 0) {
+				appendSample(sb, "pigeon_cache_hits_total", meter, null, meter.getCacheHits());
+			}
+		}
+		sb.append("# TYPE pigeon_cache_misses_total counter\n");
+		for (MeterSnapshot meter : snapshot.getMeters()) {
+			if (meter.getCacheHits() > 0 || meter.getCacheMisses() > 0) {
+				appendSample(sb, "pigeon_cache_misses_total", meter, null, meter.getCacheMisses());
+			}
+		}
+		sb.append("# TYPE pigeon_coalesced_calls_total counter\n");
+		for (MeterSnapshot meter : snapshot.getMeters()) {
+			if (meter.getCoalesced() > 0) {
+				appendSample(sb, "pigeon_coalesced_calls_total", meter, null, meter.getCoalesced());
+			}
+		}
+		sb.append("# TYPE pigeon_latency_milliseconds histogram\n");
+		for (MeterSnapshot meter : snapshot.getMeters()) {
+			appendHistogram(sb, "pigeon_latency_milliseconds", meter, meter.getLatency());
+		}
+		sb.append("# TYPE pigeon_request_bytes histogram\n");
+		for (MeterSnapshot meter : snapshot.getMeters()) {
+			appendHistogram(sb, "pigeon_request_bytes", meter, meter.getRequestSize());
+		}
+		sb.append("# TYPE pigeon_response_bytes histogram\n");
+		for (MeterSnapshot meter : snapshot.getMeters()) {
+			appendHistogram(sb, "pigeon_response_bytes", meter, meter.getResponseSize());
+		}
+		return sb.toString();
+	}
+
+	private static void appendHistogram(StringBuilder sb, String metric, MeterSnapshot meter,
+			Histogram.Snapshot histogram) {
+		long[] bounds = histogram.getBounds();
+		long[] counts = histogram.getCounts();
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			appendSample(sb, metric + "_bucket", meter, i < bounds.length ? String.valueOf(bounds[i]) : "+Inf",
+					cumulative);
+		}
+		appendSample(sb, metric + "_sum", meter, null, histogram.getSum());
+		appendSample(sb, metric + "_count", meter, null, histogram.getCount());
+	}
+
+	private static void appendSample(StringBuilder sb, String metric, MeterSnapshot meter, String le, long value) {
+		sb.append(metric).append("{type=\"").append(meter.getType()).append("\",service=\"");
+		appendEscaped(sb, meter.getService());
+		sb.append("\",method=\"");
+		appendEscaped(sb, meter.getName());
+		sb.append('"');
+		if (le != null) {
+			sb.append(",le=\"").append(le).append('"');
+		}
+		sb.append("} ").append(value).append('\n');
+	}
+
+	private static void appendEscaped(StringBuilder sb, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"') {
+				sb.append('\\').append(c);
+			} else if (c == '\n') {
+				sb.append("\\n");
+			} else {
+				sb.append(c);
+			}
+		}
+	}
+}
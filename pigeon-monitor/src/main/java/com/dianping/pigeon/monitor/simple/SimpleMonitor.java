@@ -1,9 +1,20 @@
 package com.dianping.pigeon.monitor.simple;
 
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.monitor.MetricsMonitor;
 import com.dianping.pigeon.monitor.Monitor;
 import com.dianping.pigeon.monitor.MonitorTransaction;
+import com.dianping.pigeon.monitor.metrics.MeterSnapshot;
+import com.dianping.pigeon.monitor.metrics.MetricsSnapshot;
 
-public class SimpleMonitor implements Monitor {
+/**
+ * the monitor used when no other is configured. it drops the per call events
+ * and logs the aggregated meters of every interval.
+ */
+public class SimpleMonitor implements Monitor, MetricsMonitor {
+
+	private static final Logger logger = LoggerLoader.getLogger(SimpleMonitor.class);
 
 	@Override
 	public void init() {
@@ -35,6 +46,19 @@ public class SimpleMonitor implements Monitor {
 		return null;
 	}
 
+	@Override
+	public void logMetrics(MetricsSnapshot snapshot) {
+		if (!logger.isInfoEnabled()) {
+			return;
+		}
+		long seconds = Math.max(1, (snapshot.getEndTime() - snapshot.getStartTime()) / 1000);
+		for (MeterSnapshot meter : snapshot.getMeters()) {
+			logger.info("metrics " + meter.getType() + " " + meter.getName() + " calls:" + meter.getCalls()
+					+ " qps:" + meter.getCalls() / seconds + " failures:" + meter.getFailures() + " mean:"
+					+ meter.getLatency().getMean() + "ms p99:" + meter.getLatency().getPercentile(99) + "ms");
+		}
+	}
+
 	public String toString() {
 		return "SimpleMonitor";
 	}
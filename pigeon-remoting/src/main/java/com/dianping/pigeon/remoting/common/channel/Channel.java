@@ -25,4 +25,16 @@ public interface Channel {
     InetSocketAddress getRemoteAddress();
 
     String getRemoteAddressString();
+
+    long getLastResponseMillis();
+
+    int getPendingCount();
+
+    /**
+     * counts a request waiting for its response, released when the invocation
+     * leaves the invocation repository
+     */
+    void incPendingCount();
+
+    void decPendingCount();
 }
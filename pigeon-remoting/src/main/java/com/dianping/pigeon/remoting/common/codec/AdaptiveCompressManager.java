@@ -0,0 +1,138 @@
+package com.dianping.pigeon.remoting.common.codec;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+
+/**
+ * decides per service#method whether a frame above the compress threshold is
+ * worth compressing. every compression feeds the ratio and the bytes saved per
+ * microsecond of cpu into moving averages, a method whose payloads do not
+ * shrink enough or cost too much cpu for what they save stops being
+ * compressed, except for one probe every probe interval frames so the
+ * decision follows changing payloads.
+ */
+public enum AdaptiveCompressManager {
+
+	INSTANCE;
+
+	private AdaptiveCompressManager() {
+
+	}
+
+	private static final Logger logger = LoggerLoader.getLogger(AdaptiveCompressManager.class);
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+	private static final String KEY_ADAPTIVE_ENABLE = "pigeon.codec.compress.adaptive.enable";
+	// percent of the original size
+	private static final String KEY_ADAPTIVE_RATIO_MAX = "pigeon.codec.compress.adaptive.ratio.max";
+	// bytes saved per microsecond spent compressing
+	private static final String KEY_ADAPTIVE_SAVING_MIN = "pigeon.codec.compress.adaptive.saving.min";
+	private static final String KEY_ADAPTIVE_PROBE_INTERVAL = "pigeon.codec.compress.adaptive.probe.interval";
+
+	static {
+		configManager.getBooleanValue(KEY_ADAPTIVE_ENABLE, true);
+		configManager.getIntValue(KEY_ADAPTIVE_RATIO_MAX, 90);
+		configManager.getIntValue(KEY_ADAPTIVE_SAVING_MIN, 4);
+		configManager.getIntValue(KEY_ADAPTIVE_PROBE_INTERVAL, 100);
+	}
+
+	private static final int MIN_SAMPLES = 8;
+
+	private static final double ALPHA = 0.2;
+
+	// service --> method --> stats
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, CompressStats>> stats = new ConcurrentHashMap<String, ConcurrentHashMap<String, CompressStats>>();
+
+	public boolean isCompress(String serviceName, String methodName, int frameSize) {
+		if (!CodecConfig.isCompress(frameSize)) {
+			return false;
+		}
+		if (serviceName == null || methodName == null
+				|| !configManager.getBooleanValue(KEY_ADAPTIVE_ENABLE, true)) {
+			return true;
+		}
+		return getStats(serviceName, methodName).isCompress();
+	}
+
+	public void addSample(String serviceName, String methodName, int originalSize, int compressedSize, long nanos) {
+		if (serviceName == null || methodName == null) {
+			return;
+		}
+		getStats(serviceName, methodName).addSample(serviceName, methodName, originalSize, compressedSize, nanos);
+	}
+
+	private CompressStats getStats(String serviceName, String methodName) {
+		ConcurrentHashMap<String, CompressStats> methods = stats.get(serviceName);
+		if (methods == null) {
+			methods = new ConcurrentHashMap<String, CompressStats>();
+			ConcurrentHashMap<String, CompressStats> last = stats.putIfAbsent(serviceName, methods);
+			if (last != null) {
+				methods = last;
+			}
+		}
+		CompressStats methodStats = methods.get(methodName);
+		if (methodStats == null) {
+			methodStats = new CompressStats();
+			CompressStats last = methods.putIfAbsent(methodName, methodStats);
+			if (last != null) {
+				methodStats = last;
+			}
+		}
+		return methodStats;
+	}
+
+	/**
+	 * the averages are updated without locking, a lost sample does not matter
+	 */
+	static class CompressStats {
+
+		private final AtomicInteger samples = new AtomicInteger();
+
+		private final AtomicInteger skipped = new AtomicInteger();
+
+		private volatile double ratio;
+
+		private volatile double saving;
+
+		private volatile boolean enabled = true;
+
+		boolean isCompress() {
+			if (enabled) {
+				return true;
+			}
+			int probeInterval = configManager.getIntValue(KEY_ADAPTIVE_PROBE_INTERVAL, 100);
+			return skipped.incrementAndGet() % Math.max(probeInterval, 1) == 0;
+		}
+
+		void addSample(String serviceName, String methodName, int originalSize, int compressedSize, long nanos) {
+			if (originalSize <= 0) {
+				return;
+			}
+			double sampleRatio = compressedSize * 100.0 / originalSize;
+			double sampleSaving = (originalSize - compressedSize) * 1000.0 / Math.max(nanos, 1);
+			int count = samples.incrementAndGet();
+			if (count == 1) {
+				ratio = sampleRatio;
+				saving = sampleSaving;
+			} else {
+				ratio += ALPHA * (sampleRatio - ratio);
+				saving += ALPHA * (sampleSaving - saving);
+			}
+			if (count < MIN_SAMPLES) {
+				return;
+			}
+			boolean worth = ratio <= configManager.getIntValue(KEY_ADAPTIVE_RATIO_MAX, 90)
+					&& saving >= configManager.getIntValue(KEY_ADAPTIVE_SAVING_MIN, 4);
+			if (worth != enabled) {
+				enabled = worth;
+				logger.info("[compress] " + (worth ? "enable" : "disable") + " compression of " + serviceName + "#"
+						+ methodName + ", ratio:" + (int) ratio + "%, saving:" + (int) saving + " bytes/us");
+			}
+		}
+	}
+}
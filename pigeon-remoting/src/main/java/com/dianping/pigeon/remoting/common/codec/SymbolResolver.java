@@ -0,0 +1,60 @@
+package com.dianping.pigeon.remoting.common.codec;
+
+import java.util.Arrays;
+
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
+
+/**
+ * receiver side of the per connection symbol dictionary. a connection is
+ * decoded by one io thread, so the table is a plain array.
+ */
+public class SymbolResolver {
+
+	private String[] symbols = new String[64];
+
+	private String[] locals = new String[8];
+
+	/**
+	 * drops the message local symbols of the previous message
+	 */
+	public void reset() {
+		Arrays.fill(locals, null);
+	}
+
+	public void define(int id, String value) {
+		if (id > 0 && id <= SymbolTable.MAX_SYMBOLS) {
+			if (id >= symbols.length) {
+				symbols = Arrays.copyOf(symbols, Math.min(Math.max(symbols.length * 2, id + 1),
+						SymbolTable.MAX_SYMBOLS + 1));
+			}
+			symbols[id] = value;
+		} else if (id < 0) {
+			int index = -id - 1;
+			if (index >= locals.length) {
+				locals = Arrays.copyOf(locals, Math.max(locals.length * 2, index + 1));
+			}
+			locals[index] = value;
+		} else {
+			throw new SerializationException("invalid symbol id:" + id);
+		}
+	}
+
+	/**
+	 * id 0 stands for null
+	 */
+	public String resolve(int id) {
+		if (id == 0) {
+			return null;
+		}
+		String value = null;
+		if (id > 0 && id < symbols.length) {
+			value = symbols[id];
+		} else if (id < 0 && -id - 1 < locals.length) {
+			value = locals[-id - 1];
+		}
+		if (value == null) {
+			throw new SerializationException("undefined symbol id:" + id);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,91 @@
+package com.dianping.pigeon.remoting.common.codec;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * sender side of a per connection symbol dictionary. every distinct string
+ * gets a connection local id, the definition is sent along with the id until
+ * a response proves the peer has decoded a request carrying it. after that
+ * only the id is written. once the table is full, new strings get negative
+ * ids that are only valid inside the message defining them.
+ */
+public class SymbolTable {
+
+	public static final int MAX_SYMBOLS = 4096;
+
+	private static final int MAX_PENDINGS = 1024;
+
+	private final ConcurrentHashMap<String, Symbol> symbols = new ConcurrentHashMap<String, Symbol>();
+
+	private final AtomicInteger idGenerator = new AtomicInteger();
+
+	// request sequence --> symbols defined by that request
+	private final ConcurrentHashMap<Long, Symbol[]> pendings = new ConcurrentHashMap<Long, Symbol[]>();
+
+	public Symbol getSymbol(String value) {
+		Symbol symbol = symbols.get(value);
+		if (symbol == null && idGenerator.get() < MAX_SYMBOLS) {
+			int id = idGenerator.incrementAndGet();
+			if (id > MAX_SYMBOLS) {
+				return null;
+			}
+			symbol = new Symbol(id, value);
+			Symbol last = symbols.putIfAbsent(value, symbol);
+			if (last != null) {
+				symbol = last;
+			}
+		}
+		return symbol;
+	}
+
+	public void addPending(long sequence, Symbol[] defined) {
+		if (pendings.size() >= MAX_PENDINGS) {
+			// requests lost without response, their symbols are simply defined again
+			pendings.clear();
+		}
+		pendings.put(sequence, defined);
+	}
+
+	public void confirm(long sequence) {
+		if (pendings.isEmpty()) {
+			return;
+		}
+		Symbol[] defined = pendings.remove(sequence);
+		if (defined != null) {
+			for (Symbol symbol : defined) {
+				symbol.confirmed = true;
+			}
+		}
+	}
+
+	public int size() {
+		return symbols.size();
+	}
+
+	public static class Symbol {
+
+		private final int id;
+
+		private final String value;
+
+		private volatile boolean confirmed;
+
+		Symbol(int id, String value) {
+			this.id = id;
+			this.value = value;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public boolean isConfirmed() {
+			return confirmed;
+		}
+	}
+}
@@ -12,6 +12,7 @@ import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.ServiceConfigUtils;
 import com.dianping.pigeon.remoting.invoker.concurrent.InvocationCallback;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
 import com.dianping.pigeon.remoting.invoker.config.annotation.Reference;
 import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
 import com.dianping.pigeon.remoting.provider.config.ServerConfig;
@@ -33,6 +34,9 @@ import org.springframework.context.ApplicationContextAware;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -228,7 +232,9 @@ public class AnnotationBean extends ServiceInitializeListener implements Disposa
 		}
 		String key = reference.group() + "/" + reference.url() + "@" + interfaceName + ":" + reference.version() + ":"
 				+ reference.serialize() + ":" + reference.protocol() + ":" + reference.timeout() + ":"
-				+ reference.callType();
+				+ reference.callType() + ":" + Arrays.toString(reference.cacheMethods()) + ":" + reference.cacheTtl()
+				+ ":" + reference.cacheSize() + ":" + reference.cacheOffHeap() + ":"
+				+ Arrays.toString(reference.coalesceMethods());
 		InvokerConfig<?> invokerConfig = invokerConfigs.get(key);
 		if (invokerConfig == null) {
 			invokerConfig = new InvokerConfig(referenceClass, reference.url(), reference.timeout(),
@@ -236,12 +242,35 @@ public class AnnotationBean extends ServiceInitializeListener implements Disposa
 					reference.loadbalance(), reference.cluster(), reference.retries(), reference.timeoutRetry(),
 					reference.vip(), reference.version(), reference.protocol());
 			invokerConfig.setSecret(reference.secret());
+			Map<String, InvokerMethodConfig> methods = new HashMap<String, InvokerMethodConfig>();
+			for (String cacheMethod : reference.cacheMethods()) {
+				InvokerMethodConfig methodConfig = getMethodConfig(methods, cacheMethod);
+				methodConfig.setCacheTtl(reference.cacheTtl());
+				methodConfig.setCacheSize(reference.cacheSize());
+				methodConfig.setCacheOffHeap(reference.cacheOffHeap());
+			}
+			for (String coalesceMethod : reference.coalesceMethods()) {
+				getMethodConfig(methods, coalesceMethod).setCoalesce(true);
+			}
+			if (!methods.isEmpty()) {
+				invokerConfig.setMethods(methods);
+			}
 			invokerConfigs.putIfAbsent(key, invokerConfig);
 			invokerConfig = invokerConfigs.get(key);
 		}
 		return ServiceFactory.getService(invokerConfig);
 	}
 
+	private InvokerMethodConfig getMethodConfig(Map<String, InvokerMethodConfig> methods, String methodName) {
+		InvokerMethodConfig methodConfig = methods.get(methodName);
+		if (methodConfig == null) {
+			methodConfig = new InvokerMethodConfig();
+			methodConfig.setName(methodName);
+			methods.put(methodName, methodConfig);
+		}
+		return methodConfig;
+	}
+
 	private boolean isMatchPackage(String beanClassName) {
 		if (annotationPackages == null || annotationPackages.length == 0) {
 			return true;
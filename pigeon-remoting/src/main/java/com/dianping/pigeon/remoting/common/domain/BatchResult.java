@@ -0,0 +1,62 @@
+package com.dianping.pigeon.remoting.common.domain;
+
+import java.io.Serializable;
+
+/**
+ * results of a batched call, one slot per call in the batch. a call either
+ * has its return value in results or the thrown exception in errors.
+ */
+public class BatchResult implements Serializable {
+
+	private static final long serialVersionUID = -1876420373611702528L;
+
+	private Object[] results;
+
+	private Throwable[] errors;
+
+	public BatchResult() {
+	}
+
+	public BatchResult(int size) {
+		this.results = new Object[size];
+	}
+
+	public Object[] getResults() {
+		return results;
+	}
+
+	public void setResults(Object[] results) {
+		this.results = results;
+	}
+
+	public Throwable[] getErrors() {
+		return errors;
+	}
+
+	public void setErrors(Throwable[] errors) {
+		this.errors = errors;
+	}
+
+	public void setResult(int index, Object result) {
+		results[index] = result;
+	}
+
+	public void setError(int index, Throwable error) {
+		if (errors == null) {
+			errors = new Throwable[results.length];
+		}
+		errors[index] = error;
+	}
+
+	public int size() {
+		return results == null ? 0 : results.length;
+	}
+
+	public Object getResult(int index) {
+		return results[index];
+	}
+
+	public Throwable getError(int index) {
+		return errors == null ? null : errors[index];
+	}
+}
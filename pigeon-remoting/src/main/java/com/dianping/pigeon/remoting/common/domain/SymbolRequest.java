@@ -0,0 +1,483 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SymbolResolver;
+import com.dianping.pigeon.remoting.common.codec.SymbolTable;
+import com.dianping.pigeon.remoting.common.codec.SymbolTable.Symbol;
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+
+/**
+ * request whose service name, method name, app, version and context keys are
+ * written as ids of the connection's symbol dictionary. the codec calls
+ * writeSymbols before serializing and readSymbols after deserializing, in
+ * steady state the header is a short int array.
+ * <p>
+ * the arguments are serialized into their own bytes by writeParameters, so
+ * the provider's io thread only decodes the header and the byte array. they
+ * are deserialized on the first getParameters, normally on the business
+ * thread, and a request rejected before that never pays for them.
+ */
+public class SymbolRequest implements InvocationRequest {
+
+    private static final long serialVersionUID = 0;
+
+    private static final int HEADER_CALL_TYPE = 0;
+    private static final int HEADER_TIMEOUT = 1;
+    private static final int HEADER_MESSAGE_TYPE = 2;
+    private static final int HEADER_SERVICE = 3;
+    private static final int HEADER_METHOD = 4;
+    private static final int HEADER_APP = 5;
+    private static final int HEADER_VERSION = 6;
+    private static final int HEADER_GLOBAL_COUNT = 7;
+    private static final int HEADER_LENGTH = 8;
+
+    private long seq;
+
+    // fixed fields followed by the global and request context key ids
+    private int[] header;
+
+    private int[] defineIds;
+
+    private String[] defines;
+
+    private byte[] parameterBytes;
+
+    private Object[] contextValues;
+
+    private Object context;
+
+    private transient volatile Object[] parameters;
+
+    private transient byte serialize;
+
+    private transient int callType = Constants.CALLTYPE_REPLY;
+
+    private transient int timeout = 0;
+
+    private transient int messageType = Constants.MESSAGE_TYPE_SERVICE;
+
+    private transient long createMillisTime;
+
+    private transient String serviceName;
+
+    private transient String methodName;
+
+    private transient String version;
+
+    private transient String app = ConfigManagerLoader.getConfigManager().getAppName();
+
+    private transient int size;
+
+    private transient Map<String, Serializable> globalValues = null;
+
+    private transient Map<String, Serializable> requestValues = null;
+
+    public SymbolRequest() {
+    }
+
+    public SymbolRequest(String serviceName, String methodName, Object[] parameters, byte serialize, int messageType,
+                         int timeout, int callType, long seq) {
+        this.serviceName = serviceName;
+        this.methodName = methodName;
+        this.parameters = parameters;
+        this.serialize = serialize;
+        this.messageType = messageType;
+        this.timeout = timeout;
+        this.callType = callType;
+        this.seq = seq;
+    }
+
+    public SymbolRequest(InvokerContext invokerContext) {
+        if (invokerContext != null) {
+            InvokerConfig<?> invokerConfig = invokerContext.getInvokerConfig();
+            if (invokerConfig != null) {
+                this.serviceName = invokerConfig.getUrl();
+                this.serialize = invokerConfig.getSerialize();
+                this.timeout = invokerConfig.getTimeout(invokerContext.getMethodName());
+                this.version = invokerConfig.getVersion();
+                if (Constants.CALL_ONEWAY.equalsIgnoreCase(invokerConfig.getCallType())) {
+                    this.setCallType(Constants.CALLTYPE_NOREPLY);
+                } else {
+                    this.setCallType(Constants.CALLTYPE_REPLY);
+                }
+            }
+            this.methodName = invokerContext.getMethodName();
+            this.parameters = invokerContext.getArguments();
+            this.messageType = Constants.MESSAGE_TYPE_SERVICE;
+        }
+    }
+
+    /**
+     * replaces the strings by ids of the given table, symbols the peer has
+     * not confirmed yet are defined inline
+     */
+    public void writeSymbols(SymbolTable table) {
+        SymbolWriter writer = new SymbolWriter(table);
+        int globalCount = globalValues == null ? 0 : globalValues.size();
+        int requestCount = requestValues == null ? 0 : requestValues.size();
+
+        int[] _header = new int[HEADER_LENGTH + globalCount + requestCount];
+        _header[HEADER_CALL_TYPE] = callType;
+        _header[HEADER_TIMEOUT] = timeout;
+        _header[HEADER_MESSAGE_TYPE] = messageType;
+        _header[HEADER_SERVICE] = writer.intern(serviceName);
+        _header[HEADER_METHOD] = writer.intern(methodName);
+        _header[HEADER_APP] = writer.intern(app);
+        _header[HEADER_VERSION] = writer.intern(version);
+        _header[HEADER_GLOBAL_COUNT] = globalCount;
+
+        Object[] _contextValues = null;
+        if (globalCount + requestCount > 0) {
+            _contextValues = new Object[globalCount + requestCount];
+            int index = 0;
+            if (globalCount > 0) {
+                for (Map.Entry<String, Serializable> entry : globalValues.entrySet()) {
+                    if (index == globalCount) {
+                        break;
+                    }
+                    _header[HEADER_LENGTH + index] = writer.intern(entry.getKey());
+                    _contextValues[index++] = entry.getValue();
+                }
+            }
+            if (requestCount > 0) {
+                for (Map.Entry<String, Serializable> entry : requestValues.entrySet()) {
+                    if (index == globalCount + requestCount) {
+                        break;
+                    }
+                    _header[HEADER_LENGTH + index] = writer.intern(entry.getKey());
+                    _contextValues[index++] = entry.getValue();
+                }
+            }
+        }
+
+        this.header = _header;
+        this.contextValues = _contextValues;
+        this.defineIds = writer.getDefineIds();
+        this.defines = writer.getDefines();
+
+        Symbol[] pendings = writer.getPendings();
+        if (pendings != null && callType == Constants.CALLTYPE_REPLY) {
+            table.addPending(seq, pendings);
+        }
+    }
+
+    /**
+     * restores the strings from the ids, definitions carried by this request
+     * are added to the resolver first
+     */
+    public void readSymbols(SymbolResolver resolver) {
+        if (header == null || header.length < HEADER_LENGTH) {
+            throw new SerializationException("invalid symbol request header, seq:" + seq);
+        }
+        resolver.reset();
+        if (defineIds != null) {
+            for (int i = 0; i < defineIds.length; i++) {
+                resolver.define(defineIds[i], defines[i]);
+            }
+        }
+
+        callType = header[HEADER_CALL_TYPE];
+        timeout = header[HEADER_TIMEOUT];
+        messageType = header[HEADER_MESSAGE_TYPE];
+        serviceName = resolver.resolve(header[HEADER_SERVICE]);
+        methodName = resolver.resolve(header[HEADER_METHOD]);
+        app = resolver.resolve(header[HEADER_APP]);
+        version = resolver.resolve(header[HEADER_VERSION]);
+
+        int globalCount = header[HEADER_GLOBAL_COUNT];
+        int contextCount = header.length - HEADER_LENGTH;
+        if (globalCount > 0) {
+            globalValues = new HashMap<String, Serializable>(globalCount * 2);
+            for (int i = 0; i < globalCount; i++) {
+                globalValues.put(resolver.resolve(header[HEADER_LENGTH + i]), (Serializable) contextValues[i]);
+            }
+        }
+        if (contextCount > globalCount) {
+            requestValues = new HashMap<String, Serializable>((contextCount - globalCount) * 2);
+            for (int i = globalCount; i < contextCount; i++) {
+                requestValues.put(resolver.resolve(header[HEADER_LENGTH + i]), (Serializable) contextValues[i]);
+            }
+        }
+        defineIds = null;
+        defines = null;
+    }
+
+    /**
+     * serializes the arguments with the request's serializer, kept for a
+     * resend of the same request
+     */
+    public void writeParameters() {
+        if (parameterBytes == null && parameters != null) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream(256);
+            SerializerFactory.getSerializer(serialize).serializeRequest(os, parameters);
+            parameterBytes = os.toByteArray();
+        }
+    }
+
+    private synchronized Object[] readParameters() {
+        if (parameters == null && parameterBytes != null) {
+            Object decoded = SerializerFactory.getSerializer(serialize).deserializeRequest(
+                    new ByteArrayInputStream(parameterBytes));
+            if (decoded != null && !(decoded instanceof Object[])) {
+                throw new SerializationException("invalid parameters of request, seq:" + seq);
+            }
+            parameters = (Object[]) decoded;
+            parameterBytes = null;
+        }
+        return parameters;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public byte getSerialize() {
+        return this.serialize;
+    }
+
+    public void setSequence(long seq) {
+        this.seq = seq;
+    }
+
+    public long getSequence() {
+        return this.seq;
+    }
+
+    public void setCallType(int callType) {
+        this.callType = callType;
+    }
+
+    public int getCallType() {
+        return this.callType;
+    }
+
+    public int getTimeout() {
+        return this.timeout;
+    }
+
+    public long getCreateMillisTime() {
+        return this.createMillisTime;
+    }
+
+    public String getServiceName() {
+        return this.serviceName;
+    }
+
+    public String getMethodName() {
+        return this.methodName;
+    }
+
+    public String[] getParamClassName() {
+        Object[] _parameters = getParameters();
+        if (_parameters == null) {
+            return new String[0];
+        }
+        String[] paramClassNames = new String[_parameters.length];
+
+        int k = 0;
+        for (Object parameter : _parameters) {
+            if (parameter == null) {
+                paramClassNames[k] = "NULL";
+            } else {
+                paramClassNames[k] = parameter.getClass().getName();
+            }
+            k++;
+        }
+        return paramClassNames;
+    }
+
+    public Object[] getParameters() {
+        Object[] _parameters = this.parameters;
+        if (_parameters == null && parameterBytes != null) {
+            _parameters = readParameters();
+        }
+        return _parameters;
+    }
+
+    public int getMessageType() {
+        return this.messageType;
+    }
+
+    @Override
+    public Object getContext() {
+        return this.context;
+    }
+
+    @Override
+    public void setContext(Object context) {
+        this.context = context;
+    }
+
+    @Override
+    public void setCreateMillisTime(long createTime) {
+        this.createMillisTime = createTime;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("serialize", serialize).append("seq", seq).append("msgType", messageType)
+                .append("callType", callType).append("timeout", timeout).append("url", serviceName)
+                .append("method", methodName).append("created", createMillisTime);
+        if (Constants.LOG_PARAMETERS) {
+            builder.append("parameters", InvocationUtils.toJsonString(getParameters()));
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public void setSerialize(byte serialize) {
+        this.serialize = serialize;
+    }
+
+    @Override
+    public void setMessageType(int messageType) {
+        this.messageType = messageType;
+    }
+
+    @Override
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public String getApp() {
+        return app;
+    }
+
+    public void setApp(String app) {
+        this.app = app;
+    }
+
+    public void setMethodName(String methodName) {
+        this.methodName = methodName;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public Map<String, Serializable> getGlobalValues() {
+        return globalValues;
+    }
+
+    public void setGlobalValues(Map<String, Serializable> globalValues) {
+        this.globalValues = globalValues;
+    }
+
+    public Map<String, Serializable> getRequestValues() {
+        return requestValues;
+    }
+
+    public void setRequestValues(Map<String, Serializable> requestValues) {
+        this.requestValues = requestValues;
+    }
+
+    static class SymbolWriter {
+
+        private final SymbolTable table;
+
+        private int[] defineIds;
+
+        private String[] defines;
+
+        private Symbol[] pendings;
+
+        private int defineCount;
+
+        private int pendingCount;
+
+        private int localCount;
+
+        SymbolWriter(SymbolTable table) {
+            this.table = table;
+        }
+
+        int intern(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Symbol symbol = table.getSymbol(value);
+            if (symbol == null) {
+                int id = -(++localCount);
+                define(id, value);
+                return id;
+            }
+            if (!symbol.isConfirmed() && !isDefined(symbol.getId())) {
+                define(symbol.getId(), value);
+                if (pendings == null) {
+                    pendings = new Symbol[4];
+                } else if (pendingCount == pendings.length) {
+                    pendings = Arrays.copyOf(pendings, pendingCount * 2);
+                }
+                pendings[pendingCount++] = symbol;
+            }
+            return symbol.getId();
+        }
+
+        private boolean isDefined(int id) {
+            for (int i = 0; i < defineCount; i++) {
+                if (defineIds[i] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void define(int id, String value) {
+            if (defineIds == null) {
+                defineIds = new int[4];
+                defines = new String[4];
+            } else if (defineCount == defineIds.length) {
+                defineIds = Arrays.copyOf(defineIds, defineCount * 2);
+                defines = Arrays.copyOf(defines, defineCount * 2);
+            }
+            defineIds[defineCount] = id;
+            defines[defineCount++] = value;
+        }
+
+        int[] getDefineIds() {
+            return defineIds == null ? null : Arrays.copyOf(defineIds, defineCount);
+        }
+
+        String[] getDefines() {
+            return defines == null ? null : Arrays.copyOf(defines, defineCount);
+        }
+
+        Symbol[] getPendings() {
+            return pendings == null ? null : Arrays.copyOf(pendings, pendingCount);
+        }
+    }
+
+}
@@ -8,7 +8,8 @@ public enum CompressType {
 
     None((byte) 0),       // 不压缩
     Snappy((byte) 1),     // Snappy
-    Gzip((byte) 2);        // Gzip
+    Gzip((byte) 2),       // Gzip
+    Lz4((byte) 3);        // Lz4 block
 
     private byte code;
 
@@ -28,6 +29,8 @@ public enum CompressType {
                 return Snappy;
             case 2:
                 return Gzip;
+            case 3:
+                return Lz4;
             default:
                 throw new IllegalArgumentException("invalid CompressType code: " + code);
         }
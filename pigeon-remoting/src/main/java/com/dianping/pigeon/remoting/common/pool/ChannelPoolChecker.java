@@ -0,0 +1,161 @@
+package com.dianping.pigeon.remoting.common.pool;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * single timer shared by all channel pools of the process. instead of
+ * scheduling one check task per pool, pools register here and one thread
+ * sweeps them, handing broken channels to the shared reconnect executor.
+ * pools are held weakly, a pool that is never closed is dropped once it is
+ * collected.
+ */
+public class ChannelPoolChecker {
+
+	private static final Logger logger = LoggerLoader.getLogger(ChannelPoolChecker.class);
+
+	private static final int CHECK_TICK_MILLIS = 500;
+
+	private static final Object PRESENT = new Object();
+
+	private static final Set<PoolRef> pools = Collections
+			.newSetFromMap(new ConcurrentHashMap<PoolRef, Boolean>());
+
+	private static final ConcurrentMap<Channel, Object> reconnectChannels = new ConcurrentHashMap<Channel, Object>();
+
+	private static final ExecutorService reconnectExecutor = Executors.newFixedThreadPool(4,
+			new DefaultThreadFactory("Pigeon-ChannelPool-Reconnect-Pool"));
+
+	private static final ScheduledThreadPoolExecutor checkScheduler = new ScheduledThreadPoolExecutor(1,
+			new DefaultThreadFactory("Pigeon-ChannelPool-Check-Pool"));
+
+	static {
+		checkScheduler.scheduleWithFixedDelay(new CheckChannelTask(), CHECK_TICK_MILLIS, CHECK_TICK_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	public static void register(ChannelPool<?> channelPool) {
+		pools.add(new PoolRef(channelPool));
+	}
+
+	public static void unregister(ChannelPool<?> channelPool) {
+		for (PoolRef poolRef : pools) {
+			if (poolRef.get() == channelPool) {
+				pools.remove(poolRef);
+			}
+		}
+	}
+
+	public static int getPoolCount() {
+		return pools.size();
+	}
+
+	public static void reconnectChannel(Channel channel, ChannelPool<?> channelPool) {
+		if (reconnectChannels.putIfAbsent(channel, PRESENT) == null) {
+			try {
+				reconnectExecutor.submit(new ReconnectChannelTask(channel, channelPool));
+			} catch (RuntimeException e) {
+				reconnectChannels.remove(channel);
+				logger.info("[reconnectChannel] submit reconnect task failed.", e);
+			}
+		}
+	}
+
+	public static void execute(Runnable task) {
+		reconnectExecutor.execute(task);
+	}
+
+	static class ReconnectChannelTask implements Runnable {
+
+		private WeakReference<Channel> channelRef;
+		private WeakReference<ChannelPool<?>> poolRef;
+
+		public ReconnectChannelTask(Channel channel, ChannelPool<?> pool) {
+			this.channelRef = new WeakReference<Channel>(channel);
+			this.poolRef = new WeakReference<ChannelPool<?>>(pool);
+		}
+
+		@Override
+		public void run() {
+			ChannelPool<?> channelPool = poolRef.get();
+			Channel channel = channelRef.get();
+
+			try {
+				if (channelPool != null && !channelPool.isClosed()) {
+
+					if (channel != null && !channel.isAvaliable()) {
+						try {
+							channel.connect();
+						} catch (NetworkException e) {
+							logger.info("[run] pooledChannel connnet failed.", e);
+						}
+
+					}
+				}
+			} finally {
+				if (channel != null) {
+					reconnectChannels.remove(channel);
+				}
+			}
+		}
+	}
+
+	static class PoolRef extends WeakReference<ChannelPool<?>> {
+
+		private long lastChecked = TimeUtils.currentTimeMillis();
+
+		public PoolRef(ChannelPool<?> pool) {
+			super(pool);
+		}
+	}
+
+	static class CheckChannelTask implements Runnable {
+
+		@Override
+		public void run() {
+			long now = TimeUtils.currentTimeMillis();
+
+			for (PoolRef poolRef : pools) {
+				ChannelPool<?> channelPool = poolRef.get();
+
+				try {
+					if (channelPool == null || channelPool.isClosed()) {
+						pools.remove(poolRef);
+						continue;
+					}
+
+					if (now - poolRef.lastChecked < channelPool.getPoolProperties().getTimeBetweenCheckerMillis()) {
+						continue;
+					}
+					poolRef.lastChecked = now;
+
+					List<? extends Channel> channels = channelPool.getChannels();
+					for (int index = 0; index < channels.size(); index++) {
+						Channel channel = channels.get(index);
+
+						if (channel != null && !channel.isAvaliable()) {
+							reconnectChannel(channel, channelPool);
+						}
+					}
+				} catch (Throwable t) {
+					logger.info("[run] pooledChannel check failed.", t);
+				}
+			}
+		}
+	}
+}
@@ -1,15 +1,7 @@
 package com.dianping.pigeon.remoting.common.pool;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -17,10 +9,7 @@ import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.channel.Channel;
 import com.dianping.pigeon.remoting.common.channel.ChannelFactory;
-import com.dianping.pigeon.remoting.common.exception.NetworkException;
-import com.dianping.pigeon.threadpool.DefaultThreadFactory;
 import com.dianping.pigeon.util.AtomicPositiveInteger;
-import com.dianping.pigeon.util.TimeUtils;
 
 /**
  * @author qi.yin 2016/09/23 上午10:52.
@@ -41,18 +30,6 @@ public class DefaultChannelPool<C extends Channel> implements ChannelPool<C> {
 
 	private ChannelFactory<C> channelFactory;
 
-	private ScheduledFuture<?> scheduledFuture = null;
-
-	private static ExecutorService reconnectExecutor = Executors.newFixedThreadPool(4,
-			new DefaultThreadFactory("Pigeon-ChannelPool-Reconnect-Pool"));
-
-	private static ScheduledThreadPoolExecutor checkScheduler = new ScheduledThreadPoolExecutor(2,
-			new DefaultThreadFactory("Pigeon-ChannelPool-Check-Pool"));
-
-	private final static Object PRESENT = new Object();
-
-	private static final ConcurrentMap<Channel, Object> reconnectChannels = new ConcurrentHashMap<Channel, Object>();
-
 	public DefaultChannelPool(ChannelFactory channelFactory) throws ChannelPoolException {
 		this(new PoolProperties(), channelFactory);
 	}
@@ -99,14 +76,7 @@ public class DefaultChannelPool<C extends Channel> implements ChannelPool<C> {
 			logger.info("[init] unable to create initial connections of pool.", e);
 		}
 
-		initCheckScheduler();
-	}
-
-	private void initCheckScheduler() {
-		int interval = properties.getTimeBetweenCheckerMillis();
-
-		scheduledFuture = checkScheduler.scheduleWithFixedDelay(new CheckChannelTask(this), interval, interval,
-				TimeUnit.MILLISECONDS);
+		ChannelPoolChecker.register(this);
 	}
 
 	@Override
@@ -197,9 +167,7 @@ public class DefaultChannelPool<C extends Channel> implements ChannelPool<C> {
 	}
 
 	protected static void reconnectChannel(Channel channel, ChannelPool channelPool) {
-		if (reconnectChannels.putIfAbsent(channel, PRESENT) == null) {
-			reconnectExecutor.submit(new ReconnectChannelTask(channel, channelPool));
-		}
+		ChannelPoolChecker.reconnectChannel(channel, channelPool);
 	}
 
 	@Override
@@ -225,12 +193,7 @@ public class DefaultChannelPool<C extends Channel> implements ChannelPool<C> {
 				}
 			}
 
-			if (scheduledFuture != null && !scheduledFuture.isCancelled()) {
-				scheduledFuture.cancel(true);
-				checkScheduler.purge();
-			}
-
-			scheduledFuture = null;
+			ChannelPoolChecker.unregister(this);
 		}
 	}
 
@@ -242,68 +205,4 @@ public class DefaultChannelPool<C extends Channel> implements ChannelPool<C> {
 	protected String getChannelPoolDesc() {
 		return "ChannelPool[poolSize=" + pooledChannels.size() + "]";
 	}
-
-	static class ReconnectChannelTask implements Runnable {
-
-		private WeakReference<Channel> channelRef;
-		private WeakReference<ChannelPool> poolRef;
-
-		public ReconnectChannelTask(Channel channel, ChannelPool pool) {
-			this.channelRef = new WeakReference<Channel>(channel);
-			this.poolRef = new WeakReference<ChannelPool>(pool);
-		}
-
-		@Override
-		public void run() {
-			ChannelPool channelPool = poolRef.get();
-			Channel channel = channelRef.get();
-
-			if (channelPool != null && !channelPool.isClosed()) {
-
-				if (channel != null && !channel.isAvaliable()) {
-					try {
-						channel.connect();
-					} catch (NetworkException e) {
-						logger.info("[run] pooledChannel connnet failed.", e);
-					}
-
-				}
-			}
-
-			reconnectChannels.remove(channel);
-		}
-	}
-
-	static class CheckChannelTask implements Runnable {
-
-		private WeakReference<ChannelPool> poolRef;
-
-		public CheckChannelTask(ChannelPool channelPool) {
-			this.poolRef = new WeakReference<ChannelPool>(channelPool);
-		}
-
-		@Override
-		public void run() {
-			try {
-				ChannelPool channelPool = poolRef.get();
-
-				if (channelPool != null && !channelPool.isClosed()) {
-
-					List<Channel> channels = channelPool.getChannels();
-
-					for (int index = 0; index < channels.size(); index++) {
-						Channel channel = channels.get(index);
-
-						if (!channel.isAvaliable()) {
-							reconnectChannel(channel, channelPool);
-						}
-					}
-
-				}
-			} catch (Throwable t) {
-				logger.info("[run] pooledChannel check failed.", t);
-			}
-
-		}
-	}
 }
@@ -0,0 +1,259 @@
+package com.dianping.pigeon.remoting.common.pool;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.channel.ChannelFactory;
+import com.dianping.pigeon.util.AtomicPositiveInteger;
+
+/**
+ * channel pool backed by an immutable array snapshot, reads never lock and
+ * writers replace the whole array. selectChannel picks the avaliable channel
+ * with the least pending requests, and the pool grows from normalSize up to
+ * maxActive while every channel has more than maxPendingPerChannel requests
+ * in flight.
+ */
+public class LeastPendingChannelPool<C extends Channel> implements ChannelPool<C> {
+
+	private static final Logger logger = LoggerLoader.getLogger(LeastPendingChannelPool.class);
+
+	private static final Channel[] EMPTY_CHANNELS = new Channel[0];
+
+	private final AtomicReference<Channel[]> pooledChannels = new AtomicReference<Channel[]>(EMPTY_CHANNELS);
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final AtomicPositiveInteger selectedIndex = new AtomicPositiveInteger(0);
+
+	private final AtomicBoolean isClosed = new AtomicBoolean(true);
+
+	private final AtomicBoolean isGrowing = new AtomicBoolean(false);
+
+	private final PoolProperties properties;
+
+	private final ChannelFactory<C> channelFactory;
+
+	public LeastPendingChannelPool(PoolProperties properties, ChannelFactory<C> channelFactory)
+			throws ChannelPoolException {
+		this.properties = properties;
+		this.channelFactory = channelFactory;
+		if (isClosed.compareAndSet(true, false)) {
+			init(properties);
+		}
+	}
+
+	private void init(PoolProperties properties) throws ChannelPoolException {
+		if (properties.getMaxActive() < 1) {
+			logger.info(
+					"[init] maxActive is smaller than 1, setting maxActive to " + PoolProperties.DEFAULT_MAX_ACTIVE);
+			properties.setMaxActive(PoolProperties.DEFAULT_MAX_ACTIVE);
+		}
+		if (properties.getNormalSize() > properties.getMaxActive()) {
+			logger.info(
+					"[init] normalSize is larger than maxActive, setting normalSize to" + properties.getMaxActive());
+			properties.setNormalSize(properties.getMaxActive());
+		}
+		if (properties.getInitialSize() > properties.getNormalSize()) {
+			logger.info("[init] initialSize is larger than normalSize, setting initialSize to"
+					+ properties.getNormalSize());
+			properties.setInitialSize(properties.getNormalSize());
+		}
+		if (properties.getMaxPendingPerChannel() < 1) {
+			properties.setMaxPendingPerChannel(PoolProperties.DEFAULT_MAX_PENDING_PER_CHANNEL);
+		}
+
+		for (int i = 0; i < properties.getInitialSize(); i++) {
+			reserveAndCreate(properties.getInitialSize());
+		}
+
+		ChannelPoolChecker.register(this);
+	}
+
+	@Override
+	public int getSize() {
+		return pooledChannels.get().length;
+	}
+
+	@Override
+	public boolean isAvaliable() {
+		if (isClosed()) {
+			return false;
+		}
+
+		Channel[] channels = pooledChannels.get();
+		for (int index = 0; index < channels.length; index++) {
+			if (channels[index].isAvaliable()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public C selectChannel() throws ChannelPoolException {
+		if (isClosed()) {
+			throw new ChannelPoolException("Channel pool is closed.");
+		}
+
+		// create up to normalSize synchronously, same as the default pool
+		if (size.get() < properties.getNormalSize()) {
+			C channel = reserveAndCreate(properties.getNormalSize());
+			if (channel != null && channel.isAvaliable()) {
+				return channel;
+			}
+		}
+
+		Channel[] channels = pooledChannels.get();
+		int length = channels.length;
+		Channel selected = null;
+		int minPending = Integer.MAX_VALUE;
+
+		if (length > 0) {
+			int start = selectedIndex.getAndIncrement() % length;
+
+			for (int i = 0; i < length; i++) {
+				Channel channel = channels[(start + i) % length];
+
+				if (!channel.isAvaliable()) {
+					ChannelPoolChecker.reconnectChannel(channel, this);
+					continue;
+				}
+
+				int pending = channel.getPendingCount();
+				if (pending < minPending) {
+					minPending = pending;
+					selected = channel;
+					if (pending == 0) {
+						break;
+					}
+				}
+			}
+		}
+
+		if (selected == null) {
+			throw new ChannelPoolException("Unable to fetch a channel, none avaliable in use." + getChannelPoolDesc());
+		}
+
+		if (minPending >= properties.getMaxPendingPerChannel() && size.get() < properties.getMaxActive()) {
+			grow();
+		}
+
+		return (C) selected;
+	}
+
+	private C reserveAndCreate(int limit) {
+		if (size.incrementAndGet() > limit) {
+			size.decrementAndGet();
+			return null;
+		}
+		return createChannel();
+	}
+
+	protected C createChannel() {
+		C channel = null;
+
+		try {
+			channel = channelFactory.createChannel();
+		} finally {
+			if (channel != null) {
+				addChannel(channel);
+			} else {
+				size.decrementAndGet();
+			}
+		}
+
+		return channel;
+	}
+
+	private void addChannel(Channel channel) {
+		for (;;) {
+			Channel[] current = pooledChannels.get();
+			Channel[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = channel;
+
+			if (pooledChannels.compareAndSet(current, updated)) {
+				return;
+			}
+		}
+	}
+
+	private void grow() {
+		if (isGrowing.compareAndSet(false, true)) {
+			try {
+				ChannelPoolChecker.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							if (!isClosed()) {
+								C channel = reserveAndCreate(properties.getMaxActive());
+								if (channel != null) {
+									logger.info("[grow] channel pool grows to " + getSize() + ", "
+											+ getChannelPoolDesc());
+								}
+							}
+						} catch (Throwable t) {
+							logger.info("[grow] create channel failed.", t);
+						} finally {
+							isGrowing.set(false);
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				isGrowing.set(false);
+				logger.info("[grow] submit grow task failed.", e);
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<C> getChannels() {
+		return (List<C>) Arrays.asList(pooledChannels.get());
+	}
+
+	@Override
+	public PoolProperties getPoolProperties() {
+		return properties;
+	}
+
+	@Override
+	public void close() {
+		if (isClosed.compareAndSet(false, true)) {
+
+			Channel[] channels = pooledChannels.get();
+			for (int index = 0; index < channels.length; index++) {
+				if (channels[index].isAvaliable()) {
+					channels[index].disConnect();
+				}
+			}
+
+			ChannelPoolChecker.unregister(this);
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		return isClosed.get();
+	}
+
+	protected String getChannelPoolDesc() {
+		Channel[] channels = pooledChannels.get();
+		StringBuilder pending = new StringBuilder();
+
+		for (int index = 0; index < channels.length; index++) {
+			if (index > 0) {
+				pending.append(",");
+			}
+			pending.append(channels[index].getPendingCount());
+		}
+		return "ChannelPool[poolSize=" + channels.length + ", pending=[" + pending + "]]";
+	}
+}
@@ -16,6 +16,8 @@ public class PoolProperties {
 
     public static final int DEFAULT_TIME_BETWEEN_CHECKER_MILLIS = 2000;
 
+    public static final int DEFAULT_MAX_PENDING_PER_CHANNEL = 100;
+
     private int initialSize;
 
     private int normalSize;
@@ -26,6 +28,8 @@ public class PoolProperties {
 
     private int timeBetweenCheckerMillis;
 
+    private int maxPendingPerChannel = DEFAULT_MAX_PENDING_PER_CHANNEL;
+
 
     public PoolProperties() {
         this(DEFAULT_INITIAL_SIZE,
@@ -86,4 +90,12 @@ public class PoolProperties {
     public void setTimeBetweenCheckerMillis(int timeBetweenCheckerMillis) {
         this.timeBetweenCheckerMillis = timeBetweenCheckerMillis;
     }
+
+    public int getMaxPendingPerChannel() {
+        return maxPendingPerChannel;
+    }
+
+    public void setMaxPendingPerChannel(int maxPendingPerChannel) {
+        this.maxPendingPerChannel = maxPendingPerChannel;
+    }
 }
\ No newline at end of file
@@ -22,6 +22,8 @@ public final class Constants {
     public static final int MESSAGE_TYPE_SERVICE_EXCEPTION = 4;
     public static final int MESSAGE_TYPE_HEALTHCHECK = 5;
     public static final int MESSAGE_TYPE_SCANNER_HEART = 6;
+    public static final int MESSAGE_TYPE_STREAM = 7;
+    public static final int MESSAGE_TYPE_STREAM_CREDIT = 8;
 
     public static final int CALLTYPE_REPLY = 1;
     public static final int CALLTYPE_NOREPLY = 2;
@@ -39,11 +41,13 @@ public final class Constants {
     public static final String CALL_CALLBACK = "callback";
     public static final String CALL_ONEWAY = "oneway";
     public static final String CALL_FUTURE = "future";
+    public static final String CALL_STREAM = "stream";
 
     public static final String CLUSTER_FAILFAST = "failfast";
     public static final String CLUSTER_FAILOVER = "failover";
     public static final String CLUSTER_FAILSAFE = "failsafe";
     public static final String CLUSTER_FORKING = "forking";
+    public static final String CLUSTER_HEDGING = "hedging";
 
     public static final String SERIALIZE_JAVA = "java";
     public static final String SERIALIZE_HESSIAN = "hessian";
@@ -70,9 +74,11 @@ public final class Constants {
 
     public static final String REQUEST_CREATE_TIME = "requestCreateTime";
     public static final String REQUEST_TIMEOUT = "requestTimeout";
+    public static final String REQUEST_DEADLINE = "requestDeadline";
     public static final String REQUEST_FIRST_FLAG = "requestFirstFlag";
 
     public static final String ECHO_METHOD = "$echo";
+    public static final String BATCH_METHOD = "$batch";
 
     public static final int DEFAULT_FAILOVER_RETRY = 1;
     public static final boolean DEFAULT_FAILOVER_TIMEOUT_RETRY = false;
@@ -90,6 +96,10 @@ public final class Constants {
     public static final String REQUEST_KEY_TOKEN = "@s";
     public static final String REQUEST_KEY_TIMESTAMP = "@t";
     public static final String REQUEST_KEY_VERSION = "@v";
+    // values of REQUEST_KEY_VERSION, a session token signs the app and is verified once per connection
+    public static final int TOKEN_VERSION_REQUEST = 0;
+    public static final int TOKEN_VERSION_SESSION = 1;
+    public static final String TOKEN_SESSION_PREFIX = "@session#";
 
     public static final String HEART_TASK_SERVICE = "HeartbeatService/";
 
@@ -103,6 +113,7 @@ public final class Constants {
     public static final String KEY_HEARTBEAT_DEADTHRESHOLD = "pigeon.heartbeat.dead.threshold";
     public static final String KEY_HEARTBEAT_HEALTHTHRESHOLD = "pigeon.heartbeat.health.threshold";
     public static final String KEY_HEARTBEAT_AUTOPICKOFF = "pigeon.heartbeat.autopickoff";
+    public static final String KEY_HEARTBEAT_SKIPACTIVE = "pigeon.heartbeat.skipactive";
     public static final String KEY_SERVICE_NAMESPACE = "pigeon.service.namespace";
     public static final String KEY_INVOKER_MAXREQUESTS = "pigeon.invoker.maxrequests";
     public static final String KEY_PROVIDER_COREPOOLSIZE = "pigeon.provider.pool.coresize";
@@ -125,6 +136,8 @@ public final class Constants {
     public static final String KEY_CHANNEL_POOL_MAX_ACTIVE = "pigeon.channel.pool.max.active";
     public static final String KEY_CHANNEL_POOL_MAX_WAIT = "pigeon.channel.pool.max.wait";
     public static final String KEY_CHANNEL_POOL_TIME_BETWEEN_CHECKER_MILLIS = "pigeon.channel.pool.timeBetweenCheckerMillis";
+    public static final String KEY_CHANNEL_POOL_TYPE = "pigeon.channel.pool.type";
+    public static final String KEY_CHANNEL_POOL_MAX_PENDING = "pigeon.channel.pool.max.pending";
 
     public static final String KEY_NOTIFY_ENABLE = "pigeon.notify.enable";
     public static final String KEY_HEARTBEAT_ENABLE = "pigeon.heartbeat.enable";
@@ -147,6 +160,7 @@ public final class Constants {
     public static final int DEFAULT_HEARTBEAT_DEADTHRESHOLD = 5;
     public static final int DEFAULT_HEARTBEAT_HEALTHTHRESHOLD = 5;
     public static final boolean DEFAULT_HEARTBEAT_AUTOPICKOFF = true;
+    public static final boolean DEFAULT_HEARTBEAT_SKIPACTIVE = true;
     public static final int DEFAULT_NETTY_CONNECTTIMEOUT = 2000;
     public static final int DEFAULT_CHANNEL_WRITEBUFFHIGH = 35 * 1024 * 1024;
     public static final int DEFAULT_CHANNEL_WRITEBUFFLOW = 25 * 1024 * 1024;
@@ -159,12 +173,17 @@ public final class Constants {
     public static final int DEFAULT_CHANNEL_POOL_MAX_ACTIVE = 5;
     public static final int DEFAULT_CHANNEL_POOL_MAX_WAIT = 2000;
     public static final int DEFAULT_CHANNEL_POOL_TIME_BETWEEN_CHECKER_MILLIS = 2000;
+    public static final String DEFAULT_CHANNEL_POOL_TYPE = "default";
+    public static final int DEFAULT_CHANNEL_POOL_MAX_PENDING = 100;
     public static final String DEFAULT_PROCESS_TYPE = "threadpool";
     public static final boolean DEFAULT_NOTIFY_ENABLE = false;
     public static final boolean DEFAULT_TEST_ENABLE = true;
     public static final int DEFAULT_WEIGHT_STARTDELAY = 30000;
     public static final int DEFAULT_PROVIDER_HEARTBEAT_INTERNAL = 60000;
 
+    public static final String CHANNEL_POOL_DEFAULT = "default";
+    public static final String CHANNEL_POOL_LEASTPENDING = "leastpending";
+
     public static final String PROTOCOL_HTTP = "http";
     public static final String PROTOCOL_DEFAULT = "default";
     public static final String KEY_UNPUBLISH_WAITTIME = "pigeon.unpublish.waittime";
@@ -221,6 +240,8 @@ public final class Constants {
     public static final String CONTEXT_KEY_CLIENT_APP = "CLIENT_APP";
     public static final String CONTEXT_KEY_SOURCE_IP = "SOURCE_IP";
     public static final String CONTEXT_KEY_SOURCE_APP = "SOURCE_APP";
+    public static final String CONTEXT_KEY_STREAM_ID = "STREAM_ID";
+    public static final String CONTEXT_KEY_STREAM_CREDIT = "STREAM_CREDIT";
 
     public static final boolean isSupportedNewProtocal() {
         return ConfigManagerLoader.getConfigManager().getBooleanValue("pigeon.mns.host.support.new.protocol", true);
@@ -35,6 +35,13 @@ public class ContextUtils {
 		return context.get(key);
 	}
 
+	public static void removeLocalContext(Object key) {
+		Map context = localContext.get();
+		if (context != null) {
+			context.remove(key);
+		}
+	}
+
 	public static void clearLocalContext() {
 		Map context = localContext.get();
 		if (context != null) {
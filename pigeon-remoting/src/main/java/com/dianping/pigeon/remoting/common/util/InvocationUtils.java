@@ -15,6 +15,8 @@ import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.extension.ExtensionLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.monitor.metrics.MethodMeter;
+import com.dianping.pigeon.monitor.metrics.MetricsRegistry;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
@@ -122,6 +124,21 @@ public class InvocationUtils {
 		}
 		return name;
 	}
+
+	/**
+	 * the meter of the method, named like getRemoteCallFullName. the name is
+	 * only built the first time
+	 */
+	public static MethodMeter getMethodMeter(String type, String serviceName, String methodName,
+			Class<?>[] parameterTypes) {
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		MethodMeter meter = registry.getMeter(type, serviceName, methodName, parameterTypes);
+		if (meter == null) {
+			meter = registry.register(type, serviceName, methodName, parameterTypes,
+					getRemoteCallFullName(serviceName, methodName, parameterTypes));
+		}
+		return meter;
+	}
 	
 	public static InvocationRequest newRequest() {
 		try {
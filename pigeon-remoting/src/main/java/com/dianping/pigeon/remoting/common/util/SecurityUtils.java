@@ -1,5 +1,8 @@
 package com.dianping.pigeon.remoting.common.util;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -10,7 +13,17 @@ import com.dianping.pigeon.remoting.common.exception.SecurityException;
 public class SecurityUtils {
 
 	private static final String HMAC_SHA1_ALGORITHM = "HmacSHA1";
-	
+
+	private static final int MAX_THREAD_MACS = 16;
+
+	// Mac is not thread safe, each thread keeps the initialized instances per key
+	private static final ThreadLocal<Map<String, Mac>> threadMacs = new ThreadLocal<Map<String, Mac>>() {
+		@Override
+		protected Map<String, Mac> initialValue() {
+			return new HashMap<String, Mac>();
+		}
+	};
+
 	/**
 	 * hmac_sha1加密
 	 * 
@@ -21,22 +34,40 @@ public class SecurityUtils {
 	public static String encrypt(String data, String key) throws SecurityException {
 		String result;
 		try {
-			// get an hmac_sha1 key from the raw key bytes
-			SecretKeySpec signingKey = new SecretKeySpec(key.getBytes(), HMAC_SHA1_ALGORITHM);
-
-			// get an hmac_sha1 Mac instance and initialize with the signing key
-			Mac mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
-			mac.init(signingKey);
-
-			// compute the hmac on input data bytes
-			byte[] rawHmac = mac.doFinal(data.getBytes());
+			// compute the hmac on input data bytes, doFinal resets the mac
+			byte[] rawHmac = getMac(key).doFinal(data.getBytes());
 
 			// base64-encode the hmac
 			result = Base64.encodeBase64URLSafeString(rawHmac);
 		} catch (Exception e) {
+			threadMacs.get().remove(key);
 			throw new SecurityException("Failed to generate HMAC : " + e.getMessage());
 		}
 		return result;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * data signed by a session token. it names the invoker ip and the provider
+	 * address of the connection, so the token is refused on a connection
+	 * between any other hosts
+	 */
+	public static String getSessionTokenData(String app, int timestamp, String invokerIp, String providerAddress) {
+		return Constants.TOKEN_SESSION_PREFIX + app + "#" + timestamp + "#" + invokerIp + "#" + providerAddress;
+	}
+
+	private static Mac getMac(String key) throws Exception {
+		Map<String, Mac> macs = threadMacs.get();
+		Mac mac = macs.get(key);
+		if (mac == null) {
+			if (macs.size() >= MAX_THREAD_MACS) {
+				macs.clear();
+			}
+			// get an hmac_sha1 Mac instance and initialize with the signing key
+			mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
+			mac.init(new SecretKeySpec(key.getBytes(), HMAC_SHA1_ALGORITHM));
+			macs.put(key, mac);
+		}
+		return mac;
+	}
+
+}
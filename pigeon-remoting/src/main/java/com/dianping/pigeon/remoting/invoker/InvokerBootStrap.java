@@ -4,10 +4,12 @@
  */
 package com.dianping.pigeon.remoting.invoker;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.monitor.Monitor;
 import com.dianping.pigeon.monitor.MonitorLoader;
+import com.dianping.pigeon.monitor.metrics.MetricsReporter;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.invoker.process.InvokerProcessHandlerFactory;
 import com.dianping.pigeon.remoting.invoker.process.ResponseProcessorFactory;
@@ -41,6 +43,8 @@ public final class InvokerBootStrap {
 					if (monitor != null) {
 						monitor.init();
 					}
+					MetricsReporter.getInstance().start(
+							ConfigManagerLoader.getConfigManager().getIntValue("pigeon.monitor.metrics.interval", 60000));
 					isStartup = true;
 					logger.warn("pigeon client[version:" + VersionUtils.VERSION + "] has been started");
 				}
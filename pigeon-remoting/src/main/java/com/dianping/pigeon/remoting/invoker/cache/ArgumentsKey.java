@@ -0,0 +1,60 @@
+package com.dianping.pigeon.remoting.invoker.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+
+/**
+ * the arguments of a call as hessian bytes, equal arguments give equal keys
+ * whatever their classes implement for equals and hashCode.
+ */
+public final class ArgumentsKey {
+
+	private static final Logger logger = LoggerLoader.getLogger(ArgumentsKey.class);
+
+	private static final Serializer serializer = SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_HESSIAN);
+
+	private final byte[] bytes;
+
+	private final int hash;
+
+	ArgumentsKey(byte[] bytes) {
+		this.bytes = bytes;
+		this.hash = Arrays.hashCode(bytes);
+	}
+
+	/**
+	 * null when the arguments can not be serialized
+	 */
+	public static ArgumentsKey of(Object[] args) {
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream(64);
+			serializer.serializeRequest(os, args == null ? new Object[0] : args);
+			return new ArgumentsKey(os.toByteArray());
+		} catch (Throwable t) {
+			logger.warn("can not build arguments key:" + t.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ArgumentsKey)) {
+			return false;
+		}
+		ArgumentsKey other = (ArgumentsKey) obj;
+		return hash == other.hash && Arrays.equals(bytes, other.bytes);
+	}
+}
@@ -0,0 +1,67 @@
+package com.dianping.pigeon.remoting.invoker.cache;
+
+/**
+ * count-min sketch of 4 rows with counters capped at 15, the popularity
+ * estimate behind tiny lfu admission. all counters are halved once the number
+ * of increments reaches ten times the cache size, so old popularity fades.
+ * not thread safe, the owner serializes access.
+ */
+final class FrequencySketch {
+
+	private static final int MAX_COUNT = 15;
+
+	private static final int[] SEEDS = { 0x97cb3127, 0xb1a6f5fd, 0x8b8ac5a1, 0xe6546b64 };
+
+	private final byte[] table;
+
+	private final int mask;
+
+	private final int sampleSize;
+
+	private int additions;
+
+	FrequencySketch(int maximumSize) {
+		int width = 16;
+		while (width < maximumSize && width < (1 << 24)) {
+			width <<= 1;
+		}
+		this.table = new byte[width * SEEDS.length];
+		this.mask = width - 1;
+		this.sampleSize = Math.max(10 * maximumSize, 16);
+	}
+
+	private int index(int hash, int row) {
+		int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+		h ^= h >>> 16;
+		return row * (mask + 1) + (h & mask);
+	}
+
+	int frequency(int hash) {
+		int frequency = MAX_COUNT;
+		for (int row = 0; row < SEEDS.length; row++) {
+			frequency = Math.min(frequency, table[index(hash, row)]);
+		}
+		return frequency;
+	}
+
+	void increment(int hash) {
+		boolean added = false;
+		for (int row = 0; row < SEEDS.length; row++) {
+			int i = index(hash, row);
+			if (table[i] < MAX_COUNT) {
+				table[i]++;
+				added = true;
+			}
+		}
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (byte) (table[i] >>> 1);
+		}
+		additions >>>= 1;
+	}
+}
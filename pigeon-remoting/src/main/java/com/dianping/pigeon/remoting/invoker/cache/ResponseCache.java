@@ -0,0 +1,293 @@
+package com.dianping.pigeon.remoting.invoker.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * results of one idempotent method keyed by the hessian bytes of the
+ * arguments. entries expire ttl millis after they are written, the size is
+ * bounded with w-tinylfu: new entries go to a small lru window, an entry
+ * leaving the window only replaces the lru victim of the main segment when
+ * the frequency sketch says it is more popular. the main segment is a
+ * segmented lru, entries hit in probation are promoted to protected.
+ * <p>
+ * values are kept serialized, on heap or in direct buffers, so every hit
+ * returns a private copy and callers can not corrupt the cached result.
+ */
+public final class ResponseCache {
+
+	private static final Logger logger = LoggerLoader.getLogger(ResponseCache.class);
+
+	/**
+	 * returned by {@link #get(ArgumentsKey)} when nothing is cached, null is a
+	 * valid cached result
+	 */
+	public static final Object MISS = new Object();
+
+	private static final int WINDOW = 0;
+
+	private static final int PROBATION = 1;
+
+	private static final int PROTECTED = 2;
+
+	private static final Serializer serializer = SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_HESSIAN);
+
+	private final String name;
+
+	private final int maximumSize;
+
+	private final long ttl;
+
+	private final boolean offHeap;
+
+	private final int windowMax;
+
+	private final int mainMax;
+
+	private final int protectedMax;
+
+	private final ConcurrentHashMap<ArgumentsKey, Node> data;
+
+	// access ordered, the eldest entry is the lru victim. guarded by lock
+	private final LinkedHashMap<ArgumentsKey, Node> window = newSegment();
+
+	private final LinkedHashMap<ArgumentsKey, Node> probation = newSegment();
+
+	private final LinkedHashMap<ArgumentsKey, Node> protectedSegment = newSegment();
+
+	private final FrequencySketch sketch;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	public ResponseCache(String name, int maximumSize, long ttl, boolean offHeap) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("cache size must be positive:" + maximumSize);
+		}
+		this.name = name;
+		this.maximumSize = maximumSize;
+		this.ttl = ttl;
+		this.offHeap = offHeap;
+		this.windowMax = Math.max(1, maximumSize / 100);
+		this.mainMax = maximumSize - windowMax;
+		this.protectedMax = mainMax * 4 / 5;
+		this.data = new ConcurrentHashMap<ArgumentsKey, Node>(Math.min(maximumSize, 1024));
+		this.sketch = new FrequencySketch(maximumSize);
+	}
+
+	public Object get(ArgumentsKey key) {
+		Node node = data.get(key);
+		if (node == null) {
+			return MISS;
+		}
+		if (node.expireTime <= TimeUtils.currentTimeMillis()) {
+			lock.lock();
+			try {
+				remove(node);
+			} finally {
+				lock.unlock();
+			}
+			return MISS;
+		}
+		Object value = node.value;
+		// reordering is best effort, a contended read does not wait for it
+		if (lock.tryLock()) {
+			try {
+				sketch.increment(key.hashCode());
+				if (data.get(key) == node) {
+					touch(node);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		try {
+			return decode(value);
+		} catch (Throwable t) {
+			logger.warn("can not read cached result of " + name + ":" + t.getMessage());
+			return MISS;
+		}
+	}
+
+	public void put(ArgumentsKey key, Object result) {
+		Object value;
+		try {
+			value = encode(result);
+		} catch (Throwable t) {
+			logger.warn("can not cache result of " + name + ":" + t.getMessage());
+			return;
+		}
+		long expireTime = TimeUtils.currentTimeMillis() + ttl;
+		lock.lock();
+		try {
+			sketch.increment(key.hashCode());
+			Node node = data.get(key);
+			if (node != null) {
+				node.value = value;
+				node.expireTime = expireTime;
+				touch(node);
+				return;
+			}
+			node = new Node(key, value, expireTime);
+			data.put(key, node);
+			window.put(key, node);
+			if (window.size() > windowMax) {
+				admit(pollEldest(window));
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void touch(Node node) {
+		if (node.queue == PROBATION) {
+			probation.remove(node.key);
+			node.queue = PROTECTED;
+			protectedSegment.put(node.key, node);
+			if (protectedSegment.size() > protectedMax) {
+				Node demoted = pollEldest(protectedSegment);
+				demoted.queue = PROBATION;
+				probation.put(demoted.key, demoted);
+			}
+		} else {
+			segment(node).get(node.key);
+		}
+	}
+
+	private void admit(Node candidate) {
+		if (probation.size() + protectedSegment.size() < mainMax) {
+			candidate.queue = PROBATION;
+			probation.put(candidate.key, candidate);
+			return;
+		}
+		Node victim = probation.isEmpty() ? eldest(protectedSegment) : eldest(probation);
+		if (victim != null && victim.expireTime > TimeUtils.currentTimeMillis()
+				&& sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+			data.remove(candidate.key, candidate);
+			return;
+		}
+		if (victim != null) {
+			remove(victim);
+		}
+		candidate.queue = PROBATION;
+		probation.put(candidate.key, candidate);
+	}
+
+	private void remove(Node node) {
+		if (data.remove(node.key, node)) {
+			segment(node).remove(node.key);
+		}
+	}
+
+	private static LinkedHashMap<ArgumentsKey, Node> newSegment() {
+		return new LinkedHashMap<ArgumentsKey, Node>(16, 0.75f, true);
+	}
+
+	private LinkedHashMap<ArgumentsKey, Node> segment(Node node) {
+		return node.queue == WINDOW ? window : (node.queue == PROBATION ? probation : protectedSegment);
+	}
+
+	private static Node eldest(LinkedHashMap<ArgumentsKey, Node> segment) {
+		Iterator<Node> it = segment.values().iterator();
+		return it.hasNext() ? it.next() : null;
+	}
+
+	private static Node pollEldest(LinkedHashMap<ArgumentsKey, Node> segment) {
+		Iterator<Node> it = segment.values().iterator();
+		Node node = it.next();
+		it.remove();
+		return node;
+	}
+
+	private Object encode(Object result) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(256);
+		serializer.serializeResponse(os, result);
+		byte[] bytes = os.toByteArray();
+		if (!offHeap) {
+			return bytes;
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes);
+		buffer.flip();
+		return buffer;
+	}
+
+	private Object decode(Object value) {
+		byte[] bytes;
+		if (value instanceof ByteBuffer) {
+			ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+			bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+		} else {
+			bytes = (byte[]) value;
+		}
+		return serializer.deserializeResponse(new ByteArrayInputStream(bytes));
+	}
+
+	public void clear() {
+		lock.lock();
+		try {
+			data.clear();
+			window.clear();
+			probation.clear();
+			protectedSegment.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		return data.size();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	@Override
+	public String toString() {
+		return "ResponseCache[name=" + name + ", size=" + data.size() + ", maximumSize=" + maximumSize + ", ttl="
+				+ ttl + ", offHeap=" + offHeap + "]";
+	}
+
+	private static final class Node {
+
+		final ArgumentsKey key;
+
+		// byte[] on heap, direct ByteBuffer off heap
+		volatile Object value;
+
+		volatile long expireTime;
+
+		// guarded by lock
+		int queue = WINDOW;
+
+		Node(ArgumentsKey key, Object value, long expireTime) {
+			this.key = key;
+			this.value = value;
+			this.expireTime = expireTime;
+		}
+	}
+}
@@ -32,6 +32,10 @@ public class ClientConfig {
 
     private int timeBetweenCheckerMillis;
 
+    private String channelPoolType;
+
+    private int maxPendingPerChannel;
+
     private boolean heartbeated;
 
     private int heartbeatTimeout;
@@ -44,6 +48,8 @@ public class ClientConfig {
 
     private boolean isHeartbeatAutoPickOff;
 
+    private boolean isHeartbeatSkipActive;
+
     public ClientConfig(ConfigManager configManager) {
         connectTimeout = configManager.getIntValue(Constants.KEY_NETTY_CONNECTTIMEOUT,
                 Constants.DEFAULT_NETTY_CONNECTTIMEOUT);
@@ -75,6 +81,12 @@ public class ClientConfig {
         timeBetweenCheckerMillis = configManager.getIntValue(Constants.KEY_CHANNEL_POOL_TIME_BETWEEN_CHECKER_MILLIS,
                 Constants.DEFAULT_CHANNEL_POOL_TIME_BETWEEN_CHECKER_MILLIS);
 
+        channelPoolType = configManager.getStringValue(Constants.KEY_CHANNEL_POOL_TYPE,
+                Constants.DEFAULT_CHANNEL_POOL_TYPE);
+
+        maxPendingPerChannel = configManager.getIntValue(Constants.KEY_CHANNEL_POOL_MAX_PENDING,
+                Constants.DEFAULT_CHANNEL_POOL_MAX_PENDING);
+
         heartbeated = configManager.getBooleanValue(Constants.KEY_INVOKER_HEARTBEAT_ENABLE,
                 Constants.DEFAULT_INVOKER_HEARTBEAT_ENABLE);
 
@@ -93,6 +105,9 @@ public class ClientConfig {
         isHeartbeatAutoPickOff = configManager.getBooleanValue(Constants.KEY_HEARTBEAT_AUTOPICKOFF,
                 Constants.DEFAULT_HEARTBEAT_AUTOPICKOFF);
 
+        isHeartbeatSkipActive = configManager.getBooleanValue(Constants.KEY_HEARTBEAT_SKIPACTIVE,
+                Constants.DEFAULT_HEARTBEAT_SKIPACTIVE);
+
         configManager.registerConfigChangeListener(new InnerConfigChangeListener());
     }
 
@@ -184,6 +199,22 @@ public class ClientConfig {
         this.timeBetweenCheckerMillis = timeBetweenCheckerMillis;
     }
 
+    public String getChannelPoolType() {
+        return channelPoolType;
+    }
+
+    public void setChannelPoolType(String channelPoolType) {
+        this.channelPoolType = channelPoolType;
+    }
+
+    public int getMaxPendingPerChannel() {
+        return maxPendingPerChannel;
+    }
+
+    public void setMaxPendingPerChannel(int maxPendingPerChannel) {
+        this.maxPendingPerChannel = maxPendingPerChannel;
+    }
+
     public boolean isHeartbeated() {
         return heartbeated;
     }
@@ -232,6 +263,14 @@ public class ClientConfig {
         this.isHeartbeatAutoPickOff = isHeartbeatAutoPickOff;
     }
 
+    public boolean isHeartbeatSkipActive() {
+        return isHeartbeatSkipActive;
+    }
+
+    public void setIsHeartbeatSkipActive(boolean isHeartbeatSkipActive) {
+        this.isHeartbeatSkipActive = isHeartbeatSkipActive;
+    }
+
     private class InnerConfigChangeListener implements ConfigChangeListener {
 
         @Override
@@ -256,6 +295,11 @@ public class ClientConfig {
                     isHeartbeatAutoPickOff = Boolean.valueOf(value);
                 } catch (RuntimeException e) {
                 }
+            } else if (key.endsWith(Constants.KEY_HEARTBEAT_SKIPACTIVE)) {
+                try {
+                    isHeartbeatSkipActive = Boolean.valueOf(value);
+                } catch (RuntimeException e) {
+                }
             }
         }
 
@@ -1,7 +1,16 @@
 package com.dianping.pigeon.remoting.invoker.client;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
@@ -17,8 +26,10 @@ import com.dianping.pigeon.remoting.common.domain.generic.GenericRequest;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.InvocationUtils;
 import com.dianping.pigeon.remoting.invoker.Client;
-import com.dianping.pigeon.remoting.invoker.concurrent.CallbackFuture;
+import com.dianping.pigeon.remoting.invoker.concurrent.Callback;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
 import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.threadpool.NamedThreadFactory;
 import com.dianping.pigeon.util.TimeUtils;
 
 /**
@@ -36,6 +47,14 @@ public class HeartbeatTask implements Runnable {
     private final Client client;
     private final ClientConfig clientConfig;
     private final HeartbeatStats heartbeatStats = new HeartbeatStats();
+    private final AtomicReference<HeartbeatRound> currentRound = new AtomicReference<HeartbeatRound>();
+
+    private static final ScheduledThreadPoolExecutor timeoutTimer = new ScheduledThreadPoolExecutor(
+            1, new NamedThreadFactory("Pigeon-Client-HeartBeat-Timeout", true));
+
+    static {
+        timeoutTimer.setRemoveOnCancelPolicy(true);
+    }
 
     public HeartbeatTask(ClientConfig clientConfig, Client client) {
         this.clientConfig = clientConfig;
@@ -44,18 +63,21 @@ public class HeartbeatTask implements Runnable {
 
     @Override
     public void run() {
-        if (isSend(client.getAddress())) {
-            boolean allFailed = heartbeatChannel();
-            notifyClientStateChanged(allFailed);
+        if (isSend(client.getAddress()) && currentRound.get() == null) {
+            heartbeatChannel();
         }
     }
 
-    private boolean heartbeatChannel() {
+    private void heartbeatChannel() {
         List<Channel> channels = this.client.getChannels();
+        HeartbeatRound round = new HeartbeatRound();
 
-        boolean allFailed = true;
+        if (!currentRound.compareAndSet(null, round)) {
+            return;
+        }
 
         if (channels != null) {
+            long now = TimeUtils.currentTimeMillis();
 
             for (int index = 0; index < channels.size(); index++) {
 
@@ -63,10 +85,11 @@ public class HeartbeatTask implements Runnable {
                 if (channel != null) {
                     try {
                         if (channel.isAvaliable()) {
-                            boolean isSuccess = sendHeartBeat(client, channel);
-
-                            if (isSuccess) {
-                                allFailed = false;
+                            if (clientConfig.isHeartbeatSkipActive()
+                                    && now - channel.getLastResponseMillis() < clientConfig.getHeartbeatInterval()) {
+                                round.skip();
+                            } else {
+                                sendHeartBeat(client, channel, round);
                             }
                         }
 
@@ -77,7 +100,7 @@ public class HeartbeatTask implements Runnable {
             }
 
         }
-        return allFailed;
+        round.seal();
     }
 
     private void notifyClientStateChanged(boolean allFailed) {
@@ -108,35 +131,22 @@ public class HeartbeatTask implements Runnable {
     }
 
 
-    public boolean sendHeartBeat(Client client, Channel channel) {
-        boolean isSuccess = true;
+    private void sendHeartBeat(Client client, Channel channel, HeartbeatRound round) {
         String address = channel.getRemoteAddressString();
 
         InvocationRequest request = createHeartRequest(address);
+        HeartbeatCallback callback = new HeartbeatCallback(round, address);
 
+        round.addPending(request.getSequence());
         try {
-            InvocationResponse response = null;
-            CallbackFuture future = new CallbackFuture();
-
-            InvokerUtils.sendRequest(client, channel, request, future);
-
-            response = future.getResponse(clientConfig.getHeartbeatTimeout());
-
-            if (response != null && !(response.getReturn() instanceof Exception)) {
-                isSuccess = true;
-            } else {
-                logger.info("[heartbeat] send heartbeat to server[" + address + "] failed.");
-                isSuccess = false;
-            }
+            InvokerUtils.sendRequest(client, channel, request, callback);
         } catch (Throwable e) {
             logger.info("[heartbeat] send heartbeat to server[" + address + "] failed", e);
-            isSuccess = false;
+            round.complete(request.getSequence(), false);
         }
-
-        return isSuccess;
     }
 
-    private boolean isSend(String address) {
+    protected boolean isSend(String address) {
         boolean supported = true;
         byte heartBeatSupport = RegistryManager.getInstance().getServerHeartBeatSupportFromCache(address);
 
@@ -156,7 +166,7 @@ public class HeartbeatTask implements Runnable {
         return supported;
     }
 
-    private boolean supported(String address) {
+    protected boolean supported(String address) {
         boolean supported = false;
         try {
             supported = RegistryManager.getInstance().isSupportNewProtocol(address);
@@ -198,6 +208,127 @@ public class HeartbeatTask implements Runnable {
         return heartBeatSeq.getAndIncrement();
     }
 
+    /**
+     * one pass over all channels of the client, completed either when every
+     * heartbeat has been answered or when the heartbeat timeout fires.
+     */
+    class HeartbeatRound implements Runnable {
+
+        private final Set<Long> pendingSequences = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+        // starts at one, the extra count is released by seal()
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+
+        private volatile boolean success = false;
+
+        private volatile ScheduledFuture<?> timeoutFuture;
+
+        public void addPending(long sequence) {
+            pendingSequences.add(sequence);
+            pending.incrementAndGet();
+        }
+
+        public void skip() {
+            success = true;
+        }
+
+        public void complete(long sequence, boolean isSuccess) {
+            if (pendingSequences.remove(sequence)) {
+                if (isSuccess) {
+                    success = true;
+                }
+                if (pending.decrementAndGet() == 0) {
+                    finish();
+                }
+            }
+        }
+
+        public void seal() {
+            if (pending.decrementAndGet() == 0) {
+                finish();
+            } else {
+                timeoutFuture = timeoutTimer.schedule(this, clientConfig.getHeartbeatTimeout(), TimeUnit.MILLISECONDS);
+                if (finished.get()) {
+                    timeoutFuture.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (Long sequence : pendingSequences) {
+                ServiceInvocationRepository.getInstance().remove(sequence);
+                logger.info("[heartbeat] send heartbeat to server[" + client.getAddress() + "] timeout.");
+            }
+            pendingSequences.clear();
+            finish();
+        }
+
+        private void finish() {
+            if (finished.compareAndSet(false, true)) {
+                ScheduledFuture<?> future = timeoutFuture;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                currentRound.compareAndSet(this, null);
+                notifyClientStateChanged(!success);
+            }
+        }
+    }
+
+    class HeartbeatCallback implements Callback {
+
+        private final HeartbeatRound round;
+
+        private final String address;
+
+        private InvocationRequest request;
+
+        private InvocationResponse response;
+
+        public HeartbeatCallback(HeartbeatRound round, String address) {
+            this.round = round;
+            this.address = address;
+        }
+
+        @Override
+        public void callback(InvocationResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void run() {
+            boolean isSuccess = response != null && !(response.getReturn() instanceof Exception);
+
+            if (!isSuccess) {
+                logger.info("[heartbeat] send heartbeat to server[" + address + "] failed.");
+            }
+            round.complete(request.getSequence(), isSuccess);
+        }
+
+        @Override
+        public void setRequest(InvocationRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+
+        // always the client of the task
+        @Override
+        public void setClient(Client client) {
+        }
+
+        @Override
+        public Client getClient() {
+            return HeartbeatTask.this.client;
+        }
+    }
+
 
     class HeartbeatStats {
 
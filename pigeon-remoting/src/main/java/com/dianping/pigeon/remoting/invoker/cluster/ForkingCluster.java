@@ -69,8 +69,10 @@ public class ForkingCluster implements Cluster {
 		for (final Client client : selectedClients) {
 			executor.execute(new Runnable() {
 				public void run() {
-					InvokerContext ctxt = new DefaultInvokerContext(invokerConfig, invocationContext.getMethodName(),
-							invocationContext.getParameterTypes(), invocationContext.getArguments());
+					DefaultInvokerContext ctxt = new DefaultInvokerContext(invokerConfig,
+							invocationContext.getMethodName(), invocationContext.getParameterTypes(),
+							invocationContext.getArguments());
+					ctxt.setMethodDescriptor(invocationContext.getMethodDescriptor());
 					ctxt.setClient(client);
 					ctxt.setRequest(null);
 					ctxt.setRequest(InvokerUtils.createRemoteCallRequest(ctxt, invokerConfig));
@@ -0,0 +1,356 @@
+package com.dianping.pigeon.remoting.invoker.cluster;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.ClientManager;
+import com.dianping.pigeon.remoting.invoker.concurrent.CallbackFuture;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.domain.DefaultInvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * sends a sync call to one provider first, if no response arrives within the
+ * method's observed latency percentile (p95 by default) a hedge request is
+ * sent to another provider on the caller thread. the first reply wins and the
+ * other request is dropped from the invocation repository. hedges are limited
+ * to a percentage of the method's requests so the extra load stays small.
+ * callback, future and oneway calls are sent once like failfast.
+ */
+public class HedgingCluster implements Cluster {
+
+	private static final Logger logger = LoggerLoader.getLogger(HedgingCluster.class);
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+	private static final ServiceInvocationRepository invocationRepository = ServiceInvocationRepository
+			.getInstance();
+
+	private static final String KEY_HEDGING_PERCENTILE = "pigeon.invoker.hedging.percentile";
+	private static final String KEY_HEDGING_DELAY_MIN = "pigeon.invoker.hedging.delay.min";
+	private static final String KEY_HEDGING_SAMPLES_MIN = "pigeon.invoker.hedging.samples.min";
+	private static final String KEY_HEDGING_RATIO_MAX = "pigeon.invoker.hedging.ratio.max";
+
+	private static final long REFRESH_INTERVAL_MILLIS = 1000;
+	private static final long DECAY_SAMPLES = 10000;
+
+	private final ConcurrentHashMap<String, MethodStats> methodStats = new ConcurrentHashMap<String, MethodStats>();
+
+	public HedgingCluster() {
+		configManager.getIntValue(KEY_HEDGING_PERCENTILE, 95);
+		configManager.getIntValue(KEY_HEDGING_DELAY_MIN, 5);
+		configManager.getIntValue(KEY_HEDGING_SAMPLES_MIN, 100);
+		configManager.getIntValue(KEY_HEDGING_RATIO_MAX, 5);
+	}
+
+	@Override
+	public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext)
+			throws Throwable {
+		InvokerConfig<?> invokerConfig = invocationContext.getInvokerConfig();
+		InvocationRequest request = InvokerUtils.createRemoteCallRequest(invocationContext, invokerConfig);
+
+		Client remoteClient = getClient(invokerConfig, request, null);
+		invocationContext.setClient(remoteClient);
+
+		String callType = InvokerUtils.getCallType(invocationContext);
+		if (!Constants.CALL_SYNC.equalsIgnoreCase(callType)
+				|| !(invocationContext instanceof DefaultInvokerContext)) {
+			return handler.handle(invocationContext);
+		}
+
+		DefaultInvokerContext context = (DefaultInvokerContext) invocationContext;
+		MethodStats stats = getMethodStats(invokerConfig.getUrl(), invocationContext.getMethodName());
+		stats.requests.incrementAndGet();
+		try {
+			context.setCallbackFuture(new HedgedCall(handler, context, stats).newAttempt(false));
+			try {
+				return handler.handle(context);
+			} catch (NetworkException e) {
+				remoteClient = getClient(invokerConfig, request, null);
+				context.setClient(remoteClient);
+				context.setCallbackFuture(new HedgedCall(handler, context, stats).newAttempt(false));
+				return handler.handle(context);
+			}
+		} finally {
+			context.setCallbackFuture(null);
+		}
+	}
+
+	/**
+	 * the provider for a request, the excluded clients are the ones tried
+	 */
+	protected Client getClient(InvokerConfig<?> invokerConfig, InvocationRequest request,
+			List<Client> excludeClients) {
+		return ClientManager.getInstance().getClient(invokerConfig, request, excludeClients);
+	}
+
+	private MethodStats getMethodStats(String url, String methodName) {
+		String key = url + "#" + methodName;
+		MethodStats stats = methodStats.get(key);
+		if (stats == null) {
+			stats = new MethodStats();
+			MethodStats old = methodStats.putIfAbsent(key, stats);
+			if (old != null) {
+				stats = old;
+			}
+		}
+		return stats;
+	}
+
+	@Override
+	public String getName() {
+		return Constants.CLUSTER_HEDGING;
+	}
+
+	static class MethodStats {
+
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final AtomicLong requests = new AtomicLong();
+		final AtomicLong hedges = new AtomicLong();
+		private final AtomicBoolean refreshing = new AtomicBoolean(false);
+		private volatile long hedgeDelay = -1;
+		private volatile long nextRefreshTime = 0;
+
+		/**
+		 * -1 while there are too few samples to trust the percentile
+		 */
+		long getHedgeDelay() {
+			long now = TimeUtils.currentTimeMillis();
+			if (now >= nextRefreshTime && refreshing.compareAndSet(false, true)) {
+				try {
+					refresh();
+				} finally {
+					nextRefreshTime = now + REFRESH_INTERVAL_MILLIS;
+					refreshing.set(false);
+				}
+			}
+			return hedgeDelay;
+		}
+
+		private void refresh() {
+			long count = histogram.getCount();
+			if (count < configManager.getIntValue(KEY_HEDGING_SAMPLES_MIN, 100)) {
+				hedgeDelay = -1;
+				return;
+			}
+			long delay = histogram.getPercentile(configManager.getIntValue(KEY_HEDGING_PERCENTILE, 95));
+			hedgeDelay = Math.max(delay, configManager.getIntValue(KEY_HEDGING_DELAY_MIN, 5));
+			if (count > DECAY_SAMPLES) {
+				histogram.decay();
+				requests.set(requests.get() >> 1);
+				hedges.set(hedges.get() >> 1);
+			}
+		}
+
+		boolean tryHedge() {
+			long limit = requests.get() * configManager.getIntValue(KEY_HEDGING_RATIO_MAX, 5) / 100;
+			if (hedges.incrementAndGet() > limit) {
+				hedges.decrementAndGet();
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * one sync call and its hedge, both attempts share the lock so the
+	 * first reply can be handed to whichever thread is waiting
+	 */
+	class HedgedCall {
+
+		private final ServiceInvocationHandler handler;
+		private final DefaultInvokerContext invocationContext;
+		private final MethodStats stats;
+		private final long hedgeDelay;
+		private final Attempt[] attempts = new Attempt[2];
+		private final Lock lock = new ReentrantLock();
+		private final Condition condition = lock.newCondition();
+		private int attemptCount;
+		private int outstanding;
+		private InvocationResponse response;
+		private InvocationResponse failure;
+		private long deadline;
+
+		HedgedCall(ServiceInvocationHandler handler, DefaultInvokerContext invocationContext, MethodStats stats) {
+			this.handler = handler;
+			this.invocationContext = invocationContext;
+			this.stats = stats;
+			this.hedgeDelay = stats.getHedgeDelay();
+		}
+
+		Attempt newAttempt(boolean hedge) {
+			Attempt attempt = new Attempt(this, hedge);
+			lock.lock();
+			try {
+				attempts[attemptCount++] = attempt;
+				outstanding++;
+			} finally {
+				lock.unlock();
+			}
+			return attempt;
+		}
+
+		void complete(Attempt attempt, InvocationResponse resp) {
+			lock.lock();
+			try {
+				if (response != null) {
+					return;
+				}
+				outstanding--;
+				if (resp.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION && outstanding > 0) {
+					// let the other provider answer before giving up
+					failure = resp;
+					return;
+				}
+				response = resp;
+				// dropped before the caller wakes up, so no late reply finds it
+				for (int i = 0; i < attemptCount; i++) {
+					if (attempts[i] != attempt) {
+						attempts[i].cancelRequest();
+					}
+				}
+				condition.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void abandon(Attempt attempt) {
+			lock.lock();
+			try {
+				outstanding--;
+				if (response == null && outstanding == 0 && failure != null) {
+					response = failure;
+					condition.signalAll();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		InvocationResponse await(Attempt attempt, long timeoutMillis) throws InterruptedException {
+			if (!attempt.hedge) {
+				deadline = attempt.getRequestCreateTime() + timeoutMillis;
+				if (hedgeDelay > 0 && awaitUntil(attempt.getRequestCreateTime() + hedgeDelay) == null
+						&& TimeUtils.currentTimeMillis() < deadline && stats.tryHedge()) {
+					hedge();
+				}
+			}
+			return awaitUntil(deadline);
+		}
+
+		private InvocationResponse awaitUntil(long until) throws InterruptedException {
+			lock.lock();
+			try {
+				long left = until - TimeUtils.currentTimeMillis();
+				while (response == null && left > 0) {
+					condition.await(left, TimeUnit.MILLISECONDS);
+					left = until - TimeUtils.currentTimeMillis();
+				}
+				return response;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void hedge() {
+			InvokerConfig<?> invokerConfig = invocationContext.getInvokerConfig();
+			Attempt attempt = null;
+			try {
+				Client client = getClient(invokerConfig, invocationContext.getRequest(),
+						Arrays.asList(invocationContext.getClient()));
+
+				DefaultInvokerContext ctxt = new DefaultInvokerContext(invokerConfig,
+						invocationContext.getMethodName(), invocationContext.getParameterTypes(),
+						invocationContext.getArguments());
+				ctxt.setMethodDescriptor(invocationContext.getMethodDescriptor());
+				Map<String, Serializable> contextValues = invocationContext.getContextValues();
+				if (contextValues != null) {
+					for (Map.Entry<String, Serializable> entry : contextValues.entrySet()) {
+						ctxt.putContextValue(entry.getKey(), entry.getValue());
+					}
+				}
+				ctxt.setClient(client);
+				ctxt.setRequest(InvokerUtils.createRemoteCallRequest(ctxt, invokerConfig));
+				attempt = newAttempt(true);
+				ctxt.setCallbackFuture(attempt);
+
+				// returns once either request has been answered
+				handler.handle(ctxt);
+			} catch (Throwable t) {
+				if (attempt != null && !attempt.isDone()) {
+					abandon(attempt);
+				}
+				if (logger.isDebugEnabled()) {
+					logger.debug("hedge request of method[" + invocationContext.getMethodName() + "] on service["
+							+ invokerConfig.getUrl() + "] failed", t);
+				}
+			}
+		}
+	}
+
+	static class Attempt extends CallbackFuture {
+
+		private final HedgedCall call;
+		private final boolean hedge;
+
+		Attempt(HedgedCall call, boolean hedge) {
+			this.call = call;
+			this.hedge = hedge;
+		}
+
+		long getRequestCreateTime() {
+			return request.getCreateMillisTime();
+		}
+
+		@Override
+		public void callback(InvocationResponse response) {
+			super.callback(response);
+			if (response.getMessageType() != Constants.MESSAGE_TYPE_EXCEPTION) {
+				call.stats.histogram.record(TimeUtils.currentTimeMillis() - request.getCreateMillisTime());
+			}
+			call.complete(this, response);
+		}
+
+		@Override
+		protected InvocationResponse waitResponse(long timeoutMillis) throws InterruptedException {
+			InvocationResponse winner = call.await(this, timeoutMillis);
+			if (winner == null) {
+				ServiceStatisticsHolder.flowOut(request, client.getAddress());
+				throw InvocationUtils.newTimeoutException(
+						"request timeout, current time:" + TimeUtils.currentTimeMillis() + "\r\nrequest:" + request);
+			}
+			this.response = winner;
+			return winner;
+		}
+
+		void cancelRequest() {
+			if (request != null && invocationRepository.get(request.getSequence()) != null) {
+				invocationRepository.remove(request.getSequence());
+				ServiceStatisticsHolder.flowOut(request, client.getAddress());
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.dianping.pigeon.remoting.invoker.cluster;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * bucketed latency histogram, recording is a binary search plus one atomic
+ * increment. decay() halves all buckets so the percentiles follow recent
+ * traffic.
+ */
+public class LatencyHistogram {
+
+	private static final long[] BOUNDS = { 1, 2, 3, 4, 5, 6, 8, 10, 12, 15, 20, 25, 30, 40, 50, 60, 80, 100, 120,
+			150, 200, 250, 300, 400, 500, 600, 800, 1000, 1200, 1500, 2000, 3000, 5000, 10000 };
+
+	private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+
+	public void record(long millis) {
+		int index = Arrays.binarySearch(BOUNDS, millis);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		counts.incrementAndGet(index);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * upper bound of the bucket holding the given percentile, -1 if nothing
+	 * has been recorded
+	 */
+	public long getPercentile(int percentile) {
+		long[] snapshot = new long[counts.length()];
+		long count = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return -1;
+		}
+
+		long threshold = (count * percentile + 99) / 100;
+		long seen = 0;
+		for (int i = 0; i < BOUNDS.length; i++) {
+			seen += snapshot[i];
+			if (seen >= threshold) {
+				return BOUNDS[i];
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	public void decay() {
+		for (int i = 0; i < counts.length(); i++) {
+			long current;
+			do {
+				current = counts.get(i);
+			} while (!counts.compareAndSet(i, current, current >> 1));
+		}
+	}
+
+}
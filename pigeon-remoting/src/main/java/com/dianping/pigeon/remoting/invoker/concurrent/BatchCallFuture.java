@@ -0,0 +1,103 @@
+package com.dianping.pigeon.remoting.invoker.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.dianping.pigeon.remoting.common.exception.ApplicationException;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
+import com.dianping.pigeon.threadpool.ManagedBlocking;
+
+/**
+ * result of one call inside a batch, completed when the batch response is
+ * demultiplexed
+ */
+public class BatchCallFuture implements Future<Object> {
+
+	private final CountDownLatch latch = new CountDownLatch(1);
+
+	private final long timeout;
+
+	private final String callInterface;
+
+	private volatile Object result;
+
+	private volatile Throwable error;
+
+	public BatchCallFuture(long timeout, String callInterface) {
+		this.timeout = timeout;
+		this.callInterface = callInterface;
+	}
+
+	public void setResult(Object result) {
+		this.result = result;
+		latch.countDown();
+	}
+
+	public void setError(Throwable error) {
+		this.error = error;
+		latch.countDown();
+	}
+
+	/**
+	 * waits for the result, the exception of the call is thrown as is
+	 */
+	public Object waitResult(long timeoutMillis) throws Throwable {
+		if (!ManagedBlocking.await(latch, timeoutMillis)) {
+			throw InvocationUtils.newTimeoutException("batch call timeout:" + timeoutMillis + "ms, method:"
+					+ callInterface);
+		}
+		if (error != null) {
+			throw error;
+		}
+		return result;
+	}
+
+	public Object get(long timeoutMillis) throws InterruptedException {
+		try {
+			return waitResult(timeoutMillis);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new ApplicationException(e);
+		}
+	}
+
+	@Override
+	public Object get() throws InterruptedException, ExecutionException {
+		return get(timeout);
+	}
+
+	@Override
+	public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+			TimeoutException {
+		long timeoutMs = unit.toMillis(timeout);
+		try {
+			return get(timeoutMs);
+		} catch (RequestTimeoutException e) {
+			throw new TimeoutException(timeoutMs + "ms timeout:" + e.getMessage());
+		}
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+	@Override
+	public boolean isDone() {
+		return latch.getCount() == 0;
+	}
+}
@@ -0,0 +1,161 @@
+package com.dianping.pigeon.remoting.invoker.concurrent;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import com.dianping.pigeon.monitor.metrics.MethodMeter;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.cache.ArgumentsKey;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.threadpool.ManagedBlocking;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * single flight of one method: while a call is in flight, identical calls of
+ * the method do not send requests of their own. sync callers wait for the
+ * outcome of the first call, retries and failover included, future callers
+ * get a future of their own on the pending response. callers share the
+ * result object.
+ */
+public final class CallCoalescer {
+
+	// done futures are swept once this many are tracked
+	private static final int SWEEP_THRESHOLD = 1024;
+
+	private final ConcurrentHashMap<ArgumentsKey, Flight> flights = new ConcurrentHashMap<ArgumentsKey, Flight>();
+
+	private final ConcurrentHashMap<ArgumentsKey, ServiceFutureImpl> futures = new ConcurrentHashMap<ArgumentsKey, ServiceFutureImpl>();
+
+	public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext,
+			ArgumentsKey key, MethodMeter meter) throws Throwable {
+		String callType = InvokerUtils.getCallType(invocationContext);
+		if (Constants.CALL_SYNC.equals(callType)) {
+			return invokeSync(handler, invocationContext, key, meter);
+		} else if (Constants.CALL_FUTURE.equals(callType)) {
+			return invokeFuture(handler, invocationContext, key, meter);
+		}
+		return handler.handle(invocationContext);
+	}
+
+	private InvocationResponse invokeSync(ServiceInvocationHandler handler, InvokerContext invocationContext,
+			ArgumentsKey key, MethodMeter meter) throws Throwable {
+		Flight flight = new Flight();
+		Flight pending = flights.putIfAbsent(key, flight);
+		if (pending != null) {
+			meter.recordCoalesced();
+			return pending.await(InvokerUtils.getTimeout(invocationContext));
+		}
+		try {
+			InvocationResponse response = handler.handle(invocationContext);
+			flight.complete(response, null);
+			return response;
+		} catch (Throwable t) {
+			flight.complete(null, t);
+			throw t;
+		} finally {
+			flights.remove(key, flight);
+		}
+	}
+
+	private InvocationResponse invokeFuture(ServiceInvocationHandler handler, InvokerContext invocationContext,
+			ArgumentsKey key, MethodMeter meter) throws Throwable {
+		ServiceFutureImpl pending = futures.get(key);
+		if (pending != null && !pending.isDone() && !pending.isCancelled()) {
+			meter.recordCoalesced();
+			ServiceFutureImpl future = new CoalescedFuture(invocationContext,
+					InvokerUtils.getTimeout(invocationContext), pending);
+			FutureFactory.setFuture(future);
+			return InvokerUtils.createFutureResponse(future);
+		}
+		InvocationResponse response = handler.handle(invocationContext);
+		if (response instanceof InvokerUtils.FutureResponse) {
+			Future<?> future = ((InvokerUtils.FutureResponse) response).getServiceFuture();
+			if (future instanceof ServiceFutureImpl) {
+				futures.put(key, (ServiceFutureImpl) future);
+				if (futures.size() > SWEEP_THRESHOLD) {
+					sweep();
+				}
+			}
+		}
+		return response;
+	}
+
+	private void sweep() {
+		for (Iterator<Map.Entry<ArgumentsKey, ServiceFutureImpl>> it = futures.entrySet().iterator(); it.hasNext();) {
+			ServiceFutureImpl future = it.next().getValue();
+			if (future.isDone() || future.isCancelled()) {
+				it.remove();
+			}
+		}
+	}
+
+	public int getInflight() {
+		return flights.size();
+	}
+
+	/**
+	 * the future of a caller attached to a pending future. it waits for the
+	 * response of the pending future but keeps its own transaction, timeline
+	 * and response context, so it can be used by its caller's thread alone.
+	 */
+	private static final class CoalescedFuture extends ServiceFutureImpl {
+
+		private final ServiceFutureImpl pending;
+
+		CoalescedFuture(InvokerContext invocationContext, long timeout, ServiceFutureImpl pending) {
+			super(invocationContext, timeout);
+			this.pending = pending;
+			this.request = pending.request;
+			this.client = pending.client;
+		}
+
+		@Override
+		protected InvocationResponse waitResponse(long timeoutMillis) throws InterruptedException {
+			if (!pending.awaitDone(timeoutMillis)) {
+				throw InvocationUtils.newTimeoutException("coalesced call timeout, current time:"
+						+ TimeUtils.currentTimeMillis() + "\r\nrequest:" + request);
+			}
+			this.request = pending.request;
+			this.client = pending.client;
+			this.response = pending.response;
+			return this.response;
+		}
+
+		@Override
+		public boolean isDone() {
+			return pending.isDone();
+		}
+	}
+
+	private static final class Flight {
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		private volatile InvocationResponse response;
+
+		private volatile Throwable throwable;
+
+		void complete(InvocationResponse response, Throwable throwable) {
+			this.response = response;
+			this.throwable = throwable;
+			latch.countDown();
+		}
+
+		InvocationResponse await(long timeout) throws Throwable {
+			if (!ManagedBlocking.await(latch, timeout)) {
+				throw InvocationUtils.newTimeoutException("coalesced call timeout after " + timeout + "ms");
+			}
+			if (throwable != null) {
+				throw throwable;
+			}
+			return response;
+		}
+	}
+}
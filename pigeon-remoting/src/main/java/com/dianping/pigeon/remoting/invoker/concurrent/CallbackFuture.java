@@ -23,6 +23,7 @@ import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.process.ExceptionManager;
 import com.dianping.pigeon.remoting.invoker.process.InvokerContextProcessor;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
+import com.dianping.pigeon.threadpool.ManagedBlocking;
 import com.dianping.pigeon.util.TimeUtils;
 
 /**
@@ -60,7 +61,7 @@ public class CallbackFuture implements Callback, CallFuture {
 		try {
 			this.done = true;
 			if (condition != null) {
-				condition.signal();
+				condition.signalAll();
 			}
 		} finally {
 			lock.unlock();
@@ -80,13 +81,27 @@ public class CallbackFuture implements Callback, CallFuture {
 			return response;
 		}
 
+		if (!awaitDone(timeoutMillis)) {
+			ServiceStatisticsHolder.flowOut(request, client.getAddress());
+			throw InvocationUtils.newTimeoutException(
+					"request timeout, current time:" + TimeUtils.currentTimeMillis() + "\r\nrequest:" + request);
+		}
+
+		return this.response;
+	}
+
+	/**
+	 * waits until the response arrived, at most timeoutMillis after the
+	 * request was created. false on timeout
+	 */
+	protected boolean awaitDone(long timeoutMillis) throws InterruptedException {
 		lock.lock();
 		try {
 			long start = request.getCreateMillisTime();
 			long timeoutLeft = timeoutMillis;
 
 			while (!isDone()) {
-				condition.await(timeoutLeft, TimeUnit.MILLISECONDS);
+				ManagedBlocking.await(condition, timeoutLeft);
 				long timeoutPassed = TimeUtils.currentTimeMillis() - start;
 
 				if (isDone() || timeoutPassed >= timeoutMillis) {
@@ -98,14 +113,7 @@ public class CallbackFuture implements Callback, CallFuture {
 		} finally {
 			lock.unlock();
 		}
-
-		if (!isDone()) {
-			ServiceStatisticsHolder.flowOut(request, client.getAddress());
-			throw InvocationUtils.newTimeoutException(
-					"request timeout, current time:" + TimeUtils.currentTimeMillis() + "\r\nrequest:" + request);
-		}
-
-		return this.response;
+		return isDone();
 	}
 
 	@Override
@@ -25,10 +25,7 @@ public class MockCallbackFuture extends ServiceFutureImpl {
     public Object get(long timeoutMillis) throws InterruptedException, ExecutionException {
         // 此刻执行mock逻辑或脚本
         try {
-            return mockProxyWrapper.invoke(
-                    invocationContext.getMethodName(),
-                    invocationContext.getParameterTypes(),
-                    invocationContext.getArguments());
+            return mockProxyWrapper.invoke(invocationContext);
         } catch (Throwable t) {
             if(!(t instanceof RuntimeException)) {
                 t = new RuntimeException(t);
@@ -70,7 +70,7 @@ public class ServiceFutureImpl extends CallbackFuture implements Future {
 		}
 		try {
 			try {
-				response = super.waitResponse(timeoutMillis);
+				response = waitResponse(timeoutMillis);
 				if (transaction != null && response != null) {
 					String size = SizeMonitor.getInstance().getLogSize(response.getSize());
 					if (size != null) {
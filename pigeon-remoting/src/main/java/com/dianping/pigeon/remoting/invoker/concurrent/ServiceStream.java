@@ -0,0 +1,167 @@
+package com.dianping.pigeon.remoting.invoker.concurrent;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.ApplicationException;
+import com.dianping.pigeon.remoting.common.exception.BadResponseException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * invoker side of a stream call, the items of the provider surface through
+ * the iterator in order. the provider may only send as many items as granted
+ * by credits, credits are given back in chunks of half the window as the
+ * items are consumed, so at most one window of items is buffered here.
+ * the timeout of the call is applied as an idle timeout between items.
+ */
+public class ServiceStream implements Callback, Iterator<Object> {
+
+	private static final Logger logger = LoggerLoader.getLogger(ServiceStream.class);
+
+	private static final Object END = new Object();
+
+	private static final Object NULL = new Object();
+
+	private final BlockingQueue<Object> items = new LinkedBlockingQueue<Object>();
+
+	private final long streamId;
+
+	private final int window;
+
+	private final String callInterface;
+
+	private InvocationRequest request;
+
+	private Client client;
+
+	private Object next;
+
+	private int consumed;
+
+	public ServiceStream(long streamId, int window, String callInterface) {
+		this.streamId = streamId;
+		this.window = window;
+		this.callInterface = callInterface;
+	}
+
+	@Override
+	public void callback(InvocationResponse response) {
+		int messageType = response.getMessageType();
+		if (messageType == Constants.MESSAGE_TYPE_STREAM) {
+			Object item = response.getReturn();
+			items.add(item == null ? NULL : item);
+		} else if (messageType == Constants.MESSAGE_TYPE_SERVICE) {
+			items.add(END);
+		} else if (messageType == Constants.MESSAGE_TYPE_EXCEPTION) {
+			items.add(new StreamError(InvokerUtils.toRpcException(response)));
+		} else if (messageType == Constants.MESSAGE_TYPE_SERVICE_EXCEPTION) {
+			items.add(new StreamError(InvokerUtils.toApplicationException(response)));
+		} else {
+			items.add(new StreamError(new BadResponseException(response.toString())));
+		}
+	}
+
+	@Override
+	public void run() {
+	}
+
+	@Override
+	public void setRequest(InvocationRequest request) {
+		this.request = request;
+	}
+
+	@Override
+	public void dispose() {
+		items.add(new StreamError(InvocationUtils.newTimeoutException("stream idle timeout:" + request.getTimeout()
+				+ "ms, method:" + callInterface)));
+	}
+
+	@Override
+	public void setClient(Client client) {
+		this.client = client;
+	}
+
+	@Override
+	public Client getClient() {
+		return client;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			try {
+				long timeout = request.getTimeout() > 0 ? request.getTimeout() : Long.MAX_VALUE;
+				next = items.poll(timeout, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ApplicationException("interrupted while waiting for stream item", e);
+			}
+			if (next == null) {
+				next = new StreamError(InvocationUtils.newTimeoutException("stream idle timeout:"
+						+ request.getTimeout() + "ms, method:" + callInterface));
+			}
+		}
+		if (next instanceof StreamError) {
+			Throwable error = ((StreamError) next).error;
+			if (error instanceof RuntimeException) {
+				throw (RuntimeException) error;
+			}
+			throw new ApplicationException(error);
+		}
+		return next != END;
+	}
+
+	@Override
+	public Object next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Object item = next == NULL ? null : next;
+		next = null;
+		if (++consumed >= Math.max(window / 2, 1)) {
+			sendCredit(consumed);
+			consumed = 0;
+		}
+		return item;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove");
+	}
+
+	private void sendCredit(int credits) {
+		// consuming is progress as well, the idle timeout starts again
+		request.setCreateMillisTime(TimeUtils.currentTimeMillis());
+		DefaultRequest creditRequest = new DefaultRequest(request.getServiceName(), request.getMethodName(),
+				new Object[] { streamId, credits }, request.getSerialize(), Constants.MESSAGE_TYPE_STREAM_CREDIT,
+				request.getTimeout(), Constants.CALLTYPE_NOREPLY, request.getSequence());
+		creditRequest.setCreateMillisTime(request.getCreateMillisTime());
+		try {
+			client.write(creditRequest);
+		} catch (RuntimeException e) {
+			logger.warn("send stream credit failed:" + e.getMessage());
+		}
+	}
+
+	private static class StreamError {
+
+		private final Throwable error;
+
+		StreamError(Throwable error) {
+			this.error = error;
+		}
+	}
+}
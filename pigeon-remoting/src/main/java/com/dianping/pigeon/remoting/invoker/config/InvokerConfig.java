@@ -4,6 +4,7 @@
  */
 package com.dianping.pigeon.remoting.invoker.config;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
@@ -23,12 +24,13 @@ import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalanceManager;
 import com.dianping.pigeon.remoting.invoker.route.region.RegionPolicyManager;
 import com.dianping.pigeon.util.ThriftUtils;
 
-public class InvokerConfig<T> {
+public class InvokerConfig<T> implements Cloneable {
     private static final Logger logger = LoggerLoader.getLogger(InvokerConfig.class);
     public static final String CALL_SYNC = Constants.CALL_SYNC;
     public static final String CALL_CALLBACK = Constants.CALL_CALLBACK;
     public static final String CALL_ONEWAY = Constants.CALL_ONEWAY;
     public static final String CALL_FUTURE = Constants.CALL_FUTURE;
+    public static final String CALL_STREAM = Constants.CALL_STREAM;
 
     public static final String PROTOCOL_HTTP = Constants.PROTOCOL_HTTP;
     public static final String PROTOCOL_DEFAULT = Constants.PROTOCOL_DEFAULT;
@@ -316,10 +318,12 @@ public class InvokerConfig<T> {
     public void setCallType(String callType) {
         if (!Constants.CALL_SYNC.equalsIgnoreCase(callType) && !Constants.CALL_CALLBACK.equalsIgnoreCase(callType)
                 && !Constants.CALL_FUTURE.equalsIgnoreCase(callType)
-                && !Constants.CALL_ONEWAY.equalsIgnoreCase(callType)) {
+                && !Constants.CALL_ONEWAY.equalsIgnoreCase(callType)
+                && !Constants.CALL_STREAM.equalsIgnoreCase(callType)) {
 
             throw new IllegalArgumentException("Pigeon call mode only support[" + Constants.CALL_SYNC + ", "
-                    + Constants.CALL_CALLBACK + ", " + Constants.CALL_FUTURE + ", " + Constants.CALL_ONEWAY + "].");
+                    + Constants.CALL_CALLBACK + ", " + Constants.CALL_FUTURE + ", " + Constants.CALL_ONEWAY + ", "
+                    + Constants.CALL_STREAM + "].");
         }
         if (!StringUtils.isBlank(callType)) {
             this.callType = callType.trim();
@@ -392,6 +396,23 @@ public class InvokerConfig<T> {
         this.mock = mock;
     }
 
+    /**
+     * a shallow copy with its own methods map, so methods can be added to the
+     * copy without touching this config
+     */
+    @SuppressWarnings("unchecked")
+    public InvokerConfig<T> copy() {
+        try {
+            InvokerConfig<T> copy = (InvokerConfig<T>) super.clone();
+            if (methods != null) {
+                copy.methods = new HashMap<String, InvokerMethodConfig>(methods);
+            }
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public boolean equals(Object obj) {
         return EqualsBuilder.reflectionEquals(this, obj);
     }
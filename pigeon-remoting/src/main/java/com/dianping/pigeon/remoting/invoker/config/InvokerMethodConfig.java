@@ -22,6 +22,24 @@ public class InvokerMethodConfig {
 
 	private String callType;
 
+	// calls collected into one $batch request, 0 or 1 means no batching
+	private int batchSize = 0;
+
+	// microseconds the first call of a batch waits for more calls
+	private int batchWindow = 200;
+
+	// milliseconds a sync result is cached, 0 means no cache
+	private int cacheTtl = 0;
+
+	// max cached results of the method
+	private int cacheSize = 1000;
+
+	// keep cached results in direct buffers
+	private boolean cacheOffHeap = false;
+
+	// identical calls in flight share one request
+	private boolean coalesce = false;
+
 	public int getTimeout() {
 		return timeout;
 	}
@@ -62,6 +80,54 @@ public class InvokerMethodConfig {
 		this.actives = actives;
 	}
 
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public int getBatchWindow() {
+		return batchWindow;
+	}
+
+	public void setBatchWindow(int batchWindow) {
+		this.batchWindow = batchWindow;
+	}
+
+	public int getCacheTtl() {
+		return cacheTtl;
+	}
+
+	public void setCacheTtl(int cacheTtl) {
+		this.cacheTtl = cacheTtl;
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	public boolean isCacheOffHeap() {
+		return cacheOffHeap;
+	}
+
+	public void setCacheOffHeap(boolean cacheOffHeap) {
+		this.cacheOffHeap = cacheOffHeap;
+	}
+
+	public boolean isCoalesce() {
+		return coalesce;
+	}
+
+	public void setCoalesce(boolean coalesce) {
+		this.coalesce = coalesce;
+	}
+
 	@Override
 	public String toString() {
 		return ReflectionToStringBuilder.toString(this, ToStringStyle.SHORT_PREFIX_STYLE);
@@ -45,4 +45,20 @@ public @interface Reference {
 	
 	String secret() default "";
 
+	/**
+	 * methods whose sync results are cached by the invoker
+	 */
+	String[] cacheMethods() default {};
+
+	int cacheTtl() default 60000;
+
+	int cacheSize() default 1000;
+
+	boolean cacheOffHeap() default false;
+
+	/**
+	 * methods whose identical calls in flight share one request
+	 */
+	String[] coalesceMethods() default {};
+
 }
@@ -160,6 +160,18 @@ public class ReferenceBeanDefinitionParser implements BeanDefinitionParser {
 		if (element.hasAttribute("callType")) {
 			properties.addPropertyValue("callType", resolveReference(element, "callType"));
 		}
+		if (element.hasAttribute("cacheTtl")) {
+			properties.addPropertyValue("cacheTtl", resolveReference(element, "cacheTtl"));
+		}
+		if (element.hasAttribute("cacheSize")) {
+			properties.addPropertyValue("cacheSize", resolveReference(element, "cacheSize"));
+		}
+		if (element.hasAttribute("cacheOffHeap")) {
+			properties.addPropertyValue("cacheOffHeap", resolveReference(element, "cacheOffHeap"));
+		}
+		if (element.hasAttribute("coalesce")) {
+			properties.addPropertyValue("coalesce", resolveReference(element, "coalesce"));
+		}
 		parserContext.getRegistry().registerBeanDefinition(id, beanDefinition);
 
 		return beanDefinition;
@@ -9,6 +9,7 @@ import org.apache.commons.lang.builder.ToStringStyle;
 
 import com.dianping.pigeon.remoting.common.domain.AbstractInvocationContext;
 import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.concurrent.CallbackFuture;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.util.TimeUtils;
 
@@ -20,6 +21,8 @@ public class DefaultInvokerContext extends AbstractInvocationContext implements
 	private Object[] arguments;
 	private Client client;
 	private boolean isDegraded = false;
+	private CallbackFuture callbackFuture;
+	private InvokerMethodDescriptor methodDescriptor;
 
 	public DefaultInvokerContext(InvokerConfig<?> invokerConfig, String methodName, Class<?>[] parameterTypes,
 			Object[] arguments) {
@@ -31,6 +34,12 @@ public class DefaultInvokerContext extends AbstractInvocationContext implements
 		getTimeline().add(new TimePoint(TimePhase.S, TimeUtils.currentTimeMillis()));
 	}
 
+	public DefaultInvokerContext(InvokerMethodDescriptor methodDescriptor, Object[] arguments) {
+		this(methodDescriptor.getInvokerConfig(), methodDescriptor.getMethodName(), methodDescriptor
+				.getParameterTypes(), arguments);
+		this.methodDescriptor = methodDescriptor;
+	}
+
 	public InvokerConfig<?> getInvokerConfig() {
 		return invokerConfig;
 	}
@@ -69,6 +78,18 @@ public class DefaultInvokerContext extends AbstractInvocationContext implements
 		this.client = client;
 	}
 
+	public CallbackFuture getCallbackFuture() {
+		return callbackFuture;
+	}
+
+	/**
+	 * future used by a sync call instead of a new CallbackFuture, lets a
+	 * cluster take over waiting for the response
+	 */
+	public void setCallbackFuture(CallbackFuture callbackFuture) {
+		this.callbackFuture = callbackFuture;
+	}
+
 	@Override
 	public String toString() {
 		return ReflectionToStringBuilder.toString(this, ToStringStyle.SHORT_PREFIX_STYLE);
@@ -93,4 +114,13 @@ public class DefaultInvokerContext extends AbstractInvocationContext implements
 		return isDegraded;
 	}
 
+	@Override
+	public InvokerMethodDescriptor getMethodDescriptor() {
+		return methodDescriptor;
+	}
+
+	public void setMethodDescriptor(InvokerMethodDescriptor methodDescriptor) {
+		this.methodDescriptor = methodDescriptor;
+	}
+
 }
@@ -25,5 +25,10 @@ public interface InvokerContext extends InvocationContext {
 	void setDegraded();
 	
 	boolean isDegraded();
+
+	/**
+	 * null when the context was not created by a service stub
+	 */
+	InvokerMethodDescriptor getMethodDescriptor();
 	
 }
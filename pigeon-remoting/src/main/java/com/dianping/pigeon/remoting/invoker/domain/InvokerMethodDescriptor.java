@@ -0,0 +1,196 @@
+package com.dianping.pigeon.remoting.invoker.domain;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.monitor.metrics.MethodMeter;
+import com.dianping.pigeon.monitor.metrics.MetricsRegistry;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.cache.ResponseCache;
+import com.dianping.pigeon.remoting.invoker.concurrent.CallCoalescer;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
+
+/**
+ * everything a call of one service method needs from its invoker config and
+ * method, resolved once when the stub method is first called so the call
+ * path does no reflection and no per method map lookups.
+ */
+public final class InvokerMethodDescriptor {
+
+	private static final Logger logger = LoggerLoader.getLogger(InvokerMethodDescriptor.class);
+
+	private static final AtomicInteger idGenerator = new AtomicInteger();
+
+	private final int id;
+
+	private final InvokerConfig<?> invokerConfig;
+
+	private final InvokerMethodConfig methodConfig;
+
+	private final String methodName;
+
+	private final Class<?>[] parameterTypes;
+
+	private final Class<?> returnType;
+
+	private final Object defaultReturn;
+
+	private final int timeout;
+
+	private final String callType;
+
+	private final byte serialize;
+
+	private final String loadbalance;
+
+	// url#method, the key of degrade actions and counts
+	private final String requestUrl;
+
+	private final MethodMeter callMeter;
+
+	private final ResponseCache responseCache;
+
+	private final CallCoalescer coalescer;
+
+	public InvokerMethodDescriptor(InvokerConfig<?> invokerConfig, Method method) {
+		this.id = idGenerator.incrementAndGet();
+		this.invokerConfig = invokerConfig;
+		this.methodName = method.getName().intern();
+		this.parameterTypes = method.getParameterTypes();
+		this.returnType = method.getReturnType();
+		this.defaultReturn = getDefaultReturn(returnType);
+		this.methodConfig = invokerConfig.getMethod(methodName);
+		this.timeout = invokerConfig.getTimeout(methodName);
+		this.callType = invokerConfig.getCallType(methodName);
+		this.serialize = invokerConfig.getSerialize();
+		this.loadbalance = invokerConfig.getLoadbalance();
+		this.requestUrl = invokerConfig.getUrl() + "#" + methodName;
+		this.callMeter = InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_CALL, invokerConfig.getUrl(), methodName,
+				parameterTypes);
+		this.responseCache = newResponseCache(invokerConfig, methodName, parameterTypes, methodConfig);
+		this.coalescer = methodConfig != null && methodConfig.isCoalesce() ? new CallCoalescer() : null;
+	}
+
+	/**
+	 * every reference of the method has its own cache, references differ in
+	 * group, version or serialize and each has its own ttl and size
+	 */
+	private static ResponseCache newResponseCache(InvokerConfig<?> invokerConfig, String methodName,
+			Class<?>[] parameterTypes, InvokerMethodConfig methodConfig) {
+		if (methodConfig == null || methodConfig.getCacheTtl() <= 0 || methodConfig.getCacheSize() <= 0) {
+			return null;
+		}
+		ResponseCache cache = new ResponseCache(InvocationUtils.getRemoteCallFullName(invokerConfig.getUrl(),
+				methodName, parameterTypes), methodConfig.getCacheSize(), methodConfig.getCacheTtl(),
+				methodConfig.isCacheOffHeap());
+		logger.info("response cache created:" + cache + ", group:" + invokerConfig.getGroup() + ", version:"
+				+ invokerConfig.getVersion());
+		return cache;
+	}
+
+	private static Object getDefaultReturn(Class<?> returnType) {
+		if (returnType == byte.class) {
+			return (byte) 0;
+		} else if (returnType == short.class) {
+			return (short) 0;
+		} else if (returnType == int.class) {
+			return 0;
+		} else if (returnType == boolean.class) {
+			return false;
+		} else if (returnType == long.class) {
+			return 0l;
+		} else if (returnType == float.class) {
+			return 0.0f;
+		} else if (returnType == double.class) {
+			return 0.0d;
+		} else if (returnType == char.class) {
+			return (char) 0;
+		} else {
+			return null;
+		}
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public InvokerConfig<?> getInvokerConfig() {
+		return invokerConfig;
+	}
+
+	/**
+	 * null when the method has no method level config
+	 */
+	public InvokerMethodConfig getMethodConfig() {
+		return methodConfig;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	/**
+	 * shared by all calls, must not be modified
+	 */
+	public Class<?>[] getParameterTypes() {
+		return parameterTypes;
+	}
+
+	public Class<?> getReturnType() {
+		return returnType;
+	}
+
+	/**
+	 * value returned for a null result, zero for primitive return types
+	 */
+	public Object getDefaultReturn() {
+		return defaultReturn;
+	}
+
+	public int getTimeout() {
+		return timeout;
+	}
+
+	public String getCallType() {
+		return callType;
+	}
+
+	public byte getSerialize() {
+		return serialize;
+	}
+
+	public String getLoadbalance() {
+		return loadbalance;
+	}
+
+	public String getRequestUrl() {
+		return requestUrl;
+	}
+
+	public MethodMeter getCallMeter() {
+		return callMeter;
+	}
+
+	/**
+	 * null when the method has no cacheTtl
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * null when identical calls of the method are not coalesced
+	 */
+	public CallCoalescer getCoalescer() {
+		return coalescer;
+	}
+
+	@Override
+	public String toString() {
+		return "InvokerMethodDescriptor[id=" + id + ", method=" + requestUrl + ", timeout=" + timeout
+				+ ", callType=" + callType + "]";
+	}
+}
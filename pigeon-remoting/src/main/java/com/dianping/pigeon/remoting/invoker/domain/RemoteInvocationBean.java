@@ -1,5 +1,6 @@
 package com.dianping.pigeon.remoting.invoker.domain;
 
+import com.dianping.pigeon.remoting.common.channel.Channel;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.invoker.concurrent.Callback;
 
@@ -7,5 +8,8 @@ public class RemoteInvocationBean {
 
 	public InvocationRequest request;
 	public Callback callback;
+	// the channel counting the invocation as pending
+	public Channel channel;
+	public boolean removed;
 
 }
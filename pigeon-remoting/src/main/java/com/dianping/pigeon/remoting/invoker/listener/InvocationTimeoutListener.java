@@ -13,6 +13,7 @@ import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.invoker.concurrent.Callback;
 import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
 import com.dianping.pigeon.util.TimeUtils;
 
 public class InvocationTimeoutListener implements Runnable {
@@ -48,7 +49,7 @@ public class InvocationTimeoutListener implements Runnable {
 								ServiceStatisticsHolder.flowOut(request, callback.getClient().getAddress());
 							}
 							callback.dispose();
-							invocations.remove(sequence);
+							ServiceInvocationRepository.getInstance().remove(sequence);
 							boolean isLog = true;
 							if (timeoutCountInLastSecond > ConfigManagerLoader.getConfigManager().getIntValue(
 									"pigeon.log.threshold", 10)
@@ -78,6 +78,9 @@ public enum DegradationManager {
 	}
 
 	public String getRequestUrl(InvokerContext context) {
+		if (context.getMethodDescriptor() != null) {
+			return context.getMethodDescriptor().getRequestUrl();
+		}
 		return context.getInvokerConfig().getUrl() + "#" + context.getMethodName();
 	}
 
@@ -190,6 +193,7 @@ public enum DegradationManager {
 		private boolean throwException = false;
 		private boolean useMockClass = false;
 		private boolean useGroovyScript = false;
+		private boolean useLastKnownGood = false;
 		private boolean enable = true;
 
 		public boolean getEnable() {
@@ -208,6 +212,14 @@ public enum DegradationManager {
 			this.useGroovyScript = useGroovyScript;
 		}
 
+		public boolean getUseLastKnownGood() {
+			return useLastKnownGood;
+		}
+
+		public void setUseLastKnownGood(boolean useLastKnownGood) {
+			this.useLastKnownGood = useLastKnownGood;
+		}
+
 		public boolean getUseMockClass() {
 			return useMockClass;
 		}
@@ -15,12 +15,14 @@ import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.process.filter.ClusterInvokeFilter;
+import com.dianping.pigeon.remoting.invoker.process.filter.CoalescingInvokeFilter;
 import com.dianping.pigeon.remoting.invoker.process.filter.ContextPrepareInvokeFilter;
 import com.dianping.pigeon.remoting.invoker.process.filter.DegradationFilter;
 import com.dianping.pigeon.remoting.invoker.process.filter.GatewayInvokeFilter;
 import com.dianping.pigeon.remoting.invoker.process.filter.InvocationInvokeFilter;
 import com.dianping.pigeon.remoting.invoker.process.filter.RemoteCallInvokeFilter;
 import com.dianping.pigeon.remoting.invoker.process.filter.RemoteCallMonitorInvokeFilter;
+import com.dianping.pigeon.remoting.invoker.process.filter.ResponseCacheInvokeFilter;
 import com.dianping.pigeon.remoting.invoker.process.filter.SecurityFilter;
 
 public final class InvokerProcessHandlerFactory {
@@ -37,6 +39,8 @@ public final class InvokerProcessHandlerFactory {
 				registerBizProcessFilter(new RemoteCallMonitorInvokeFilter());
 			}
 			registerBizProcessFilter(new DegradationFilter());
+			registerBizProcessFilter(new ResponseCacheInvokeFilter());
+			registerBizProcessFilter(new CoalescingInvokeFilter());
 			registerBizProcessFilter(new ClusterInvokeFilter());
 			registerBizProcessFilter(new GatewayInvokeFilter());
 			registerBizProcessFilter(new ContextPrepareInvokeFilter());
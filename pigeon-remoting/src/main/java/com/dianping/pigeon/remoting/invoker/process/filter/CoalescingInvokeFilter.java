@@ -0,0 +1,42 @@
+package com.dianping.pigeon.remoting.invoker.process.filter;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.invoker.cache.ArgumentsKey;
+import com.dianping.pigeon.remoting.invoker.concurrent.CallCoalescer;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerMethodDescriptor;
+
+/**
+ * lets identical sync and future calls of methods with coalesce share the
+ * request already in flight, so a burst of callers missing the same hot key
+ * sends one request to the provider.
+ */
+public class CoalescingInvokeFilter extends InvocationInvokeFilter {
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final String KEY_COALESCE_ENABLE = "pigeon.invoker.coalesce.enable";
+
+	static {
+		configManager.getBooleanValue(KEY_COALESCE_ENABLE, true);
+	}
+
+	@Override
+	public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext)
+			throws Throwable {
+		InvokerMethodDescriptor descriptor = invocationContext.getMethodDescriptor();
+		CallCoalescer coalescer = descriptor != null ? descriptor.getCoalescer() : null;
+		if (coalescer == null || !configManager.getBooleanValue(KEY_COALESCE_ENABLE, true)) {
+			return handler.handle(invocationContext);
+		}
+		ArgumentsKey key = ArgumentsKey.of(invocationContext.getArguments());
+		if (key == null) {
+			return handler.handle(invocationContext);
+		}
+		return coalescer.invoke(handler, invocationContext, key, descriptor.getCallMeter());
+	}
+
+}
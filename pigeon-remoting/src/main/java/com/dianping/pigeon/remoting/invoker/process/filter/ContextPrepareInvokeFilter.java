@@ -26,6 +26,7 @@ import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.SymbolRequest;
 import com.dianping.pigeon.remoting.common.domain.generic.UnifiedRequest;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
@@ -35,6 +36,7 @@ import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
 import com.dianping.pigeon.remoting.invoker.process.InvokerContextProcessor;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
 import com.dianping.pigeon.util.TimeUtils;
 import com.dianping.pigeon.util.VersionUtils;
 
@@ -43,14 +45,17 @@ public class ContextPrepareInvokeFilter extends InvocationInvokeFilter {
 	private static final Logger logger = LoggerLoader.getLogger(ContextPrepareInvokeFilter.class);
 	private ConcurrentHashMap<String, Boolean> protoVersionMap = new ConcurrentHashMap<String, Boolean>();
 	private ConcurrentHashMap<String, Boolean> compactVersionMap = new ConcurrentHashMap<String, Boolean>();
+	private ConcurrentHashMap<String, Boolean> symbolVersionMap = new ConcurrentHashMap<String, Boolean>();
 	private static AtomicLong requestSequenceMaker = new AtomicLong();
 	private static final String KEY_COMPACT = "pigeon.invoker.request.compact";
+	private static final String KEY_SYMBOL = "pigeon.invoker.request.symbol";
 	private static final String KEY_TIMEOUT_RESET = "pigeon.timeout.reset";
 	private static final InvokerContextProcessor contextProcessor = ExtensionLoader
 			.getExtension(InvokerContextProcessor.class);
 
 	public ContextPrepareInvokeFilter() {
 		ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_COMPACT, true);
+		ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_SYMBOL, true);
 		ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_TIMEOUT_RESET, true);
 	}
 
@@ -101,7 +106,7 @@ public class ContextPrepareInvokeFilter extends InvocationInvokeFilter {
 
 		InvokerConfig<?> invokerConfig = invokerContext.getInvokerConfig();
 		if (invokerConfig != null) {
-			request.setTimeout(invokerConfig.getTimeout(invokerContext.getMethodName()));
+			request.setTimeout(InvokerUtils.getTimeout(invokerContext));
 
 			if (ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_TIMEOUT_RESET, true)) {
 				Object timeout = ContextUtils.getLocalContext(Constants.REQUEST_TIMEOUT);
@@ -111,6 +116,18 @@ public class ContextPrepareInvokeFilter extends InvocationInvokeFilter {
 						request.setTimeout(timeout_);
 					}
 				}
+				// nested call inside a provider request, cap at the remaining budget
+				Object deadline = ContextUtils.getLocalContext(Constants.REQUEST_DEADLINE);
+				if (deadline instanceof Long) {
+					long remaining = (Long) deadline - request.getCreateMillisTime();
+					if (remaining <= 0) {
+						throw InvocationUtils.newTimeoutException("request deadline exceeded before sending, service:"
+								+ request.getServiceName() + ", method:" + request.getMethodName());
+					}
+					if (remaining < request.getTimeout()) {
+						request.setTimeout((int) remaining);
+					}
+				}
 			}
 			if (Constants.CALL_ONEWAY.equalsIgnoreCase(invokerConfig.getCallType())) {
 				request.setCallType(Constants.CALLTYPE_NOREPLY);
@@ -187,8 +204,35 @@ public class ContextPrepareInvokeFilter extends InvocationInvokeFilter {
 			}
 		}
 		if (isCompact) {
-			invokerContext.setRequest(new CompactRequest(invokerContext));
+			if (isSymbolSupported(invokerContext)) {
+				invokerContext.setRequest(new SymbolRequest(invokerContext));
+			} else {
+				invokerContext.setRequest(new CompactRequest(invokerContext));
+			}
+		}
+	}
+
+	// 连接级符号表只在netty连接上维护，且依赖序列化方式忽略transient字段
+	private boolean isSymbolSupported(InvokerContext invokerContext) {
+		if (!ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_SYMBOL, true)) {
+			return false;
+		}
+		Client client = invokerContext.getClient();
+		if (!Constants.PROTOCOL_DEFAULT.equals(client.getProtocol())) {
+			return false;
+		}
+		byte serialize = invokerContext.getInvokerConfig().getSerialize();
+		if (serialize != SerializerFactory.SERIALIZE_HESSIAN && serialize != SerializerFactory.SERIALIZE_HESSIAN1
+				&& serialize != SerializerFactory.SERIALIZE_JAVA) {
+			return false;
+		}
+		String version = RegistryManager.getInstance().getReferencedVersionFromCache(client.getAddress());
+		Boolean supported = symbolVersionMap.get(version);
+		if (supported == null) {
+			supported = VersionUtils.isSymbolSupported(version);
+			symbolVersionMap.putIfAbsent(version, supported);
 		}
+		return supported;
 	}
 
 	private void transferContextValueToRequest(final InvokerContext invocationContext,
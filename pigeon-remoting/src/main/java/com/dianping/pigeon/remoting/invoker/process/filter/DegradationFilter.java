@@ -27,6 +27,8 @@ import com.dianping.pigeon.remoting.common.exception.RpcException;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.GroovyUtils;
+import com.dianping.pigeon.remoting.invoker.cache.ArgumentsKey;
+import com.dianping.pigeon.remoting.invoker.cache.ResponseCache;
 import com.dianping.pigeon.remoting.invoker.concurrent.FutureFactory;
 import com.dianping.pigeon.remoting.invoker.concurrent.InvocationCallback;
 import com.dianping.pigeon.remoting.invoker.concurrent.MockCallbackFuture;
@@ -65,7 +67,13 @@ public class DegradationFilter extends InvocationInvokeFilter {
 	private static volatile Map<String, DegradeAction> degradeMethodActions = new ConcurrentHashMap<String, DegradeAction>();
 	private static final JacksonSerializer jacksonSerializer = new JacksonSerializer();
 	// service#method --> groovyMockProxy
-	private final static ConcurrentHashMap<String, Object> groovyMocks = new ConcurrentHashMap<>();
+	private final static ConcurrentHashMap<String, MockProxyWrapper> groovyMocks = new ConcurrentHashMap<>();
+	// service --> mock object of the invoker config
+	private final static ConcurrentHashMap<String, MockProxyWrapper> mockWrappers = new ConcurrentHashMap<>();
+	private static final String KEY_LASTKNOWNGOOD_TTL = "pigeon.invoker.degrade.lastknowngood.ttl";
+	private static final String KEY_LASTKNOWNGOOD_SIZE = "pigeon.invoker.degrade.lastknowngood.size";
+	// service#method --> recent successful results
+	private final static ConcurrentHashMap<String, ResponseCache> lastKnownGoods = new ConcurrentHashMap<>();
 
 	static {
 		String degradeMethodsConfig = configManager.getStringValue(KEY_DEGRADE_METHODS);
@@ -77,6 +85,8 @@ public class DegradationFilter extends InvocationInvokeFilter {
 					t);
 		}
 		configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+		configManager.getIntValue(KEY_LASTKNOWNGOOD_TTL, 600000);
+		configManager.getIntValue(KEY_LASTKNOWNGOOD_SIZE, 1000);
 	}
 
 	private static class InnerConfigChangeListener implements ConfigChangeListener {
@@ -127,12 +137,15 @@ public class DegradationFilter extends InvocationInvokeFilter {
 
 								degradeAction.setUseMockClass(degradeActionConfig.getUseMockClass());
 								degradeAction.setUseGroovyScript(degradeActionConfig.getUseGroovyScript());
+								degradeAction.setUseLastKnownGood(degradeActionConfig.getUseLastKnownGood());
 								degradeAction.setThrowException(degradeActionConfig.getThrowException());
 								degradeAction.setEnable(degradeActionConfig.getEnable());
 								String content = degradeActionConfig.getContent();
 								Object returnObj = null;
 
-								if (degradeAction.isUseMockClass()) {
+								if (degradeAction.isUseLastKnownGood()) {
+									// served from recent results
+								} else if (degradeAction.isUseMockClass()) {
 									// use mock class
 								} else if (degradeAction.isUseGroovyScript()) {
 									degradeAction.setGroovyScript(GroovyUtils.getScript(content));
@@ -176,6 +189,13 @@ public class DegradationFilter extends InvocationInvokeFilter {
 		}
 
 		groovyMocks.clear();
+		// results are kept while a method stays degraded to them
+		for (String key : lastKnownGoods.keySet()) {
+			DegradeAction action = degradeMethodActions.get(key);
+			if (action == null || !action.isUseLastKnownGood()) {
+				lastKnownGoods.remove(key);
+			}
+		}
 	}
 
 	@Override
@@ -192,6 +212,7 @@ public class DegradationFilter extends InvocationInvokeFilter {
 		boolean failed = false;
 		try {
 			response = handler.handle(context);
+			rememberResult(context, response);
 			Object responseReturn = response.getReturn();
 			if (responseReturn != null) {
 				int messageType = response.getMessageType();
@@ -257,23 +278,31 @@ public class DegradationFilter extends InvocationInvokeFilter {
 			timeout = timeoutThreadLocal;
 		}
 
+		Object lastKnownGood = ResponseCache.MISS;
+		if (defaultResult == null && action != null && action.isUseLastKnownGood()) {
+			lastKnownGood = getLastKnownGood(key, context);
+		}
+
 		if (Constants.CALL_SYNC.equalsIgnoreCase(callType)) {
 			if (defaultResult != null) {
 				addCurrentTimeData(timeout);
 				response = InvokerUtils.createDefaultResponse(defaultResult);
 			} else if (action != null) {
-				if (action.isUseMockClass()) {
+				if (action.isUseLastKnownGood()) {
+					if (lastKnownGood != ResponseCache.MISS) {
+						addCurrentTimeData(timeout);
+						response = InvokerUtils.createDefaultResponse(lastKnownGood);
+					}
+				} else if (action.isUseMockClass()) {
 					Object mockObj = context.getInvokerConfig().getMock();
 					if (mockObj != null) {
 						addCurrentTimeData(timeout);
-						defaultResult = new MockProxyWrapper(mockObj).invoke(context.getMethodName(),
-								context.getParameterTypes(), context.getArguments());
+						defaultResult = getMockWrapper(invokerConfig, mockObj).invoke(context);
 						response = InvokerUtils.createDefaultResponse(defaultResult);
 					}
 				} else if (action.isUseGroovyScript()) {
 					addCurrentTimeData(timeout);
-					defaultResult = new MockProxyWrapper(getGroovyMockProxy(key, context, action))
-							.invoke(context.getMethodName(), context.getParameterTypes(), context.getArguments());
+					defaultResult = getGroovyMockProxy(key, context, action).invoke(context);
 					response = InvokerUtils.createDefaultResponse(defaultResult);
 				} else if (action.isThrowException()) {
 					addCurrentTimeData(timeout);
@@ -296,18 +325,21 @@ public class DegradationFilter extends InvocationInvokeFilter {
 					addCurrentTimeData(timeout);
 					response = callBackOnSuccess(context, defaultResult);
 				} else if (action != null) {
-					if (action.isUseMockClass()) {
+					if (action.isUseLastKnownGood()) {
+						if (lastKnownGood != ResponseCache.MISS) {
+							addCurrentTimeData(timeout);
+							response = callBackOnSuccess(context, lastKnownGood);
+						}
+					} else if (action.isUseMockClass()) {
 						Object mockObj = context.getInvokerConfig().getMock();
 						if (mockObj != null) {
 							addCurrentTimeData(timeout);
-							defaultResult = new MockProxyWrapper(mockObj).invoke(context.getMethodName(),
-									context.getParameterTypes(), context.getArguments());
+							defaultResult = getMockWrapper(invokerConfig, mockObj).invoke(context);
 							response = callBackOnSuccess(context, defaultResult);
 						}
 					} else if (action.isUseGroovyScript()) {
 						addCurrentTimeData(timeout);
-						defaultResult = new MockProxyWrapper(getGroovyMockProxy(key, context, action))
-								.invoke(context.getMethodName(), context.getParameterTypes(), context.getArguments());
+						defaultResult = getGroovyMockProxy(key, context, action).invoke(context);
 						response = callBackOnSuccess(context, defaultResult);
 					} else if (action.isThrowException()) {
 						addCurrentTimeData(timeout);
@@ -338,11 +370,20 @@ public class DegradationFilter extends InvocationInvokeFilter {
 				future.callback(InvokerUtils.createDefaultResponse(defaultResult));
 				future.run();
 			} else if (action != null) {
-				if (action.isUseMockClass()) {
+				if (action.isUseLastKnownGood()) {
+					if (lastKnownGood != ResponseCache.MISS) {
+						addCurrentTimeData(timeout);
+						ServiceFutureImpl future = new ServiceFutureImpl(context, timeout);
+						FutureFactory.setFuture(future);
+						response = InvokerUtils.createFutureResponse(future);
+						future.callback(InvokerUtils.createDefaultResponse(lastKnownGood));
+						future.run();
+					}
+				} else if (action.isUseMockClass()) {
 					Object mockObj = context.getInvokerConfig().getMock();
 					if (mockObj != null) {
 						addCurrentTimeData(timeout);
-						MockProxyWrapper mockProxyWrapper = new MockProxyWrapper(mockObj);
+						MockProxyWrapper mockProxyWrapper = getMockWrapper(invokerConfig, mockObj);
 						MockCallbackFuture future = new MockCallbackFuture(mockProxyWrapper, context, timeout);
 						FutureFactory.setFuture(future);
 						response = InvokerUtils.createFutureResponse(future);
@@ -351,7 +392,7 @@ public class DegradationFilter extends InvocationInvokeFilter {
 					}
 				} else if (action.isUseGroovyScript()) {
 					addCurrentTimeData(timeout);
-					MockProxyWrapper mockProxyWrapper = new MockProxyWrapper(getGroovyMockProxy(key, context, action));
+					MockProxyWrapper mockProxyWrapper = getGroovyMockProxy(key, context, action);
 					MockCallbackFuture future = new MockCallbackFuture(mockProxyWrapper, context, timeout);
 					FutureFactory.setFuture(future);
 					response = InvokerUtils.createFutureResponse(future);
@@ -424,13 +465,13 @@ public class DegradationFilter extends InvocationInvokeFilter {
 		return response;
 	}
 
-	private static Object getGroovyMockProxy(String key, InvokerContext context, DegradeAction action) {
-		Object interfaceProxy = groovyMocks.get(key);
+	private static MockProxyWrapper getGroovyMockProxy(String key, InvokerContext context, DegradeAction action) {
+		MockProxyWrapper interfaceProxy = groovyMocks.get(key);
 
 		if (interfaceProxy == null) {
-			interfaceProxy = MockInvocationUtils.getProxy(context.getInvokerConfig(),
-					new GroovyScriptInvocationProxy(action.getGroovyScript()));
-			Object oldInterfaceProxy = groovyMocks.putIfAbsent(key, interfaceProxy);
+			interfaceProxy = new MockProxyWrapper(MockInvocationUtils.getProxy(context.getInvokerConfig(),
+					new GroovyScriptInvocationProxy(action.getGroovyScript())));
+			MockProxyWrapper oldInterfaceProxy = groovyMocks.putIfAbsent(key, interfaceProxy);
 			if (oldInterfaceProxy != null) {
 				interfaceProxy = oldInterfaceProxy;
 			}
@@ -439,6 +480,54 @@ public class DegradationFilter extends InvocationInvokeFilter {
 		return interfaceProxy;
 	}
 
+	private static MockProxyWrapper getMockWrapper(InvokerConfig<?> invokerConfig, Object mockObj) {
+		MockProxyWrapper mockWrapper = mockWrappers.get(invokerConfig.getUrl());
+		if (mockWrapper == null || mockWrapper.getProxy() != mockObj) {
+			mockWrapper = new MockProxyWrapper(mockObj);
+			mockWrappers.put(invokerConfig.getUrl(), mockWrapper);
+		}
+		return mockWrapper;
+	}
+
+	/**
+	 * keeps the result of a successful sync call of a method degraded to its
+	 * last known good result
+	 */
+	private static void rememberResult(InvokerContext context, InvocationResponse response) {
+		if (response.getMessageType() != Constants.MESSAGE_TYPE_SERVICE
+				|| !Constants.CALL_SYNC.equalsIgnoreCase(InvokerUtils.getCallType(context))) {
+			return;
+		}
+		String key = DegradationManager.INSTANCE.getRequestUrl(context);
+		DegradeAction action = degradeMethodActions.get(key);
+		if (action == null || !action.isUseLastKnownGood()) {
+			return;
+		}
+		ArgumentsKey argumentsKey = ArgumentsKey.of(context.getArguments());
+		if (argumentsKey != null) {
+			getLastKnownGoods(key).put(argumentsKey, response.getReturn());
+		}
+	}
+
+	private static Object getLastKnownGood(String key, InvokerContext context) {
+		ResponseCache results = lastKnownGoods.get(key);
+		ArgumentsKey argumentsKey = results != null ? ArgumentsKey.of(context.getArguments()) : null;
+		return argumentsKey != null ? results.get(argumentsKey) : ResponseCache.MISS;
+	}
+
+	private static ResponseCache getLastKnownGoods(String key) {
+		ResponseCache results = lastKnownGoods.get(key);
+		if (results == null) {
+			results = new ResponseCache(key, configManager.getIntValue(KEY_LASTKNOWNGOOD_SIZE, 1000),
+					configManager.getIntValue(KEY_LASTKNOWNGOOD_TTL, 600000), false);
+			ResponseCache oldResults = lastKnownGoods.putIfAbsent(key, results);
+			if (oldResults != null) {
+				results = oldResults;
+			}
+		}
+		return results;
+	}
+
 	public static Map<String, DegradeAction> getDegradeMethodActions() {
 		return degradeMethodActions;
 	}
@@ -448,6 +537,7 @@ public class DegradationFilter extends InvocationInvokeFilter {
 		private Object returnObj;
 		private boolean useMockClass = false;
 		private boolean useGroovyScript = false;
+		private boolean useLastKnownGood = false;
 		private Script groovyScript;
 		private boolean enable = true;
 
@@ -471,6 +561,14 @@ public class DegradationFilter extends InvocationInvokeFilter {
 			return useMockClass;
 		}
 
+		public boolean isUseLastKnownGood() {
+			return useLastKnownGood;
+		}
+
+		public void setUseLastKnownGood(boolean useLastKnownGood) {
+			this.useLastKnownGood = useLastKnownGood;
+		}
+
 		public void setUseMockClass(boolean useMockClass) {
 			this.useMockClass = useMockClass;
 		}
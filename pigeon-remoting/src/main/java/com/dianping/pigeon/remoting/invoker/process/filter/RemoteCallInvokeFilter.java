@@ -4,10 +4,20 @@
  */
 package com.dianping.pigeon.remoting.invoker.process.filter;
 
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.monitor.MonitorLoader;
 import com.dianping.pigeon.monitor.MonitorTransaction;
+import com.dianping.pigeon.registry.RegistryManager;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
@@ -15,17 +25,20 @@ import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.BadRequestException;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.concurrent.CallbackFuture;
 import com.dianping.pigeon.remoting.invoker.concurrent.FutureFactory;
 import com.dianping.pigeon.remoting.invoker.concurrent.InvocationCallback;
 import com.dianping.pigeon.remoting.invoker.concurrent.ServiceCallbackWrapper;
 import com.dianping.pigeon.remoting.invoker.concurrent.ServiceFutureImpl;
+import com.dianping.pigeon.remoting.invoker.concurrent.ServiceStream;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.DefaultInvokerContext;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
 import com.dianping.pigeon.remoting.invoker.util.InvokerHelper;
 import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.util.VersionUtils;
 
 /**
  * 执行实际的Remote Call，包括Sync, Future，Callback，Oneway
@@ -36,6 +49,11 @@ public class RemoteCallInvokeFilter extends InvocationInvokeFilter {
 
 	private static final Logger logger = LoggerLoader.getLogger(RemoteCallInvokeFilter.class);
 	private static final InvocationResponse NO_RETURN_RESPONSE = InvokerUtils.createNoReturnResponse();
+	private static final String KEY_STREAM_WINDOW = "pigeon.invoker.stream.window";
+
+	public RemoteCallInvokeFilter() {
+		ConfigManagerLoader.getConfigManager().getIntValue(KEY_STREAM_WINDOW, 64);
+	}
 
 	@Override
 	public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext)
@@ -44,7 +62,7 @@ public class RemoteCallInvokeFilter extends InvocationInvokeFilter {
 		Client client = invocationContext.getClient();
 		InvocationRequest request = invocationContext.getRequest();
 		InvokerConfig<?> invokerConfig = invocationContext.getInvokerConfig();
-		String callType = invokerConfig.getCallType(invocationContext.getMethodName());
+		String callType = InvokerUtils.getCallType(invocationContext);
 		beforeInvoke(invocationContext);
 		boolean isCancel = InvokerHelper.getCancel();
 		if (isCancel) {
@@ -64,7 +82,10 @@ public class RemoteCallInvokeFilter extends InvocationInvokeFilter {
 
 		try {
 			if (Constants.CALL_SYNC.equalsIgnoreCase(callType)) {
-				CallbackFuture future = new CallbackFuture();
+				CallbackFuture future = ((DefaultInvokerContext) invocationContext).getCallbackFuture();
+				if (future == null) {
+					future = new CallbackFuture();
+				}
 				response = InvokerUtils.sendRequest(client, invocationContext.getRequest(), future);
 				invocationContext.getTimeline().add(new TimePoint(TimePhase.Q));
 				if (response == null) {
@@ -91,6 +112,9 @@ public class RemoteCallInvokeFilter extends InvocationInvokeFilter {
 				InvokerUtils.sendRequest(client, invocationContext.getRequest(), null);
 				response = NO_RETURN_RESPONSE;
 				invocationContext.getTimeline().add(new TimePoint(TimePhase.Q));
+			} else if (Constants.CALL_STREAM.equalsIgnoreCase(callType)) {
+				response = InvokerUtils.createDefaultResponse(sendStreamRequest(invocationContext));
+				invocationContext.getTimeline().add(new TimePoint(TimePhase.Q));
 			} else {
 				throw new BadRequestException("Call type[" + callType + "] is not supported!");
 			}
@@ -103,4 +127,35 @@ public class RemoteCallInvokeFilter extends InvocationInvokeFilter {
 		return response;
 	}
 
+	private ServiceStream sendStreamRequest(InvokerContext invocationContext) {
+		Client client = invocationContext.getClient();
+		InvocationRequest request = invocationContext.getRequest();
+		byte serialize = request.getSerialize();
+		if (!Constants.PROTOCOL_DEFAULT.equals(client.getProtocol())
+				|| (serialize != SerializerFactory.SERIALIZE_HESSIAN && serialize != SerializerFactory.SERIALIZE_HESSIAN1
+						&& serialize != SerializerFactory.SERIALIZE_JAVA && serialize != SerializerFactory.SERIALIZE_FST)) {
+			throw new BadRequestException("stream call needs the default protocol and a java object serializer:"
+					+ request);
+		}
+		String version = RegistryManager.getInstance().getReferencedVersionFromCache(client.getAddress());
+		if (StringUtils.isBlank(version) || !VersionUtils.isStreamSupported(version)) {
+			throw new BadRequestException("stream call is not supported by provider:" + client.getAddress()
+					+ ", version:" + version);
+		}
+		int window = ConfigManagerLoader.getConfigManager().getIntValue(KEY_STREAM_WINDOW, 64);
+		long streamId = ThreadLocalRandom.current().nextLong();
+		Map<String, Serializable> requestValues = new HashMap<String, Serializable>();
+		if (request.getRequestValues() != null) {
+			requestValues.putAll(request.getRequestValues());
+		}
+		requestValues.put(Constants.CONTEXT_KEY_STREAM_ID, streamId);
+		requestValues.put(Constants.CONTEXT_KEY_STREAM_CREDIT, window);
+		request.setRequestValues(requestValues);
+		ServiceStream stream = new ServiceStream(streamId, window, InvocationUtils.getRemoteCallFullName(
+				invocationContext.getInvokerConfig().getUrl(), invocationContext.getMethodName(),
+				invocationContext.getParameterTypes()));
+		InvokerUtils.sendRequest(client, request, stream);
+		return stream;
+	}
+
 }
@@ -4,19 +4,21 @@
  */
 package com.dianping.pigeon.remoting.invoker.process.filter;
 
-import java.util.Calendar;
-
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.monitor.MetricsMonitor;
 import com.dianping.pigeon.monitor.Monitor;
 import com.dianping.pigeon.monitor.MonitorLoader;
 import com.dianping.pigeon.monitor.MonitorTransaction;
+import com.dianping.pigeon.monitor.metrics.MethodMeter;
+import com.dianping.pigeon.monitor.metrics.MetricsRegistry;
 import com.dianping.pigeon.registry.RegistryManager;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
 import com.dianping.pigeon.remoting.common.monitor.SizeMonitor;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
@@ -24,7 +26,12 @@ import com.dianping.pigeon.remoting.common.util.InvocationUtils;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerMethodDescriptor;
+import com.dianping.pigeon.remoting.invoker.exception.RemoteInvocationException;
+import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
 import com.dianping.pigeon.remoting.invoker.process.ExceptionManager;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
 import com.dianping.pigeon.util.TimeUtils;
 
 public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
@@ -33,6 +40,9 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 
 	private final Monitor monitor = MonitorLoader.getMonitor();
 
+	// qps and sizes are reported per interval from the meters
+	private final boolean isMetricsMonitor = monitor instanceof MetricsMonitor;
+
 	public RemoteCallMonitorInvokeFilter() {
 	}
 
@@ -45,28 +55,35 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 		String targetApp = null;
 		String callInterface = null;
 		InvokerConfig<?> invokerConfig = invocationContext.getInvokerConfig();
+		long startTime = TimeUtils.currentTimeMillis();
+		InvokerMethodDescriptor descriptor = invocationContext.getMethodDescriptor();
+		MethodMeter meter = descriptor != null ? descriptor.getCallMeter() : InvocationUtils.getMethodMeter(
+				MetricsRegistry.TYPE_CALL, invokerConfig.getUrl(), invocationContext.getMethodName(),
+				invocationContext.getParameterTypes());
 		if (monitor != null) {
 			try {
-				callInterface = InvocationUtils.getRemoteCallFullName(invokerConfig.getUrl(),
-						invocationContext.getMethodName(), invocationContext.getParameterTypes());
+				callInterface = meter.getName();
 				transaction = monitor.createTransaction("PigeonCall", callInterface, invocationContext);
 				if (transaction != null) {
 					monitor.setCurrentCallTransaction(transaction);
 					transaction.setStatusOk();
-					transaction.logEvent("PigeonCall.callType",
-							invokerConfig.getCallType(invocationContext.getMethodName()), "");
+					transaction.logEvent("PigeonCall.callType", InvokerUtils.getCallType(invocationContext), "");
 					transaction.logEvent("PigeonCall.serialize", invokerConfig.getSerialize() + "", "");
-					transaction.logEvent("PigeonCall.timeout",
-							invokerConfig.getTimeout(invocationContext.getMethodName()) + "", "");
-					transaction.logEvent("PigeonCall.QPS", "S" + Calendar.getInstance().get(Calendar.SECOND), "");
+					transaction.logEvent("PigeonCall.timeout", InvokerUtils.getTimeout(invocationContext) + "", "");
+					if (!isMetricsMonitor) {
+						transaction.logEvent("PigeonCall.QPS", "S" + (startTime / 1000 % 60), "");
+					}
 				}
 			} catch (Throwable e) {
 				monitor.logMonitorError(e);
 			}
 		}
-		boolean error = false;
+		boolean failed = false;
+		InvocationResponse response = null;
 		try {
-			InvocationResponse response = handler.handle(invocationContext);
+			response = handler.handle(invocationContext);
+			failed = response != null && response.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION;
+			addOutlierRequest(invocationContext, response, null);
 			if (transaction != null) {
 				if (invocationContext.isDegraded()) {
 					transaction.logEvent("PigeonCall.degrade", callInterface, "");
@@ -81,16 +98,18 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 					}
 					transaction.logEvent("PigeonCall.server", client.getAddress(), parameters);
 				}
-				if (request != null) {
+				if (request != null && !isMetricsMonitor) {
 					String reqSize = SizeMonitor.getInstance().getLogSize(request.getSize());
 					if (reqSize != null) {
 						monitor.logEvent("PigeonCall.requestSize", reqSize, "" + request.getSize());
 					}
 				}
 				if (response != null && response.getSize() > 0) {
-					String respSize = SizeMonitor.getInstance().getLogSize(response.getSize());
-					if (respSize != null) {
-						monitor.logEvent("PigeonCall.responseSize", respSize, "" + response.getSize());
+					if (!isMetricsMonitor) {
+						String respSize = SizeMonitor.getInstance().getLogSize(response.getSize());
+						if (respSize != null) {
+							monitor.logEvent("PigeonCall.responseSize", respSize, "" + response.getSize());
+						}
 					}
 					invocationContext.getTimeline().add(new TimePoint(TimePhase.R, response.getCreateMillisTime()));
 					invocationContext.getTimeline().add(new TimePoint(TimePhase.R));
@@ -98,6 +117,8 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 			}
 			return response;
 		} catch (Throwable e) {
+			failed = true;
+			addOutlierRequest(invocationContext, null, e);
 			if (transaction != null) {
 				if (invocationContext.isDegraded()) {
 					transaction.logEvent("PigeonCall.degrade", callInterface, "");
@@ -114,7 +135,7 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 					}
 					transaction.logEvent("PigeonCall.server", client.getAddress(), parameters);
 				}
-				if (request != null) {
+				if (request != null && !isMetricsMonitor) {
 					String reqSize = SizeMonitor.getInstance().getLogSize(request.getSize());
 					if (reqSize != null) {
 						monitor.logEvent("PigeonCall.requestSize", reqSize, "" + request.getSize());
@@ -126,11 +147,13 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 			}
 			throw e;
 		} finally {
+			InvocationRequest _request = invocationContext.getRequest();
+			meter.record(TimeUtils.currentTimeMillis() - startTime, failed, _request == null ? 0 : _request.getSize(),
+					response == null ? 0 : response.getSize());
 
 			if (transaction != null) {
 				try {
-					if (invocationContext.getRequest() != null) {
-						InvocationRequest _request = invocationContext.getRequest();
+					if (_request != null) {
 						InvokerConfig config = invocationContext.getInvokerConfig();
 						if (_request.getSerialize() != config.getSerialize()) {
 							transaction.addData("CurrentSerialize", _request.getSerialize());
@@ -149,6 +172,27 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 		}
 	}
 
+	private void addOutlierRequest(InvokerContext invocationContext, InvocationResponse response, Throwable e) {
+		Client client = invocationContext.getClient();
+		if (client == null || invocationContext.isDegraded() || !OutlierEjectionManager.INSTANCE.isEnable()) {
+			return;
+		}
+		boolean failed;
+		if (e != null) {
+			if (!(e instanceof RequestTimeoutException || e instanceof NetworkException
+					|| e instanceof RemoteInvocationException)) {
+				return;
+			}
+			failed = true;
+		} else if (Constants.CALL_SYNC.equalsIgnoreCase(InvokerUtils.getCallType(invocationContext))) {
+			failed = response != null && response.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION;
+		} else {
+			// future和callback的结果此时还未返回
+			return;
+		}
+		OutlierEjectionManager.INSTANCE.addClientRequest(client.getAddress(), failed);
+	}
+
 	private void monitorProtocal(InvokerContext invokerContext, InvocationRequest request, String targetApp) {
 		if (request.getSerialize() == SerializerFactory.SERIALIZE_THRIFT) {
 			Client client = invokerContext.getClient();
@@ -0,0 +1,57 @@
+package com.dianping.pigeon.remoting.invoker.process.filter;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.monitor.metrics.MethodMeter;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.cache.ArgumentsKey;
+import com.dianping.pigeon.remoting.invoker.cache.ResponseCache;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerMethodDescriptor;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+
+/**
+ * answers sync calls of methods with cacheTtl from the response cache, placed
+ * before the cluster so a hit never selects a client. only normal results are
+ * cached, exceptions always go to the provider again.
+ */
+public class ResponseCacheInvokeFilter extends InvocationInvokeFilter {
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final String KEY_CACHE_ENABLE = "pigeon.invoker.cache.enable";
+
+	static {
+		configManager.getBooleanValue(KEY_CACHE_ENABLE, true);
+	}
+
+	@Override
+	public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext)
+			throws Throwable {
+		InvokerMethodDescriptor descriptor = invocationContext.getMethodDescriptor();
+		ResponseCache cache = descriptor != null ? descriptor.getResponseCache() : null;
+		if (cache == null || !Constants.CALL_SYNC.equals(InvokerUtils.getCallType(invocationContext))
+				|| !configManager.getBooleanValue(KEY_CACHE_ENABLE, true)) {
+			return handler.handle(invocationContext);
+		}
+		ArgumentsKey key = ArgumentsKey.of(invocationContext.getArguments());
+		if (key == null) {
+			return handler.handle(invocationContext);
+		}
+		MethodMeter meter = descriptor.getCallMeter();
+		Object result = cache.get(key);
+		if (result != ResponseCache.MISS) {
+			meter.recordCache(true);
+			return InvokerUtils.createDefaultResponse(result);
+		}
+		meter.recordCache(false);
+		InvocationResponse response = handler.handle(invocationContext);
+		if (response != null && response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+			cache.put(key, response.getReturn());
+		}
+		return response;
+	}
+
+}
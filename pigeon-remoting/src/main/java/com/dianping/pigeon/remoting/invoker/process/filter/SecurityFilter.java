@@ -4,6 +4,8 @@
  */
 package com.dianping.pigeon.remoting.invoker.process.filter;
 
+import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
@@ -14,6 +16,7 @@ import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.registry.RegistryManager;
+import com.dianping.pigeon.remoting.common.channel.Channel;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
@@ -22,9 +25,11 @@ import com.dianping.pigeon.remoting.common.domain.generic.UnifiedRequest;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.SecurityUtils;
+import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
 import com.dianping.pigeon.util.TimeUtils;
+import com.dianping.pigeon.util.VersionUtils;
 
 /**
  * @author xiangwu
@@ -35,10 +40,17 @@ public class SecurityFilter extends InvocationInvokeFilter {
     private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
     private static final String KEY_APP_SECRETS = "pigeon.invoker.token.app.secrets";
     private static final String KEY_TOKEN_ENABLE = "pigeon.invoker.token.enable";
+    private static final String KEY_TOKEN_SESSION_ENABLE = "pigeon.invoker.token.session.enable";
+    // seconds, well inside the provider's allowed timestamp diff
+    private static final int SESSION_TOKEN_REFRESH = 60;
     private static volatile ConcurrentHashMap<String, String> appSecrets = new ConcurrentHashMap<String, String>();
+    // provider address --> session token
+    private static final ConcurrentHashMap<String, SessionToken> sessionTokens = new ConcurrentHashMap<String, SessionToken>();
+    private static final ConcurrentHashMap<String, Boolean> sessionVersionMap = new ConcurrentHashMap<String, Boolean>();
 
     public SecurityFilter() {
         configManager.getBooleanValue(KEY_TOKEN_ENABLE, true);
+        configManager.getBooleanValue(KEY_TOKEN_SESSION_ENABLE, true);
         parseAppSecrets(configManager.getStringValue(KEY_APP_SECRETS, ""));
         ConfigManagerLoader.getConfigManager().registerConfigChangeListener(new InnerConfigChangeListener());
     }
@@ -108,12 +120,71 @@ public class SecurityFilter extends InvocationInvokeFilter {
                 }
             }
             if (StringUtils.isNotBlank(secret)) {
-                transferSecretValueToRequest(request, secret);
+                Client client = invocationContext.getClient();
+                String localIp = isSessionSupported(invocationContext) ? getLocalIp(client) : null;
+                if (localIp != null) {
+                    transferSessionValueToRequest(request, secret, localIp, client.getAddress());
+                } else {
+                    transferSecretValueToRequest(request, secret);
+                }
             }
         }
         return handler.handle(invocationContext);
     }
 
+    // the provider keeps the session on the connection, so only netty connections qualify
+    private boolean isSessionSupported(InvokerContext invocationContext) {
+        InvocationRequest request = invocationContext.getRequest();
+        if (!configManager.getBooleanValue(KEY_TOKEN_SESSION_ENABLE, true) || request instanceof UnifiedRequest
+                || StringUtils.isBlank(request.getApp())) {
+            return false;
+        }
+        Client client = invocationContext.getClient();
+        if (client == null || !Constants.PROTOCOL_DEFAULT.equals(client.getProtocol())) {
+            return false;
+        }
+        String version = RegistryManager.getInstance().getReferencedVersionFromCache(client.getAddress());
+        if (StringUtils.isBlank(version)) {
+            return false;
+        }
+        Boolean supported = sessionVersionMap.get(version);
+        if (supported == null) {
+            supported = VersionUtils.isSessionTokenSupported(version);
+            sessionVersionMap.putIfAbsent(version, supported);
+        }
+        return supported;
+    }
+
+    // the provider sees this ip as the remote address of the connection
+    private String getLocalIp(Client client) {
+        List<Channel> channels = client.getChannels();
+        if (channels != null) {
+            for (Channel channel : channels) {
+                InetSocketAddress address = channel.getLocalAddress();
+                if (address != null && address.getAddress() != null) {
+                    return address.getAddress().getHostAddress();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void transferSessionValueToRequest(final InvocationRequest request, String secret, String localIp,
+                                               String providerAddress) {
+        int now = getCurrentTime();
+        SessionToken sessionToken = sessionTokens.get(providerAddress);
+        if (sessionToken == null || now - sessionToken.timestamp > SESSION_TOKEN_REFRESH
+                || !sessionToken.isSignedFor(request.getApp(), secret, localIp)) {
+            String data = SecurityUtils.getSessionTokenData(request.getApp(), now, localIp, providerAddress);
+            sessionToken = new SessionToken(request.getApp(), secret, localIp, now,
+                    SecurityUtils.encrypt(data, secret));
+            sessionTokens.put(providerAddress, sessionToken);
+        }
+        request.getRequestValues().put(Constants.REQUEST_KEY_TIMESTAMP, sessionToken.timestamp);
+        request.getRequestValues().put(Constants.REQUEST_KEY_VERSION, Constants.TOKEN_VERSION_SESSION);
+        request.getRequestValues().put(Constants.REQUEST_KEY_TOKEN, sessionToken.token);
+    }
+
     private void transferSecretValueToRequest(final InvocationRequest request, String secret) {
         int timestamp = getCurrentTime();
         if (request instanceof UnifiedRequest) {
@@ -137,4 +208,29 @@ public class SecurityFilter extends InvocationInvokeFilter {
         String data = request.getServiceName() + "#" + request.getMethodName() + "#" + timestamp;
         request.getLocalContext().put(Constants.REQUEST_KEY_TOKEN, SecurityUtils.encrypt(data, secret));
     }
+
+    private static class SessionToken {
+
+        private final String app;
+
+        private final String secret;
+
+        private final String localIp;
+
+        private final int timestamp;
+
+        private final String token;
+
+        SessionToken(String app, String secret, String localIp, int timestamp, String token) {
+            this.app = app;
+            this.secret = secret;
+            this.localIp = localIp;
+            this.timestamp = timestamp;
+            this.token = token;
+        }
+
+        boolean isSignedFor(String app, String secret, String localIp) {
+            return this.app.equals(app) && this.secret.equals(secret) && this.localIp.equals(localIp);
+        }
+    }
 }
@@ -23,10 +23,17 @@ import com.dianping.pigeon.util.ThreadPoolUtils;
 
 public class ResponseThreadPoolProcessor extends AbstractResponseProcessor {
 
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final String KEY_RESPONSE_INLINE_ENABLE = "pigeon.invoker.response.inline.enable";
+
 	private static ThreadPool responseProcessThreadPool;
 
+	static {
+		configManager.getBooleanValue(KEY_RESPONSE_INLINE_ENABLE, true);
+	}
+
 	public ResponseThreadPoolProcessor() {
-		ConfigManager configManager = ConfigManagerLoader.getConfigManager();
 		int corePoolSize = configManager.getIntValue(Constants.KEY_RESPONSE_COREPOOLSIZE,
 				Constants.DEFAULT_RESPONSE_COREPOOLSIZE);
 		int maxPoolSize = configManager.getIntValue(Constants.KEY_RESPONSE_MAXPOOLSIZE,
@@ -42,6 +49,17 @@ public class ResponseThreadPoolProcessor extends AbstractResponseProcessor {
 	}
 
 	public void doProcessResponse(final InvocationResponse response, final Client client) {
+		if (response.getMessageType() == Constants.MESSAGE_TYPE_STREAM) {
+			// stream items only get queued, they stay in order on the io thread
+			ServiceInvocationRepository.getInstance().receiveResponse(response);
+			return;
+		}
+		if (configManager.getBooleanValue(KEY_RESPONSE_INLINE_ENABLE, true)
+				&& ServiceInvocationRepository.getInstance().isInlineResponse(response)) {
+			// the waiting caller is only signalled, a queue hop would cost more than that
+			ServiceInvocationRepository.getInstance().receiveResponse(response);
+			return;
+		}
 		Runnable task = new Runnable() {
 			public void run() {
 				ServiceInvocationRepository.getInstance().receiveResponse(response);
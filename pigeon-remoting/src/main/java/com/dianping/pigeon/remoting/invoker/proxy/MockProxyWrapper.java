@@ -2,6 +2,11 @@ package com.dianping.pigeon.remoting.invoker.proxy;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerMethodDescriptor;
 
 /**
  * Created by chenchongze on 16/8/22.
@@ -10,6 +15,9 @@ public class MockProxyWrapper {
 
     private final Object proxy;
 
+    // mock method of each stub method, resolved on the first degraded call
+    private volatile Map<InvokerMethodDescriptor, Method> methods = new IdentityHashMap<InvokerMethodDescriptor, Method>();
+
     public MockProxyWrapper(Object proxy) {
 
         if (proxy == null) {
@@ -19,13 +27,55 @@ public class MockProxyWrapper {
         this.proxy = proxy;
     }
 
+    public Object getProxy() {
+        return proxy;
+    }
+
+    public Object invoke(InvokerContext context) throws Throwable {
+        InvokerMethodDescriptor descriptor = context.getMethodDescriptor();
+        if (descriptor == null) {
+            return invoke(context.getMethodName(), context.getParameterTypes(), context.getArguments());
+        }
+        Method method = methods.get(descriptor);
+        if (method == null) {
+            method = getMethod(descriptor);
+        }
+        return invoke(method, context.getArguments());
+    }
+
     public Object invoke(String methodName, Class<?>[] parameterTypes, Object[] arguments)
             throws Throwable {
-        Method method = proxy.getClass().getMethod(methodName, parameterTypes);
+        return invoke(resolve(methodName, parameterTypes), arguments);
+    }
+
+    private Object invoke(Method method, Object[] arguments) throws Throwable {
         try {
             return method.invoke(proxy, arguments);
         }  catch (InvocationTargetException e) {
             throw e.getTargetException();
         }
     }
+
+    private synchronized Method getMethod(InvokerMethodDescriptor descriptor) throws NoSuchMethodException {
+        Method method = methods.get(descriptor);
+        if (method == null) {
+            method = resolve(descriptor.getMethodName(), descriptor.getParameterTypes());
+            Map<InvokerMethodDescriptor, Method> newMethods = new IdentityHashMap<InvokerMethodDescriptor, Method>(
+                    methods);
+            newMethods.put(descriptor, method);
+            methods = newMethods;
+        }
+        return method;
+    }
+
+    private Method resolve(String methodName, Class<?>[] parameterTypes) throws NoSuchMethodException {
+        Method method = proxy.getClass().getMethod(methodName, parameterTypes);
+        try {
+            // skips the access check of every call, mocks are often non public classes
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            // checked access then
+        }
+        return method;
+    }
 }
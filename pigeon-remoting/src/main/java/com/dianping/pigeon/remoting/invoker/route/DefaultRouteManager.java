@@ -28,6 +28,7 @@ import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalance;
 import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalanceManager;
 import com.dianping.pigeon.remoting.invoker.route.balance.RandomLoadBalance;
 import com.dianping.pigeon.remoting.invoker.route.balance.WeightedAutoawareLoadBalance;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
 import com.dianping.pigeon.remoting.invoker.route.quality.RequestQualityManager;
 import com.dianping.pigeon.remoting.invoker.route.region.RegionPolicyManager;
 
@@ -41,6 +42,8 @@ public class DefaultRouteManager implements RouteManager, Disposable {
 
     private final RequestQualityManager requestQualityManager = RequestQualityManager.INSTANCE;
 
+    private final OutlierEjectionManager outlierEjectionManager = OutlierEjectionManager.INSTANCE;
+
     private static final ClusterListenerManager clusterListenerManager = ClusterListenerManager.getInstance();
 
     private ServiceProviderChangeListener providerChangeListener = new InnerServiceProviderChangeListener();
@@ -76,6 +79,15 @@ public class DefaultRouteManager implements RouteManager, Disposable {
         List<Client> availableClients = getAvailableClients(clientList, invokerConfig, request);
         Client selectedClient = select(availableClients, invokerConfig, request);
 
+        if (outlierEjectionManager.isEnable()) {
+            // 半开的地址只有被选中时才占用探测名额
+            while (!outlierEjectionManager.acquireProbe(selectedClient.getAddress())
+                    && availableClients.size() > 1) {
+                availableClients.remove(selectedClient);
+                selectedClient = select(availableClients, invokerConfig, request);
+            }
+        }
+
         while (!selectedClient.isActive()) {
             logger.info("[route] remove client:" + selectedClient);
             availableClients.remove(selectedClient);
@@ -121,12 +133,26 @@ public class DefaultRouteManager implements RouteManager, Disposable {
 
         }
 
+        // 摘除的outlier不超过maxEjected个，超出部分仍然参与路由
+        int maxEjected = 0;
+        int ejected = 0;
+        if (outlierEjectionManager.isEnable()) {
+            maxEjected = clientList.size() * outlierEjectionManager.getMaxEjectionPercent() / 100;
+        }
+
         List<Client> filteredClients = new ArrayList<Client>(clientList.size());
         for (Client client : clientList) {
             if (client != null) {
                 String address = client.getAddress();
                 int weight = RegistryManager.getInstance().getServiceWeightFromCache(address);
                 if (client.isActive() && weight > 0) {
+                    if (ejected < maxEjected && outlierEjectionManager.isEjected(address)) {
+                        ejected++;
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("provider ejected as outlier:" + address);
+                        }
+                        continue;
+                    }
                     filteredClients.add(client);
                 } else if (logger.isDebugEnabled()) {
                     logger.debug("provider status:" + client.isActive() + "," + weight);
@@ -0,0 +1,246 @@
+package com.dianping.pigeon.remoting.invoker.route.quality;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * per provider address circuit breaker. an address is ejected after too many
+ * consecutive failures or a high error rate within the stat interval, the
+ * ejection time doubles on every ejection in a row up to the max. once the
+ * ejection expires the address is half open and gets one probe per probe
+ * interval, the probe result closes or re-ejects it.
+ */
+public enum OutlierEjectionManager {
+
+	INSTANCE;
+
+	private OutlierEjectionManager() {
+
+	}
+
+	private static final Logger logger = LoggerLoader.getLogger(OutlierEjectionManager.class);
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+	private static final String KEY_OUTLIER_ENABLE = "pigeon.invoker.outlier.enable";
+	private static final String KEY_OUTLIER_CONSECUTIVE_FAILURES = "pigeon.invoker.outlier.consecutive.failures";
+	private static final String KEY_OUTLIER_FAILED_PERCENT = "pigeon.invoker.outlier.failed.percent";
+	private static final String KEY_OUTLIER_THRESHOLD_TOTAL = "pigeon.invoker.outlier.threshold.total";
+	private static final String KEY_OUTLIER_INTERVAL = "pigeon.invoker.outlier.interval";
+	private static final String KEY_OUTLIER_EJECTION_BASE = "pigeon.invoker.outlier.ejection.base";
+	private static final String KEY_OUTLIER_EJECTION_MAX = "pigeon.invoker.outlier.ejection.max";
+	private static final String KEY_OUTLIER_EJECTION_MAX_PERCENT = "pigeon.invoker.outlier.ejection.max.percent";
+	private static final String KEY_OUTLIER_PROBE_INTERVAL = "pigeon.invoker.outlier.probe.interval";
+
+	static {
+		configManager.getBooleanValue(KEY_OUTLIER_ENABLE, false);
+		configManager.getIntValue(KEY_OUTLIER_CONSECUTIVE_FAILURES, 5);
+		configManager.getIntValue(KEY_OUTLIER_FAILED_PERCENT, 50);
+		configManager.getIntValue(KEY_OUTLIER_THRESHOLD_TOTAL, 20);
+		configManager.getIntValue(KEY_OUTLIER_INTERVAL, 10000);
+		configManager.getIntValue(KEY_OUTLIER_EJECTION_BASE, 10000);
+		configManager.getIntValue(KEY_OUTLIER_EJECTION_MAX, 300000);
+		configManager.getIntValue(KEY_OUTLIER_EJECTION_MAX_PERCENT, 50);
+		configManager.getIntValue(KEY_OUTLIER_PROBE_INTERVAL, 1000);
+	}
+
+	private static final int STATE_CLOSED = 0;
+	private static final int STATE_OPEN = 1;
+	private static final int STATE_HALF_OPEN = 2;
+
+	// address --> breaker
+	private final ConcurrentHashMap<String, Breaker> breakers = new ConcurrentHashMap<String, Breaker>();
+
+	public boolean isEnable() {
+		return configManager.getBooleanValue(KEY_OUTLIER_ENABLE, false);
+	}
+
+	public void addClientRequest(String address, boolean failed) {
+		if (address == null || !isEnable()) {
+			return;
+		}
+		Breaker breaker = breakers.get(address);
+		if (breaker == null) {
+			if (!failed) {
+				return;
+			}
+			breaker = new Breaker();
+			Breaker last = breakers.putIfAbsent(address, breaker);
+			if (last != null) {
+				breaker = last;
+			}
+		}
+		if (failed) {
+			breaker.onFailure(address);
+		} else {
+			breaker.onSuccess(address);
+		}
+	}
+
+	/**
+	 * whether the address should be left out of routing right now, a half open
+	 * address stays in while its probe slot is free
+	 */
+	public boolean isEjected(String address) {
+		Breaker breaker = breakers.get(address);
+		return breaker != null && breaker.isEjected(address);
+	}
+
+	/**
+	 * called for the address finally selected, takes the probe slot of a half
+	 * open address and returns false if another request took it first
+	 */
+	public boolean acquireProbe(String address) {
+		Breaker breaker = breakers.get(address);
+		return breaker == null || breaker.acquireProbe(address);
+	}
+
+	public int getMaxEjectionPercent() {
+		return configManager.getIntValue(KEY_OUTLIER_EJECTION_MAX_PERCENT, 50);
+	}
+
+	public void removeClientBreaker(String address) {
+		breakers.remove(address);
+	}
+
+	static class Breaker {
+
+		private volatile int state = STATE_CLOSED;
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+		private final AtomicInteger total = new AtomicInteger();
+		private final AtomicInteger failed = new AtomicInteger();
+		private final AtomicLong nextProbeTime = new AtomicLong();
+		private volatile long intervalStart = TimeUtils.currentTimeMillis();
+		private volatile long ejectedUntil;
+		private volatile long lastEjectionTime;
+		private int ejections;
+
+		void onSuccess(String address) {
+			consecutiveFailures.set(0);
+			if (state == STATE_HALF_OPEN) {
+				close(address);
+			} else if (state == STATE_CLOSED) {
+				count(false);
+			}
+		}
+
+		void onFailure(String address) {
+			if (state == STATE_HALF_OPEN) {
+				eject(address, "probe failed");
+				return;
+			}
+			if (state != STATE_CLOSED) {
+				return;
+			}
+			int consecutive = consecutiveFailures.incrementAndGet();
+			count(true);
+
+			if (consecutive >= configManager.getIntValue(KEY_OUTLIER_CONSECUTIVE_FAILURES, 5)) {
+				eject(address, consecutive + " consecutive failures");
+				return;
+			}
+			int totalValue = total.get();
+			if (totalValue >= configManager.getIntValue(KEY_OUTLIER_THRESHOLD_TOTAL, 20)
+					&& failed.get() * 100 >= totalValue
+							* configManager.getIntValue(KEY_OUTLIER_FAILED_PERCENT, 50)) {
+				eject(address, failed.get() + "/" + totalValue + " failed");
+			}
+		}
+
+		private void count(boolean isFailed) {
+			long now = TimeUtils.currentTimeMillis();
+			if (now - intervalStart > configManager.getIntValue(KEY_OUTLIER_INTERVAL, 10000)) {
+				intervalStart = now;
+				total.set(0);
+				failed.set(0);
+			}
+			total.incrementAndGet();
+			if (isFailed) {
+				failed.incrementAndGet();
+			}
+		}
+
+		boolean isEjected(String address) {
+			if (state == STATE_CLOSED) {
+				return false;
+			}
+			long now = TimeUtils.currentTimeMillis();
+			if (now < ejectedUntil) {
+				return true;
+			}
+			halfOpen(address);
+			return now < nextProbeTime.get();
+		}
+
+		boolean acquireProbe(String address) {
+			if (state == STATE_CLOSED) {
+				return true;
+			}
+			long now = TimeUtils.currentTimeMillis();
+			if (now < ejectedUntil) {
+				// routed beyond the max ejection percent
+				return true;
+			}
+			halfOpen(address);
+			long next = nextProbeTime.get();
+			return now >= next && nextProbeTime.compareAndSet(next,
+					now + configManager.getIntValue(KEY_OUTLIER_PROBE_INTERVAL, 1000));
+		}
+
+		private void halfOpen(String address) {
+			if (state == STATE_OPEN) {
+				synchronized (this) {
+					if (state == STATE_OPEN) {
+						state = STATE_HALF_OPEN;
+						logger.info("[outlier] half open address:" + address);
+					}
+				}
+			}
+		}
+
+		private synchronized void eject(String address, String reason) {
+			if (state == STATE_OPEN) {
+				return;
+			}
+			long now = TimeUtils.currentTimeMillis();
+			long base = configManager.getIntValue(KEY_OUTLIER_EJECTION_BASE, 10000);
+			long max = configManager.getIntValue(KEY_OUTLIER_EJECTION_MAX, 300000);
+			// forget earlier ejections once the address has been healthy for long
+			if (ejections > 0 && now - lastEjectionTime > max + ejectionTime(base, max, ejections)) {
+				ejections = 0;
+			}
+			ejections++;
+			long ejectionTime = ejectionTime(base, max, ejections);
+			lastEjectionTime = now;
+			ejectedUntil = now + ejectionTime;
+			// the probe is over, the next half open period gets a free slot
+			nextProbeTime.set(0);
+			state = STATE_OPEN;
+			logger.info("[outlier] eject address:" + address + " for " + ejectionTime + "ms, " + reason);
+		}
+
+		private synchronized void close(String address) {
+			if (state != STATE_HALF_OPEN) {
+				return;
+			}
+			state = STATE_CLOSED;
+			nextProbeTime.set(0);
+			intervalStart = TimeUtils.currentTimeMillis();
+			total.set(0);
+			failed.set(0);
+			consecutiveFailures.set(0);
+			logger.info("[outlier] close address:" + address);
+		}
+
+		private static long ejectionTime(long base, long max, int ejections) {
+			long time = base << Math.min(ejections - 1, 20);
+			return Math.min(time, max);
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package com.dianping.pigeon.remoting.invoker.service;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.registry.RegistryManager;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.BatchResult;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.BadResponseException;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.ClientManager;
+import com.dianping.pigeon.remoting.invoker.concurrent.BatchCallFuture;
+import com.dianping.pigeon.remoting.invoker.concurrent.FutureFactory;
+import com.dianping.pigeon.remoting.invoker.concurrent.InvocationCallback;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
+import com.dianping.pigeon.remoting.invoker.domain.DefaultInvokerContext;
+import com.dianping.pigeon.remoting.invoker.util.InvokerHelper;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.util.TimeUtils;
+import com.dianping.pigeon.util.VersionUtils;
+
+/**
+ * collects calls of one method of one reference and sends them as a single
+ * $batch request. the first call of a batch waits up to the batch window for
+ * more calls unless the batch fills up before, then sends the batch as a
+ * callback request, so no thread is held by the batch itself. every caller
+ * waits on its own future.
+ */
+public class BatchInvoker {
+
+	private static final Class<?>[] BATCH_PARAMETER_TYPES = new Class<?>[] { String.class, String[].class,
+			Object[][].class };
+
+	private static final long SUPPORT_CHECK_INTERVAL = 5000;
+
+	private final InvokerConfig<?> invokerConfig;
+
+	private final InvokerConfig<?> batchConfig;
+
+	private final ServiceInvocationHandler handler;
+
+	private final String methodName;
+
+	private final String callInterface;
+
+	private final String[] paramClassNames;
+
+	private final int batchSize;
+
+	private final long windowNanos;
+
+	private final Object lock = new Object();
+
+	private Batch current;
+
+	private volatile boolean supported;
+
+	private volatile long supportCheckTime;
+
+	public BatchInvoker(InvokerConfig<?> invokerConfig, ServiceInvocationHandler handler, Method method,
+			InvokerMethodConfig methodConfig) {
+		this.invokerConfig = invokerConfig;
+		this.handler = handler;
+		this.methodName = method.getName();
+		this.batchSize = methodConfig.getBatchSize();
+		this.windowNanos = methodConfig.getBatchWindow() * 1000L;
+		this.callInterface = InvocationUtils.getRemoteCallFullName(invokerConfig.getUrl(), methodName,
+				method.getParameterTypes());
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		this.paramClassNames = new String[parameterTypes.length];
+		for (int i = 0; i < parameterTypes.length; i++) {
+			paramClassNames[i] = box(parameterTypes[i]).getName();
+		}
+		this.batchConfig = newBatchConfig(invokerConfig);
+	}
+
+	// the batch request itself is always sent as a callback request, on a copy
+	// so the caller's config is left as it was
+	private static InvokerConfig<?> newBatchConfig(InvokerConfig<?> invokerConfig) {
+		InvokerConfig<?> batchConfig = invokerConfig.copy();
+		Map<String, InvokerMethodConfig> methods = batchConfig.getMethods();
+		if (methods == null) {
+			methods = new HashMap<String, InvokerMethodConfig>();
+			batchConfig.setMethods(methods);
+		}
+		InvokerMethodConfig methodConfig = new InvokerMethodConfig();
+		methodConfig.setName(Constants.BATCH_METHOD);
+		methodConfig.setCallType(Constants.CALL_CALLBACK);
+		methods.put(Constants.BATCH_METHOD, methodConfig);
+		return batchConfig;
+	}
+
+	/**
+	 * whether calls can be batched right now, otherwise the caller makes a
+	 * normal call
+	 */
+	public boolean isBatchable() {
+		String callType = invokerConfig.getCallType(methodName);
+		if (!Constants.CALL_SYNC.equalsIgnoreCase(callType) && !Constants.CALL_FUTURE.equalsIgnoreCase(callType)) {
+			return false;
+		}
+		byte serialize = invokerConfig.getSerialize();
+		if (serialize != SerializerFactory.SERIALIZE_HESSIAN && serialize != SerializerFactory.SERIALIZE_HESSIAN1
+				&& serialize != SerializerFactory.SERIALIZE_JAVA && serialize != SerializerFactory.SERIALIZE_FST) {
+			return false;
+		}
+		long now = TimeUtils.currentTimeMillis();
+		if (now - supportCheckTime > SUPPORT_CHECK_INTERVAL) {
+			supported = isProviderSupported();
+			supportCheckTime = now;
+		}
+		return supported;
+	}
+
+	// every provider must understand $batch, the route is chosen per batch
+	private boolean isProviderSupported() {
+		List<Client> clients = ClientManager.getInstance().getClusterListener().getServiceClients()
+				.get(invokerConfig.getUrl());
+		if (clients == null || clients.isEmpty()) {
+			return false;
+		}
+		for (Client client : clients) {
+			String version = RegistryManager.getInstance().getReferencedVersionFromCache(client.getAddress());
+			if (StringUtils.isBlank(version) || !VersionUtils.isBatchSupported(version)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public Object invoke(Object[] args) throws Throwable {
+		int timeout = invokerConfig.getTimeout(methodName);
+		BatchCallFuture future = submit(args, timeout);
+		if (Constants.CALL_FUTURE.equalsIgnoreCase(invokerConfig.getCallType(methodName))) {
+			FutureFactory.setFuture(future);
+			return null;
+		}
+		return future.waitResult(timeout + windowNanos / 1000000);
+	}
+
+	BatchCallFuture submit(Object[] args, int timeout) {
+		BatchCallFuture future = new BatchCallFuture(timeout, callInterface);
+		Batch batch;
+		boolean leader = false;
+		boolean full = false;
+		synchronized (lock) {
+			batch = current;
+			if (batch == null) {
+				batch = new Batch(batchSize, timeout, Thread.currentThread());
+				current = batch;
+				leader = true;
+			}
+			batch.add(args, future);
+			if (batch.size >= batchSize) {
+				current = null;
+				batch.closed = true;
+				full = true;
+			}
+		}
+		if (leader) {
+			if (!full) {
+				await(batch);
+			}
+			flush(batch);
+		} else if (full) {
+			LockSupport.unpark(batch.leader);
+		}
+		return future;
+	}
+
+	private void await(Batch batch) {
+		long deadline = System.nanoTime() + windowNanos;
+		while (!batch.closed) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				synchronized (lock) {
+					if (current == batch) {
+						current = null;
+					}
+					batch.closed = true;
+				}
+				return;
+			}
+			LockSupport.parkNanos(this, remaining);
+		}
+	}
+
+	private void flush(Batch batch) {
+		Object[][] calls = new Object[batch.size][];
+		System.arraycopy(batch.calls, 0, calls, 0, batch.size);
+		BatchCallback callback = new BatchCallback(batch);
+		try {
+			InvokerHelper.setCallback(callback);
+			InvokerHelper.setTimeout(batch.timeout);
+			InvocationResponse response = handler.handle(new DefaultInvokerContext(batchConfig,
+					Constants.BATCH_METHOD, BATCH_PARAMETER_TYPES, new Object[] { methodName, paramClassNames, calls }));
+			if (InvokerHelper.getCallback() != null) {
+				// answered without a remote call, e.g. by degradation
+				complete(callback, response);
+			}
+		} catch (Throwable t) {
+			callback.onFailure(t);
+		} finally {
+			InvokerHelper.clearCallback();
+			InvokerHelper.clearTimeout();
+		}
+	}
+
+	private void complete(BatchCallback callback, InvocationResponse response) {
+		if (response == null || response.getMessageType() != Constants.MESSAGE_TYPE_SERVICE) {
+			Throwable e = null;
+			if (response != null && response.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION) {
+				e = InvokerUtils.toRpcException(response);
+			} else if (response != null && response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE_EXCEPTION) {
+				e = InvokerUtils.toApplicationException(response);
+			} else {
+				e = new BadResponseException("invalid batch response:" + response);
+			}
+			callback.onFailure(e);
+		} else {
+			callback.onSuccess(response.getReturn());
+		}
+	}
+
+	private static Class<?> box(Class<?> type) {
+		if (type == byte.class) {
+			return Byte.class;
+		} else if (type == short.class) {
+			return Short.class;
+		} else if (type == int.class) {
+			return Integer.class;
+		} else if (type == boolean.class) {
+			return Boolean.class;
+		} else if (type == long.class) {
+			return Long.class;
+		} else if (type == float.class) {
+			return Float.class;
+		} else if (type == double.class) {
+			return Double.class;
+		} else if (type == char.class) {
+			return Character.class;
+		}
+		return type;
+	}
+
+	static class Batch {
+
+		final Object[][] calls;
+
+		final BatchCallFuture[] futures;
+
+		final int timeout;
+
+		final Thread leader;
+
+		int size;
+
+		volatile boolean closed;
+
+		Batch(int capacity, int timeout, Thread leader) {
+			this.calls = new Object[capacity][];
+			this.futures = new BatchCallFuture[capacity];
+			this.timeout = timeout;
+			this.leader = leader;
+		}
+
+		void add(Object[] args, BatchCallFuture future) {
+			calls[size] = args == null ? new Object[0] : args;
+			futures[size] = future;
+			size++;
+		}
+	}
+
+	static class BatchCallback implements InvocationCallback {
+
+		private final Batch batch;
+
+		BatchCallback(Batch batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void onSuccess(Object result) {
+			if (!(result instanceof BatchResult) || ((BatchResult) result).size() != batch.size) {
+				onFailure(new BadResponseException("invalid batch result:" + result));
+				return;
+			}
+			BatchResult batchResult = (BatchResult) result;
+			for (int i = 0; i < batch.size; i++) {
+				Throwable error = batchResult.getError(i);
+				if (error != null) {
+					batch.futures[i].setError(error);
+				} else {
+					batch.futures[i].setResult(batchResult.getResult(i));
+				}
+			}
+		}
+
+		@Override
+		public void onFailure(Throwable exception) {
+			for (int i = 0; i < batch.size; i++) {
+				batch.futures[i].setError(exception);
+			}
+		}
+	}
+}
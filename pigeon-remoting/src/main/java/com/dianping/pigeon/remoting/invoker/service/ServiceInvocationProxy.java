@@ -6,6 +6,8 @@ package com.dianping.pigeon.remoting.invoker.service;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
@@ -14,14 +16,24 @@ import com.dianping.pigeon.remoting.common.exception.BadResponseException;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
 import com.dianping.pigeon.remoting.invoker.domain.DefaultInvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerMethodDescriptor;
 import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
 
 public class ServiceInvocationProxy implements InvocationHandler {
 
 	private static final Logger logger = LoggerLoader.getLogger(ServiceInvocationProxy.class);
+	private static final int KIND_REMOTE = 0;
+	private static final int KIND_OBJECT = 1;
+	private static final int KIND_TO_STRING = 2;
+	private static final int KIND_HASH_CODE = 3;
+	private static final int KIND_EQUALS = 4;
 	private InvokerConfig<?> invokerConfig;
 	private ServiceInvocationHandler handler;
+	// the proxy class passes the same Method instance on every call, so stubs
+	// are looked up by identity in a copy on write table
+	private volatile Map<Method, MethodStub> stubs = new IdentityHashMap<Method, MethodStub>();
 
 	public ServiceInvocationProxy(InvokerConfig<?> invokerConfig, ServiceInvocationHandler handler) {
 		this.invokerConfig = invokerConfig;
@@ -29,22 +41,74 @@ public class ServiceInvocationProxy implements InvocationHandler {
 	}
 
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		MethodStub stub = stubs.get(method);
+		if (stub == null) {
+			stub = getStub(method);
+		}
+		switch (stub.kind) {
+		case KIND_OBJECT:
+			return method.invoke(handler, args);
+		case KIND_TO_STRING:
+			return handler.toString();
+		case KIND_HASH_CODE:
+			return handler.hashCode();
+		case KIND_EQUALS:
+			return handler.equals(args[0]);
+		default:
+			break;
+		}
+		InvokerMethodDescriptor descriptor = stub.descriptor;
+		if (stub.batchInvoker != null && stub.batchInvoker.isBatchable()) {
+			Object result = stub.batchInvoker.invoke(args);
+			return result != null ? result : descriptor.getDefaultReturn();
+		}
+		return extractResult(handler.handle(new DefaultInvokerContext(descriptor, args)), descriptor);
+	}
+
+	private synchronized MethodStub getStub(Method method) {
+		MethodStub stub = stubs.get(method);
+		if (stub == null) {
+			stub = newStub(method);
+			Map<Method, MethodStub> newStubs = new IdentityHashMap<Method, MethodStub>(stubs);
+			newStubs.put(method, stub);
+			stubs = newStubs;
+		}
+		return stub;
+	}
+
+	private MethodStub newStub(Method method) {
 		String methodName = method.getName();
-		Class<?>[] parameterTypes = method.getParameterTypes();
+		int parameterCount = method.getParameterTypes().length;
 		if (method.getDeclaringClass() == Object.class) {
-			return method.invoke(handler, args);
+			return new MethodStub(KIND_OBJECT, null, null);
 		}
-		if ("toString".equals(methodName) && parameterTypes.length == 0) {
-			return handler.toString();
+		if ("toString".equals(methodName) && parameterCount == 0) {
+			return new MethodStub(KIND_TO_STRING, null, null);
 		}
-		if ("hashCode".equals(methodName) && parameterTypes.length == 0) {
-			return handler.hashCode();
+		if ("hashCode".equals(methodName) && parameterCount == 0) {
+			return new MethodStub(KIND_HASH_CODE, null, null);
 		}
-		if ("equals".equals(methodName) && parameterTypes.length == 1) {
-			return handler.equals(args[0]);
+		if ("equals".equals(methodName) && parameterCount == 1) {
+			return new MethodStub(KIND_EQUALS, null, null);
+		}
+		InvokerMethodDescriptor descriptor = new InvokerMethodDescriptor(invokerConfig, method);
+		BatchInvoker batchInvoker = null;
+		InvokerMethodConfig methodConfig = descriptor.getMethodConfig();
+		if (methodConfig != null && methodConfig.getBatchSize() > 1) {
+			batchInvoker = new BatchInvoker(invokerConfig, handler, method, methodConfig);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("resolved stub method:" + descriptor);
+		}
+		return new MethodStub(KIND_REMOTE, descriptor, batchInvoker);
+	}
+
+	private Object extractResult(InvocationResponse response, InvokerMethodDescriptor descriptor) throws Throwable {
+		Object responseReturn = response.getReturn();
+		if (responseReturn == null) {
+			return descriptor.getDefaultReturn();
 		}
-		return extractResult(handler.handle(new DefaultInvokerContext(invokerConfig, methodName, parameterTypes, args)),
-				method.getReturnType());
+		return extractResult(response, descriptor.getReturnType());
 	}
 
 	public Object extractResult(InvocationResponse response, Class<?> returnType) throws Throwable {
@@ -83,4 +147,19 @@ public class ServiceInvocationProxy implements InvocationHandler {
 		}
 	}
 
+	private static class MethodStub {
+
+		private final int kind;
+
+		private final InvokerMethodDescriptor descriptor;
+
+		private final BatchInvoker batchInvoker;
+
+		MethodStub(int kind, InvokerMethodDescriptor descriptor, BatchInvoker batchInvoker) {
+			this.kind = kind;
+			this.descriptor = descriptor;
+			this.batchInvoker = batchInvoker;
+		}
+	}
+
 }
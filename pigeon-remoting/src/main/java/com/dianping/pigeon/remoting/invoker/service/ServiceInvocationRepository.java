@@ -10,16 +10,21 @@ import java.util.concurrent.ConcurrentHashMap;
 import com.dianping.pigeon.log.Logger;
 
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.channel.Channel;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.concurrent.CallFuture;
 import com.dianping.pigeon.remoting.invoker.concurrent.Callback;
+import com.dianping.pigeon.remoting.invoker.concurrent.ServiceStream;
 import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
 import com.dianping.pigeon.remoting.invoker.listener.InvocationTimeoutListener;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
 import com.dianping.pigeon.threadpool.DefaultThreadPool;
 import com.dianping.pigeon.threadpool.ThreadPool;
 import com.dianping.pigeon.util.ThreadPoolUtils;
+import com.dianping.pigeon.util.TimeUtils;
 
 public class ServiceInvocationRepository {
 
@@ -43,11 +48,64 @@ public class ServiceInvocationRepository {
     }
 
     public void remove(long sequence) {
-        invocations.remove(sequence);
+        RemoteInvocationBean invocationBean = invocations.remove(sequence);
+        if (invocationBean != null) {
+            releasePending(invocationBean);
+        }
+    }
+
+    /**
+     * counts the invocation as pending on the channel it is written to, the
+     * count is released however the invocation leaves the repository:
+     * response, timeout or cancel
+     */
+    public boolean addPending(long sequence, Channel channel) {
+        RemoteInvocationBean invocationBean = invocations.get(sequence);
+        if (invocationBean == null) {
+            return false;
+        }
+        synchronized (invocationBean) {
+            if (invocationBean.removed) {
+                return false;
+            }
+            invocationBean.channel = channel;
+            channel.incPendingCount();
+        }
+        return true;
+    }
+
+    private static void releasePending(RemoteInvocationBean invocationBean) {
+        synchronized (invocationBean) {
+            invocationBean.removed = true;
+            if (invocationBean.channel != null) {
+                invocationBean.channel.decPendingCount();
+                invocationBean.channel = null;
+            }
+        }
+    }
+
+    /**
+     * whether the callback of the response only wakes up a waiting caller, sync
+     * and future calls are completed right on the io thread while user
+     * callbacks are not
+     */
+    public boolean isInlineResponse(InvocationResponse response) {
+        RemoteInvocationBean invocationBean = invocations.get(response.getSequence());
+        if (invocationBean == null || invocationBean.callback == null) {
+            return true;
+        }
+        Callback callback = invocationBean.callback;
+        return callback instanceof CallFuture || callback instanceof ServiceStream;
     }
 
     public void receiveResponse(InvocationResponse response) {
         RemoteInvocationBean invocationBean = invocations.get(response.getSequence());
+        if (invocationBean != null && response.getMessageType() == Constants.MESSAGE_TYPE_STREAM) {
+            // items of a stream call, the invocation stays until the final response
+            invocationBean.request.setCreateMillisTime(TimeUtils.currentTimeMillis());
+            invocationBean.callback.callback(response);
+            return;
+        }
         if (invocationBean != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("received response:" + response);
@@ -64,7 +122,7 @@ public class ServiceInvocationRepository {
                     callback.run();
                 }
             } finally {
-                invocations.remove(response.getSequence());
+                remove(response.getSequence());
             }
         }
     }
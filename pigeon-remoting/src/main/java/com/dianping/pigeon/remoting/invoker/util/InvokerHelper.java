@@ -89,6 +89,10 @@ public final class InvokerHelper {
 		tlCallback.remove();
 	}
 
+	public static void clearTimeout() {
+		tlTimeout.remove();
+	}
+
 	public static Future<?> getFuture() {
 		return FutureFactory.getFuture();
 	}
@@ -20,6 +20,7 @@ import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.concurrent.Callback;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerMethodDescriptor;
 import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
 import com.dianping.pigeon.remoting.invoker.exception.RemoteInvocationException;
 import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
@@ -73,6 +74,22 @@ public class InvokerUtils {
             }
         }
 
+	public static int getTimeout(InvokerContext invokerContext) {
+		InvokerMethodDescriptor descriptor = invokerContext.getMethodDescriptor();
+		if (descriptor != null) {
+			return descriptor.getTimeout();
+		}
+		return invokerContext.getInvokerConfig().getTimeout(invokerContext.getMethodName());
+	}
+
+	public static String getCallType(InvokerContext invokerContext) {
+		InvokerMethodDescriptor descriptor = invokerContext.getMethodDescriptor();
+		if (descriptor != null) {
+			return descriptor.getCallType();
+		}
+		return invokerContext.getInvokerConfig().getCallType(invokerContext.getMethodName());
+	}
+
 	public static InvocationRequest createRemoteCallRequest(InvokerContext invokerContext,
 			InvokerConfig<?> invokerConfig) {
 		InvocationRequest request = invokerContext.getRequest();
@@ -17,6 +17,7 @@ import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.monitor.Monitor;
 import com.dianping.pigeon.monitor.MonitorLoader;
+import com.dianping.pigeon.monitor.metrics.MetricsReporter;
 import com.dianping.pigeon.registry.RegistryManager;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.util.Constants;
@@ -53,6 +54,8 @@ public final class ProviderBootStrap {
 			if (monitor != null) {
 				monitor.init();
 			}
+			MetricsReporter.getInstance().start(
+					configManager.getIntValue("pigeon.monitor.metrics.interval", 60000));
 			Thread shutdownHook = new Thread(new ShutdownHookListener());
 			shutdownHook.setDaemon(true);
 			shutdownHook.setPriority(Thread.MAX_PRIORITY);
@@ -0,0 +1,31 @@
+package com.dianping.pigeon.remoting.provider.domain;
+
+/**
+ * app identity verified by the session token on a connection. the session
+ * only holds while the app's secret is the instance it was verified with, so
+ * changing the secrets makes every connection authenticate again.
+ */
+public class AuthSession {
+
+	private final String app;
+
+	private final String secret;
+
+	public AuthSession(String app, String secret) {
+		this.app = app;
+		this.secret = secret;
+	}
+
+	public boolean isValid(String app, String currentSecret) {
+		return this.secret == currentSecret && this.app.equals(app);
+	}
+
+	public String getApp() {
+		return app;
+	}
+
+	@Override
+	public String toString() {
+		return "AuthSession[app=" + app + "]";
+	}
+}
@@ -5,6 +5,7 @@
 package com.dianping.pigeon.remoting.provider.domain;
 
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.dianping.pigeon.remoting.common.domain.AbstractInvocationContext;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
@@ -20,12 +21,21 @@ public class DefaultProviderContext extends AbstractInvocationContext implements
 	private Thread thread;
 	private ServiceMethod serviceMethod;
 	private String methodUri;
+	private long deadline;
+	private final AtomicBoolean started = new AtomicBoolean(false);
 
 	public DefaultProviderContext(InvocationRequest request, ProviderChannel channel) {
 		super(request);
 		this.channel = channel;
+		long receiveTime = TimeUtils.currentTimeMillis();
 		getTimeline().add(new TimePoint(TimePhase.R, request.getCreateMillisTime()));
-		getTimeline().add(new TimePoint(TimePhase.R, TimeUtils.currentTimeMillis()));
+		getTimeline().add(new TimePoint(TimePhase.R, receiveTime));
+		if (request.getTimeout() > 0) {
+			// servers stamp the request with the local time it was read off the
+			// wire, the network transit is not known and not deducted
+			long startTime = request.getCreateMillisTime() > 0 ? request.getCreateMillisTime() : receiveTime;
+			this.deadline = startTime + request.getTimeout();
+		}
 	}
 
 	public Throwable getServiceError() {
@@ -78,6 +88,16 @@ public class DefaultProviderContext extends AbstractInvocationContext implements
 		return serviceMethod;
 	}
 
+	@Override
+	public long getDeadline() {
+		return deadline;
+	}
+
+	@Override
+	public boolean markStarted() {
+		return started.compareAndSet(false, true);
+	}
+
 	@Override
 	public String getMethodUri() {
 		return methodUri;
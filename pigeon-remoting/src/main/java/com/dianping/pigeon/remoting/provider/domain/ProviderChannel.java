@@ -15,4 +15,12 @@ public interface ProviderChannel {
 	String getProtocol();
 
 	int getPort();
+
+	/**
+	 * session authenticated on this connection, always null for stateless
+	 * channels
+	 */
+	AuthSession getAuthSession();
+
+	void setAuthSession(AuthSession session);
 }
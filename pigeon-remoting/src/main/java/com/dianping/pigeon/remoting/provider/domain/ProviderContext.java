@@ -33,4 +33,16 @@ public interface ProviderContext extends InvocationContext {
 
 	ServiceMethod getServiceMethod();
 
+	/**
+	 * local time after which the caller has stopped waiting, 0 if unknown
+	 */
+	long getDeadline();
+
+	/**
+	 * claims the one answer of the request, by its task when it starts to run
+	 * or by the abort of a request cancelled before it ran. false if the
+	 * other one claimed it first
+	 */
+	boolean markStarted();
+
 }
@@ -28,6 +28,7 @@ import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
 import com.dianping.pigeon.remoting.provider.exception.ProcessTimeoutException;
 import com.dianping.pigeon.remoting.provider.exception.RequestAbortedException;
 import com.dianping.pigeon.remoting.provider.process.RequestProcessor;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 import com.dianping.pigeon.util.TimeUtils;
 import com.google.common.collect.Maps;
 
@@ -174,8 +175,11 @@ public class RequestTimeoutListener implements Runnable {
 									}
 									Future<?> future = rc.getFuture();
 									if (future != null && !future.isCancelled()) {
-										if (future.cancel(cancelTimeout)) {
-										}
+										future.cancel(cancelTimeout);
+									}
+									if (future != null && future.isCancelled()) {
+										ProviderUtils.writeAbortResponse(rc, new RequestAbortedException(
+												"request cancelled after its timeout of " + request.getTimeout() + "ms"));
 									}
 								}
 							} else {
@@ -15,6 +15,7 @@ import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
 import com.dianping.pigeon.remoting.provider.listener.RequestTimeoutListener;
+import com.dianping.pigeon.remoting.provider.process.stream.StreamManager;
 import com.dianping.pigeon.remoting.provider.process.threadpool.RequestThreadPoolProcessor;
 import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 import com.dianping.pigeon.threadpool.DefaultThreadPool;
@@ -59,6 +60,10 @@ public abstract class AbstractRequestProcessor implements RequestProcessor {
 
 	public Future<InvocationResponse> processRequest(final InvocationRequest request,
 			final ProviderContext providerContext) {
+		if (request.getMessageType() == Constants.MESSAGE_TYPE_STREAM_CREDIT) {
+			StreamManager.INSTANCE.addCredit(request);
+			return null;
+		}
 		if (request.getCreateMillisTime() == 0) {
 			request.setCreateMillisTime(TimeUtils.currentTimeMillis());
 		}
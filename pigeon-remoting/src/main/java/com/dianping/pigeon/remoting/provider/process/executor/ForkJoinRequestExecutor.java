@@ -0,0 +1,237 @@
+package com.dianping.pigeon.remoting.provider.process.executor;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+import com.dianping.pigeon.remoting.provider.config.spring.PoolBean;
+
+/**
+ * runs all requests on one shared work stealing pool. a pool config is a pair
+ * of limits instead of threads: a semaphore with max pool size permits bounds
+ * the running requests, requests without a permit wait in a queue of work
+ * queue size and are forked once a running one completes. requests blocking on
+ * remote calls use ManagedBlocking, so the pool starts spare workers for them
+ * and the parallelism only needs to cover the cpu bound work.
+ */
+public class ForkJoinRequestExecutor implements RequestExecutor {
+
+	private static final Logger logger = LoggerLoader.getLogger(ForkJoinRequestExecutor.class);
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final String KEY_FORKJOIN_PARALLELISM = "pigeon.provider.executor.forkjoin.parallelism";
+
+	private volatile ForkJoinPool pool = null;
+
+	// pool name --> limit
+	private final ConcurrentHashMap<String, Limit> limits = new ConcurrentHashMap<String, Limit>();
+
+	@Override
+	public synchronized void init(ServerConfig serverConfig) {
+		if (pool == null) {
+			int parallelism = configManager.getIntValue(KEY_FORKJOIN_PARALLELISM, Runtime.getRuntime()
+					.availableProcessors() * 2);
+			pool = new ForkJoinPool(parallelism, new WorkerThreadFactory("Pigeon-Server-Request-Processor-ForkJoin"),
+					null, true);
+			logger.info("init fork join request executor, parallelism:" + parallelism);
+		}
+	}
+
+	@Override
+	public Future<InvocationResponse> submit(PoolBean poolBean, Callable<InvocationResponse> task)
+			throws RejectedExecutionException {
+		LimitedTask limitedTask = new LimitedTask(getLimit(poolBean), task);
+		limitedTask.limit.offer(limitedTask);
+		return limitedTask;
+	}
+
+	@Override
+	public int getActiveCount(PoolBean poolBean) {
+		Limit limit = limits.get(poolBean.getPoolName());
+		return limit == null ? 0 : limit.getActiveCount();
+	}
+
+	@Override
+	public String getStatistics(PoolBean poolBean) {
+		Limit limit = limits.get(poolBean.getPoolName());
+		ForkJoinPool p = pool;
+		return String.format(
+				"request limit running:%d(max:%d),queued:%d(max:%d),forkjoin pool size:%d(active:%d,running:%d,parallelism:%d),steals:%d,queued tasks:%d,queued submissions:%d",
+				limit == null ? 0 : limit.getActiveCount(), poolBean.getMaxPoolSize(),
+				limit == null ? 0 : limit.queued.get(), poolBean.getWorkQueueSize(), p.getPoolSize(),
+				p.getActiveThreadCount(), p.getRunningThreadCount(), p.getParallelism(), p.getStealCount(),
+				p.getQueuedTaskCount(), p.getQueuedSubmissionCount());
+	}
+
+	@Override
+	public void removePool(PoolBean poolBean) {
+		limits.remove(poolBean.getPoolName());
+	}
+
+	private Limit getLimit(PoolBean poolBean) {
+		Limit limit = limits.get(poolBean.getPoolName());
+		if (limit == null) {
+			limit = new Limit(poolBean.getPoolName());
+			Limit last = limits.putIfAbsent(poolBean.getPoolName(), limit);
+			if (last != null) {
+				limit = last;
+			}
+		}
+		limit.resize(poolBean.getMaxPoolSize(), poolBean.getWorkQueueSize());
+		return limit;
+	}
+
+	private void fork(LimitedTask task) {
+		try {
+			pool.execute(task);
+		} catch (RejectedExecutionException e) {
+			task.cancel(false);
+			task.limit.release();
+			throw e;
+		}
+	}
+
+	class Limit {
+
+		private final String name;
+
+		private final ResizableSemaphore permits = new ResizableSemaphore();
+
+		private final Queue<LimitedTask> waiting = new ConcurrentLinkedQueue<LimitedTask>();
+
+		private final AtomicInteger queued = new AtomicInteger();
+
+		private volatile int maxSize = 0;
+
+		private volatile int queueSize = 0;
+
+		Limit(String name) {
+			this.name = name;
+		}
+
+		void resize(int maxSize, int queueSize) {
+			this.queueSize = queueSize;
+			if (maxSize != this.maxSize) {
+				synchronized (this) {
+					int delta = maxSize - this.maxSize;
+					if (delta > 0) {
+						permits.release(delta);
+					} else if (delta < 0) {
+						permits.reducePermits(-delta);
+					}
+					this.maxSize = maxSize;
+				}
+				drain();
+			}
+		}
+
+		void offer(LimitedTask task) {
+			if (waiting.isEmpty() && permits.tryAcquire()) {
+				fork(task);
+				return;
+			}
+			if (queued.incrementAndGet() > queueSize) {
+				queued.decrementAndGet();
+				throw new RejectedExecutionException("request limit " + name + " exhausted, running:"
+						+ getActiveCount() + ", queued:" + queued.get());
+			}
+			waiting.offer(task);
+			drain();
+		}
+
+		void release() {
+			permits.release();
+			drain();
+		}
+
+		private void drain() {
+			while (!waiting.isEmpty() && permits.tryAcquire()) {
+				LimitedTask task = waiting.poll();
+				if (task == null) {
+					permits.release();
+					continue;
+				}
+				queued.decrementAndGet();
+				try {
+					fork(task);
+				} catch (RejectedExecutionException e) {
+					logger.warn("failed to fork queued request of limit " + name, e);
+				}
+			}
+		}
+
+		int getActiveCount() {
+			return Math.max(maxSize - permits.availablePermits(), 0);
+		}
+	}
+
+	static class LimitedTask extends FutureTask<InvocationResponse> {
+
+		private final Limit limit;
+
+		LimitedTask(Limit limit, Callable<InvocationResponse> task) {
+			super(task);
+			this.limit = limit;
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				if (isCancelled()) {
+					// a timeout interrupt must not leak into the next request of the worker
+					Thread.interrupted();
+				}
+				limit.release();
+			}
+		}
+	}
+
+	static class ResizableSemaphore extends Semaphore {
+
+		private static final long serialVersionUID = 1L;
+
+		ResizableSemaphore() {
+			super(0);
+		}
+
+		@Override
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+
+	static class WorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+		private final AtomicInteger threadNum = new AtomicInteger(1);
+
+		private final String prefix;
+
+		WorkerThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName(prefix + "-" + threadNum.getAndIncrement());
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.dianping.pigeon.remoting.provider.process.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+import com.dianping.pigeon.remoting.provider.config.spring.PoolBean;
+
+/**
+ * executes provider requests instead of the thread pools of
+ * RequestThreadPoolProcessor, loaded by ExtensionLoader. the processor still
+ * resolves which pool config a request belongs to and passes it along, the
+ * executor maps the pool config onto its own limits: max pool size bounds the
+ * running requests and work queue size bounds the waiting ones. the pool
+ * config may be changed at runtime.
+ */
+public interface RequestExecutor {
+
+	/**
+	 * called once for every server, executors shared by servers should only
+	 * init on the first call
+	 */
+	void init(ServerConfig serverConfig);
+
+	/**
+	 * @throws RejectedExecutionException
+	 *             when the limits of the pool config are exhausted
+	 */
+	Future<InvocationResponse> submit(PoolBean poolBean, Callable<InvocationResponse> task)
+			throws RejectedExecutionException;
+
+	/**
+	 * number of running requests of the pool config
+	 */
+	int getActiveCount(PoolBean poolBean);
+
+	String getStatistics(PoolBean poolBean);
+
+	/**
+	 * the pool config is not used any more
+	 */
+	void removePool(PoolBean poolBean);
+
+}
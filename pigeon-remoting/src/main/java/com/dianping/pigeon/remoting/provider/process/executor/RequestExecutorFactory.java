@@ -0,0 +1,37 @@
+package com.dianping.pigeon.remoting.provider.process.executor;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.extension.ExtensionLoader;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+
+public class RequestExecutorFactory {
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final String KEY_EXECUTOR_MODE = "pigeon.provider.executor.mode";
+
+	public static final String MODE_THREADPOOL = "threadpool";
+
+	public static final String MODE_FORKJOIN = "forkjoin";
+
+	private static RequestExecutor forkJoinExecutor = null;
+
+	/**
+	 * returns null when requests should run on the thread pools of the
+	 * processor
+	 */
+	public static synchronized RequestExecutor selectExecutor(ServerConfig serverConfig) {
+		RequestExecutor executor = ExtensionLoader.getExtension(RequestExecutor.class);
+		if (executor == null && MODE_FORKJOIN.equals(configManager.getStringValue(KEY_EXECUTOR_MODE, MODE_THREADPOOL))) {
+			if (forkJoinExecutor == null) {
+				forkJoinExecutor = new ForkJoinRequestExecutor();
+			}
+			executor = forkJoinExecutor;
+		}
+		if (executor != null) {
+			executor.init(serverConfig);
+		}
+		return executor;
+	}
+}
@@ -24,6 +24,7 @@ import com.dianping.pigeon.remoting.provider.process.ProviderInterceptor;
 import com.dianping.pigeon.remoting.provider.process.ProviderInterceptorFactory;
 import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptor;
 import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptorFactory;
+import com.dianping.pigeon.remoting.provider.process.stream.StreamManager;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethod;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodFactory;
 import com.dianping.pigeon.remoting.provider.util.ProviderHelper;
@@ -34,9 +35,11 @@ public class BusinessProcessFilter implements ServiceInvocationFilter<ProviderCo
 
 	private static final Logger logger = LoggerLoader.getLogger(BusinessProcessFilter.class);
 	private static final String KEY_TIMEOUT_RESET = "pigeon.timeout.reset";
+	private static final String KEY_DEADLINE_DROP = "pigeon.provider.deadline.drop.enable";
 
 	public BusinessProcessFilter() {
 		ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_TIMEOUT_RESET, true);
+		ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_DEADLINE_DROP, true);
 	}
 
 	@Override
@@ -45,9 +48,20 @@ public class BusinessProcessFilter implements ServiceInvocationFilter<ProviderCo
 		invocationContext.getTimeline().add(new TimePoint(TimePhase.U));
 		InvocationRequest request = invocationContext.getRequest();
 		if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+			long deadline = invocationContext.getDeadline();
+			if (deadline > 0 && ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_DEADLINE_DROP, true)
+					&& TimeUtils.currentTimeMillis() >= deadline) {
+				// the caller has given up already, nothing is written back
+				invocationContext.setFrameworkError(new RequestAbortedException(
+						"the request has expired before execution, deadline:" + deadline + ", request:" + request));
+				return null;
+			}
 			if (ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_TIMEOUT_RESET, true)
 					&& request.getTimeout() > 0) {
 				ContextUtils.putLocalContext(Constants.REQUEST_TIMEOUT, request.getTimeout());
+				if (deadline > 0) {
+					ContextUtils.putLocalContext(Constants.REQUEST_DEADLINE, deadline);
+				}
 			}
 			if (Thread.currentThread().isInterrupted()) {
 				StringBuilder msg = new StringBuilder();
@@ -79,8 +93,15 @@ public class BusinessProcessFilter implements ServiceInvocationFilter<ProviderCo
 				returnObj = method.invoke(request.getParameters());
 			} finally {
 				ProviderHelper.clearContext();
+				// business threads are pooled, the deadline must not leak into the next task
+				ContextUtils.removeLocalContext(Constants.REQUEST_DEADLINE);
 			}
 
+			if (StreamManager.INSTANCE.isStreamRequest(request)) {
+				// items go out as stream frames, the reply only ends the stream
+				StreamManager.INSTANCE.writeStream(invocationContext, returnObj);
+				returnObj = null;
+			}
 			invocationContext.getTimeline().add(new TimePoint(TimePhase.M, TimeUtils.currentTimeMillis()));
 			if (request.getCallType() == Constants.CALLTYPE_REPLY) {
 				response = ProviderUtils.createSuccessResponse(request, returnObj);
@@ -34,8 +34,10 @@ import com.dianping.pigeon.remoting.provider.process.statistics.ProviderStatisti
 import com.dianping.pigeon.remoting.provider.process.statistics.ProviderStatisticsHolder;
 import com.dianping.pigeon.remoting.provider.publish.ServiceChangeListener;
 import com.dianping.pigeon.remoting.provider.publish.ServiceChangeListenerContainer;
+import com.dianping.pigeon.remoting.provider.service.method.BatchServiceMethod;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodCache;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodFactory;
+import com.dianping.pigeon.remoting.provider.warmup.WarmupManager;
 import com.dianping.pigeon.threadpool.DefaultThreadPool;
 import com.dianping.pigeon.threadpool.ThreadPool;
 import com.dianping.pigeon.util.CollectionUtils;
@@ -124,14 +126,23 @@ public class GatewayProcessFilter implements ServiceInvocationFilter<ProviderCon
 		InvocationRequest request = invocationContext.getRequest();
 		String fromApp = request.getApp();
 		InvocationResponse response = null;
-		final String requestMethod = request.getServiceName() + "#" + request.getMethodName();
+		// a $batch request is limited as its real method and counts all its calls
+		final String requestMethod = request.getServiceName() + "#" + BatchServiceMethod.getTargetMethodName(request);
+		final int calls = BatchServiceMethod.getCallCount(request);
 		final boolean enableMethodLimit = configManager.getBooleanValue(KEY_METHODLIMIT_ENABLE, true);
+		// local warm-up calls are neither counted as traffic nor limited as an app
+		final boolean warmup = WarmupManager.isWarmupRequest(invocationContext);
 		try {
-			ProviderStatisticsHolder.flowIn(request);
+			if (!warmup) {
+				ProviderStatisticsHolder.flowIn(request);
+			}
 			if (Constants.MESSAGE_TYPE_SERVICE == request.getMessageType()) {
 				if (enableMethodLimit) {
 					incrementRequest(requestMethod);
 				}
+				if (warmup) {
+					return handler.handle(invocationContext);
+				}
 
 				if (configManager.getBooleanValue(KEY_METHODAPPLIMIT_ENABLE, false)
 						&& methodAppLimitMap.containsKey(requestMethod) && StringUtils.isNotBlank(fromApp)) {
@@ -140,7 +151,7 @@ public class GatewayProcessFilter implements ServiceInvocationFilter<ProviderCon
 					if(limit != null && limit >= 0) {
 						long requests = ProviderStatisticsHolder
 								.getMethodAppCapacityBucket(request).getRequestsInCurrentSecond();
-						if (requests + 1 > limit) {
+						if (requests + calls > limit) {
 							throw new RejectedException(String.format(
 									"Max requests limit %s reached for request %s from app:%s"
 									, limit, requestMethod, fromApp));
@@ -154,7 +165,7 @@ public class GatewayProcessFilter implements ServiceInvocationFilter<ProviderCon
 					if (limit >= 0) {
 						long requests = ProviderStatisticsHolder.getCapacityBucket(request)
 								.getRequestsInCurrentSecond();
-						if (requests + 1 > limit) {
+						if (requests + calls > limit) {
 							throw new RejectedException(String.format(
 									"Max requests limit %s reached for request from app:%s", limit, fromApp));
 						}
@@ -167,7 +178,7 @@ public class GatewayProcessFilter implements ServiceInvocationFilter<ProviderCon
 			if (Constants.MESSAGE_TYPE_SERVICE == request.getMessageType() && enableMethodLimit) {
 				decrementRequest(requestMethod);
 			}
-			if (!Constants.REPLY_MANUAL) {
+			if (!Constants.REPLY_MANUAL && !warmup) {
 				ProviderStatisticsHolder.flowOut(request);
 			}
 		}
@@ -5,7 +5,6 @@
 package com.dianping.pigeon.remoting.provider.process.filter;
 
 import java.io.Serializable;
-import java.util.Calendar;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
@@ -15,9 +14,12 @@ import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.extension.ExtensionLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.monitor.MetricsMonitor;
 import com.dianping.pigeon.monitor.Monitor;
 import com.dianping.pigeon.monitor.MonitorLoader;
 import com.dianping.pigeon.monitor.MonitorTransaction;
+import com.dianping.pigeon.monitor.metrics.MethodMeter;
+import com.dianping.pigeon.monitor.metrics.MetricsRegistry;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
@@ -44,6 +46,9 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
 
     private static final Monitor monitor = MonitorLoader.getMonitor();
 
+    // qps and sizes are reported per interval from the meters
+    private static final boolean isMetricsMonitor = monitor instanceof MetricsMonitor;
+
     private static final boolean isAccessLogEnabled = ConfigManagerLoader.getConfigManager()
             .getBooleanValue("pigeon.provider.accesslog.enable", false);
 
@@ -64,15 +69,17 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
         ProviderChannel channel = invocationContext.getChannel();
         MonitorTransaction transaction = null;
         String fromIp = null;
+        long startTime = TimeUtils.currentTimeMillis();
+        MethodMeter meter = null;
+        try {
+            ServiceMethod serviceMethod = ServiceMethodFactory.getMethod(request);
+            invocationContext.setServiceMethod(serviceMethod);
+            meter = InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_SERVICE, request.getServiceName(),
+                    request.getMethodName(), serviceMethod.getOriginalParameterClasses());
+        } catch (Throwable e) {
+        }
         if (monitor != null) {
-            String methodUri = null;
-            try {
-                ServiceMethod serviceMethod = ServiceMethodFactory.getMethod(request);
-                invocationContext.setServiceMethod(serviceMethod);
-                methodUri = InvocationUtils.getRemoteCallFullName(request.getServiceName(), request.getMethodName(),
-                        serviceMethod.getOriginalParameterClasses());
-            } catch (Throwable e) {
-            }
+            String methodUri = meter == null ? null : meter.getName();
             try {
                 if (StringUtils.isBlank(methodUri)) {
                     methodUri = InvocationUtils.getRemoteCallFullName(request.getServiceName(), request.getMethodName(),
@@ -93,10 +100,12 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
                         parameters = event.toString();
                     }
                     transaction.logEvent("PigeonService.client", fromIp, parameters);
-                    transaction.logEvent("PigeonService.QPS", "S" + Calendar.getInstance().get(Calendar.SECOND), "");
-                    String reqSize = SizeMonitor.getInstance().getLogSize(request.getSize());
-                    if (reqSize != null) {
-                        transaction.logEvent("PigeonService.requestSize", reqSize, "" + request.getSize());
+                    if (!isMetricsMonitor) {
+                        transaction.logEvent("PigeonService.QPS", "S" + (startTime / 1000 % 60), "");
+                        String reqSize = SizeMonitor.getInstance().getLogSize(request.getSize());
+                        if (reqSize != null) {
+                            transaction.logEvent("PigeonService.requestSize", reqSize, "" + request.getSize());
+                        }
                     }
                     if (!Constants.PROTOCOL_DEFAULT.equals(channel.getProtocol())) {
                         transaction.addData("Protocol", channel.getProtocol());
@@ -130,7 +139,7 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
             }
             if (transaction != null) {
                 try {
-                    if (response != null) {
+                    if (response != null && !isMetricsMonitor) {
                         String respSize = SizeMonitor.getInstance().getLogSize(response.getSize());
                         if (respSize != null) {
                             transaction.logEvent("PigeonService.responseSize", respSize, "" + response.getSize());
@@ -161,6 +170,12 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
                 }
             }
         } finally {
+            if (meter != null) {
+                boolean failed = invocationContext.getFrameworkError() != null
+                        || (response != null && response.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION);
+                meter.record(TimeUtils.currentTimeMillis() - startTime, failed, request.getSize(),
+                        response == null ? 0 : response.getSize());
+            }
             Throwable serviceError = invocationContext.getServiceError();
             if (serviceError != null && monitor != null) {
                 monitor.logError(invocationContext.getServiceError());
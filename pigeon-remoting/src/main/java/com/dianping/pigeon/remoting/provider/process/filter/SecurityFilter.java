@@ -28,7 +28,11 @@ import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.ContextUtils;
 import com.dianping.pigeon.remoting.common.util.SecurityUtils;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.service.method.BatchServiceMethod;
+import com.dianping.pigeon.remoting.provider.warmup.WarmupManager;
 import com.dianping.pigeon.util.TimeUtils;
 
 /**
@@ -59,6 +63,11 @@ public class SecurityFilter implements ServiceInvocationFilter<ProviderContext>
 	private static final String DEFAULT_VALUE_WHITELIST = "127.0.0.1,";
 	private static final String KEY_ACCESS_DEFAULT = "pigeon.provider.access.ip.default";
 
+	private static final String SESSION_VERSION = String.valueOf(Constants.TOKEN_VERSION_SESSION);
+	private static final int MAX_VERIFIED_TOKENS = 10000;
+	// token --> signed data, a token is only reused within its timestamp window
+	private static volatile ConcurrentHashMap<String, String> verifiedTokens = new ConcurrentHashMap<String, String>();
+
 	public SecurityFilter() {
 		configManager.getBooleanValue(KEY_TOKEN_ENABLE, false);
 		configManager.getBooleanValue(KEY_TOKEN_PROTOCOL_DEFAULT_ENABLE, false);
@@ -133,11 +142,13 @@ public class SecurityFilter implements ServiceInvocationFilter<ProviderContext>
 				}
 				appSecrets.clear();
 				appSecrets = map;
+				verifiedTokens = new ConcurrentHashMap<String, String>();
 			} catch (RuntimeException e) {
 				logger.error("error while parsing app secret configuration:" + config, e);
 			}
 		} else {
 			appSecrets.clear();
+			verifiedTokens = new ConcurrentHashMap<String, String>();
 		}
 	}
 
@@ -187,35 +198,70 @@ public class SecurityFilter implements ServiceInvocationFilter<ProviderContext>
 
 	private static void doAuthenticateRequestToken(String app, String remoteAddress, String timestamp, String version,
 			String token, String serviceName, String methodName) {
+		String secret = getSecret(app, remoteAddress, token);
+		int time = checkTimestamp(app, remoteAddress, timestamp);
+		verifyToken(app, remoteAddress, token, serviceName + "#" + methodName + "#" + time, secret);
+	}
+
+	/**
+	 * verifies the session token signing the app and the connection's
+	 * addresses, returns the secret it was signed with
+	 */
+	private static String doAuthenticateSessionToken(String app, String remoteAddress, String timestamp,
+			String token, String localAddress) {
+		String secret = getSecret(app, remoteAddress, token);
+		int time = checkTimestamp(app, remoteAddress, timestamp);
+		verifyToken(app, remoteAddress, token,
+				SecurityUtils.getSessionTokenData(app, time, remoteAddress, localAddress), secret);
+		return secret;
+	}
+
+	private static String getSecret(String app, String remoteAddress, String token) {
 		if (StringUtils.isBlank(app)) {
 			throw new SecurityException("Request app is required, from:" + remoteAddress);
 		}
 		String secret = appSecrets.get(app);
-		if (StringUtils.isNotBlank(secret)) {
-			if (StringUtils.isBlank(token)) {
-				throw new SecurityException("Request token is required, from:" + remoteAddress + "@" + app);
-			}
-			int time = 0;
-			try {
-				time = Integer.parseInt(timestamp);
-			} catch (RuntimeException e) {
-			}
-			if (time <= 0) {
-				throw new SecurityException(
-						"Request timestamp is invalid:" + timestamp + ", from:" + remoteAddress + "@" + app);
-			}
-			long timediff = getCurrentTime() - time;
-			if (Math.abs(timediff) > configManager.getIntValue(KEY_TOKEN_TIMESTAMP_DIFF, 120)) {
-				throw new SecurityException("The request has expired:" + timestamp + ", from:" + app);
-			}
-			String data = serviceName + "#" + methodName + "#" + time;
-			String expectToken = SecurityUtils.encrypt(data, secret);
-			if (!expectToken.equals(token)) {
-				throw new SecurityException("Invalid request token:" + token + ", from:" + remoteAddress + "@" + app);
-			}
-		} else {
+		if (StringUtils.isBlank(secret)) {
 			throw new SecurityException("Secret not found for app:" + app);
 		}
+		if (StringUtils.isBlank(token)) {
+			throw new SecurityException("Request token is required, from:" + remoteAddress + "@" + app);
+		}
+		return secret;
+	}
+
+	private static int checkTimestamp(String app, String remoteAddress, String timestamp) {
+		int time = 0;
+		try {
+			time = Integer.parseInt(timestamp);
+		} catch (RuntimeException e) {
+		}
+		if (time <= 0) {
+			throw new SecurityException(
+					"Request timestamp is invalid:" + timestamp + ", from:" + remoteAddress + "@" + app);
+		}
+		long timediff = getCurrentTime() - time;
+		if (Math.abs(timediff) > configManager.getIntValue(KEY_TOKEN_TIMESTAMP_DIFF, 120)) {
+			throw new SecurityException("The request has expired:" + timestamp + ", from:" + app);
+		}
+		return time;
+	}
+
+	// the timestamp is checked before, so a cached token is never older than the allowed diff
+	private static void verifyToken(String app, String remoteAddress, String token, String data, String secret) {
+		ConcurrentHashMap<String, String> verified = verifiedTokens;
+		String verifiedData = verified.get(token);
+		if (verifiedData != null && verifiedData.equals(app + "@" + data)) {
+			return;
+		}
+		String expectToken = SecurityUtils.encrypt(data, secret);
+		if (!expectToken.equals(token)) {
+			throw new SecurityException("Invalid request token:" + token + ", from:" + remoteAddress + "@" + app);
+		}
+		if (verified.size() >= MAX_VERIFIED_TOKENS) {
+			verified.clear();
+		}
+		verified.put(token, app + "@" + data);
 	}
 
 	private static void parseTokenSwitchesConfig(String config) {
@@ -259,14 +305,27 @@ public class SecurityFilter implements ServiceInvocationFilter<ProviderContext>
 		return false;
 	}
 
+	private static boolean needValidateToken(InvocationRequest request) {
+		String serviceName = request.getServiceName();
+		if (needValidateToken(serviceName, request.getMethodName())) {
+			return true;
+		}
+		// a $batch request is signed as $batch but runs the switches of its real method
+		String targetMethod = BatchServiceMethod.getTargetMethodName(request);
+		return !targetMethod.equals(request.getMethodName()) && needValidateToken(serviceName, targetMethod);
+	}
+
 	@Override
 	public InvocationResponse invoke(ServiceInvocationHandler handler, ProviderContext invocationContext)
 			throws Throwable {
+		// local warm-up calls have no app or token to check
+		if (WarmupManager.isWarmupRequest(invocationContext)) {
+			return handler.handle(invocationContext);
+		}
 		String remoteAddress = invocationContext.getChannel().getRemoteAddress();
 		authenticateRequestIp(remoteAddress);
 
-		if (needValidateToken(invocationContext.getRequest().getServiceName(),
-				invocationContext.getRequest().getMethodName())) {
+		if (needValidateToken(invocationContext.getRequest())) {
 			invocationContext.getTimeline().add(new TimePoint(TimePhase.A));
 			InvocationRequest request = invocationContext.getRequest();
 			if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
@@ -288,7 +347,13 @@ public class SecurityFilter implements ServiceInvocationFilter<ProviderContext>
 	}
 
 	private void authenticateRequestToken(InvocationRequest request, ProviderContext invocationContext) {
-		String remoteAddress = invocationContext.getChannel().getRemoteAddress();
+		ProviderChannel channel = invocationContext.getChannel();
+		String app = request.getApp();
+		AuthSession session = channel.getAuthSession();
+		if (session != null && app != null && session.isValid(app, appSecrets.get(app))) {
+			return;
+		}
+		String remoteAddress = channel.getRemoteAddress();
 		String token = null;
 		String timestamp = null;
 		String version = null;
@@ -316,8 +381,15 @@ public class SecurityFilter implements ServiceInvocationFilter<ProviderContext>
 				}
 			}
 		}
-		doAuthenticateRequestToken(request.getApp(), remoteAddress, timestamp, version, token, request.getServiceName(),
-				request.getMethodName());
+		if (SESSION_VERSION.equals(version)) {
+			// the address invokers connect to is the one registered for this provider
+			String localAddress = configManager.getLocalIp() + ":" + channel.getPort();
+			String secret = doAuthenticateSessionToken(app, remoteAddress, timestamp, token, localAddress);
+			channel.setAuthSession(new AuthSession(app, secret));
+		} else {
+			doAuthenticateRequestToken(app, remoteAddress, timestamp, version, token, request.getServiceName(),
+					request.getMethodName());
+		}
 	}
 
 }
@@ -22,6 +22,7 @@ import com.dianping.pigeon.remoting.provider.process.ProviderInterceptor;
 import com.dianping.pigeon.remoting.provider.process.ProviderInterceptorFactory;
 import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptor;
 import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptorFactory;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 
 public class WriteResponseProcessFilter implements ServiceInvocationFilter<ProviderContext> {
 
@@ -34,6 +35,15 @@ public class WriteResponseProcessFilter implements ServiceInvocationFilter<Provi
 			ProviderChannel channel = invocationContext.getChannel();
 			InvocationRequest request = invocationContext.getRequest();
 			InvocationResponse response = handler.handle(invocationContext);
+			if (response == null && request.getCallType() == Constants.CALLTYPE_REPLY) {
+				// dropped after its deadline, the caller is not waiting any more. http answers a
+				// connection in request order, its later responses must not wait for this one
+				if (Constants.PROTOCOL_HTTP.equals(channel.getProtocol())
+						&& invocationContext.getFrameworkError() != null) {
+					channel.write(ProviderUtils.createFailResponse(request, invocationContext.getFrameworkError()));
+				}
+				return null;
+			}
 			if (request.getCallType() == Constants.CALLTYPE_REPLY) {
 				invocationContext.getTimeline().add(new TimePoint(TimePhase.P));
 				channel.write(response);
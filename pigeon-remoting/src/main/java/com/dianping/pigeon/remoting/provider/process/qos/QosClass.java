@@ -0,0 +1,98 @@
+package com.dianping.pigeon.remoting.provider.process.qos;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * a class of provider requests sharing one queue of the request pool, parsed
+ * from pigeon.provider.qos.classes.
+ */
+public class QosClass {
+
+	private String name;
+
+	// strict priority, lower runs first
+	private int priority = 0;
+
+	// weighted fair share
+	private int weight = 1;
+
+	// 0 takes the work queue size of the pool
+	private int queueSize = 0;
+
+	// milliseconds a request may wait in the queue, 0 for none
+	private int queueTimeSlo = 0;
+
+	// drops requests whose caller timed out while they were queued
+	private boolean dropExpired = false;
+
+	public QosClass() {
+	}
+
+	public QosClass(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+	public int getQueueTimeSlo() {
+		return queueTimeSlo;
+	}
+
+	public void setQueueTimeSlo(int queueTimeSlo) {
+		this.queueTimeSlo = queueTimeSlo;
+	}
+
+	public boolean isDropExpired() {
+		return dropExpired;
+	}
+
+	public void setDropExpired(boolean dropExpired) {
+		this.dropExpired = dropExpired;
+	}
+
+	public boolean validate() {
+		return StringUtils.isNotBlank(name) && weight > 0 && queueSize >= 0 && queueTimeSlo >= 0;
+	}
+
+	@Override
+	public String toString() {
+		return "QosClass{" +
+				"name='" + name + '\'' +
+				", priority=" + priority +
+				", weight=" + weight +
+				", queueSize=" + queueSize +
+				", queueTimeSlo=" + queueTimeSlo +
+				", dropExpired=" + dropExpired +
+				'}';
+	}
+}
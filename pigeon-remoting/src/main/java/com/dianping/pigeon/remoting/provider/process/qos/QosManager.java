@@ -0,0 +1,214 @@
+package com.dianping.pigeon.remoting.provider.process.qos;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.json.JacksonSerializer;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+
+/**
+ * qos classes of provider requests. a request belongs to the class of its
+ * caller app in pigeon.provider.qos.app.rules, else to the class of its
+ * service#method or service in pigeon.provider.qos.api.rules, else to the
+ * default class.
+ * <p>
+ * classes and rules are json, for example
+ *
+ * <pre>
+ * pigeon.provider.qos.classes=[{"name":"online","priority":0,"weight":8,"queueTimeSlo":20},
+ *         {"name":"batch","priority":9,"weight":1,"queueSize":200,"dropExpired":true}]
+ * pigeon.provider.qos.app.rules={"batch-job":"batch"}
+ * pigeon.provider.qos.api.rules={"http://service.dianping.com/shopService#getShop":"online"}
+ * </pre>
+ *
+ * enable and the pool sizes are read when the request pool is created, the
+ * policy, classes and rules are applied to the queues of the existing pools
+ * on the next request after they change.
+ */
+public enum QosManager {
+
+	INSTANCE;
+
+	private static final Logger logger = LoggerLoader.getLogger(QosManager.class);
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final JacksonSerializer jacksonSerializer = new JacksonSerializer();
+
+	private static final String KEY_QOS_ENABLE = "pigeon.provider.qos.enable";
+
+	// wfq or priority
+	private static final String KEY_QOS_POLICY = "pigeon.provider.qos.policy";
+
+	private static final String KEY_QOS_CLASSES = "pigeon.provider.qos.classes";
+
+	private static final String KEY_QOS_CLASS_DEFAULT = "pigeon.provider.qos.class.default";
+
+	// app --> class
+	private static final String KEY_QOS_APP_RULES = "pigeon.provider.qos.app.rules";
+
+	// url or url#method --> class
+	private static final String KEY_QOS_API_RULES = "pigeon.provider.qos.api.rules";
+
+	public static final String DEFAULT_CLASS = "default";
+
+	static {
+		configManager.getBooleanValue(KEY_QOS_ENABLE, false);
+		configManager.getStringValue(KEY_QOS_POLICY, QosQueue.POLICY_WFQ);
+		configManager.getStringValue(KEY_QOS_CLASSES, "");
+		configManager.getStringValue(KEY_QOS_CLASS_DEFAULT, DEFAULT_CLASS);
+		configManager.getStringValue(KEY_QOS_APP_RULES, "");
+		configManager.getStringValue(KEY_QOS_API_RULES, "");
+	}
+
+	private volatile QosConfig config = null;
+
+	// queues of the live pools, replaced pools drop out by themselves
+	private final Set<QosQueue> queues = Collections.newSetFromMap(new WeakHashMap<QosQueue, Boolean>());
+
+	public boolean isEnable() {
+		return configManager.getBooleanValue(KEY_QOS_ENABLE, false);
+	}
+
+	/**
+	 * a work queue for a request pool, classes without a queue size take the
+	 * default capacity
+	 */
+	public synchronized QosQueue newQueue(int defaultCapacity) {
+		QosConfig c = getConfig();
+		QosQueue queue = new QosQueue(defaultCapacity, c.policy, c.classes, c.defaultClass);
+		queues.add(queue);
+		return queue;
+	}
+
+	public String classify(InvocationRequest request) {
+		QosConfig c = getConfig();
+		String qosClass = null;
+		if (!c.appRules.isEmpty() && request.getApp() != null) {
+			qosClass = c.appRules.get(request.getApp());
+		}
+		if (qosClass == null && !c.apiRules.isEmpty()) {
+			String serviceName = request.getServiceName();
+			qosClass = c.apiRules.get(serviceName + "#" + request.getMethodName());
+			if (qosClass == null) {
+				qosClass = c.apiRules.get(serviceName);
+			}
+		}
+		return qosClass == null ? c.defaultClass : qosClass;
+	}
+
+	private QosConfig getConfig() {
+		String policy = configManager.getStringValue(KEY_QOS_POLICY, QosQueue.POLICY_WFQ);
+		String classes = configManager.getStringValue(KEY_QOS_CLASSES, "");
+		String defaultClass = configManager.getStringValue(KEY_QOS_CLASS_DEFAULT, DEFAULT_CLASS);
+		String appRules = configManager.getStringValue(KEY_QOS_APP_RULES, "");
+		String apiRules = configManager.getStringValue(KEY_QOS_API_RULES, "");
+		QosConfig c = config;
+		if (c == null || !c.isSource(policy, classes, defaultClass, appRules, apiRules)) {
+			c = refresh(policy, classes, defaultClass, appRules, apiRules);
+		}
+		return c;
+	}
+
+	private synchronized QosConfig refresh(String policy, String classes, String defaultClass, String appRules,
+			String apiRules) {
+		QosConfig last = config;
+		if (last != null && last.isSource(policy, classes, defaultClass, appRules, apiRules)) {
+			return last;
+		}
+		QosConfig c = new QosConfig(policy, classes, defaultClass, appRules, apiRules);
+		try {
+			c.parse(last);
+		} catch (Throwable t) {
+			logger.error("error while parsing qos config, keep the last one, classes:" + classes + ", app rules:"
+					+ appRules + ", api rules:" + apiRules, t);
+		}
+		for (QosQueue queue : queues) {
+			queue.update(c.policy, c.classes, c.defaultClass);
+		}
+		config = c;
+		logger.info("qos config refreshed, policy:" + c.policy + ", classes:" + c.classes + ", default class:"
+				+ c.defaultClass);
+		return c;
+	}
+
+	private static class QosConfig {
+
+		private final String[] source;
+
+		private String policy = QosQueue.POLICY_WFQ;
+
+		private List<QosClass> classes = Collections.emptyList();
+
+		private String defaultClass = DEFAULT_CLASS;
+
+		private Map<String, String> appRules = Collections.emptyMap();
+
+		private Map<String, String> apiRules = Collections.emptyMap();
+
+		QosConfig(String... source) {
+			this.source = source;
+		}
+
+		boolean isSource(String... values) {
+			for (int i = 0; i < source.length; i++) {
+				if (!ObjectUtils.equals(source[i], values[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@SuppressWarnings("unchecked")
+		void parse(QosConfig last) throws Throwable {
+			if (last != null) {
+				policy = last.policy;
+				classes = last.classes;
+				defaultClass = last.defaultClass;
+				appRules = last.appRules;
+				apiRules = last.apiRules;
+			}
+			String _policy = StringUtils.trimToEmpty(source[0]);
+			if (!QosQueue.POLICY_WFQ.equals(_policy) && !QosQueue.POLICY_PRIORITY.equals(_policy)) {
+				throw new IllegalArgumentException("invalid qos policy:" + _policy);
+			}
+			List<QosClass> _classes = Collections.emptyList();
+			if (StringUtils.isNotBlank(source[1])) {
+				_classes = Arrays.asList((QosClass[]) jacksonSerializer.toObject(QosClass[].class, source[1]));
+				for (QosClass qosClass : _classes) {
+					if (!qosClass.validate()) {
+						throw new IllegalArgumentException("invalid qos class:" + qosClass);
+					}
+				}
+			}
+			String _defaultClass = StringUtils.isBlank(source[2]) ? DEFAULT_CLASS : source[2].trim();
+			Map<String, String> _appRules = Collections.emptyMap();
+			if (StringUtils.isNotBlank(source[3])) {
+				_appRules = new HashMap<String, String>(
+						(Map<String, String>) jacksonSerializer.toObject(HashMap.class, source[3]));
+			}
+			Map<String, String> _apiRules = Collections.emptyMap();
+			if (StringUtils.isNotBlank(source[4])) {
+				_apiRules = new HashMap<String, String>(
+						(Map<String, String>) jacksonSerializer.toObject(HashMap.class, source[4]));
+			}
+			policy = _policy;
+			classes = _classes;
+			defaultClass = _defaultClass;
+			appRules = _appRules;
+			apiRules = _apiRules;
+		}
+	}
+}
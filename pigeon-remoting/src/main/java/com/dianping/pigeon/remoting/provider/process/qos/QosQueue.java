@@ -0,0 +1,546 @@
+package com.dianping.pigeon.remoting.provider.process.qos;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * work queue of a request pool with one bounded queue per qos class instead
+ * of one fifo. a worker thread takes the next request either by strict
+ * priority, the non empty class of the lowest priority first, or weighted
+ * fair, a smooth weighted round robin over the non empty classes. with weighted
+ * fair queueing a class whose oldest request has waited longer than the
+ * class's queue time slo is served first, the most overdue one first, but
+ * at most MAX_OVERDUE_PICKS times in a row: under sustained overload of slo
+ * classes the next request is taken by weight again, so classes without a
+ * slo keep a share instead of starving.
+ * <p>
+ * an offer to a full class fails, so the pool grows or rejects exactly as it
+ * does with a full LinkedBlockingQueue. requests of classes with dropExpired
+ * are answered with a rejection instead of being run once their caller timed
+ * out while they were queued.
+ */
+public class QosQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+	public static final String POLICY_WFQ = "wfq";
+
+	public static final String POLICY_PRIORITY = "priority";
+
+	private static final Comparator<Lane> PRIORITY_ORDER = new Comparator<Lane>() {
+
+		@Override
+		public int compare(Lane l1, Lane l2) {
+			int p1 = l1.qosClass.getPriority();
+			int p2 = l2.qosClass.getPriority();
+			return p1 < p2 ? -1 : (p1 == p2 ? 0 : 1);
+		}
+	};
+
+	// overdue requests taken ahead of the weighted order in a row
+	static final int MAX_OVERDUE_PICKS = 4;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notEmpty = lock.newCondition();
+
+	private final Condition notFull = lock.newCondition();
+
+	private final int defaultCapacity;
+
+	// guarded by lock, ordered by priority
+	private Lane[] lanes;
+
+	private Map<String, Lane> laneMap;
+
+	private Lane defaultLane;
+
+	private boolean strictPriority;
+
+	private int count;
+
+	private int overduePicks;
+
+	public QosQueue(int defaultCapacity, String policy, List<QosClass> classes, String defaultClass) {
+		this.defaultCapacity = defaultCapacity;
+		update(policy, classes, defaultClass);
+	}
+
+	/**
+	 * applies new classes, requests of removed classes move to the default
+	 * class
+	 */
+	public void update(String policy, List<QosClass> classes, String defaultClass) {
+		lock.lock();
+		try {
+			Map<String, Lane> oldLaneMap = laneMap == null ? Collections.<String, Lane> emptyMap() : laneMap;
+			Map<String, Lane> newLaneMap = new HashMap<String, Lane>();
+			List<Lane> newLanes = new ArrayList<Lane>();
+			for (QosClass qosClass : classes) {
+				if (!newLaneMap.containsKey(qosClass.getName())) {
+					Lane lane = oldLaneMap.get(qosClass.getName());
+					lane = lane == null ? new Lane(qosClass) : lane;
+					lane.setQosClass(qosClass);
+					newLaneMap.put(qosClass.getName(), lane);
+					newLanes.add(lane);
+				}
+			}
+			Lane newDefaultLane = newLaneMap.get(defaultClass);
+			if (newDefaultLane == null) {
+				newDefaultLane = oldLaneMap.get(defaultClass);
+				newDefaultLane = newDefaultLane == null ? new Lane(new QosClass(defaultClass)) : newDefaultLane;
+				newDefaultLane.setQosClass(new QosClass(defaultClass));
+				newLaneMap.put(defaultClass, newDefaultLane);
+				newLanes.add(newDefaultLane);
+			}
+			for (Map.Entry<String, Lane> entry : oldLaneMap.entrySet()) {
+				if (!newLaneMap.containsKey(entry.getKey())) {
+					newDefaultLane.tasks.addAll(entry.getValue().tasks);
+				}
+			}
+			// stable, classes of one priority keep their configured order
+			Collections.sort(newLanes, PRIORITY_ORDER);
+			for (Lane lane : newLanes) {
+				lane.currentWeight = 0;
+			}
+			lanes = newLanes.toArray(new Lane[newLanes.size()]);
+			laneMap = newLaneMap;
+			defaultLane = newDefaultLane;
+			strictPriority = POLICY_PRIORITY.equals(policy);
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getDefaultCapacity() {
+		return defaultCapacity;
+	}
+
+	@Override
+	public boolean offer(Runnable r) {
+		if (r == null) {
+			throw new NullPointerException();
+		}
+		lock.lock();
+		try {
+			return enqueue(r);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(Runnable r, long timeout, TimeUnit unit) throws InterruptedException {
+		if (r == null) {
+			throw new NullPointerException();
+		}
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (!enqueue(r)) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(Runnable r) throws InterruptedException {
+		if (r == null) {
+			throw new NullPointerException();
+		}
+		lock.lockInterruptibly();
+		try {
+			while (!enqueue(r)) {
+				notFull.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll() {
+		List<QosTask> expired = new ArrayList<QosTask>(0);
+		lock.lock();
+		try {
+			return count == 0 ? null : dequeue(expired);
+		} finally {
+			lock.unlock();
+			drop(expired);
+		}
+	}
+
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+		List<QosTask> expired = new ArrayList<QosTask>(0);
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			for (;;) {
+				while (count == 0) {
+					if (nanos <= 0) {
+						return null;
+					}
+					nanos = notEmpty.awaitNanos(nanos);
+				}
+				Runnable r = dequeue(expired);
+				if (r != null) {
+					return r;
+				}
+			}
+		} finally {
+			lock.unlock();
+			drop(expired);
+		}
+	}
+
+	@Override
+	public Runnable take() throws InterruptedException {
+		List<QosTask> expired = new ArrayList<QosTask>(0);
+		lock.lockInterruptibly();
+		try {
+			for (;;) {
+				while (count == 0) {
+					notEmpty.await();
+				}
+				Runnable r = dequeue(expired);
+				if (r != null) {
+					return r;
+				}
+			}
+		} finally {
+			lock.unlock();
+			drop(expired);
+		}
+	}
+
+	/**
+	 * the oldest request of the first non empty class by priority
+	 */
+	@Override
+	public Runnable peek() {
+		lock.lock();
+		try {
+			for (Lane lane : lanes) {
+				if (!lane.tasks.isEmpty()) {
+					return lane.tasks.peekFirst();
+				}
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) {
+			return false;
+		}
+		lock.lock();
+		try {
+			for (Lane lane : lanes) {
+				if (lane.tasks.remove(o)) {
+					count--;
+					notFull.signalAll();
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			int remaining = 0;
+			for (Lane lane : lanes) {
+				remaining += Math.max(0, getCapacity(lane) - lane.tasks.size());
+			}
+			return remaining;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> c, int maxElements) {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			int n = 0;
+			for (Lane lane : lanes) {
+				while (n < maxElements && !lane.tasks.isEmpty()) {
+					c.add(lane.tasks.pollFirst());
+					count--;
+					n++;
+				}
+			}
+			if (n > 0) {
+				notFull.signalAll();
+			}
+			return n;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * iterates a snapshot, by priority
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		final List<Runnable> snapshot = new ArrayList<Runnable>();
+		lock.lock();
+		try {
+			for (Lane lane : lanes) {
+				snapshot.addAll(lane.tasks);
+			}
+		} finally {
+			lock.unlock();
+		}
+		final Iterator<Runnable> it = snapshot.iterator();
+		return new Iterator<Runnable>() {
+
+			private Runnable last;
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public Runnable next() {
+				last = it.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				QosQueue.this.remove(last);
+				last = null;
+			}
+		};
+	}
+
+	public String getStatistics() {
+		StringBuilder stats = new StringBuilder();
+		lock.lock();
+		try {
+			stats.append("qos policy:").append(strictPriority ? POLICY_PRIORITY : POLICY_WFQ);
+			for (Lane lane : lanes) {
+				QosClass qosClass = lane.qosClass;
+				stats.append(",").append(qosClass.getName()).append("(queued:").append(lane.tasks.size())
+						.append("/").append(getCapacity(lane)).append(",dispatched:").append(lane.dispatched)
+						.append(",rejected:").append(lane.rejected).append(",dropped:").append(lane.dropped)
+						.append(",queue time avg:")
+						.append(lane.measured == 0 ? 0 : lane.queueMillis / lane.measured).append("ms,max:")
+						.append(lane.maxQueueMillis).append("ms");
+				if (qosClass.getQueueTimeSlo() > 0) {
+					stats.append(",slo:").append(qosClass.getQueueTimeSlo()).append("ms,violations:")
+							.append(lane.sloViolations);
+				}
+				stats.append(")");
+			}
+		} finally {
+			lock.unlock();
+		}
+		return stats.toString();
+	}
+
+	private int getCapacity(Lane lane) {
+		return lane.qosClass.getQueueSize() > 0 ? lane.qosClass.getQueueSize() : defaultCapacity;
+	}
+
+	private boolean enqueue(Runnable r) {
+		Lane lane = null;
+		if (r instanceof QosTask) {
+			lane = laneMap.get(((QosTask) r).getQosClass());
+		}
+		if (lane == null) {
+			lane = defaultLane;
+		}
+		if (lane.tasks.size() >= getCapacity(lane)) {
+			lane.rejected++;
+			return false;
+		}
+		if (r instanceof QosTask) {
+			((QosTask) r).enqueueMillis = TimeUtils.currentTimeMillis();
+		}
+		lane.tasks.addLast(r);
+		count++;
+		notEmpty.signal();
+		return true;
+	}
+
+	/**
+	 * returns null when every request taken was expired or cancelled, those
+	 * are answered by drop after the lock is released
+	 */
+	private Runnable dequeue(List<QosTask> expired) {
+		long now = TimeUtils.currentTimeMillis();
+		while (count > 0) {
+			Lane lane = strictPriority ? selectByPriority() : selectByWeight(now);
+			Runnable r = lane.tasks.pollFirst();
+			count--;
+			notFull.signal();
+			if (r instanceof QosTask) {
+				QosTask task = (QosTask) r;
+				if (task.isCancelled()) {
+					// cancelled by the timeout checker
+					expired.add(task);
+					continue;
+				}
+				long queueMillis = now - task.enqueueMillis;
+				if (lane.qosClass.isDropExpired() && task.isExpired(now)) {
+					lane.dropped++;
+					expired.add(task);
+					continue;
+				}
+				lane.measured++;
+				lane.queueMillis += queueMillis;
+				lane.maxQueueMillis = Math.max(lane.maxQueueMillis, queueMillis);
+				if (lane.qosClass.getQueueTimeSlo() > 0 && queueMillis > lane.qosClass.getQueueTimeSlo()) {
+					lane.sloViolations++;
+				}
+			}
+			lane.dispatched++;
+			return r;
+		}
+		return null;
+	}
+
+	private Lane selectByPriority() {
+		for (Lane lane : lanes) {
+			if (!lane.tasks.isEmpty()) {
+				return lane;
+			}
+		}
+		throw new IllegalStateException("no queued request, count:" + count);
+	}
+
+	private Lane selectByWeight(long now) {
+		Lane overdue = null;
+		double maxOverdue = 1;
+		for (Lane lane : lanes) {
+			int slo = lane.qosClass.getQueueTimeSlo();
+			Runnable head = lane.tasks.peekFirst();
+			if (slo > 0 && head instanceof QosTask) {
+				double ratio = (double) (now - ((QosTask) head).enqueueMillis) / slo;
+				if (ratio > maxOverdue) {
+					maxOverdue = ratio;
+					overdue = lane;
+				}
+			}
+		}
+		if (overdue != null && overduePicks < MAX_OVERDUE_PICKS) {
+			overduePicks++;
+			return overdue;
+		}
+		overduePicks = 0;
+
+		Lane best = null;
+		int total = 0;
+		for (Lane lane : lanes) {
+			if (!lane.tasks.isEmpty()) {
+				lane.currentWeight += lane.qosClass.getWeight();
+				total += lane.qosClass.getWeight();
+				if (best == null || lane.currentWeight > best.currentWeight) {
+					best = lane;
+				}
+			}
+		}
+		if (best == null) {
+			throw new IllegalStateException("no queued request, count:" + count);
+		}
+		best.currentWeight -= total;
+		return best;
+	}
+
+	private void drop(List<QosTask> expired) {
+		for (QosTask task : expired) {
+			if (task.isCancelled()) {
+				task.abort();
+			} else {
+				task.drop(TimeUtils.currentTimeMillis() - task.enqueueMillis);
+			}
+		}
+	}
+
+	static class Lane {
+
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+		private QosClass qosClass;
+
+		private int currentWeight;
+
+		private long dispatched;
+
+		private long rejected;
+
+		private long dropped;
+
+		private long sloViolations;
+
+		// requests of measured queue time
+		private long measured;
+
+		private long queueMillis;
+
+		private long maxQueueMillis;
+
+		Lane(QosClass qosClass) {
+			this.qosClass = qosClass;
+		}
+
+		void setQosClass(QosClass qosClass) {
+			this.qosClass = qosClass;
+		}
+	}
+}
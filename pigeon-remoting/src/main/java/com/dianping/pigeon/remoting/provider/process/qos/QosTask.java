@@ -0,0 +1,81 @@
+package com.dianping.pigeon.remoting.provider.process.qos;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.RejectedException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.exception.RequestAbortedException;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+/**
+ * a provider request waiting in a {@link QosQueue}, queued under the qos
+ * class it was classified into.
+ */
+public class QosTask extends FutureTask<InvocationResponse> {
+
+	private final ProviderContext providerContext;
+
+	private final String qosClass;
+
+	// set by the queue
+	volatile long enqueueMillis;
+
+	public QosTask(ProviderContext providerContext, String qosClass, Callable<InvocationResponse> task) {
+		super(task);
+		this.providerContext = providerContext;
+		this.qosClass = qosClass;
+	}
+
+	public ProviderContext getProviderContext() {
+		return providerContext;
+	}
+
+	public String getQosClass() {
+		return qosClass;
+	}
+
+	/**
+	 * the caller gave up on the request while it was queued
+	 */
+	boolean isExpired(long nowMillis) {
+		long deadline = providerContext.getDeadline();
+		return deadline > 0 && nowMillis >= deadline;
+	}
+
+	/**
+	 * answers the request with a rejection instead of running it
+	 */
+	void drop(long queueMillis) {
+		if (!cancel(false) || !providerContext.markStarted()) {
+			return;
+		}
+		InvocationRequest request = providerContext.getRequest();
+		if (request.getCallType() == Constants.CALLTYPE_REPLY) {
+			RejectedException e = new RejectedException("request dropped by qos class " + qosClass
+					+ ", caller timed out after it waited " + queueMillis + "ms in queue, timeout:" + request.getTimeout()
+					+ "ms");
+			providerContext.getChannel().write(ProviderUtils.createFailResponse(request, e));
+		}
+		onDrop();
+	}
+
+	/**
+	 * answers a request cancelled while it was queued, unless the timeout
+	 * checker that cancelled it has answered it already
+	 */
+	void abort() {
+		ProviderUtils.writeAbortResponse(providerContext, new RequestAbortedException(
+				"request cancelled while it waited in qos class " + qosClass));
+		onDrop();
+	}
+
+	/**
+	 * called after the request was dropped
+	 */
+	protected void onDrop() {
+	}
+}
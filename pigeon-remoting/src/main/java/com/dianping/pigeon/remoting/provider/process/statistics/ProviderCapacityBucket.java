@@ -34,13 +34,21 @@ public class ProviderCapacityBucket implements Serializable {
 	}
 
 	public void flowIn(InvocationRequest request) {
+		flowIn(request, 1);
+	}
+
+	/**
+	 * a request holds one of the current requests, but adds every call it
+	 * carries to the requests per second and minute
+	 */
+	public void flowIn(InvocationRequest request, int calls) {
 		Calendar now = Calendar.getInstance();
 		requests.incrementAndGet();
 		int second = now.get(Calendar.SECOND);
-		incrementTotalRequestsInSecond(second);
+		incrementTotalRequestsInSecond(second, calls);
 		if (enableMinuteStats) {
 			int minute = now.get(Calendar.MINUTE);
-			incrementTotalRequestsInMinute(minute);
+			incrementTotalRequestsInMinute(minute, calls);
 		}
 	}
 
@@ -85,19 +93,19 @@ public class ProviderCapacityBucket implements Serializable {
 		return counter != null ? counter.get() : 0;
 	}
 
-	private void incrementTotalRequestsInSecond(int second) {
+	private void incrementTotalRequestsInSecond(int second, int calls) {
 		AtomicInteger counter = totalRequestsInSecond.get(second);
 		if (counter != null) {
-			counter.incrementAndGet();
+			counter.addAndGet(calls);
 		} else {
 			logger.warn("Impossible case happended, second[" + second + "]'s request counter is null.");
 		}
 	}
 
-	private void incrementTotalRequestsInMinute(int minute) {
+	private void incrementTotalRequestsInMinute(int minute, int calls) {
 		AtomicInteger counter = totalRequestsInMinute.get(minute);
 		if (counter != null) {
-			counter.incrementAndGet();
+			counter.addAndGet(calls);
 		} else {
 			logger.warn("Impossible case happended, minute[" + minute + "]'s request counter is null.");
 		}
@@ -9,6 +9,7 @@ import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.service.method.BatchServiceMethod;
 
 public final class ProviderStatisticsHolder {
 
@@ -40,7 +41,7 @@ public final class ProviderStatisticsHolder {
 	}
 
 	public static ProviderCapacityBucket getMethodAppCapacityBucket(InvocationRequest request) {
-		final String requestMethod = request.getServiceName() + "#" + request.getMethodName();
+		final String requestMethod = getRequestMethod(request);
 		ConcurrentHashMap<String, ProviderCapacityBucket> appBarrelMap = methodAppCapacityBuckets.get(requestMethod);
 		if (appBarrelMap == null) {
 			ConcurrentHashMap<String, ProviderCapacityBucket> newAppBarrelMap = new ConcurrentHashMap<>();
@@ -101,21 +102,22 @@ public final class ProviderStatisticsHolder {
 		if (checkRequestNeedStat(request)) {
 			// app level
 			ProviderCapacityBucket barrel = getCapacityBucket(request);
+			int calls = BatchServiceMethod.getCallCount(request);
 			if (barrel != null) {
-				barrel.flowIn(request);
+				barrel.flowIn(request, calls);
 			}
 
 			// method level
-			final String requestMethod = request.getServiceName() + "#" + request.getMethodName();
+			final String requestMethod = getRequestMethod(request);
 			ProviderCapacityBucket methodBarrel = getCapacityBucket(requestMethod);
 			if (methodBarrel != null) {
-				methodBarrel.flowIn(request);
+				methodBarrel.flowIn(request, calls);
 			}
 
 			// method app level
 			ProviderCapacityBucket methodAppBarrel = getMethodAppCapacityBucket(request);
 			if (methodAppBarrel != null) {
-				methodAppBarrel.flowIn(request);
+				methodAppBarrel.flowIn(request, calls);
 			}
 		}
 	}
@@ -129,7 +131,7 @@ public final class ProviderStatisticsHolder {
 			}
 
 			// method level
-			final String requestMethod = request.getServiceName() + "#" + request.getMethodName();
+			final String requestMethod = getRequestMethod(request);
 			ProviderCapacityBucket methodBarrel = getCapacityBucket(requestMethod);
 			if (methodBarrel != null) {
 				methodBarrel.flowOut(request);
@@ -143,6 +145,11 @@ public final class ProviderStatisticsHolder {
 		}
 	}
 
+	// a $batch request is counted as its real method
+	private static String getRequestMethod(InvocationRequest request) {
+		return request.getServiceName() + "#" + BatchServiceMethod.getTargetMethodName(request);
+	}
+
 	public static boolean checkRequestNeedStat(InvocationRequest request) {
 		if (request == null || request.getMessageType() != Constants.MESSAGE_TYPE_SERVICE) {
 			return false;
@@ -0,0 +1,109 @@
+package com.dianping.pigeon.remoting.provider.process.stream;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.exception.RequestAbortedException;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * provider side of stream calls. every item returned by the service method
+ * is written as its own frame with the sequence of the request, one credit
+ * granted by the invoker is spent per item. the writing business thread
+ * waits when the credits are used up, so a slow consumer never makes the
+ * provider buffer the whole result.
+ */
+public enum StreamManager {
+
+	INSTANCE;
+
+	private static final Logger logger = LoggerLoader.getLogger(StreamManager.class);
+
+	// stream id --> credits
+	private final ConcurrentHashMap<Long, Semaphore> streams = new ConcurrentHashMap<Long, Semaphore>();
+
+	public boolean isStreamRequest(InvocationRequest request) {
+		Map<String, Serializable> values = request.getRequestValues();
+		return values != null && values.get(Constants.CONTEXT_KEY_STREAM_ID) instanceof Long;
+	}
+
+	/**
+	 * writes the items of the returned value, an iterator or iterable is
+	 * streamed item by item, anything else is written as a single item
+	 */
+	public void writeStream(ProviderContext providerContext, Object returnObj) throws InterruptedException {
+		InvocationRequest request = providerContext.getRequest();
+		Map<String, Serializable> values = request.getRequestValues();
+		Long streamId = (Long) values.get(Constants.CONTEXT_KEY_STREAM_ID);
+		Object credit = values.get(Constants.CONTEXT_KEY_STREAM_CREDIT);
+		Semaphore credits = new Semaphore(credit instanceof Integer ? (Integer) credit : 1);
+		Iterator<?> iterator = null;
+		if (returnObj instanceof Iterator) {
+			iterator = (Iterator<?>) returnObj;
+		} else if (returnObj instanceof Iterable) {
+			iterator = ((Iterable<?>) returnObj).iterator();
+		}
+		streams.put(streamId, credits);
+		try {
+			if (iterator == null) {
+				if (returnObj != null) {
+					writeItem(providerContext, credits, returnObj);
+				}
+				return;
+			}
+			while (iterator.hasNext()) {
+				writeItem(providerContext, credits, iterator.next());
+			}
+		} finally {
+			streams.remove(streamId);
+			if (iterator instanceof Closeable) {
+				try {
+					((Closeable) iterator).close();
+				} catch (Throwable e) {
+					logger.warn("close stream failed:" + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void writeItem(ProviderContext providerContext, Semaphore credits, Object item)
+			throws InterruptedException {
+		InvocationRequest request = providerContext.getRequest();
+		long timeout = request.getTimeout() > 0 ? request.getTimeout() : Long.MAX_VALUE;
+		if (!credits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+			throw new RequestAbortedException("no stream credit from invoker in " + timeout + "ms, request:"
+					+ request);
+		}
+		InvocationResponse response = ProviderUtils.createSuccessResponse(request, item);
+		response.setMessageType(Constants.MESSAGE_TYPE_STREAM);
+		providerContext.getChannel().write(response);
+		// the timeout of a stream is an idle timeout, progress keeps it alive
+		request.setCreateMillisTime(TimeUtils.currentTimeMillis());
+	}
+
+	/**
+	 * credit frames are handled on the io thread, they only release permits
+	 */
+	public void addCredit(InvocationRequest request) {
+		Object[] parameters = request.getParameters();
+		if (parameters == null || parameters.length < 2) {
+			return;
+		}
+		Semaphore credits = streams.get(parameters[0]);
+		if (credits != null) {
+			credits.release((Integer) parameters[1]);
+		}
+	}
+}
@@ -5,6 +5,7 @@
 package com.dianping.pigeon.remoting.provider.process.threadpool;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
@@ -36,7 +37,12 @@ import com.dianping.pigeon.remoting.provider.config.ServerConfig;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
 import com.dianping.pigeon.remoting.provider.process.AbstractRequestProcessor;
 import com.dianping.pigeon.remoting.provider.process.ProviderProcessHandlerFactory;
+import com.dianping.pigeon.remoting.provider.process.executor.RequestExecutor;
+import com.dianping.pigeon.remoting.provider.process.executor.RequestExecutorFactory;
 import com.dianping.pigeon.remoting.provider.process.filter.GatewayProcessFilter;
+import com.dianping.pigeon.remoting.provider.process.qos.QosManager;
+import com.dianping.pigeon.remoting.provider.process.qos.QosQueue;
+import com.dianping.pigeon.remoting.provider.process.qos.QosTask;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodCache;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodFactory;
 import com.dianping.pigeon.threadpool.DefaultThreadPool;
@@ -73,6 +79,19 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
 
     private static ConcurrentHashMap<String, ThreadPool> serviceThreadPools = new ConcurrentHashMap<String, ThreadPool>();
 
+    // pluggable executor, the pools below replace the thread pools above when it is set
+    private final RequestExecutor requestExecutor;
+
+    private PoolBean requestPoolBean = null;
+
+    private static PoolBean sharedRequestPoolBean = null;
+
+    private static PoolBean slowRequestPoolBean = null;
+
+    private static ConcurrentHashMap<String, PoolBean> methodPoolBeans = new ConcurrentHashMap<String, PoolBean>();
+
+    private static ConcurrentHashMap<String, PoolBean> servicePoolBeans = new ConcurrentHashMap<String, PoolBean>();
+
     private static int DEFAULT_POOL_ACTIVES = configManager.getIntValue(
             "pigeon.provider.pool.actives", 60);
 
@@ -124,13 +143,58 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
         if ("server".equals(poolStrategy)) {
             requestProcessThreadPool = new DefaultThreadPool("Pigeon-Server-Request-Processor-"
                     + serverConfig.getProtocol() + "-" + serverConfig.getActualPort(), serverConfig.getCorePoolSize(),
-                    serverConfig.getMaxPoolSize(), new LinkedBlockingQueue<Runnable>(serverConfig.getWorkQueueSize()));
+                    serverConfig.getMaxPoolSize(), newRequestQueue(serverConfig.getWorkQueueSize()));
         } else {
             sharedRequestProcessThreadPool = new DefaultThreadPool("Pigeon-Server-Request-Processor",
-                    serverConfig.getCorePoolSize(), serverConfig.getMaxPoolSize(), new LinkedBlockingQueue<Runnable>(
-                    serverConfig.getWorkQueueSize()));
+                    serverConfig.getCorePoolSize(), serverConfig.getMaxPoolSize(),
+                    newRequestQueue(serverConfig.getWorkQueueSize()));
             requestProcessThreadPool = sharedRequestProcessThreadPool;
         }
+        requestExecutor = RequestExecutorFactory.selectExecutor(serverConfig);
+        if (requestExecutor != null) {
+            if ("server".equals(poolStrategy)) {
+                requestPoolBean = newPoolBean("server-" + serverConfig.getProtocol() + "-"
+                        + serverConfig.getActualPort(), serverConfig.getCorePoolSize(), serverConfig.getMaxPoolSize(),
+                        serverConfig.getWorkQueueSize());
+            } else {
+                sharedRequestPoolBean = newPoolBean("shared", serverConfig.getCorePoolSize(),
+                        serverConfig.getMaxPoolSize(), serverConfig.getWorkQueueSize());
+                requestPoolBean = sharedRequestPoolBean;
+            }
+            slowRequestPoolBean = newPoolBean("slow", SLOW_POOL_CORESIZE, SLOW_POOL_MAXSIZE, SLOW_POOL_QUEUESIZE);
+            logger.info("provider requests are processed by " + requestExecutor.getClass().getName());
+            if (QosManager.INSTANCE.isEnable()) {
+                logger.warn("qos scheduling only applies to the request thread pools, ignored by "
+                        + requestExecutor.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * work queue of the server or shared pool, scheduled by qos class if enabled
+     */
+    private static BlockingQueue<Runnable> newRequestQueue(int queueSize) {
+        if (QosManager.INSTANCE.isEnable()) {
+            return QosManager.INSTANCE.newQueue(queueSize);
+        }
+        return new LinkedBlockingQueue<Runnable>(queueSize);
+    }
+
+    private static int getQueueSize(ThreadPool pool) {
+        BlockingQueue<Runnable> queue = pool.getExecutor().getQueue();
+        if (queue instanceof QosQueue) {
+            return ((QosQueue) queue).getDefaultCapacity();
+        }
+        return queue.remainingCapacity() + queue.size();
+    }
+
+    private static PoolBean newPoolBean(String poolName, int coreSize, int maxSize, int queueSize) {
+        PoolBean poolBean = new PoolBean();
+        poolBean.setPoolName(poolName);
+        poolBean.setCorePoolSize(coreSize);
+        poolBean.setMaxPoolSize(maxSize);
+        poolBean.setWorkQueueSize(queueSize);
+        return poolBean;
     }
 
     private static void init() throws Throwable {
@@ -196,10 +260,14 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
     public Future<InvocationResponse> doProcessRequest(final InvocationRequest request,
                                                        final ProviderContext providerContext) {
         requestContextMap.put(request, providerContext);
-        Callable<InvocationResponse> requestExecutor = new Callable<InvocationResponse>() {
+        Callable<InvocationResponse> requestTask = new Callable<InvocationResponse>() {
 
             @Override
             public InvocationResponse call() throws Exception {
+                if (!providerContext.markStarted()) {
+                    // answered as aborted while it waited
+                    return null;
+                }
                 providerContext.getTimeline().add(new TimePoint(TimePhase.T));
                 try {
                     ServiceInvocationHandler invocationHandler = ProviderProcessHandlerFactory
@@ -216,15 +284,29 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
                 return null;
             }
         };
-        final ThreadPool pool = selectThreadPool(request);
         // MonitorTransaction transaction =
         // monitor.createTransaction("PigeonRequestSubmit", "",
         // providerContext);
         // transaction.setStatusOk();
         try {
-            checkRequest(pool, request);
+            checkRequest(request);
             providerContext.getTimeline().add(new TimePoint(TimePhase.T));
-            return pool.submit(requestExecutor);
+            if (requestExecutor != null) {
+                return requestExecutor.submit(selectPoolBean(request), requestTask);
+            }
+            ThreadPool pool = selectThreadPool(request);
+            if (pool.getExecutor().getQueue() instanceof QosQueue) {
+                QosTask task = new QosTask(providerContext, QosManager.INSTANCE.classify(request), requestTask) {
+
+                    @Override
+                    protected void onDrop() {
+                        requestContextMap.remove(request);
+                    }
+                };
+                pool.getExecutor().execute(task);
+                return task;
+            }
+            return pool.submit(requestTask);
         } catch (RejectedExecutionException e) {
             // transaction.setStatusError(e);
             requestContextMap.remove(request);
@@ -235,7 +317,7 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
         // }
     }
 
-    private void checkRequest(final ThreadPool pool, final InvocationRequest request) {
+    private void checkRequest(final InvocationRequest request) {
         GatewayProcessFilter.checkRequest(request);
     }
 
@@ -299,8 +381,49 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
         return pool;
     }
 
+    private PoolBean selectPoolBean(final InvocationRequest request) {
+        String serviceKey = request.getServiceName();
+        String methodKey = serviceKey + "#" + request.getMethodName();
+
+        PoolBean poolBean = springApiPoolBeanMapping.get(methodKey);
+        if (poolBean == null) {
+            poolBean = springApiPoolBeanMapping.get(serviceKey);
+        }
+        if (poolBean == null) {
+            poolBean = methodPoolBeans.get(methodKey);
+        }
+        if (poolBean == null) {
+            poolBean = servicePoolBeans.get(serviceKey);
+        }
+
+        if (poolBean == null && configManager.getBooleanValue(KEY_PROVIDER_POOL_CONFIG_ENABLE, false)
+                && !CollectionUtils.isEmpty(apiPoolConfigMapping)) {
+            String poolName = apiPoolConfigMapping.get(methodKey);
+            if (StringUtils.isBlank(poolName)) {
+                poolName = apiPoolConfigMapping.get(serviceKey);
+            }
+            if (StringUtils.isNotBlank(poolName)) {
+                poolBean = poolNameMapping.get(poolName);
+            }
+        }
+
+        if (poolBean == null) {
+            if (enableSlowPool && requestTimeoutListener.isSlowRequest(request)) {
+                poolBean = slowRequestPoolBean;
+            } else if ("server".equals(poolStrategy)) {
+                poolBean = requestPoolBean;
+            } else {
+                poolBean = sharedRequestPoolBean;
+            }
+        }
+        return poolBean;
+    }
+
     @Override
     public String getProcessorStatistics() {
+        if (requestExecutor != null) {
+            return getExecutorStatistics();
+        }
         StringBuilder stats = new StringBuilder();
 
         if ("server".equals(poolStrategy)) {
@@ -347,6 +470,35 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
         return stats.toString();
     }
 
+    private String getExecutorStatistics() {
+        StringBuilder stats = new StringBuilder();
+
+        if ("server".equals(poolStrategy)) {
+            stats.append("[server=").append(requestExecutor.getStatistics(requestPoolBean)).append("]");
+        } else {
+            stats.append("[shared=").append(requestExecutor.getStatistics(sharedRequestPoolBean)).append("]");
+        }
+        stats.append("[slow=").append(requestExecutor.getStatistics(slowRequestPoolBean)).append("]");
+
+        Map<String, PoolBean> poolBeans = new LinkedHashMap<String, PoolBean>();
+        poolBeans.putAll(springApiPoolBeanMapping);
+        poolBeans.putAll(servicePoolBeans);
+        poolBeans.putAll(methodPoolBeans);
+        for (Map.Entry<String, String> entry : apiPoolConfigMapping.entrySet()) {
+            PoolBean poolBean = poolNameMapping.get(entry.getValue());
+            if (poolBean != null) {
+                poolBeans.put(entry.getKey(), poolBean);
+            }
+        }
+        for (Map.Entry<String, PoolBean> entry : poolBeans.entrySet()) {
+            stats.append(",[").append(entry.getKey()).append("=")
+                    .append(requestExecutor.getStatistics(entry.getValue())).append("]");
+        }
+
+        stats.append(GatewayProcessFilter.getStatistics());
+        return stats.toString();
+    }
+
     private boolean needStandalonePool(ProviderConfig<?> providerConfig) {
         return !providerConfig.isUseSharedPool() || "method".equals(poolStrategy);
     }
@@ -363,7 +515,10 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
                 springPoolNameMapping.putIfAbsent(providerConfig.getPoolBean().getPoolName(), providerConfig.getPoolBean());
             } else if (providerConfig.getActives() > 0 && CollectionUtils.isEmpty(methodConfigs)) { // 服务的actives方式,不支持方法的fallback,不支持动态修改
                 ThreadPool pool = serviceThreadPools.get(url);
-                if (pool == null) {
+                if (requestExecutor != null) {
+                    int actives = providerConfig.getActives();
+                    servicePoolBeans.putIfAbsent(url, newPoolBean("service-" + url, actives, actives, actives));
+                } else if (pool == null) {
                     int actives = providerConfig.getActives();
                     int coreSize = (int) (actives / DEFAULT_POOL_RATIO_CORE) > 0 ? (int) (actives / DEFAULT_POOL_RATIO_CORE)
                             : actives;
@@ -384,6 +539,12 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
                         if (methodConfig.getPoolBean() != null) { // 方法poolBean方式
                             springApiPoolBeanMapping.putIfAbsent(key, methodConfig.getPoolBean());
                             springPoolNameMapping.putIfAbsent(methodConfig.getPoolBean().getPoolName(), methodConfig.getPoolBean());
+                        } else if (requestExecutor != null) { // 方法actives方式,映射为并发限制
+                            int actives = DEFAULT_POOL_ACTIVES;
+                            if (methodConfig.getActives() > 0) {
+                                actives = methodConfig.getActives();
+                            }
+                            methodPoolBeans.putIfAbsent(key, newPoolBean("method-" + key, actives, actives, actives));
                         } else if (pool == null) { // 方法actives方式
                             int actives = DEFAULT_POOL_ACTIVES;
                             if (methodConfig.getActives() > 0) {
@@ -405,6 +566,9 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
 
     @Override
     public String getProcessorStatistics(InvocationRequest request) {
+        if (requestExecutor != null) {
+            return requestExecutor.getStatistics(selectPoolBean(request));
+        }
         ThreadPool pool = selectThreadPool(request);
         return getThreadPoolStatistics(pool);
     }
@@ -418,6 +582,9 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
                 "request pool size:%d(active:%d,core:%d,max:%d,largest:%d),task count:%d(completed:%d),queue size:%d,queue remaining:%d",
                 e.getPoolSize(), e.getActiveCount(), e.getCorePoolSize(), e.getMaximumPoolSize(), e.getLargestPoolSize(),
                 e.getTaskCount(), e.getCompletedTaskCount(), e.getQueue().size(), e.getQueue().remainingCapacity());
+        if (e.getQueue() instanceof QosQueue) {
+            stats += "," + ((QosQueue) e.getQueue()).getStatistics();
+        }
         return stats;
     }
 
@@ -451,11 +618,32 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
             if (pool != null) {
                 pool.getExecutor().shutdown();
             }
+
+            toRemoveKeys = new HashSet<String>();
+            for (String key : methodPoolBeans.keySet()) {
+                if (key.startsWith(providerConfig.getUrl() + "#")) {
+                    toRemoveKeys.add(key);
+                }
+            }
+            toRemoveKeys.add(providerConfig.getUrl());
+            for (String key : toRemoveKeys) {
+                PoolBean poolBean = methodPoolBeans.remove(key);
+                if (poolBean == null) {
+                    poolBean = servicePoolBeans.remove(key);
+                }
+                if (poolBean != null && requestExecutor != null) {
+                    requestExecutor.removePool(poolBean);
+                }
+            }
         }
     }
 
     @Override
     public boolean needCancelRequest(InvocationRequest request) {
+        if (requestExecutor != null) {
+            PoolBean poolBean = selectPoolBean(request);
+            return requestExecutor.getActiveCount(poolBean) >= poolBean.getMaxPoolSize() * cancelRatio;
+        }
         ThreadPool pool = selectThreadPool(request);
         return pool.getExecutor().getPoolSize() >= pool.getExecutor().getMaximumPoolSize() * cancelRatio;
     }
@@ -555,12 +743,10 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
                 if (size != sharedRequestProcessThreadPool.getExecutor().getCorePoolSize() && size >= 0) {
                     try {
                         ThreadPool oldPool = sharedRequestProcessThreadPool;
-                        int queueSize = oldPool.getExecutor().getQueue().remainingCapacity()
-                                + oldPool.getExecutor().getQueue().size();
+                        int queueSize = getQueueSize(oldPool);
                         try {
                             ThreadPool newPool = new DefaultThreadPool("Pigeon-Server-Request-Processor-method", size,
-                                    oldPool.getExecutor().getMaximumPoolSize(), new LinkedBlockingQueue<Runnable>(
-                                    queueSize));
+                                    oldPool.getExecutor().getMaximumPoolSize(), newRequestQueue(queueSize));
                             sharedRequestProcessThreadPool = newPool;
                             oldPool.getExecutor().shutdown();
                             oldPool.getExecutor().awaitTermination(5, TimeUnit.SECONDS);
@@ -577,15 +763,16 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
                 }
             } else if (StringUtils.isNotBlank(sharedPoolMaxSizeKey) && key.endsWith(sharedPoolMaxSizeKey)) {
                 int size = Integer.valueOf(value);
+                if (sharedRequestPoolBean != null && size > 0) {
+                    sharedRequestPoolBean.setMaxPoolSize(size);
+                }
                 if (size != sharedRequestProcessThreadPool.getExecutor().getMaximumPoolSize() && size >= 0) {
                     try {
                         ThreadPool oldPool = sharedRequestProcessThreadPool;
-                        int queueSize = oldPool.getExecutor().getQueue().remainingCapacity()
-                                + oldPool.getExecutor().getQueue().size();
+                        int queueSize = getQueueSize(oldPool);
                         try {
                             ThreadPool newPool = new DefaultThreadPool("Pigeon-Server-Request-Processor-method",
-                                    oldPool.getExecutor().getCorePoolSize(), size, new LinkedBlockingQueue<Runnable>(
-                                    queueSize));
+                                    oldPool.getExecutor().getCorePoolSize(), size, newRequestQueue(queueSize));
                             sharedRequestProcessThreadPool = newPool;
                             oldPool.getExecutor().shutdown();
                             oldPool.getExecutor().awaitTermination(5, TimeUnit.SECONDS);
@@ -602,15 +789,17 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
                 }
             } else if (StringUtils.isNotBlank(sharedPoolQueueSizeKey) && key.endsWith(sharedPoolQueueSizeKey)) {
                 int size = Integer.valueOf(value);
+                if (sharedRequestPoolBean != null && size > 0) {
+                    sharedRequestPoolBean.setWorkQueueSize(size);
+                }
                 ThreadPool oldPool = sharedRequestProcessThreadPool;
-                int queueSize = oldPool.getExecutor().getQueue().remainingCapacity()
-                        + oldPool.getExecutor().getQueue().size();
+                int queueSize = getQueueSize(oldPool);
                 if (size != queueSize && size >= 0) {
                     try {
                         try {
                             ThreadPool newPool = new DefaultThreadPool("Pigeon-Server-Request-Processor-method",
                                     oldPool.getExecutor().getCorePoolSize(),
-                                    oldPool.getExecutor().getMaximumPoolSize(), new LinkedBlockingQueue<Runnable>(size));
+                                    oldPool.getExecutor().getMaximumPoolSize(), newRequestQueue(size));
                             sharedRequestProcessThreadPool = newPool;
                             oldPool.getExecutor().shutdown();
                             oldPool.getExecutor().awaitTermination(5, TimeUnit.SECONDS);
@@ -691,7 +880,15 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
                     if (key.endsWith(v)) {
                         try {
                             String serviceKey = k;
-                            if (StringUtils.isNotBlank(serviceKey)) {
+                            PoolBean poolBean = methodPoolBeans.get(serviceKey);
+                            if (poolBean != null) {
+                                int actives = Integer.valueOf(value);
+                                if (actives > 0) {
+                                    poolBean.setMaxPoolSize(actives);
+                                    poolBean.setWorkQueueSize(actives);
+                                    logger.info("changed method limit, key:" + serviceKey + ", value:" + actives);
+                                }
+                            } else if (StringUtils.isNotBlank(serviceKey)) {
                                 ThreadPool pool = null;
                                 if (!CollectionUtils.isEmpty(methodThreadPools)) {
                                     pool = methodThreadPools.get(serviceKey);
@@ -10,6 +10,7 @@ import com.dianping.pigeon.config.ConfigManager;
 import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.ServiceFactory;
+import com.dianping.pigeon.remoting.provider.warmup.WarmupManager;
 
 public class ServiceOnlineTask implements Runnable {
 
@@ -72,12 +73,19 @@ public class ServiceOnlineTask implements Runnable {
 
 	public void setStop(boolean isStop) {
 		this.isStop = isStop;
+		if (isStop) {
+			WarmupManager.INSTANCE.stop();
+		}
 	}
 
 	public void run() {
 		logger.info("Service online task start");
 		try {
 			Thread.sleep(delay);
+			if (!isStop) {
+				// weight stays 0 until the services are warm
+				WarmupManager.INSTANCE.warmUp();
+			}
 			if (!isStop) {
 				ServiceFactory.online();
 			}
@@ -0,0 +1,87 @@
+package com.dianping.pigeon.remoting.provider.service.method;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import com.dianping.pigeon.remoting.common.domain.BatchResult;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+/**
+ * the $batch method every service implicitly has. the arguments are the real
+ * method name, its parameter class names and the arguments of every call,
+ * the calls run one after another in the current business thread.
+ */
+public class BatchServiceMethod extends ServiceMethod {
+
+	private static final Method BATCH_METHOD;
+
+	static {
+		try {
+			BATCH_METHOD = BatchServiceMethod.class.getMethod("batch", String.class, String[].class,
+					Object[][].class);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private final ServiceMethodCache methodCache;
+
+	public BatchServiceMethod(ServiceMethodCache methodCache, Object service) {
+		super(service, BATCH_METHOD);
+		this.methodCache = methodCache;
+	}
+
+	/**
+	 * the method the calls of a request run, that is the real method of a
+	 * $batch request, so token switches and method limits apply to it
+	 */
+	public static String getTargetMethodName(InvocationRequest request) {
+		Object[] arguments = getBatchArguments(request);
+		return arguments != null ? (String) arguments[0] : request.getMethodName();
+	}
+
+	/**
+	 * the number of calls a request carries
+	 */
+	public static int getCallCount(InvocationRequest request) {
+		Object[] arguments = getBatchArguments(request);
+		return arguments != null ? ((Object[][]) arguments[2]).length : 1;
+	}
+
+	private static Object[] getBatchArguments(InvocationRequest request) {
+		if (!Constants.BATCH_METHOD.equals(request.getMethodName())) {
+			return null;
+		}
+		Object[] arguments = request.getParameters();
+		if (arguments == null || arguments.length != 3 || !(arguments[0] instanceof String)
+				|| !(arguments[2] instanceof Object[][])) {
+			return null;
+		}
+		return arguments;
+	}
+
+	public BatchResult batch(String methodName, String[] paramClassNames, Object[][] calls) {
+		ServiceMethod method = methodCache.getMethod(methodName, new ServiceParam(paramClassNames));
+		BatchResult result = new BatchResult(calls.length);
+		for (int i = 0; i < calls.length; i++) {
+			try {
+				result.setResult(i, method.invoke(calls[i]));
+			} catch (InvocationTargetException e) {
+				result.setError(i, e.getTargetException());
+			} catch (Exception e) {
+				result.setError(i, e);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Object invoke(Object[] arguments) throws IllegalArgumentException, IllegalAccessException,
+			InvocationTargetException {
+		if (arguments == null || arguments.length != 3) {
+			throw new IllegalArgumentException("invalid batch arguments");
+		}
+		return batch((String) arguments[0], (String[]) arguments[1], (Object[][]) arguments[2]);
+	}
+}
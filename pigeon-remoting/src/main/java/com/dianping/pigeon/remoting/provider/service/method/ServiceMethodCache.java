@@ -30,11 +30,18 @@ public class ServiceMethodCache {
 
 	private Object service;
 
+	private BatchServiceMethod batchMethod;
+
 	// private String serviceName;
 
 	public ServiceMethodCache(String serviceName, Object service) {
 		// this.serviceName = serviceName;
 		this.service = service;
+		this.batchMethod = new BatchServiceMethod(this, service);
+	}
+
+	public BatchServiceMethod getBatchMethod() {
+		return batchMethod;
 	}
 
 	public ServiceMethod getCurrentMethod() {
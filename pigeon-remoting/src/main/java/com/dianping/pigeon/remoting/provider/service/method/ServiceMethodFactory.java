@@ -18,6 +18,7 @@ import com.dianping.pigeon.remoting.common.domain.CompactRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.ServiceId;
 import com.dianping.pigeon.remoting.common.exception.BadRequestException;
+import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
 import com.dianping.pigeon.remoting.provider.exception.InvocationFailureException;
 import com.dianping.pigeon.remoting.provider.process.filter.ContextTransferProcessFilter;
@@ -67,6 +68,9 @@ public final class ServiceMethodFactory {
 		if (serviceMethodCache == null) {
 			throw new BadRequestException("cannot find service for request:" + request);
 		}
+		if (Constants.BATCH_METHOD.equals(methodName)) {
+			return serviceMethodCache.getBatchMethod();
+		}
 		return serviceMethodCache.getMethod(methodName, new ServiceParam(paramClassNames));
 	}
 
@@ -92,6 +96,8 @@ public final class ServiceMethodFactory {
 						}
 					}
 				}
+				int batchId = LangUtils.hash(url + "#" + Constants.BATCH_METHOD, 0, Integer.MAX_VALUE);
+				CompactRequest.PROVIDER_ID_MAP.putIfAbsent(batchId, new ServiceId(url, Constants.BATCH_METHOD));
 				methods.put(url, serviceMethodCache);
 			}
 		}
@@ -22,6 +22,7 @@ import com.dianping.pigeon.remoting.provider.process.ProviderInterceptorFactory;
 import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptor;
 import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptorFactory;
 import com.dianping.pigeon.remoting.provider.process.statistics.ProviderStatisticsHolder;
+import com.dianping.pigeon.remoting.provider.warmup.WarmupManager;
 import com.dianping.pigeon.util.TimeUtils;
 
 public final class ProviderHelper {
@@ -96,7 +97,9 @@ public final class ProviderHelper {
 				}
 			}
 		}
-		ProviderStatisticsHolder.flowOut(request);
+		if (!WarmupManager.isWarmupRequest(context)) {
+			ProviderStatisticsHolder.flowOut(request);
+		}
 		List<ProviderProcessInterceptor> interceptors = ProviderProcessInterceptorFactory.getInterceptors();
 		for (ProviderProcessInterceptor interceptor : interceptors) {
 			interceptor.postInvoke(request, response);
@@ -113,7 +116,9 @@ public final class ProviderHelper {
 			InvocationResponse response = ProviderUtils.createServiceExceptionResponse(request, exeption);
 			ProviderChannel channel = context.getChannel();
 			channel.write(response);
-			ProviderStatisticsHolder.flowOut(request);
+			if (!WarmupManager.isWarmupRequest(context)) {
+				ProviderStatisticsHolder.flowOut(request);
+			}
 			List<ProviderProcessInterceptor> interceptors = ProviderProcessInterceptorFactory.getInterceptors();
 			for (ProviderProcessInterceptor interceptor : interceptors) {
 				interceptor.postInvoke(request, response);
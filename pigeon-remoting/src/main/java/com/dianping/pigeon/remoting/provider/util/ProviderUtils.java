@@ -105,6 +105,22 @@ public final class ProviderUtils {
         return response;
     }
 
+    /**
+     * answers a request cancelled before it ran, its task never writes. only
+     * http needs it: a connection is answered in request order and its later
+     * responses must not wait for this one, binary callers have timed out
+     */
+    public static void writeAbortResponse(ProviderContext providerContext, Throwable e) {
+        InvocationRequest request = providerContext.getRequest();
+        if (request.getCallType() == Constants.CALLTYPE_REPLY
+                && request.getMessageType() != Constants.MESSAGE_TYPE_HEART
+                && providerContext.getChannel() != null
+                && Constants.PROTOCOL_HTTP.equals(providerContext.getChannel().getProtocol())
+                && providerContext.markStarted()) {
+            providerContext.getChannel().write(createFailResponse(request, e));
+        }
+    }
+
     public static InvocationResponse createServiceExceptionResponse(InvocationRequest request, Throwable e) {
         if (request instanceof UnifiedRequest) {
             return createServiceExceptionResponse0((UnifiedRequest) request, e);
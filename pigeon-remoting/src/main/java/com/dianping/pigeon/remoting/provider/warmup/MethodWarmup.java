@@ -0,0 +1,103 @@
+package com.dianping.pigeon.remoting.provider.warmup;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+
+/**
+ * warm-up progress of one service method
+ */
+public class MethodWarmup {
+
+	private final ProviderConfig<?> providerConfig;
+
+	private final Method method;
+
+	private final List<Object[]> samples;
+
+	private volatile long calls;
+
+	private volatile long failures;
+
+	private volatile int rounds;
+
+	private volatile double latency;
+
+	private volatile boolean stable;
+
+	MethodWarmup(ProviderConfig<?> providerConfig, Method method, List<Object[]> samples) {
+		this.providerConfig = providerConfig;
+		this.method = method;
+		this.samples = samples;
+	}
+
+	ProviderConfig<?> getProviderConfig() {
+		return providerConfig;
+	}
+
+	Method getMethod() {
+		return method;
+	}
+
+	List<Object[]> getSamples() {
+		return samples;
+	}
+
+	/**
+	 * a round is stable when its mean latency is within ratio of the previous
+	 * round
+	 */
+	void completeRound(long calls, long failures, double latency, float ratio) {
+		this.calls += calls;
+		this.failures += failures;
+		if (rounds > 0 && Math.abs(latency - this.latency) <= this.latency * ratio) {
+			stable = true;
+		}
+		this.latency = latency;
+		rounds++;
+	}
+
+	public String getService() {
+		return providerConfig.getUrl();
+	}
+
+	public String getName() {
+		StringBuilder name = new StringBuilder(method.getName()).append('(');
+		Class<?>[] types = method.getParameterTypes();
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0) {
+				name.append(',');
+			}
+			name.append(types[i].getSimpleName());
+		}
+		return name.append(')').toString();
+	}
+
+	public int getSampleCount() {
+		return samples.size();
+	}
+
+	public long getCalls() {
+		return calls;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+	public int getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * mean latency of the last round in microseconds
+	 */
+	public double getLatency() {
+		return latency;
+	}
+
+	public boolean isStable() {
+		return stable;
+	}
+}
@@ -0,0 +1,89 @@
+package com.dianping.pigeon.remoting.provider.warmup;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * one argument list built from the method signature: zero for numbers, false,
+ * empty strings, collections and arrays, the first enum constant and beans
+ * from their no-arg constructor, null for anything else.
+ */
+public class SyntheticSampleProvider implements WarmupSampleProvider {
+
+	@Override
+	public List<Object[]> getSamples(String url, Method method) {
+		Class<?>[] types = method.getParameterTypes();
+		Object[] args = new Object[types.length];
+		for (int i = 0; i < types.length; i++) {
+			args[i] = newValue(types[i]);
+		}
+		return Collections.singletonList(args);
+	}
+
+	Object newValue(Class<?> type) {
+		if (type == String.class) {
+			return "";
+		}
+		if (type == boolean.class || type == Boolean.class) {
+			return Boolean.FALSE;
+		}
+		if (type == char.class || type == Character.class) {
+			return Character.valueOf((char) 0);
+		}
+		if (type == byte.class || type == Byte.class) {
+			return Byte.valueOf((byte) 0);
+		}
+		if (type == short.class || type == Short.class) {
+			return Short.valueOf((short) 0);
+		}
+		if (type == int.class || type == Integer.class) {
+			return Integer.valueOf(0);
+		}
+		if (type == long.class || type == Long.class) {
+			return Long.valueOf(0L);
+		}
+		if (type == float.class || type == Float.class) {
+			return Float.valueOf(0f);
+		}
+		if (type == double.class || type == Double.class) {
+			return Double.valueOf(0d);
+		}
+		if (type.isArray()) {
+			return Array.newInstance(type.getComponentType(), 0);
+		}
+		if (type.isEnum()) {
+			Object[] constants = type.getEnumConstants();
+			return constants.length > 0 ? constants[0] : null;
+		}
+		if (Collection.class.isAssignableFrom(type)) {
+			if (type.isAssignableFrom(ArrayList.class)) {
+				return new ArrayList<Object>();
+			}
+			if (type.isAssignableFrom(HashSet.class)) {
+				return new HashSet<Object>();
+			}
+		}
+		if (Map.class.isAssignableFrom(type) && type.isAssignableFrom(HashMap.class)) {
+			return new HashMap<Object, Object>();
+		}
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+			return null;
+		}
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return constructor.newInstance();
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+}
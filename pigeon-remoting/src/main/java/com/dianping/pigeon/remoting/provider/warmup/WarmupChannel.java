@@ -0,0 +1,46 @@
+package com.dianping.pigeon.remoting.provider.warmup;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+
+/**
+ * channel of the local warm-up calls, responses are read from the request
+ * future so writes are dropped
+ */
+class WarmupChannel implements ProviderChannel {
+
+	static final WarmupChannel INSTANCE = new WarmupChannel();
+
+	private final String localIp = ConfigManagerLoader.getConfigManager().getLocalIp();
+
+	@Override
+	public void write(InvocationResponse response) {
+	}
+
+	@Override
+	public String getRemoteAddress() {
+		return localIp;
+	}
+
+	@Override
+	public String getProtocol() {
+		return Constants.PROTOCOL_DEFAULT;
+	}
+
+	@Override
+	public int getPort() {
+		return 0;
+	}
+
+	@Override
+	public AuthSession getAuthSession() {
+		return null;
+	}
+
+	@Override
+	public void setAuthSession(AuthSession session) {
+	}
+}
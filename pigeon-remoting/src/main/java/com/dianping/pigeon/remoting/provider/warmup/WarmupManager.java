@@ -0,0 +1,329 @@
+package com.dianping.pigeon.remoting.provider.warmup;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.extension.ExtensionLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.provider.ProviderBootStrap;
+import com.dianping.pigeon.remoting.provider.Server;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.publish.ServicePublisher;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * warms up the published services before they get weight: sample arguments of
+ * every service method are replayed through the server's request processor,
+ * filter chain and service method dispatch, in rounds, until the mean latency
+ * of a method stops changing or the time budget is spent. methods without
+ * samples of a {@link WarmupSampleProvider} are only called with synthetic
+ * arguments when they are listed in pigeon.provider.warmup.synthetic.methods.
+ */
+public enum WarmupManager {
+
+	INSTANCE;
+
+	private static final Logger logger = LoggerLoader.getLogger(WarmupManager.class);
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final String KEY_WARMUP_ENABLE = "pigeon.provider.warmup.enable";
+
+	private static final String KEY_WARMUP_TIMEOUT = "pigeon.provider.warmup.timeout";
+
+	private static final String KEY_WARMUP_ROUND_CALLS = "pigeon.provider.warmup.round.calls";
+
+	private static final String KEY_WARMUP_ROUNDS_MAX = "pigeon.provider.warmup.rounds.max";
+
+	private static final String KEY_WARMUP_STABLE_RATIO = "pigeon.provider.warmup.stable.ratio";
+
+	// methods that may be called with synthetic arguments, names or url#name. a
+	// synthetic call of a mutating method would change real data, so none by default
+	private static final String KEY_WARMUP_SYNTHETIC_METHODS = "pigeon.provider.warmup.synthetic.methods";
+
+	private static final String KEY_WARMUP_METHODS = "pigeon.provider.warmup.methods";
+
+	private static final int CALL_TIMEOUT = 5000;
+
+	public static final String STATE_IDLE = "idle";
+
+	public static final String STATE_RUNNING = "running";
+
+	public static final String STATE_DONE = "done";
+
+	static {
+		configManager.getBooleanValue(KEY_WARMUP_ENABLE, false);
+		configManager.getIntValue(KEY_WARMUP_TIMEOUT, 60000);
+		configManager.getIntValue(KEY_WARMUP_ROUND_CALLS, 200);
+		configManager.getIntValue(KEY_WARMUP_ROUNDS_MAX, 50);
+		configManager.getFloatValue(KEY_WARMUP_STABLE_RATIO, 0.1f);
+		configManager.getStringValue(KEY_WARMUP_SYNTHETIC_METHODS, "");
+		configManager.getStringValue(KEY_WARMUP_METHODS, "");
+	}
+
+	public interface Dispatcher {
+
+		InvocationResponse dispatch(ProviderConfig<?> providerConfig, ProviderContext context) throws Exception;
+	}
+
+	private final Dispatcher serverDispatcher = new Dispatcher() {
+
+		@Override
+		public InvocationResponse dispatch(ProviderConfig<?> providerConfig, ProviderContext context)
+				throws Exception {
+			Server server = null;
+			for (Server s : ProviderBootStrap.getServers(providerConfig)) {
+				if (s != null) {
+					server = s;
+				}
+			}
+			if (server == null) {
+				throw new IllegalStateException("no server for service:" + providerConfig.getUrl());
+			}
+			InvocationRequest request = context.getRequest();
+			Future<InvocationResponse> future = server.processRequest(request, context);
+			return future == null ? null : future.get(request.getTimeout(), TimeUnit.MILLISECONDS);
+		}
+	};
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private volatile String state = STATE_IDLE;
+
+	private volatile long startTime;
+
+	private volatile long endTime;
+
+	private volatile List<MethodWarmup> methods = Collections.emptyList();
+
+	private volatile boolean stopped;
+
+	public boolean isEnabled() {
+		return configManager.getBooleanValue(KEY_WARMUP_ENABLE, false);
+	}
+
+	/**
+	 * warms up all published services, returns at once when warm-up is disabled
+	 */
+	public void warmUp() {
+		if (!isEnabled()) {
+			return;
+		}
+		Map<ProviderConfig<?>, Boolean> providerConfigs = new IdentityHashMap<ProviderConfig<?>, Boolean>();
+		for (ProviderConfig<?> providerConfig : ServicePublisher.getAllServiceProviders().values()) {
+			providerConfigs.put(providerConfig, Boolean.TRUE);
+		}
+		warmUp(providerConfigs.keySet(), serverDispatcher);
+	}
+
+	public synchronized void warmUp(Collection<ProviderConfig<?>> providerConfigs, Dispatcher dispatcher) {
+		stopped = false;
+		startTime = TimeUtils.currentTimeMillis();
+		endTime = 0;
+		state = STATE_RUNNING;
+		try {
+			List<MethodWarmup> methods = prepare(providerConfigs);
+			this.methods = methods;
+			logger.info("warm-up start, methods:" + methods.size());
+			run(methods, dispatcher);
+		} catch (Throwable t) {
+			logger.warn("warm-up failed", t);
+		} finally {
+			endTime = TimeUtils.currentTimeMillis();
+			state = STATE_DONE;
+		}
+		int stable = 0;
+		for (MethodWarmup method : methods) {
+			if (method.isStable()) {
+				stable++;
+			}
+		}
+		logger.info("warm-up end in " + (endTime - startTime) + "ms, stable methods:" + stable + "/" + methods.size());
+	}
+
+	public void stop() {
+		stopped = true;
+	}
+
+	private List<MethodWarmup> prepare(Collection<ProviderConfig<?>> providerConfigs) {
+		Set<String> included = getMethodNames(KEY_WARMUP_METHODS);
+		Set<String> synthetic = getMethodNames(KEY_WARMUP_SYNTHETIC_METHODS);
+		List<WarmupSampleProvider> sampleProviders = ExtensionLoader.getExtensionList(WarmupSampleProvider.class);
+		SyntheticSampleProvider syntheticProvider = new SyntheticSampleProvider();
+		List<MethodWarmup> methods = new ArrayList<MethodWarmup>();
+		for (ProviderConfig<?> providerConfig : providerConfigs) {
+			String url = providerConfig.getUrl();
+			for (Method method : providerConfig.getServiceInterface().getMethods()) {
+				if (!included.isEmpty() && !contains(included, url, method)) {
+					continue;
+				}
+				List<Object[]> samples = new ArrayList<Object[]>();
+				if (sampleProviders != null) {
+					for (WarmupSampleProvider sampleProvider : sampleProviders) {
+						try {
+							List<Object[]> provided = sampleProvider.getSamples(url, method);
+							if (provided != null) {
+								samples.addAll(provided);
+							}
+						} catch (Throwable t) {
+							logger.warn("get warm-up samples failed, method:" + url + "#" + method.getName(), t);
+						}
+					}
+				}
+				if (samples.isEmpty() && contains(synthetic, url, method)) {
+					samples.addAll(syntheticProvider.getSamples(url, method));
+				}
+				methods.add(new MethodWarmup(providerConfig, method, samples));
+			}
+		}
+		return methods;
+	}
+
+	private Set<String> getMethodNames(String key) {
+		Set<String> names = new HashSet<String>();
+		for (String name : StringUtils.split(configManager.getStringValue(key, ""), ',')) {
+			if (StringUtils.isNotBlank(name)) {
+				names.add(name.trim());
+			}
+		}
+		return names;
+	}
+
+	private boolean contains(Set<String> names, String url, Method method) {
+		return names.contains(method.getName()) || names.contains(url + "#" + method.getName());
+	}
+
+	private void run(List<MethodWarmup> methods, Dispatcher dispatcher) {
+		long deadline = startTime + configManager.getIntValue(KEY_WARMUP_TIMEOUT, 60000);
+		int roundCalls = Math.max(1, configManager.getIntValue(KEY_WARMUP_ROUND_CALLS, 200));
+		int maxRounds = configManager.getIntValue(KEY_WARMUP_ROUNDS_MAX, 50);
+		float ratio = configManager.getFloatValue(KEY_WARMUP_STABLE_RATIO, 0.1f);
+		List<MethodWarmup> pending = new ArrayList<MethodWarmup>();
+		int probed = 0;
+		for (MethodWarmup method : methods) {
+			// one probe call first, methods failing on their samples are not warmed further
+			if (!method.getSamples().isEmpty()) {
+				probed++;
+				if (probe(method, dispatcher, ratio)) {
+					pending.add(method);
+				}
+			}
+		}
+		if (probed > 0 && pending.isEmpty()) {
+			logger.error("warm-up probes of all " + probed
+					+ " methods failed, services go online cold, check the ip and token settings of the provider");
+		}
+		// rounds go round-robin so that every method gets its share of the budget
+		while (!pending.isEmpty() && !stopped && TimeUtils.currentTimeMillis() < deadline) {
+			for (Iterator<MethodWarmup> it = pending.iterator(); it.hasNext() && !stopped
+					&& TimeUtils.currentTimeMillis() < deadline;) {
+				MethodWarmup method = it.next();
+				runRound(method, dispatcher, roundCalls, ratio);
+				if (method.isStable() || method.getRounds() > maxRounds) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	private boolean probe(MethodWarmup method, Dispatcher dispatcher, float ratio) {
+		ProviderContext context = newContext(method, method.getSamples().get(0));
+		String error = null;
+		long start = System.nanoTime();
+		try {
+			InvocationResponse response = dispatcher.dispatch(method.getProviderConfig(), context);
+			if (response == null) {
+				error = "no response";
+			} else if (response.getMessageType() != Constants.MESSAGE_TYPE_SERVICE) {
+				error = String.valueOf(response.getReturn());
+			}
+		} catch (Throwable t) {
+			error = t.toString();
+		}
+		method.completeRound(1, error == null ? 0 : 1, (System.nanoTime() - start) / 1000d, ratio);
+		if (error != null) {
+			logger.warn("warm-up probe failed, method:" + method.getService() + "#" + method.getName() + ", error:"
+					+ error);
+		}
+		return error == null;
+	}
+
+	private void runRound(MethodWarmup method, Dispatcher dispatcher, int calls, float ratio) {
+		List<Object[]> samples = method.getSamples();
+		long failures = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			ProviderContext context = newContext(method, samples.get(i % samples.size()));
+			try {
+				InvocationResponse response = dispatcher.dispatch(method.getProviderConfig(), context);
+				if (response == null || response.getMessageType() != Constants.MESSAGE_TYPE_SERVICE) {
+					failures++;
+				}
+			} catch (Throwable t) {
+				failures++;
+			}
+		}
+		method.completeRound(calls, failures, (System.nanoTime() - start) / 1000d / calls, ratio);
+	}
+
+	// the warm-up channel marks the call, see isWarmupRequest
+	private ProviderContext newContext(MethodWarmup method, Object[] args) {
+		ProviderConfig<?> providerConfig = method.getProviderConfig();
+		InvocationRequest request = InvocationUtils.newRequest(
+				ServicePublisher.getServiceUrlWithVersion(providerConfig.getUrl(), providerConfig.getVersion()),
+				method.getMethod().getName(), args, SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, CALL_TIMEOUT,
+				method.getMethod().getParameterTypes());
+		request.setCallType(Constants.CALLTYPE_REPLY);
+		request.setSequence(sequence.incrementAndGet());
+		request.setCreateMillisTime(TimeUtils.currentTimeMillis());
+		return new DefaultProviderContext(request, WarmupChannel.INSTANCE);
+	}
+
+	/**
+	 * whether the request is a local warm-up call, these carry no app or token
+	 * and are not counted as traffic. the channel cannot be sent by a remote
+	 * caller, so the mark cannot be forged.
+	 */
+	public static boolean isWarmupRequest(ProviderContext context) {
+		return context != null && context.getChannel() == WarmupChannel.INSTANCE;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getEndTime() {
+		return endTime;
+	}
+
+	public List<MethodWarmup> getMethods() {
+		return methods;
+	}
+}
@@ -0,0 +1,17 @@
+package com.dianping.pigeon.remoting.provider.warmup;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * source of the arguments replayed during warm-up, loaded as extension. the
+ * synthetic samples are only used when no provider has samples for a method
+ * and the method is listed in pigeon.provider.warmup.synthetic.methods.
+ */
+public interface WarmupSampleProvider {
+
+	/**
+	 * null or empty when there are no samples for the method
+	 */
+	List<Object[]> getSamples(String url, Method method);
+}
@@ -0,0 +1,117 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.BatchResult;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.service.BatchInvoker;
+import com.dianping.pigeon.remoting.provider.service.method.BatchServiceMethod;
+
+public class BatchInvokerTest {
+
+	@Test
+	public void testBatchDemultiplex() throws Exception {
+		final AtomicInteger requests = new AtomicInteger();
+		ServiceInvocationHandler handler = new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				requests.incrementAndGet();
+				InvokerContext invokerContext = (InvokerContext) invocationContext;
+				Assert.assertEquals(Constants.BATCH_METHOD, invokerContext.getMethodName());
+				Assert.assertEquals(Constants.CALL_CALLBACK,
+						invokerContext.getInvokerConfig().getCallType(Constants.BATCH_METHOD));
+				Object[] args = invokerContext.getArguments();
+				Assert.assertEquals("echo", args[0]);
+				Assert.assertArrayEquals(new String[] { String.class.getName() }, (String[]) args[1]);
+				Object[][] calls = (Object[][]) args[2];
+				BatchResult result = new BatchResult(calls.length);
+				for (int i = 0; i < calls.length; i++) {
+					if ("error".equals(calls[i][0])) {
+						result.setError(i, new IllegalArgumentException("error"));
+					} else {
+						result.setResult(i, "echo:" + calls[i][0]);
+					}
+				}
+				return new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, 0, Constants.MESSAGE_TYPE_SERVICE,
+						result);
+			}
+		};
+		InvokerConfig<EchoService> invokerConfig = new InvokerConfig<EchoService>(EchoService.class.getName(),
+				EchoService.class);
+		InvokerMethodConfig methodConfig = new InvokerMethodConfig();
+		methodConfig.setName("echo");
+		methodConfig.setBatchSize(4);
+		methodConfig.setBatchWindow(5000000);
+		Map<String, InvokerMethodConfig> methods = new HashMap<String, InvokerMethodConfig>();
+		methods.put("echo", methodConfig);
+		invokerConfig.setMethods(methods);
+		Method method = EchoService.class.getMethod("echo", String.class);
+		final BatchInvoker batchInvoker = new BatchInvoker(invokerConfig, handler, method, methodConfig);
+		// $batch is registered on a copy, the caller's config is left alone
+		Assert.assertSame(methods, invokerConfig.getMethods());
+		Assert.assertEquals(1, methods.size());
+		Assert.assertNull(invokerConfig.getMethod(Constants.BATCH_METHOD));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] futures = new Future<?>[4];
+			for (int i = 0; i < 4; i++) {
+				final String msg = i == 3 ? "error" : "msg" + i;
+				futures[i] = executor.submit(new Callable<Object>() {
+
+					@Override
+					public Object call() throws Exception {
+						try {
+							return batchInvoker.invoke(new Object[] { msg });
+						} catch (Throwable t) {
+							return t;
+						}
+					}
+				});
+			}
+			for (int i = 0; i < 3; i++) {
+				Assert.assertEquals("echo:msg" + i, futures[i].get());
+			}
+			Assert.assertTrue(futures[3].get() instanceof IllegalArgumentException);
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testBatchTargetMethod() {
+		DefaultRequest batch = new DefaultRequest("EchoService", Constants.BATCH_METHOD, new Object[] { "echo",
+				new String[] { "java.lang.String" }, new Object[][] { { "a" }, { "b" }, { "c" } } },
+				SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY,
+				-1L);
+		Assert.assertEquals("echo", BatchServiceMethod.getTargetMethodName(batch));
+		Assert.assertEquals(3, BatchServiceMethod.getCallCount(batch));
+
+		DefaultRequest single = new DefaultRequest("EchoService", "echo", new Object[] { "a" },
+				SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY,
+				-1L);
+		Assert.assertEquals("echo", BatchServiceMethod.getTargetMethodName(single));
+		Assert.assertEquals(1, BatchServiceMethod.getCallCount(single));
+	}
+}
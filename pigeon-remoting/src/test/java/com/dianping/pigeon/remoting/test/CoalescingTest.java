@@ -0,0 +1,137 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.monitor.metrics.MethodMeter;
+import com.dianping.pigeon.monitor.metrics.MetricsRegistry;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.concurrent.FutureFactory;
+import com.dianping.pigeon.remoting.invoker.concurrent.ServiceFutureImpl;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.process.filter.CoalescingInvokeFilter;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+
+public class CoalescingTest extends InvokerProxyBaseTest {
+
+	public interface ItemService {
+
+		String getItem(int id);
+	}
+
+	private ItemService newService(String url, String callType, ServiceInvocationHandler remote) {
+		InvokerMethodConfig methodConfig = newMethodConfig("getItem");
+		methodConfig.setCoalesce(true);
+		InvokerConfig<ItemService> invokerConfig = newInvokerConfig(url, ItemService.class, methodConfig);
+		invokerConfig.setCallType(callType);
+		return newService(invokerConfig, new CoalescingInvokeFilter(), remote);
+	}
+
+	@Test
+	public void testSyncCallsShareOneRequest() throws Exception {
+		String url = "http://service.dianping.com/test/CoalescingTest/ItemService_sync";
+		final AtomicInteger requests = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		final ItemService service = newService(url, Constants.CALL_SYNC, new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				requests.incrementAndGet();
+				release.await(5, TimeUnit.SECONDS);
+				return newResponse("item-" + ((InvokerContext) invocationContext).getArguments()[0]);
+			}
+		});
+
+		int callers = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		Future<?>[] results = new Future<?>[callers];
+		for (int i = 0; i < callers; i++) {
+			results[i] = executor.submit(new Callable<String>() {
+
+				@Override
+				public String call() throws Exception {
+					return service.getItem(1);
+				}
+			});
+		}
+		// the first caller holds the request until all others attached to it
+		MethodMeter meter = InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_CALL, url, "getItem",
+				new Class<?>[] { int.class });
+		long deadline = System.currentTimeMillis() + 5000;
+		while (meter.snapshot().getCoalesced() < callers - 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		release.countDown();
+		for (Future<?> result : results) {
+			Assert.assertEquals("item-1", result.get(5, TimeUnit.SECONDS));
+		}
+		executor.shutdown();
+		Assert.assertEquals(1, requests.get());
+		Assert.assertEquals(callers - 1, meter.snapshot().getCoalesced());
+
+		// nothing in flight any more, the next call sends its own request
+		Assert.assertEquals("item-2", service.getItem(2));
+		Assert.assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testFutureCallsWaitOnPendingFuture() throws Exception {
+		String url = "http://service.dianping.com/test/CoalescingTest/ItemService_future";
+		final AtomicInteger requests = new AtomicInteger();
+		ItemService service = newService(url, Constants.CALL_FUTURE, new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				requests.incrementAndGet();
+				ServiceFutureImpl future = new ServiceFutureImpl((InvokerContext) invocationContext, 1000);
+				DefaultRequest request = new DefaultRequest();
+				request.setCreateMillisTime(System.currentTimeMillis());
+				future.setRequest(request);
+				FutureFactory.setFuture(future);
+				return InvokerUtils.createFutureResponse(future);
+			}
+		});
+
+		service.getItem(1);
+		final ServiceFutureImpl first = (ServiceFutureImpl) FutureFactory.getFuture();
+		service.getItem(1);
+		final Future<?> second = FutureFactory.getFuture();
+		service.getItem(2);
+		Future<?> other = FutureFactory.getFuture();
+		Assert.assertNotSame(first, second);
+		Assert.assertNotSame(first, other);
+		Assert.assertEquals(2, requests.get());
+		Assert.assertFalse(second.isDone());
+
+		// the attached caller waits in its own thread for the pending response
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> result = executor.submit(new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				return second.get();
+			}
+		});
+		first.callback(newResponse("item-1"));
+		first.run();
+		Assert.assertEquals("item-1", result.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals("item-1", first.get());
+		Assert.assertTrue(second.isDone());
+		executor.shutdown();
+	}
+}
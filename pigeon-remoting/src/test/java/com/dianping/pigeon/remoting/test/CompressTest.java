@@ -0,0 +1,96 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.compress.Compress;
+import com.dianping.pigeon.compress.CompressFactory;
+
+public class CompressTest {
+
+	private static byte[][] samples() {
+		Random random = new Random(42);
+		byte[] randomBytes = new byte[70000];
+		random.nextBytes(randomBytes);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			text.append("{\"id\":").append(i).append(",\"name\":\"user").append(i % 17).append("\"},");
+		}
+		byte[] zeros = new byte[100000];
+		return new byte[][] { new byte[0], "a".getBytes(), "abcdabcdabcdabcd".getBytes(), randomBytes,
+				text.toString().getBytes(), zeros };
+	}
+
+	@Test
+	public void testLz4RoundTrip() throws IOException {
+		Compress lz4 = CompressFactory.getLz4Compress();
+		for (byte[] sample : samples()) {
+			byte[] compressed = lz4.compress(sample);
+			Assert.assertArrayEquals(sample, lz4.unCompress(compressed));
+		}
+		byte[] zeros = new byte[100000];
+		Assert.assertTrue(lz4.compress(zeros).length < 1000);
+	}
+
+	@Test(expected = IOException.class)
+	public void testLz4Malformed() throws IOException {
+		byte[] compressed = CompressFactory.getLz4Compress().compress("abcdabcdabcdabcdabcdabcd".getBytes());
+		compressed[compressed.length - 3] = 0x7f;
+		CompressFactory.getLz4Compress().unCompress(Arrays.copyOf(compressed, compressed.length - 1));
+	}
+
+	@Test(expected = IOException.class)
+	public void testLz4LengthBeyondInput() throws IOException {
+		byte[] compressed = CompressFactory.getLz4Compress().compress("abcd".getBytes());
+		// claims 1g from a 9 byte block
+		compressed[0] = 0x40;
+		CompressFactory.getLz4Compress().unCompress(compressed);
+	}
+
+	@Test
+	public void testGzipSizeNotTrusted() throws IOException {
+		byte[] sample = "abcdabcdabcdabcd".getBytes();
+		byte[] compressed = CompressFactory.getGZipCompress().compress(sample);
+		// a forged 2g size field is left to the stream, which checks it
+		compressed[compressed.length - 1] = 0x7f;
+		try {
+			CompressFactory.getGZipCompress().unCompress(compressed);
+			Assert.fail();
+		} catch (IOException e) {
+			// ok
+		}
+	}
+
+	@Test
+	public void testGzipCompatible() throws IOException {
+		Compress gzip = CompressFactory.getGZipCompress();
+		for (byte[] sample : samples()) {
+			byte[] compressed = gzip.compress(sample);
+			Assert.assertArrayEquals(sample, gzip.unCompress(compressed));
+
+			// readable by the jdk stream and the other way round
+			GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int n;
+			while ((n = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, n);
+			}
+			Assert.assertArrayEquals(sample, out.toByteArray());
+
+			ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+			GZIPOutputStream os = new GZIPOutputStream(streamed);
+			os.write(sample);
+			os.close();
+			Assert.assertArrayEquals(sample, gzip.unCompress(streamed.toByteArray()));
+		}
+	}
+}
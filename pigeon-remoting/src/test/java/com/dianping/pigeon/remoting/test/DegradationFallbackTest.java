@@ -0,0 +1,120 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
+import com.dianping.pigeon.remoting.invoker.process.filter.DegradationFilter;
+
+public class DegradationFallbackTest extends InvokerProxyBaseTest {
+
+	private static final String KEY_DEGRADE_METHODS = "pigeon.invoker.degrade.methods";
+
+	private static final String KEY_DEGRADE_METHOD = "pigeon.invoker.degrade.method.return.";
+
+	private static final String KEY_DEGRADE_FORCE = "pigeon.invoker.degrade.force";
+
+	private static final String KEY_DEGRADE_FAILURE = "pigeon.invoker.degrade.failure";
+
+	private final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	public interface NameService {
+
+		String getName(int id);
+	}
+
+	public static class NameServiceMock implements NameService {
+
+		@Override
+		public String getName(int id) {
+			return "mock-" + id;
+		}
+	}
+
+	private void degrade(String url, String action) {
+		String methods = url + "#getName=" + url.hashCode();
+		configManager.setLocalStringValue(KEY_DEGRADE_METHOD + url.hashCode(), action);
+		configManager.setLocalStringValue(KEY_DEGRADE_METHODS, methods);
+		// loads the filter so its config listener is registered
+		DegradationFilter.getDegradeMethodActions();
+		for (ConfigChangeListener listener : configManager.getConfigChangeListeners()) {
+			listener.onKeyUpdated(KEY_DEGRADE_METHODS, methods);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		configManager.setLocalStringValue(KEY_DEGRADE_FORCE, "false");
+		configManager.setLocalStringValue(KEY_DEGRADE_FAILURE, "false");
+		degrade("http://service.dianping.com/test/DegradationFallbackTest/none", "{\"enable\":false}");
+	}
+
+	@Test
+	public void testLastKnownGood() throws Exception {
+		String url = "http://service.dianping.com/test/DegradationFallbackTest/lastKnownGood";
+		degrade(url, "{\"useLastKnownGood\":true}");
+		final AtomicBoolean down = new AtomicBoolean();
+		final AtomicInteger requests = new AtomicInteger();
+		NameService service = newService(newInvokerConfig(url, NameService.class), new DegradationFilter(),
+				new ServiceInvocationHandler() {
+
+					@Override
+					public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+						requests.incrementAndGet();
+						if (down.get()) {
+							throw new RequestTimeoutException("provider down");
+						}
+						return newResponse("name-" + ((InvokerContext) invocationContext).getArguments()[0]);
+					}
+				});
+
+		Assert.assertEquals("name-1", service.getName(1));
+
+		// failure degrade serves the last good result, unknown arguments still fail
+		down.set(true);
+		configManager.setLocalStringValue(KEY_DEGRADE_FAILURE, "true");
+		Assert.assertEquals("name-1", service.getName(1));
+		try {
+			service.getName(2);
+			Assert.fail("nothing to fall back to");
+		} catch (RequestTimeoutException e) {
+		}
+
+		// forced degrade does not call the provider at all
+		configManager.setLocalStringValue(KEY_DEGRADE_FORCE, "true");
+		int sent = requests.get();
+		Assert.assertEquals("name-1", service.getName(1));
+		Assert.assertEquals(sent, requests.get());
+	}
+
+	@Test
+	public void testMockClass() throws Exception {
+		String url = "http://service.dianping.com/test/DegradationFallbackTest/mock";
+		degrade(url, "{\"useMockClass\":true}");
+		configManager.setLocalStringValue(KEY_DEGRADE_FORCE, "true");
+		InvokerConfig<NameService> invokerConfig = newInvokerConfig(url, NameService.class);
+		invokerConfig.setMock(new NameServiceMock());
+		NameService service = newService(invokerConfig, new DegradationFilter(), new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				throw new IllegalStateException("degraded calls must not reach the provider");
+			}
+		});
+
+		Assert.assertEquals("mock-1", service.getName(1));
+		Assert.assertEquals("mock-2", service.getName(2));
+	}
+}
@@ -0,0 +1,105 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.provider.config.spring.PoolBean;
+import com.dianping.pigeon.remoting.provider.process.executor.ForkJoinRequestExecutor;
+import com.dianping.pigeon.threadpool.ManagedBlocking;
+
+public class ForkJoinRequestExecutorTest {
+
+	private PoolBean newPoolBean(String name, int maxSize, int queueSize) {
+		PoolBean poolBean = new PoolBean();
+		poolBean.setPoolName(name);
+		poolBean.setMaxPoolSize(maxSize);
+		poolBean.setWorkQueueSize(queueSize);
+		return poolBean;
+	}
+
+	private Callable<InvocationResponse> await(final CountDownLatch latch) {
+		return new Callable<InvocationResponse>() {
+
+			@Override
+			public InvocationResponse call() throws Exception {
+				ManagedBlocking.await(latch, 5000);
+				return null;
+			}
+		};
+	}
+
+	@Test
+	public void testLimit() throws Exception {
+		ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor();
+		executor.init(null);
+		PoolBean poolBean = newPoolBean("test-limit", 1, 1);
+		CountDownLatch latch = new CountDownLatch(1);
+
+		Future<InvocationResponse> running = executor.submit(poolBean, await(latch));
+		Future<InvocationResponse> queued = executor.submit(poolBean, await(latch));
+		try {
+			executor.submit(poolBean, await(latch));
+			Assert.fail("limit should be exhausted");
+		} catch (RejectedExecutionException e) {
+		}
+		Thread.sleep(50);
+		Assert.assertEquals(1, executor.getActiveCount(poolBean));
+
+		latch.countDown();
+		running.get(5, TimeUnit.SECONDS);
+		queued.get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(0, executor.getActiveCount(poolBean));
+	}
+
+	@Test
+	public void testResize() throws Exception {
+		ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor();
+		executor.init(null);
+		PoolBean poolBean = newPoolBean("test-resize", 1, 1);
+		CountDownLatch latch = new CountDownLatch(1);
+
+		executor.submit(poolBean, await(latch));
+		executor.submit(poolBean, await(latch));
+		poolBean.setMaxPoolSize(2);
+		Future<InvocationResponse> third = executor.submit(poolBean, await(latch));
+		Thread.sleep(50);
+		Assert.assertEquals(2, executor.getActiveCount(poolBean));
+
+		latch.countDown();
+		third.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testBlockedWorkersAreCompensated() throws Exception {
+		ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor();
+		executor.init(null);
+		PoolBean poolBean = newPoolBean("test-blocking", 8, 8);
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		// more blocked requests than parallelism, the last one releases them all
+		int blocked = Runtime.getRuntime().availableProcessors() * 2 + 2;
+		poolBean.setMaxPoolSize(blocked + 1);
+		Future<?>[] futures = new Future<?>[blocked];
+		for (int i = 0; i < blocked; i++) {
+			futures[i] = executor.submit(poolBean, await(latch));
+		}
+		executor.submit(poolBean, new Callable<InvocationResponse>() {
+
+			@Override
+			public InvocationResponse call() throws Exception {
+				latch.countDown();
+				return null;
+			}
+		}).get(5, TimeUnit.SECONDS);
+		for (Future<?> future : futures) {
+			future.get(5, TimeUnit.SECONDS);
+		}
+	}
+}
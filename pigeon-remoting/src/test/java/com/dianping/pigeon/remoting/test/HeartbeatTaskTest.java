@@ -0,0 +1,268 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.AbstractClient;
+import com.dianping.pigeon.remoting.invoker.client.ClientConfig;
+import com.dianping.pigeon.remoting.invoker.client.ClientConfigFactory;
+import com.dianping.pigeon.remoting.invoker.client.HeartbeatTask;
+import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+import com.dianping.pigeon.remoting.invoker.process.ResponseProcessorFactory;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * runs heartbeat rounds over stub channels that record the heartbeats and are
+ * answered by hand. one failed or successful round changes the client state.
+ */
+public class HeartbeatTaskTest {
+
+	private static final int HEARTBEAT_TIMEOUT = 100;
+
+	private final ClientConfig clientConfig = ClientConfigFactory.createClientConfig(ConfigManagerLoader
+			.getConfigManager());
+
+	private final StubClient client = new StubClient(clientConfig);
+
+	private HeartbeatTask task;
+
+	@Before
+	public void setUp() {
+		clientConfig.setHeartbeatTimeout(HEARTBEAT_TIMEOUT);
+		clientConfig.setHeartbeatInterval(3000);
+		clientConfig.setDeadThreshold(1);
+		clientConfig.setHealthThreshold(1);
+		clientConfig.setIsHeartbeatAutoPickOff(true);
+		clientConfig.setIsHeartbeatSkipActive(true);
+		task = new HeartbeatTask(clientConfig, client) {
+
+			@Override
+			protected boolean isSend(String address) {
+				return true;
+			}
+
+			@Override
+			protected boolean supported(String address) {
+				return false;
+			}
+		};
+	}
+
+	private void reply(InvocationRequest request) {
+		ServiceInvocationRepository.getInstance().receiveResponse(
+				new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, request.getSequence(),
+						Constants.MESSAGE_TYPE_HEART, null));
+	}
+
+	private void awaitActive(boolean active) throws InterruptedException {
+		long deadline = TimeUtils.currentTimeMillis() + 10 * HEARTBEAT_TIMEOUT;
+		while (client.isActive() != active && TimeUtils.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(active, client.isActive());
+	}
+
+	@Test
+	public void testReplyActivates() throws Exception {
+		StubChannel channel = client.addChannel(0);
+		client.setActive(false);
+		task.run();
+		Assert.assertEquals(1, channel.requests.size());
+		// the round waits for its reply
+		task.run();
+		Assert.assertEquals(1, channel.requests.size());
+
+		reply(channel.requests.get(0));
+		Assert.assertTrue(client.isActive());
+		Assert.assertNull(ServiceInvocationRepository.getInstance().get(channel.requests.get(0).getSequence()));
+	}
+
+	@Test
+	public void testSkipRecentResponse() throws Exception {
+		StubChannel recent = client.addChannel(TimeUtils.currentTimeMillis());
+		StubChannel idle = client.addChannel(0);
+		client.setActive(false);
+		task.run();
+		Assert.assertTrue(recent.requests.isEmpty());
+		Assert.assertEquals(1, idle.requests.size());
+		// the recent response already proves the server alive
+		InvocationRequest request = idle.requests.get(0);
+		awaitActive(true);
+		Assert.assertNull(ServiceInvocationRepository.getInstance().get(request.getSequence()));
+
+		// nothing sent when every channel has a recent response
+		client.channels.remove(idle);
+		client.setActive(false);
+		task.run();
+		Assert.assertTrue(recent.requests.isEmpty());
+		Assert.assertTrue(client.isActive());
+	}
+
+	@Test
+	public void testTimeoutCountsAsFailure() throws Exception {
+		StubChannel channel = client.addChannel(0);
+		task.run();
+		Assert.assertEquals(1, channel.requests.size());
+		InvocationRequest request = channel.requests.get(0);
+
+		awaitActive(false);
+		Assert.assertNull(ServiceInvocationRepository.getInstance().get(request.getSequence()));
+		// the timed out round no longer blocks the next one
+		task.run();
+		Assert.assertEquals(2, channel.requests.size());
+	}
+
+	@Test
+	public void testLateReplyIgnored() throws Exception {
+		StubChannel channel = client.addChannel(0);
+		task.run();
+		InvocationRequest request = channel.requests.get(0);
+		awaitActive(false);
+
+		// one successful round would activate the client again
+		reply(request);
+		Assert.assertFalse(client.isActive());
+		Thread.sleep(HEARTBEAT_TIMEOUT);
+		Assert.assertFalse(client.isActive());
+	}
+
+	private class StubClient extends AbstractClient {
+
+		private final List<Channel> channels = new Vector<Channel>();
+
+		StubClient(ClientConfig clientConfig) {
+			super(clientConfig, ResponseProcessorFactory.selectProcessor());
+		}
+
+		StubChannel addChannel(long lastResponseMillis) {
+			StubChannel channel = new StubChannel(lastResponseMillis);
+			channels.add(channel);
+			return channel;
+		}
+
+		@Override
+		public void doOpen() {
+		}
+
+		@Override
+		public void doClose() {
+		}
+
+		@Override
+		public InvocationResponse doWrite(InvocationRequest request) {
+			return null;
+		}
+
+		@Override
+		public ConnectInfo getConnectInfo() {
+			return null;
+		}
+
+		@Override
+		public List<Channel> getChannels() {
+			return new ArrayList<Channel>(channels);
+		}
+
+		@Override
+		public String getHost() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public int getPort() {
+			return 4040;
+		}
+
+		@Override
+		public String getAddress() {
+			return "127.0.0.1:4040";
+		}
+
+		@Override
+		public String getProtocol() {
+			return Constants.PROTOCOL_DEFAULT;
+		}
+	}
+
+	private static class StubChannel implements Channel {
+
+		private final List<InvocationRequest> requests = new Vector<InvocationRequest>();
+
+		private final long lastResponseMillis;
+
+		StubChannel(long lastResponseMillis) {
+			this.lastResponseMillis = lastResponseMillis;
+		}
+
+		@Override
+		public void connect() throws NetworkException {
+		}
+
+		@Override
+		public void disConnect() {
+		}
+
+		@Override
+		public void write(Object message) throws NetworkException {
+			requests.add((InvocationRequest) message);
+		}
+
+		@Override
+		public boolean isWritable() {
+			return true;
+		}
+
+		@Override
+		public boolean isAvaliable() {
+			return true;
+		}
+
+		@Override
+		public InetSocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public InetSocketAddress getRemoteAddress() {
+			return null;
+		}
+
+		@Override
+		public String getRemoteAddressString() {
+			return "127.0.0.1:4040";
+		}
+
+		@Override
+		public long getLastResponseMillis() {
+			return lastResponseMillis;
+		}
+
+		@Override
+		public int getPendingCount() {
+			return 0;
+		}
+
+		@Override
+		public void incPendingCount() {
+		}
+
+		@Override
+		public void decPendingCount() {
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.AbstractClient;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.client.ClientConfigFactory;
+import com.dianping.pigeon.remoting.invoker.cluster.HedgingCluster;
+import com.dianping.pigeon.remoting.invoker.concurrent.CallbackFuture;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+import com.dianping.pigeon.remoting.invoker.domain.DefaultInvokerContext;
+import com.dianping.pigeon.remoting.invoker.process.ResponseProcessorFactory;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.util.TimeUtils;
+
+/**
+ * runs the hedging cluster over two fake providers that answer after a set
+ * delay. the method is first seeded with calls answered in about 40ms so its
+ * percentile delay is trusted, then the primary provider is slowed down.
+ */
+public class HedgingClusterTest {
+
+	private static final String KEY_SAMPLES_MIN = "pigeon.invoker.hedging.samples.min";
+	private static final String KEY_RATIO_MAX = "pigeon.invoker.hedging.ratio.max";
+
+	private static final int SEEDS = 10;
+	private static final long SEED_DELAY = 40;
+
+	private final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+
+	private final AtomicLong sequence = new AtomicLong(-1000000);
+
+	private final InvokerConfig<EchoService> invokerConfig = new InvokerConfig<EchoService>(
+			"http://service.dianping.com/test/HedgingClusterTest", EchoService.class);
+
+	private DelayedClient primary;
+
+	private DelayedClient backup;
+
+	private TestHedgingCluster cluster;
+
+	@Before
+	public void setUp() {
+		configManager.setLocalStringValue(KEY_SAMPLES_MIN, String.valueOf(SEEDS));
+		invokerConfig.setTimeout(1000);
+		primary = new DelayedClient("10.0.0.1", SEED_DELAY);
+		backup = new DelayedClient("10.0.0.2", 10);
+		cluster = new TestHedgingCluster();
+	}
+
+	@After
+	public void tearDown() {
+		configManager.setLocalStringValue(KEY_SAMPLES_MIN, "100");
+		configManager.setLocalStringValue(KEY_RATIO_MAX, "5");
+		scheduler.shutdownNow();
+	}
+
+	private String call() throws Throwable {
+		DefaultInvokerContext context = new DefaultInvokerContext(invokerConfig, "echo",
+				new Class<?>[] { String.class }, new Object[] { "hello" });
+		return (String) cluster.invoke(new SyncCallHandler(), context).getReturn();
+	}
+
+	/**
+	 * the percentile needs enough samples and is refreshed once a second
+	 */
+	private void seed() throws Throwable {
+		long start = TimeUtils.currentTimeMillis();
+		for (int i = 0; i < SEEDS; i++) {
+			Assert.assertEquals(primary.host, call());
+		}
+		Thread.sleep(Math.max(0, start + 1100 - TimeUtils.currentTimeMillis()));
+		primary.writes.clear();
+	}
+
+	@Test
+	public void testNoHedgeWithinDelay() throws Throwable {
+		configManager.setLocalStringValue(KEY_RATIO_MAX, "100");
+		seed();
+		primary.delay = 5;
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals(primary.host, call());
+		}
+		Assert.assertEquals(5, primary.writes.size());
+		Assert.assertTrue(backup.writes.isEmpty());
+	}
+
+	@Test
+	public void testHedgeAfterDelayFirstReplyWins() throws Throwable {
+		configManager.setLocalStringValue(KEY_RATIO_MAX, "100");
+		seed();
+		primary.delay = 400;
+
+		long start = TimeUtils.currentTimeMillis();
+		Assert.assertEquals(backup.host, call());
+		Assert.assertTrue(TimeUtils.currentTimeMillis() - start < 300);
+
+		Assert.assertEquals(1, primary.writes.size());
+		Assert.assertEquals(1, backup.writes.size());
+		Write slow = primary.writes.get(0);
+		Write hedge = backup.writes.get(0);
+		// not before the seeded p95, which is at least the seed delay
+		Assert.assertTrue("hedged after " + (hedge.time - slow.time) + "ms",
+				hedge.time - slow.time >= SEED_DELAY - 2);
+		// the losing request no longer waits for its reply
+		Assert.assertNull(ServiceInvocationRepository.getInstance().get(slow.sequence));
+	}
+
+	@Test
+	public void testHedgeBudget() throws Throwable {
+		// seeded 10 requests, 10% allows one hedge until there are 20
+		configManager.setLocalStringValue(KEY_RATIO_MAX, "10");
+		seed();
+		primary.delay = 150;
+		for (int i = 0; i < 5; i++) {
+			call();
+		}
+		Assert.assertEquals(5, primary.writes.size());
+		Assert.assertEquals(1, backup.writes.size());
+	}
+
+	private class TestHedgingCluster extends HedgingCluster {
+
+		@Override
+		protected Client getClient(InvokerConfig<?> invokerConfig, InvocationRequest request,
+				List<Client> excludeClients) {
+			return excludeClients != null && excludeClients.contains(primary) ? backup : primary;
+		}
+	}
+
+	/**
+	 * what the remote call filter does for a sync call
+	 */
+	private class SyncCallHandler implements ServiceInvocationHandler {
+
+		@Override
+		public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+			DefaultInvokerContext context = (DefaultInvokerContext) invocationContext;
+			InvocationRequest request = InvokerUtils.createRemoteCallRequest(context, context.getInvokerConfig());
+			request.setSequence(sequence.decrementAndGet());
+			request.setCreateMillisTime(TimeUtils.currentTimeMillis());
+			CallbackFuture future = context.getCallbackFuture();
+			InvokerUtils.sendRequest(context.getClient(), request, future);
+			return future.getResponse(request.getTimeout());
+		}
+	}
+
+	private static class Write {
+
+		private final long sequence;
+
+		private final long time;
+
+		Write(long sequence, long time) {
+			this.sequence = sequence;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * answers every request with its host after the current delay
+	 */
+	private class DelayedClient extends AbstractClient {
+
+		private final String host;
+
+		private final List<Write> writes = new Vector<Write>();
+
+		private volatile long delay;
+
+		DelayedClient(String host, long delay) {
+			super(ClientConfigFactory.createClientConfig(configManager), ResponseProcessorFactory.selectProcessor());
+			this.host = host;
+			this.delay = delay;
+		}
+
+		@Override
+		public void doOpen() {
+		}
+
+		@Override
+		public void doClose() {
+		}
+
+		@Override
+		public InvocationResponse doWrite(final InvocationRequest request) {
+			writes.add(new Write(request.getSequence(), TimeUtils.currentTimeMillis()));
+			scheduler.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					processResponse(new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN,
+							request.getSequence(), Constants.MESSAGE_TYPE_SERVICE, host));
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+			return null;
+		}
+
+		@Override
+		public ConnectInfo getConnectInfo() {
+			return null;
+		}
+
+		@Override
+		public List<Channel> getChannels() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public String getHost() {
+			return host;
+		}
+
+		@Override
+		public int getPort() {
+			return 4040;
+		}
+
+		@Override
+		public String getAddress() {
+			return host + ":4040";
+		}
+
+		@Override
+		public String getProtocol() {
+			return "test";
+		}
+	}
+}
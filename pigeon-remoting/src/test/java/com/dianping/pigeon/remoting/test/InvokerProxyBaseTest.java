@@ -0,0 +1,64 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.process.filter.InvocationInvokeFilter;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationProxy;
+
+/**
+ * service proxies over a stubbed remote handler for invoker side tests,
+ * optionally behind the invoke filter under test.
+ */
+public class InvokerProxyBaseTest {
+
+	protected InvokerMethodConfig newMethodConfig(String name) {
+		InvokerMethodConfig methodConfig = new InvokerMethodConfig();
+		methodConfig.setName(name);
+		return methodConfig;
+	}
+
+	protected <T> InvokerConfig<T> newInvokerConfig(String url, Class<T> serviceInterface,
+			InvokerMethodConfig... methodConfigs) {
+		InvokerConfig<T> invokerConfig = new InvokerConfig<T>(url, serviceInterface);
+		if (methodConfigs.length > 0) {
+			Map<String, InvokerMethodConfig> methods = new HashMap<String, InvokerMethodConfig>();
+			for (InvokerMethodConfig methodConfig : methodConfigs) {
+				methods.put(methodConfig.getName(), methodConfig);
+			}
+			invokerConfig.setMethods(methods);
+		}
+		return invokerConfig;
+	}
+
+	protected <T> T newService(InvokerConfig<T> invokerConfig, ServiceInvocationHandler handler) {
+		Class<T> serviceInterface = invokerConfig.getServiceInterface();
+		return serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(),
+				new Class[] { serviceInterface }, new ServiceInvocationProxy(invokerConfig, handler)));
+	}
+
+	protected <T> T newService(InvokerConfig<T> invokerConfig, final InvocationInvokeFilter filter,
+			final ServiceInvocationHandler remote) {
+		return newService(invokerConfig, new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				return filter.invoke(remote, (InvokerContext) invocationContext);
+			}
+		});
+	}
+
+	protected InvocationResponse newResponse(Object ret) {
+		return new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, 0, Constants.MESSAGE_TYPE_SERVICE, ret);
+	}
+}
@@ -0,0 +1,28 @@
+package com.dianping.pigeon.remoting.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.invoker.cluster.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testPercentile() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(-1, histogram.getPercentile(95));
+
+		for (int i = 0; i < 95; i++) {
+			histogram.record(3);
+		}
+		for (int i = 0; i < 5; i++) {
+			histogram.record(180);
+		}
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(3, histogram.getPercentile(95));
+		Assert.assertEquals(200, histogram.getPercentile(99));
+
+		histogram.decay();
+		Assert.assertEquals(49, histogram.getCount());
+	}
+}
@@ -0,0 +1,151 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.channel.ChannelFactory;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
+import com.dianping.pigeon.remoting.common.pool.LeastPendingChannelPool;
+import com.dianping.pigeon.remoting.common.pool.PoolProperties;
+import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+
+public class LeastPendingChannelPoolTest {
+
+	@Test
+	public void testSelectLeastPending() throws Exception {
+		LeastPendingChannelPool<StubChannel> pool = new LeastPendingChannelPool<StubChannel>(
+				new PoolProperties(3, 3, 3, 1000, 60000), new StubChannelFactory());
+		try {
+			List<StubChannel> channels = pool.getChannels();
+			Assert.assertEquals(3, channels.size());
+
+			channels.get(0).pending = 5;
+			channels.get(1).pending = 1;
+			channels.get(2).pending = 3;
+			Assert.assertSame(channels.get(1), pool.selectChannel());
+
+			channels.get(1).avaliable = false;
+			Assert.assertSame(channels.get(2), pool.selectChannel());
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testGrowWhenBusy() throws Exception {
+		PoolProperties properties = new PoolProperties(1, 1, 2, 1000, 60000);
+		properties.setMaxPendingPerChannel(10);
+		LeastPendingChannelPool<StubChannel> pool = new LeastPendingChannelPool<StubChannel>(properties,
+				new StubChannelFactory());
+		try {
+			pool.getChannels().get(0).pending = 10;
+			pool.selectChannel();
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (pool.getSize() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals(2, pool.getSize());
+			Assert.assertSame(pool.getChannels().get(1), pool.selectChannel());
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testPendingReleasedWithInvocation() {
+		ServiceInvocationRepository repository = ServiceInvocationRepository.getInstance();
+		StubChannel channel = new StubChannel();
+		// no invocation to wait for, nothing to count
+		Assert.assertFalse(repository.addPending(-4711L, channel));
+
+		repository.put(-4711L, new RemoteInvocationBean());
+		Assert.assertTrue(repository.addPending(-4711L, channel));
+		Assert.assertEquals(1, channel.pending);
+		// removed by timeout or cancel without any response
+		repository.remove(-4711L);
+		Assert.assertEquals(0, channel.pending);
+		repository.remove(-4711L);
+		Assert.assertEquals(0, channel.pending);
+		Assert.assertFalse(repository.addPending(-4711L, channel));
+	}
+
+	static class StubChannelFactory implements ChannelFactory<StubChannel> {
+
+		@Override
+		public StubChannel createChannel() {
+			return new StubChannel();
+		}
+	}
+
+	static class StubChannel implements Channel {
+
+		volatile boolean avaliable = true;
+
+		volatile int pending;
+
+		@Override
+		public void connect() throws NetworkException {
+			avaliable = true;
+		}
+
+		@Override
+		public void disConnect() {
+			avaliable = false;
+		}
+
+		@Override
+		public void write(Object message) throws NetworkException {
+		}
+
+		@Override
+		public boolean isWritable() {
+			return avaliable;
+		}
+
+		@Override
+		public boolean isAvaliable() {
+			return avaliable;
+		}
+
+		@Override
+		public InetSocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public InetSocketAddress getRemoteAddress() {
+			return null;
+		}
+
+		@Override
+		public String getRemoteAddressString() {
+			return "127.0.0.1:4040";
+		}
+
+		@Override
+		public long getLastResponseMillis() {
+			return 0;
+		}
+
+		@Override
+		public int getPendingCount() {
+			return pending;
+		}
+
+		@Override
+		public void incPendingCount() {
+			pending++;
+		}
+
+		@Override
+		public void decPendingCount() {
+			pending--;
+		}
+	}
+}
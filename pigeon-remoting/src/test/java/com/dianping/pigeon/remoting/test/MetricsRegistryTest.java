@@ -0,0 +1,77 @@
+package com.dianping.pigeon.remoting.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.monitor.metrics.Histogram;
+import com.dianping.pigeon.monitor.metrics.MeterSnapshot;
+import com.dianping.pigeon.monitor.metrics.MethodMeter;
+import com.dianping.pigeon.monitor.metrics.MetricsRegistry;
+import com.dianping.pigeon.monitor.metrics.MetricsSnapshot;
+import com.dianping.pigeon.monitor.metrics.PrometheusFormatter;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+
+public class MetricsRegistryTest {
+
+	private static final String SERVICE = "http://service.dianping.com/metricsTest/echoService_1.0.0";
+
+	@Test
+	public void testMeterLookup() {
+		MethodMeter meter = InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_CALL, SERVICE, "echo",
+				new Class<?>[] { String.class });
+		Assert.assertEquals("metricsTest:echoService_1.0.0:echo(String)", meter.getName());
+		Assert.assertSame(meter, InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_CALL, SERVICE, "echo",
+				new Class<?>[] { String.class }));
+		Assert.assertNotSame(meter, InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_SERVICE, SERVICE, "echo",
+				new Class<?>[] { String.class }));
+		Assert.assertNotSame(meter, InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_CALL, SERVICE, "echo",
+				new Class<?>[] { Integer.class }));
+		Assert.assertSame(meter, MetricsRegistry.getInstance().getMeter(meter.getId()));
+	}
+
+	@Test
+	public void testRecordAndDelta() {
+		MethodMeter meter = InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_CALL, SERVICE, "record", null);
+		for (int i = 1; i <= 100; i++) {
+			meter.record(i, i % 10 == 0, 2000, 0);
+		}
+		MeterSnapshot first = meter.snapshot();
+		Assert.assertEquals(100, first.getCalls());
+		Assert.assertEquals(10, first.getFailures());
+		Assert.assertEquals(100, first.getLatency().getPercentile(95));
+		Assert.assertEquals(50, first.getLatency().getPercentile(50));
+		Assert.assertEquals(100, first.getRequestSize().getCount());
+		Assert.assertEquals(0, first.getResponseSize().getCount());
+
+		meter.record(20000, true, 0, 0);
+		MeterSnapshot delta = meter.snapshot().minus(first);
+		Assert.assertEquals(1, delta.getCalls());
+		Assert.assertEquals(1, delta.getFailures());
+		Assert.assertEquals(Long.MAX_VALUE, delta.getLatency().getPercentile(50));
+	}
+
+	@Test
+	public void testHistogramBuckets() {
+		Histogram histogram = new Histogram(Histogram.LATENCY_BOUNDS);
+		histogram.record(0);
+		histogram.record(1);
+		histogram.record(2);
+		histogram.record(3);
+		long[] counts = histogram.snapshot().getCounts();
+		Assert.assertEquals(2, counts[0]);
+		Assert.assertEquals(1, counts[1]);
+		Assert.assertEquals(1, counts[2]);
+	}
+
+	@Test
+	public void testPrometheusFormat() {
+		MethodMeter meter = InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_SERVICE, SERVICE, "format", null);
+		meter.record(3, false, 100, 100);
+		MetricsSnapshot snapshot = MetricsRegistry.getInstance().snapshot();
+		String text = PrometheusFormatter.format(snapshot);
+		String labels = "{type=\"service\",service=\"" + SERVICE + "\",method=\"" + meter.getName() + "\"";
+		Assert.assertTrue(text.contains("pigeon_calls_total" + labels + "} 1\n"));
+		Assert.assertTrue(text.contains("pigeon_latency_milliseconds_bucket" + labels + ",le=\"5\"} 1\n"));
+		Assert.assertTrue(text.contains("pigeon_latency_milliseconds_bucket" + labels + ",le=\"+Inf\"} 1\n"));
+	}
+}
@@ -0,0 +1,81 @@
+package com.dianping.pigeon.remoting.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
+
+public class OutlierEjectionTest {
+
+	private static final String ADDRESS = "10.0.0.1:4040";
+
+	private final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private final OutlierEjectionManager manager = OutlierEjectionManager.INSTANCE;
+
+	@Before
+	public void setUp() {
+		configManager.setLocalStringValue("pigeon.invoker.outlier.enable", "true");
+		configManager.setLocalStringValue("pigeon.invoker.outlier.consecutive.failures", "3");
+		configManager.setLocalStringValue("pigeon.invoker.outlier.ejection.base", "100");
+		configManager.setLocalStringValue("pigeon.invoker.outlier.ejection.max", "1000");
+		configManager.setLocalStringValue("pigeon.invoker.outlier.probe.interval", "60000");
+	}
+
+	@After
+	public void tearDown() {
+		manager.removeClientBreaker(ADDRESS);
+		configManager.setLocalStringValue("pigeon.invoker.outlier.enable", "false");
+	}
+
+	private void fail(int times) {
+		for (int i = 0; i < times; i++) {
+			manager.addClientRequest(ADDRESS, true);
+		}
+	}
+
+	@Test
+	public void testEjectProbeAndClose() throws Exception {
+		// closed
+		fail(2);
+		Assert.assertFalse(manager.isEjected(ADDRESS));
+		Assert.assertTrue(manager.acquireProbe(ADDRESS));
+
+		// open
+		fail(1);
+		Assert.assertTrue(manager.isEjected(ADDRESS));
+
+		// half open, routing does not take the probe slot
+		Thread.sleep(150);
+		Assert.assertFalse(manager.isEjected(ADDRESS));
+		Assert.assertFalse(manager.isEjected(ADDRESS));
+		Assert.assertTrue(manager.acquireProbe(ADDRESS));
+		Assert.assertTrue(manager.isEjected(ADDRESS));
+		Assert.assertFalse(manager.acquireProbe(ADDRESS));
+
+		// the probe succeeded
+		manager.addClientRequest(ADDRESS, false);
+		Assert.assertFalse(manager.isEjected(ADDRESS));
+		Assert.assertTrue(manager.acquireProbe(ADDRESS));
+	}
+
+	@Test
+	public void testFailedProbeEjectsAgain() throws Exception {
+		fail(3);
+		Assert.assertTrue(manager.isEjected(ADDRESS));
+		Thread.sleep(150);
+		Assert.assertTrue(manager.acquireProbe(ADDRESS));
+
+		// the probe failed, ejected for twice as long
+		fail(1);
+		Assert.assertTrue(manager.isEjected(ADDRESS));
+		Thread.sleep(150);
+		Assert.assertTrue(manager.isEjected(ADDRESS));
+		Thread.sleep(100);
+		Assert.assertFalse(manager.isEjected(ADDRESS));
+	}
+}
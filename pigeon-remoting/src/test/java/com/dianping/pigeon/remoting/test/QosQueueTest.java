@@ -0,0 +1,181 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.process.qos.QosClass;
+import com.dianping.pigeon.remoting.provider.process.qos.QosQueue;
+import com.dianping.pigeon.remoting.provider.process.qos.QosTask;
+
+public class QosQueueTest {
+
+	private static class RecordingChannel implements ProviderChannel {
+
+		private final List<InvocationResponse> responses = new CopyOnWriteArrayList<InvocationResponse>();
+
+		private final String protocol;
+
+		RecordingChannel() {
+			this(Constants.PROTOCOL_DEFAULT);
+		}
+
+		RecordingChannel(String protocol) {
+			this.protocol = protocol;
+		}
+
+		@Override
+		public void write(InvocationResponse response) {
+			responses.add(response);
+		}
+
+		@Override
+		public String getRemoteAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public String getProtocol() {
+			return protocol;
+		}
+
+		@Override
+		public int getPort() {
+			return 4040;
+		}
+
+		@Override
+		public AuthSession getAuthSession() {
+			return null;
+		}
+
+		@Override
+		public void setAuthSession(AuthSession session) {
+		}
+	}
+
+	private static final Callable<InvocationResponse> NOOP = new Callable<InvocationResponse>() {
+
+		@Override
+		public InvocationResponse call() throws Exception {
+			return null;
+		}
+	};
+
+	private QosTask newTask(String qosClass, int timeout, ProviderChannel channel) {
+		DefaultRequest request = new DefaultRequest("EchoService", "echo", new Object[0],
+				SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, timeout, Constants.CALLTYPE_REPLY,
+				-1L);
+		return new QosTask(new DefaultProviderContext(request, channel), qosClass, NOOP);
+	}
+
+	private QosClass newClass(String name, int priority, int weight) {
+		QosClass qosClass = new QosClass(name);
+		qosClass.setPriority(priority);
+		qosClass.setWeight(weight);
+		return qosClass;
+	}
+
+	@Test
+	public void testStrictPriority() {
+		QosQueue queue = new QosQueue(10, QosQueue.POLICY_PRIORITY,
+				Arrays.asList(newClass("online", 0, 1), newClass("batch", 9, 1)), "batch");
+		QosTask batch = newTask("batch", 5000, null);
+		QosTask other = newTask("unknown", 5000, null);
+		QosTask online = newTask("online", 5000, null);
+		Assert.assertTrue(queue.offer(batch));
+		Assert.assertTrue(queue.offer(other));
+		Assert.assertTrue(queue.offer(online));
+		Assert.assertEquals(3, queue.size());
+		Assert.assertSame(online, queue.poll());
+		Assert.assertSame(batch, queue.poll());
+		Assert.assertSame(other, queue.poll());
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testWeightedFair() {
+		QosQueue queue = new QosQueue(10, QosQueue.POLICY_WFQ,
+				Arrays.asList(newClass("online", 0, 2), newClass("batch", 0, 1)), "batch");
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(queue.offer(newTask("online", 5000, null)));
+			Assert.assertTrue(queue.offer(newTask("batch", 5000, null)));
+		}
+		Assert.assertFalse(queue.offer(newTask("batch", 5000, null)));
+		int online = 0;
+		for (int i = 0; i < 9; i++) {
+			if ("online".equals(((QosTask) queue.poll()).getQosClass())) {
+				online++;
+			}
+		}
+		Assert.assertEquals(6, online);
+	}
+
+	@Test
+	public void testDropExpired() throws Exception {
+		QosClass batch = newClass("batch", 9, 1);
+		batch.setDropExpired(true);
+		QosQueue queue = new QosQueue(10, QosQueue.POLICY_WFQ, Arrays.asList(newClass("online", 0, 1), batch),
+				"online");
+		RecordingChannel channel = new RecordingChannel();
+		QosTask expired = newTask("batch", 1, channel);
+		QosTask live = newTask("batch", 60000, channel);
+		queue.offer(expired);
+		queue.offer(live);
+		Thread.sleep(100);
+
+		Assert.assertSame(live, queue.poll());
+		Assert.assertTrue(expired.isCancelled());
+		Assert.assertEquals(1, channel.responses.size());
+		Assert.assertEquals(Constants.MESSAGE_TYPE_EXCEPTION, channel.responses.get(0).getMessageType());
+		Assert.assertTrue(queue.getStatistics().contains("dropped:1"));
+	}
+
+	@Test
+	public void testCancelledAnswered() {
+		QosQueue queue = new QosQueue(10, QosQueue.POLICY_WFQ, Arrays.asList(newClass("online", 0, 1)), "online");
+		RecordingChannel channel = new RecordingChannel(Constants.PROTOCOL_HTTP);
+		QosTask cancelled = newTask("online", 60000, channel);
+		QosTask live = newTask("online", 60000, channel);
+		queue.offer(cancelled);
+		queue.offer(live);
+		// cancelled by the timeout checker, which did not answer it
+		cancelled.cancel(false);
+
+		Assert.assertSame(live, queue.poll());
+		Assert.assertEquals(1, channel.responses.size());
+		Assert.assertEquals(Constants.MESSAGE_TYPE_EXCEPTION, channel.responses.get(0).getMessageType());
+		Assert.assertFalse(cancelled.getProviderContext().markStarted());
+	}
+
+	@Test
+	public void testOverdueDoesNotStarve() throws Exception {
+		QosClass online = newClass("online", 0, 1);
+		online.setQueueTimeSlo(1);
+		QosQueue queue = new QosQueue(20, QosQueue.POLICY_WFQ, Arrays.asList(newClass("batch", 0, 1), online),
+				"batch");
+		for (int i = 0; i < 20; i++) {
+			queue.offer(newTask("online", 60000, null));
+		}
+		queue.offer(newTask("batch", 60000, null));
+		Thread.sleep(20);
+
+		// online stays overdue, batch still gets its turn by weight
+		for (int i = 0; i < 4; i++) {
+			Assert.assertEquals("online", ((QosTask) queue.poll()).getQosClass());
+		}
+		Assert.assertEquals("batch", ((QosTask) queue.poll()).getQosClass());
+		Assert.assertEquals("online", ((QosTask) queue.poll()).getQosClass());
+	}
+}
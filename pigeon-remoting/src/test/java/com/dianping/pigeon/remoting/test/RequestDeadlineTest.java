@@ -0,0 +1,119 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.exception.RequestAbortedException;
+import com.dianping.pigeon.remoting.provider.process.filter.WriteResponseProcessFilter;
+import com.dianping.pigeon.util.TimeUtils;
+
+public class RequestDeadlineTest {
+
+	private static class RecordingChannel implements ProviderChannel {
+
+		private final String protocol;
+
+		private final List<InvocationResponse> responses = new CopyOnWriteArrayList<InvocationResponse>();
+
+		RecordingChannel(String protocol) {
+			this.protocol = protocol;
+		}
+
+		@Override
+		public void write(InvocationResponse response) {
+			responses.add(response);
+		}
+
+		@Override
+		public String getRemoteAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public String getProtocol() {
+			return protocol;
+		}
+
+		@Override
+		public int getPort() {
+			return 4040;
+		}
+
+		@Override
+		public AuthSession getAuthSession() {
+			return null;
+		}
+
+		@Override
+		public void setAuthSession(AuthSession session) {
+		}
+	}
+
+	private DefaultRequest newRequest(long createTime, int timeout) {
+		DefaultRequest request = new DefaultRequest();
+		request.setCreateMillisTime(createTime);
+		request.setTimeout(timeout);
+		return request;
+	}
+
+	@Test
+	public void testDeadlineFromReceiveTime() {
+		long receiveTime = TimeUtils.currentTimeMillis() - 200;
+		DefaultProviderContext context = new DefaultProviderContext(newRequest(receiveTime, 1000), null);
+		Assert.assertEquals(receiveTime + 1000, context.getDeadline());
+	}
+
+	@Test
+	public void testNotStamped() {
+		long now = TimeUtils.currentTimeMillis();
+		DefaultProviderContext context = new DefaultProviderContext(newRequest(0, 1000), null);
+		Assert.assertTrue(context.getDeadline() >= now + 1000);
+	}
+
+	@Test
+	public void testNoTimeout() {
+		DefaultProviderContext context = new DefaultProviderContext(newRequest(TimeUtils.currentTimeMillis(), 0),
+				null);
+		Assert.assertEquals(0, context.getDeadline());
+	}
+
+	@Test
+	public void testDroppedRequestWrite() throws Throwable {
+		ServiceInvocationHandler dropped = new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				((ProviderContext) invocationContext).setFrameworkError(new RequestAbortedException("expired"));
+				return null;
+			}
+		};
+		WriteResponseProcessFilter filter = new WriteResponseProcessFilter();
+		for (String protocol : new String[] { Constants.PROTOCOL_DEFAULT, Constants.PROTOCOL_HTTP }) {
+			RecordingChannel channel = new RecordingChannel(protocol);
+			DefaultRequest request = new DefaultRequest("EchoService", "echo", new Object[0],
+					SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000,
+					Constants.CALLTYPE_REPLY, -1L);
+			Assert.assertNull(filter.invoke(dropped, new DefaultProviderContext(request, channel)));
+			if (Constants.PROTOCOL_HTTP.equals(protocol)) {
+				// http answers in request order, the dropped request still gets its answer
+				Assert.assertEquals(1, channel.responses.size());
+				Assert.assertEquals(Constants.MESSAGE_TYPE_EXCEPTION, channel.responses.get(0).getMessageType());
+			} else {
+				Assert.assertTrue(channel.responses.isEmpty());
+			}
+		}
+	}
+}
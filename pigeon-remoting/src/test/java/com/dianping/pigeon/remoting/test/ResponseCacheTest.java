@@ -0,0 +1,149 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.monitor.metrics.MeterSnapshot;
+import com.dianping.pigeon.monitor.metrics.MetricsRegistry;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.cache.ArgumentsKey;
+import com.dianping.pigeon.remoting.invoker.cache.ResponseCache;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.process.filter.ResponseCacheInvokeFilter;
+
+public class ResponseCacheTest extends InvokerProxyBaseTest {
+
+	public interface CityService {
+
+		List<String> getCities(String province);
+
+		String getName(int id);
+	}
+
+	@Test
+	public void testTtl() throws Exception {
+		ResponseCache cache = new ResponseCache("test-ttl", 10, 50, false);
+		ArgumentsKey key = ArgumentsKey.of(new Object[] { "a" });
+		Assert.assertSame(ResponseCache.MISS, cache.get(key));
+		cache.put(key, null);
+		Assert.assertNull(cache.get(key));
+		Thread.sleep(100);
+		Assert.assertSame(ResponseCache.MISS, cache.get(key));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testHotEntriesSurviveScan() {
+		ResponseCache cache = new ResponseCache("test-scan", 100, 60000, false);
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 50; i++) {
+				ArgumentsKey key = ArgumentsKey.of(new Object[] { "hot", i });
+				if (cache.get(key) == ResponseCache.MISS) {
+					cache.put(key, i);
+				}
+			}
+		}
+		for (int i = 0; i < 10000; i++) {
+			cache.put(ArgumentsKey.of(new Object[] { "cold", i }), i);
+			Assert.assertTrue(cache.size() <= 100);
+		}
+		int hits = 0;
+		for (int i = 0; i < 50; i++) {
+			if (cache.get(ArgumentsKey.of(new Object[] { "hot", i })) != ResponseCache.MISS) {
+				hits++;
+			}
+		}
+		Assert.assertTrue("hot entries left:" + hits, hits >= 45);
+	}
+
+	@Test
+	public void testOffHeapReturnsCopies() {
+		ResponseCache cache = new ResponseCache("test-offheap", 10, 60000, true);
+		ArgumentsKey key = ArgumentsKey.of(new Object[] { "zj" });
+		List<String> cities = new ArrayList<String>();
+		cities.add("hangzhou");
+		cache.put(key, cities);
+		cities.add("ningbo");
+
+		@SuppressWarnings("unchecked")
+		List<String> cached = (List<String>) cache.get(key);
+		Assert.assertEquals(1, cached.size());
+		cached.clear();
+		Assert.assertEquals(1, ((List<?>) cache.get(key)).size());
+	}
+
+	@Test
+	public void testFilter() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		final ServiceInvocationHandler remote = new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				calls.incrementAndGet();
+				InvokerContext invokerContext = (InvokerContext) invocationContext;
+				Object ret = "getName".equals(invokerContext.getMethodName()) ? "name-" + invokerContext.getArguments()[0]
+						: new ArrayList<String>();
+				return newResponse(ret);
+			}
+		};
+		InvokerConfig<CityService> invokerConfig = newCachedConfig(
+				"http://service.dianping.com/test/ResponseCacheTest/CityService_1.0.0");
+		CityService service = newService(invokerConfig, new ResponseCacheInvokeFilter(), remote);
+
+		Assert.assertEquals("name-1", service.getName(1));
+		Assert.assertEquals("name-1", service.getName(1));
+		Assert.assertEquals("name-2", service.getName(2));
+		Assert.assertEquals(2, calls.get());
+		service.getCities("zj");
+		service.getCities("zj");
+		Assert.assertEquals(4, calls.get());
+
+		MeterSnapshot meter = InvocationUtils.getMethodMeter(MetricsRegistry.TYPE_CALL, invokerConfig.getUrl(),
+				"getName", new Class<?>[] { int.class }).snapshot();
+		Assert.assertEquals(1, meter.getCacheHits());
+		Assert.assertEquals(2, meter.getCacheMisses());
+	}
+
+	@Test
+	public void testCachePerReference() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		final ServiceInvocationHandler remote = new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				calls.incrementAndGet();
+				InvokerContext invokerContext = (InvokerContext) invocationContext;
+				return newResponse(invokerContext.getInvokerConfig().getGroup() + "-" + invokerContext.getArguments()[0]);
+			}
+		};
+		ResponseCacheInvokeFilter filter = new ResponseCacheInvokeFilter();
+		String url = "http://service.dianping.com/test/ResponseCacheTest/CityService_2.0.0";
+		InvokerConfig<CityService> blueConfig = newCachedConfig(url);
+		blueConfig.setGroup("blue");
+		CityService blue = newService(blueConfig, filter, remote);
+		InvokerConfig<CityService> greenConfig = newCachedConfig(url);
+		greenConfig.setGroup("green");
+		CityService green = newService(greenConfig, filter, remote);
+
+		Assert.assertEquals("blue-1", blue.getName(1));
+		Assert.assertEquals("green-1", green.getName(1));
+		Assert.assertEquals("blue-1", blue.getName(1));
+		Assert.assertEquals("green-1", green.getName(1));
+		Assert.assertEquals(2, calls.get());
+	}
+
+	private InvokerConfig<CityService> newCachedConfig(String url) {
+		InvokerMethodConfig methodConfig = newMethodConfig("getName");
+		methodConfig.setCacheTtl(60000);
+		return newInvokerConfig(url, CityService.class, methodConfig);
+	}
+}
@@ -0,0 +1,89 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.concurrent.Callback;
+import com.dianping.pigeon.remoting.invoker.concurrent.CallbackFuture;
+import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+import com.dianping.pigeon.remoting.invoker.process.threadpool.ResponseThreadPoolProcessor;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+import com.dianping.pigeon.util.TimeUtils;
+
+public class ResponseInlineTest {
+
+	private static final ResponseThreadPoolProcessor processor = new ResponseThreadPoolProcessor();
+
+	private void register(long sequence, Callback callback) {
+		DefaultRequest request = new DefaultRequest();
+		request.setSequence(sequence);
+		request.setCreateMillisTime(TimeUtils.currentTimeMillis());
+		request.setTimeout(1000);
+		callback.setRequest(request);
+		RemoteInvocationBean invocationBean = new RemoteInvocationBean();
+		invocationBean.request = request;
+		invocationBean.callback = callback;
+		ServiceInvocationRepository.getInstance().put(sequence, invocationBean);
+	}
+
+	private InvocationResponse newResponse(long sequence) {
+		return new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, sequence, Constants.MESSAGE_TYPE_SERVICE, "ok");
+	}
+
+	@Test
+	public void testSyncCallIsCompletedInline() {
+		CallbackFuture future = new CallbackFuture();
+		register(-1001, future);
+		processor.processResponse(newResponse(-1001), null);
+		Assert.assertTrue(future.isDone());
+		Assert.assertNull(ServiceInvocationRepository.getInstance().get(-1001));
+	}
+
+	@Test
+	public void testUserCallbackIsDispatched() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Thread[] runner = new Thread[1];
+		register(-1002, new Callback() {
+
+			@Override
+			public void run() {
+				runner[0] = Thread.currentThread();
+				latch.countDown();
+			}
+
+			@Override
+			public void callback(InvocationResponse response) {
+			}
+
+			@Override
+			public void setRequest(InvocationRequest request) {
+			}
+
+			@Override
+			public void dispose() {
+			}
+
+			@Override
+			public void setClient(Client client) {
+			}
+
+			@Override
+			public Client getClient() {
+				return null;
+			}
+		});
+		processor.processResponse(newResponse(-1002), null);
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Assert.assertNotSame(Thread.currentThread(), runner[0]);
+	}
+}
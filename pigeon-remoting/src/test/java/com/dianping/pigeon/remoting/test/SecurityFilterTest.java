@@ -0,0 +1,276 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.SecurityException;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.SecurityUtils;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.process.filter.SecurityFilter;
+import com.dianping.pigeon.util.TimeUtils;
+
+public class SecurityFilterTest {
+
+	private static final String SERVICE = "http://service.dianping.com/test/SecurityFilterTest";
+	private static final String APP = "test-app";
+	private static final String SECRET = "0123456789abcdef";
+	private static final String INVOKER_IP = "10.0.0.9";
+	private static final int PORT = 4040;
+
+	private final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private final ServiceInvocationHandler handler = new ServiceInvocationHandler() {
+
+		@Override
+		public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+			return null;
+		}
+	};
+
+	private SecurityFilter filter;
+
+	private static class SessionChannel implements ProviderChannel {
+
+		private final String remoteAddress;
+
+		private final int port;
+
+		private volatile AuthSession session;
+
+		SessionChannel(String remoteAddress, int port) {
+			this.remoteAddress = remoteAddress;
+			this.port = port;
+		}
+
+		@Override
+		public void write(InvocationResponse response) {
+		}
+
+		@Override
+		public String getRemoteAddress() {
+			return remoteAddress;
+		}
+
+		@Override
+		public String getProtocol() {
+			return Constants.PROTOCOL_DEFAULT;
+		}
+
+		@Override
+		public int getPort() {
+			return port;
+		}
+
+		@Override
+		public AuthSession getAuthSession() {
+			return session;
+		}
+
+		@Override
+		public void setAuthSession(AuthSession session) {
+			this.session = session;
+		}
+	}
+
+	@Before
+	public void setUp() {
+		configManager.setLocalStringValue("pigeon.provider.token.enable", "true");
+		configManager.setLocalStringValue("pigeon.provider.token.protocol.default.enable", "true");
+		filter = newFilter(SECRET);
+	}
+
+	@After
+	public void tearDown() {
+		configManager.setLocalStringValue("pigeon.provider.token.enable", "false");
+		configManager.setLocalStringValue("pigeon.provider.token.protocol.default.enable", "false");
+		configManager.setLocalStringValue("pigeon.provider.token.timestamp.diff", "120");
+		newFilter("");
+	}
+
+	// the filter parses the secrets when it is created
+	private SecurityFilter newFilter(String secret) {
+		configManager.setLocalStringValue("pigeon.provider.token.app.secrets",
+				secret.length() == 0 ? "" : APP + ":" + secret);
+		return new SecurityFilter();
+	}
+
+	private int now() {
+		return (int) (TimeUtils.currentTimeMillis() / 1000);
+	}
+
+	private DefaultRequest newRequest(String methodName, Integer version, Integer timestamp, String token) {
+		DefaultRequest request = new DefaultRequest(SERVICE, methodName, new Object[0],
+				SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY, 1);
+		request.setApp(APP);
+		Map<String, Serializable> values = new HashMap<String, Serializable>();
+		if (token != null) {
+			values.put(Constants.REQUEST_KEY_VERSION, version);
+			values.put(Constants.REQUEST_KEY_TIMESTAMP, timestamp);
+			values.put(Constants.REQUEST_KEY_TOKEN, token);
+		}
+		request.setRequestValues(values);
+		return request;
+	}
+
+	private DefaultRequest newSessionRequest(int timestamp, String invokerIp, int port, String secret) {
+		String data = SecurityUtils.getSessionTokenData(APP, timestamp, invokerIp,
+				configManager.getLocalIp() + ":" + port);
+		return newRequest("echo", Constants.TOKEN_VERSION_SESSION, timestamp, SecurityUtils.encrypt(data, secret));
+	}
+
+	private DefaultRequest newTokenRequest(String methodName, int timestamp, String signedMethod, String secret) {
+		String data = SERVICE + "#" + signedMethod + "#" + timestamp;
+		return newRequest(methodName, Constants.TOKEN_VERSION_REQUEST, timestamp,
+				SecurityUtils.encrypt(data, secret));
+	}
+
+	private void invoke(DefaultRequest request, ProviderChannel channel) throws Throwable {
+		filter.invoke(handler, new DefaultProviderContext(request, channel));
+	}
+
+	private void assertRefused(DefaultRequest request, ProviderChannel channel) throws Throwable {
+		try {
+			invoke(request, channel);
+			Assert.fail("request should be refused");
+		} catch (SecurityException e) {
+		}
+	}
+
+	@Test
+	public void testSessionBoundToConnection() throws Throwable {
+		SessionChannel channel = new SessionChannel(INVOKER_IP, PORT);
+		invoke(newSessionRequest(now(), INVOKER_IP, PORT, SECRET), channel);
+		Assert.assertEquals(APP, channel.getAuthSession().getApp());
+		// later requests of the connection carry no token
+		invoke(newRequest("echo", null, null, null), channel);
+
+		// the same token replayed from another host or to another port
+		int time = now();
+		DefaultRequest request = newSessionRequest(time, INVOKER_IP, PORT, SECRET);
+		assertRefused(request, new SessionChannel("10.0.0.8", PORT));
+		request = newSessionRequest(time, INVOKER_IP, PORT, SECRET);
+		assertRefused(request, new SessionChannel(INVOKER_IP, PORT + 1));
+
+		SessionChannel other = new SessionChannel(INVOKER_IP, PORT);
+		assertRefused(newRequest("echo", null, null, null), other);
+		Assert.assertNull(other.getAuthSession());
+	}
+
+	@Test
+	public void testSessionAfterSecretChange() throws Throwable {
+		SessionChannel channel = new SessionChannel(INVOKER_IP, PORT);
+		invoke(newSessionRequest(now(), INVOKER_IP, PORT, SECRET), channel);
+		AuthSession session = channel.getAuthSession();
+		Assert.assertFalse(session.isValid("other-app", SECRET));
+		// a reparsed secret is another instance even when its value is equal
+		Assert.assertFalse(session.isValid(APP, new String(SECRET)));
+
+		filter = newFilter(SECRET);
+		assertRefused(newRequest("echo", null, null, null), channel);
+		invoke(newSessionRequest(now(), INVOKER_IP, PORT, SECRET), channel);
+		Assert.assertNotSame(session, channel.getAuthSession());
+
+		String secret = "fedcba9876543210";
+		filter = newFilter(secret);
+		assertRefused(newSessionRequest(now(), INVOKER_IP, PORT, SECRET), new SessionChannel(INVOKER_IP, PORT));
+		invoke(newSessionRequest(now(), INVOKER_IP, PORT, secret), new SessionChannel(INVOKER_IP, PORT));
+	}
+
+	@Test
+	public void testVerifiedTokenCache() throws Throwable {
+		// a per request token leaves no session on the connection
+		SessionChannel channel = new SessionChannel(INVOKER_IP, PORT) {
+
+			@Override
+			public void setAuthSession(AuthSession session) {
+				Assert.fail("no session on a per request token");
+			}
+		};
+		int time = now();
+		DefaultRequest request = newTokenRequest("echo", time, "echo", SECRET);
+		String token = (String) request.getRequestValues().get(Constants.REQUEST_KEY_TOKEN);
+		invoke(request, channel);
+		// served from the cache
+		invoke(newTokenRequest("echo", time, "echo", SECRET), channel);
+
+		// a cached token only matches the data it signed
+		assertRefused(newTokenRequest("hello", time, "echo", SECRET), channel);
+		assertRefused(newRequest("echo", Constants.TOKEN_VERSION_REQUEST, time - 1, token), channel);
+
+		// the cache is dropped with the secrets
+		filter = newFilter("fedcba9876543210");
+		assertRefused(newTokenRequest("echo", time, "echo", SECRET), channel);
+	}
+
+	@Test
+	public void testCachedTokenExpires() throws Throwable {
+		configManager.setLocalStringValue("pigeon.provider.token.timestamp.diff", "1");
+		SessionChannel channel = new SessionChannel(INVOKER_IP, PORT);
+		int time = now();
+		invoke(newTokenRequest("echo", time, "echo", SECRET), channel);
+		// the timestamp is checked before the cache
+		Thread.sleep(2100);
+		assertRefused(newTokenRequest("echo", time, "echo", SECRET), channel);
+	}
+
+	@Test
+	public void testThreadMacs() throws Exception {
+		final String[] keys = { SECRET, "fedcba9876543210", "0000111122223333" };
+		final String[] expected = new String[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			expected[i] = SecurityUtils.encrypt("data", keys[i]);
+		}
+		Assert.assertFalse(expected[0].equals(expected[1]));
+		// the cached instance of a key is reset after every use
+		for (int i = 0; i < keys.length; i++) {
+			Assert.assertEquals(expected[i], SecurityUtils.encrypt("data", keys[i]));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 8; t++) {
+				results.add(executor.submit(new Callable<Boolean>() {
+
+					@Override
+					public Boolean call() {
+						for (int n = 0; n < 2000; n++) {
+							int i = n % keys.length;
+							if (!expected[i].equals(SecurityUtils.encrypt("data", keys[i]))) {
+								return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				Assert.assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
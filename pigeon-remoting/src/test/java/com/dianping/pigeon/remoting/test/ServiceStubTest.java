@@ -0,0 +1,66 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerMethodDescriptor;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+
+public class ServiceStubTest extends InvokerProxyBaseTest {
+
+	public interface CountService {
+
+		String echo(String msg);
+
+		int count();
+	}
+
+	@Test
+	public void testDescriptorIsResolvedOnce() throws Exception {
+		final List<InvokerContext> contexts = new ArrayList<InvokerContext>();
+		ServiceInvocationHandler handler = new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				InvokerContext invokerContext = (InvokerContext) invocationContext;
+				contexts.add(invokerContext);
+				Object ret = "echo".equals(invokerContext.getMethodName()) ? invokerContext.getArguments()[0] : null;
+				return newResponse(ret);
+			}
+		};
+		InvokerMethodConfig methodConfig = newMethodConfig("echo");
+		methodConfig.setTimeout(200);
+		InvokerConfig<CountService> invokerConfig = newInvokerConfig(CountService.class.getName(), CountService.class,
+				methodConfig);
+		invokerConfig.setTimeout(1000);
+		CountService service = newService(invokerConfig, handler);
+
+		Assert.assertEquals("a", service.echo("a"));
+		Assert.assertEquals("b", service.echo("b"));
+		Assert.assertEquals(0, service.count());
+		Assert.assertEquals(handler.toString(), service.toString());
+		Assert.assertEquals(3, contexts.size());
+
+		InvokerMethodDescriptor echo = contexts.get(0).getMethodDescriptor();
+		Assert.assertSame(echo, contexts.get(1).getMethodDescriptor());
+		Assert.assertEquals(200, echo.getTimeout());
+		Assert.assertEquals(200, InvokerUtils.getTimeout(contexts.get(0)));
+		Assert.assertArrayEquals(new Class<?>[] { String.class }, contexts.get(0).getParameterTypes());
+
+		InvokerMethodDescriptor count = contexts.get(2).getMethodDescriptor();
+		Assert.assertNotSame(echo, count);
+		Assert.assertEquals(1000, count.getTimeout());
+		Assert.assertEquals(Constants.CALL_SYNC, count.getCallType());
+		Assert.assertEquals(invokerConfig.getUrl() + "#count", count.getRequestUrl());
+	}
+}
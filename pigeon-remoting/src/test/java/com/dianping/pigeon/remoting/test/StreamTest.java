@@ -0,0 +1,134 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.concurrent.ServiceStream;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.process.stream.StreamManager;
+
+public class StreamTest {
+
+	private static class RecordingChannel implements ProviderChannel {
+
+		private final List<InvocationResponse> responses = new CopyOnWriteArrayList<InvocationResponse>();
+
+		@Override
+		public void write(InvocationResponse response) {
+			responses.add(response);
+		}
+
+		@Override
+		public String getRemoteAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public String getProtocol() {
+			return Constants.PROTOCOL_DEFAULT;
+		}
+
+		@Override
+		public int getPort() {
+			return 4040;
+		}
+
+		@Override
+		public AuthSession getAuthSession() {
+			return null;
+		}
+
+		@Override
+		public void setAuthSession(AuthSession session) {
+		}
+	}
+
+	@Test
+	public void testProviderWaitsForCredits() throws Exception {
+		final long streamId = 1234L;
+		final DefaultRequest request = new DefaultRequest("EchoService", "list", new Object[0],
+				SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 5000, Constants.CALLTYPE_REPLY,
+				-1L);
+		Map<String, Serializable> values = new HashMap<String, Serializable>();
+		values.put(Constants.CONTEXT_KEY_STREAM_ID, streamId);
+		values.put(Constants.CONTEXT_KEY_STREAM_CREDIT, 2);
+		request.setRequestValues(values);
+		Assert.assertTrue(StreamManager.INSTANCE.isStreamRequest(request));
+
+		final RecordingChannel channel = new RecordingChannel();
+		final DefaultProviderContext context = new DefaultProviderContext(request, channel);
+		Thread writer = new Thread() {
+			public void run() {
+				try {
+					StreamManager.INSTANCE.writeStream(context, Arrays.asList("a", "b", "c", "d", "e").iterator());
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+		writer.start();
+		waitFor(channel, 2);
+		Thread.sleep(50);
+		Assert.assertEquals(2, channel.responses.size());
+
+		StreamManager.INSTANCE.addCredit(newCredit(streamId, 3));
+		writer.join(5000);
+		Assert.assertEquals(5, channel.responses.size());
+		for (InvocationResponse response : channel.responses) {
+			Assert.assertEquals(Constants.MESSAGE_TYPE_STREAM, response.getMessageType());
+			Assert.assertEquals(-1L, response.getSequence());
+		}
+		Assert.assertEquals("e", channel.responses.get(4).getReturn());
+	}
+
+	@Test
+	public void testInvokerIterator() {
+		DefaultRequest request = new DefaultRequest("EchoService", "list", new Object[0],
+				SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY,
+				-2L);
+		ServiceStream stream = new ServiceStream(1L, 1000, "EchoService#list");
+		stream.setRequest(request);
+		stream.callback(newResponse(Constants.MESSAGE_TYPE_STREAM, "a"));
+		stream.callback(newResponse(Constants.MESSAGE_TYPE_STREAM, null));
+		stream.callback(newResponse(Constants.MESSAGE_TYPE_STREAM, "c"));
+		stream.callback(newResponse(Constants.MESSAGE_TYPE_SERVICE, null));
+
+		List<Object> items = new ArrayList<Object>();
+		while (stream.hasNext()) {
+			items.add(stream.next());
+		}
+		Assert.assertEquals(Arrays.asList("a", null, "c"), items);
+	}
+
+	private static DefaultRequest newCredit(long streamId, int credits) {
+		return new DefaultRequest("EchoService", "list", new Object[] { streamId, credits },
+				SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_STREAM_CREDIT, 5000,
+				Constants.CALLTYPE_NOREPLY, -1L);
+	}
+
+	private static InvocationResponse newResponse(int messageType, Object value) {
+		return new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, -2L, messageType, value);
+	}
+
+	private static void waitFor(RecordingChannel channel, int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (channel.responses.size() < count && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SymbolResolver;
+import com.dianping.pigeon.remoting.common.codec.SymbolTable;
+import com.dianping.pigeon.remoting.common.codec.hessian.HessianSerializer;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.SymbolRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+public class SymbolRequestTest {
+
+	private static final String URL = "http://service.dianping.com/shopService/shopQueryService_1.0.0";
+
+	private HessianSerializer serializer = new HessianSerializer();
+
+	@Test
+	public void testSymbolsAndSize() throws Exception {
+		SymbolTable table = new SymbolTable();
+		SymbolResolver resolver = new SymbolResolver();
+
+		int defaultSize = size(fill(new DefaultRequest(URL, "queryShops", arguments(), (byte) 2,
+				Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY, 1)));
+
+		SymbolRequest first = fill(new SymbolRequest(URL, "queryShops", arguments(), (byte) 2,
+				Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY, 2));
+		encode(first, table);
+		int firstSize = size(first);
+		SymbolRequest decoded = roundTrip(first);
+		decoded.readSymbols(resolver);
+		Assert.assertEquals(URL, decoded.getServiceName());
+		Assert.assertEquals("queryShops", decoded.getMethodName());
+		Assert.assertEquals("1.0.0", decoded.getVersion());
+		Assert.assertEquals("10.1.1.1", decoded.getGlobalValues().get("SOURCE_IP"));
+		Assert.assertEquals("t-1", decoded.getRequestValues().get("TRACE_ID"));
+
+		// not confirmed yet, still carries the definitions
+		SymbolRequest second = fill(new SymbolRequest(URL, "queryShops", arguments(), (byte) 2,
+				Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY, 3));
+		encode(second, table);
+		Assert.assertEquals(firstSize, size(second));
+
+		table.confirm(2);
+		SymbolRequest steady = fill(new SymbolRequest(URL, "queryShops", arguments(), (byte) 2,
+				Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY, 4));
+		encode(steady, table);
+		int steadySize = size(steady);
+		decoded = roundTrip(steady);
+		decoded.readSymbols(resolver);
+		Assert.assertEquals(URL, decoded.getServiceName());
+		Assert.assertEquals("shop", decoded.getGlobalValues().get("SOURCE_APP"));
+		Assert.assertEquals(Arrays.asList(arguments()), Arrays.asList(decoded.getParameters()));
+
+		Assert.assertTrue(steadySize < defaultSize);
+	}
+
+	@Test
+	public void testLazyParameters() throws Exception {
+		SymbolRequest request = fill(new SymbolRequest(URL, "queryShops", arguments(), (byte) 2,
+				Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY, 5));
+		encode(request, new SymbolTable());
+		SymbolRequest decoded = roundTrip(request);
+		decoded.readSymbols(new SymbolResolver());
+		Assert.assertEquals("queryShops", decoded.getMethodName());
+		Assert.assertArrayEquals(new String[] { String.class.getName(), Integer.class.getName(),
+				Boolean.class.getName() }, decoded.getParamClassName());
+		Assert.assertArrayEquals(arguments(), decoded.getParameters());
+	}
+
+	private Object[] arguments() {
+		return new Object[] { "shop-12345", Integer.valueOf(42), Boolean.TRUE };
+	}
+
+	private <T extends InvocationRequest> T fill(T request) {
+		Map<String, Serializable> globalValues = new HashMap<String, Serializable>();
+		globalValues.put("SOURCE_APP", "shop");
+		globalValues.put("SOURCE_IP", "10.1.1.1");
+		Map<String, Serializable> requestValues = new HashMap<String, Serializable>();
+		requestValues.put("TRACE_ID", "t-1");
+		request.setGlobalValues(globalValues);
+		request.setRequestValues(requestValues);
+		if (request instanceof SymbolRequest) {
+			((SymbolRequest) request).setVersion("1.0.0");
+		} else {
+			((DefaultRequest) request).setVersion("1.0.0");
+		}
+		return request;
+	}
+
+	// what the invoker encoder does before serializing
+	private void encode(SymbolRequest request, SymbolTable table) {
+		request.writeSymbols(table);
+		request.writeParameters();
+	}
+
+	private int size(Object request) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		serializer.serializeRequest(os, request);
+		return os.size();
+	}
+
+	private SymbolRequest roundTrip(SymbolRequest request) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		serializer.serializeRequest(os, request);
+		SymbolRequest decoded = (SymbolRequest) serializer.deserializeRequest(new ByteArrayInputStream(
+				os.toByteArray()));
+		decoded.setSerialize(request.getSerialize());
+		return decoded;
+	}
+}
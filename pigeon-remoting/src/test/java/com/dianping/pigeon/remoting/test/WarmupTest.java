@@ -0,0 +1,251 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.SecurityException;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.domain.AuthSession;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.process.filter.GatewayProcessFilter;
+import com.dianping.pigeon.remoting.provider.process.filter.SecurityFilter;
+import com.dianping.pigeon.remoting.provider.process.statistics.ProviderStatisticsHolder;
+import com.dianping.pigeon.remoting.provider.warmup.MethodWarmup;
+import com.dianping.pigeon.remoting.provider.warmup.WarmupManager;
+
+public class WarmupTest {
+
+	private static final String URL = "http://service.dianping.com/test/WarmupTest/orderService";
+
+	private static final String KEY_WARMUP_STABLE_RATIO = "pigeon.provider.warmup.stable.ratio";
+
+	private static final String KEY_WARMUP_SYNTHETIC_METHODS = "pigeon.provider.warmup.synthetic.methods";
+
+	private static final String KEY_TOKEN_ENABLE = "pigeon.provider.token.enable";
+
+	private static final String KEY_TOKEN_PROTOCOL_DEFAULT_ENABLE = "pigeon.provider.token.protocol.default.enable";
+
+	public interface OrderService {
+
+		String getOrder(long id);
+
+		int countOrders(String user, List<String> states);
+
+		void cancelOrder(long id);
+	}
+
+	public static class OrderServiceImpl implements OrderService {
+
+		@Override
+		public String getOrder(long id) {
+			return "order-" + id;
+		}
+
+		@Override
+		public int countOrders(String user, List<String> states) {
+			return user.length() + states.size();
+		}
+
+		@Override
+		public void cancelOrder(long id) {
+			throw new IllegalStateException("no order " + id);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		ConfigManagerLoader.getConfigManager().setLocalStringValue(KEY_WARMUP_STABLE_RATIO, "0.1");
+		ConfigManagerLoader.getConfigManager().setLocalStringValue(KEY_WARMUP_SYNTHETIC_METHODS, "");
+	}
+
+	private void warmUp(OrderService service) {
+		warmUp(service, false);
+	}
+
+	/**
+	 * calls the service directly, or through the security and gateway filters
+	 * when filtered
+	 */
+	private void warmUp(final OrderService service, final boolean filtered) {
+		ProviderConfig<OrderService> providerConfig = new ProviderConfig<OrderService>(OrderService.class, service);
+		providerConfig.setUrl(URL);
+		final ServiceInvocationHandler serviceHandler = new ServiceInvocationHandler() {
+
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				InvocationRequest request = invocationContext.getRequest();
+				Object[] args = request.getParameters();
+				for (Method method : OrderService.class.getMethods()) {
+					if (method.getName().equals(request.getMethodName())) {
+						try {
+							return new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, request.getSequence(),
+									Constants.MESSAGE_TYPE_SERVICE, method.invoke(service, args));
+						} catch (Exception e) {
+							return new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, request.getSequence(),
+									Constants.MESSAGE_TYPE_SERVICE_EXCEPTION, e);
+						}
+					}
+				}
+				throw new IllegalArgumentException(request.getMethodName());
+			}
+		};
+		final SecurityFilter securityFilter = filtered ? new SecurityFilter() : null;
+		final GatewayProcessFilter gatewayFilter = filtered ? new GatewayProcessFilter() : null;
+
+		WarmupManager.INSTANCE.warmUp(Collections.<ProviderConfig<?>> singletonList(providerConfig),
+				new WarmupManager.Dispatcher() {
+
+					@Override
+					public InvocationResponse dispatch(ProviderConfig<?> providerConfig, final ProviderContext context)
+							throws Exception {
+						try {
+							if (!filtered) {
+								return serviceHandler.handle(context);
+							}
+							return securityFilter.invoke(new ServiceInvocationHandler() {
+
+								@Override
+								public InvocationResponse handle(InvocationContext invocationContext)
+										throws Throwable {
+									return gatewayFilter.invoke(serviceHandler, context);
+								}
+							}, context);
+						} catch (Exception e) {
+							throw e;
+						} catch (Throwable t) {
+							throw new IllegalStateException(t);
+						}
+					}
+				});
+	}
+
+	private Map<String, MethodWarmup> getMethods() {
+		Map<String, MethodWarmup> methods = new HashMap<String, MethodWarmup>();
+		for (MethodWarmup method : WarmupManager.INSTANCE.getMethods()) {
+			methods.put(method.getName(), method);
+		}
+		return methods;
+	}
+
+	@Test
+	public void testWarmUpUntilStable() throws Exception {
+		// wide enough to settle despite timer noise on a loaded machine
+		ConfigManagerLoader.getConfigManager().setLocalStringValue(KEY_WARMUP_STABLE_RATIO, "0.5");
+		ConfigManagerLoader.getConfigManager().setLocalStringValue(KEY_WARMUP_SYNTHETIC_METHODS,
+				"getOrder,countOrders," + URL + "#cancelOrder");
+		warmUp(new OrderServiceImpl());
+
+		Assert.assertEquals(WarmupManager.STATE_DONE, WarmupManager.INSTANCE.getState());
+		Map<String, MethodWarmup> methods = getMethods();
+		Assert.assertEquals(3, methods.size());
+
+		// synthetic arguments: 0, "" and an empty list
+		MethodWarmup getOrder = methods.get("getOrder(long)");
+		Assert.assertTrue(getOrder.isStable());
+		Assert.assertEquals(0, getOrder.getFailures());
+		Assert.assertTrue(getOrder.getCalls() > 1);
+		MethodWarmup countOrders = methods.get("countOrders(String,List)");
+		Assert.assertTrue(countOrders.isStable());
+		Assert.assertEquals(0, countOrders.getFailures());
+
+		// a method failing on its samples stops after the probe call
+		MethodWarmup cancelOrder = methods.get("cancelOrder(long)");
+		Assert.assertFalse(cancelOrder.isStable());
+		Assert.assertEquals(1, cancelOrder.getCalls());
+		Assert.assertEquals(1, cancelOrder.getFailures());
+	}
+
+	@Test
+	public void testSyntheticOnlyForListedMethods() throws Exception {
+		ConfigManagerLoader.getConfigManager().setLocalStringValue(KEY_WARMUP_SYNTHETIC_METHODS, "getOrder");
+		warmUp(new OrderServiceImpl());
+
+		Map<String, MethodWarmup> methods = getMethods();
+		Assert.assertEquals(3, methods.size());
+		Assert.assertTrue(methods.get("getOrder(long)").getCalls() > 0);
+		// not listed, never called with made up arguments
+		Assert.assertEquals(0, methods.get("countOrders(String,List)").getCalls());
+		Assert.assertEquals(0, methods.get("cancelOrder(long)").getCalls());
+	}
+
+	@Test
+	public void testWarmupRequestsPassFilters() throws Throwable {
+		ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+		configManager.setLocalStringValue(KEY_WARMUP_SYNTHETIC_METHODS, "getOrder");
+		configManager.setLocalStringValue(KEY_TOKEN_ENABLE, "true");
+		configManager.setLocalStringValue(KEY_TOKEN_PROTOCOL_DEFAULT_ENABLE, "true");
+		try {
+			warmUp(new OrderServiceImpl(), true);
+
+			// no app and no token, still served
+			MethodWarmup getOrder = getMethods().get("getOrder(long)");
+			Assert.assertTrue(getOrder.getCalls() > 1);
+			Assert.assertEquals(0, getOrder.getFailures());
+			// and not counted as traffic
+			Assert.assertNull(ProviderStatisticsHolder.getMethodCapacityBuckets().get(URL + "#getOrder"));
+
+			// the same request from a remote channel needs a token
+			DefaultRequest request = new DefaultRequest(URL, "getOrder", new Object[] { 1L },
+					SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000,
+					Constants.CALLTYPE_REPLY, 1);
+			try {
+				new SecurityFilter().invoke(null, new DefaultProviderContext(request, new LocalChannel()));
+				Assert.fail("request without token should be refused");
+			} catch (SecurityException e) {
+			}
+		} finally {
+			configManager.setLocalStringValue(KEY_TOKEN_ENABLE, "false");
+			configManager.setLocalStringValue(KEY_TOKEN_PROTOCOL_DEFAULT_ENABLE, "false");
+		}
+	}
+
+	private static class LocalChannel implements ProviderChannel {
+
+		@Override
+		public void write(InvocationResponse response) {
+		}
+
+		@Override
+		public String getRemoteAddress() {
+			return ConfigManagerLoader.getConfigManager().getLocalIp();
+		}
+
+		@Override
+		public String getProtocol() {
+			return Constants.PROTOCOL_DEFAULT;
+		}
+
+		@Override
+		public int getPort() {
+			return 4040;
+		}
+
+		@Override
+		public AuthSession getAuthSession() {
+			return null;
+		}
+
+		@Override
+		public void setAuthSession(AuthSession session) {
+		}
+	}
+}